@@ -146,6 +146,43 @@ public String defaultValue() {
     }
   }
 
+  private static final String FRAME_KEY_BASE = "avatica.frame";
+
+  /** Configurable settings for frames returned by {@link #fetch}. */
+  public enum FrameSettings {
+    /** JDBC connection property for setting the maximum number of rows in a
+     * frame. If negative, the number requested by the client is used. */
+    MAX_ROW_COUNT(FRAME_KEY_BASE + ".maxrowcount", "-1"),
+
+    /** JDBC connection property for setting the number of rows of a frame
+     * that are read before the frame is returned. If the result set ends
+     * among them, the frame is marked done, saving the client a request;
+     * further rows are read as the frame is serialized. */
+    BUFFER_ROW_COUNT(FRAME_KEY_BASE + ".bufferrowcount", "100"),
+
+    /** JDBC connection property for setting the approximate maximum number of
+     * bytes of row data in a frame. If negative, there is no limit. */
+    MAX_BYTES(FRAME_KEY_BASE + ".maxbytes", "8388608");
+
+    private final String key;
+    private final String defaultValue;
+
+    FrameSettings(String key, String defaultValue) {
+      this.key = key;
+      this.defaultValue = defaultValue;
+    }
+
+    /** The configuration key for specifying this setting. */
+    public String key() {
+      return key;
+    }
+
+    /** The default value for this setting. */
+    public String defaultValue() {
+      return defaultValue;
+    }
+  }
+
   private static final String DEFAULT_CONN_ID =
       UUID.fromString("00000000-0000-0000-0000-000000000000").toString();
 
@@ -154,6 +191,9 @@ public String defaultValue() {
   private final Connection connection; // TODO: remove default connection
   private final Cache<String, Connection> connectionCache;
   private final Cache<Integer, StatementInfo> statementCache;
+  private final int frameMaxRowCount;
+  private final int frameBufferRowCount;
+  private final long frameMaxBytes;
 
   /**
    * Convert from JDBC metadata to Avatica columns.
@@ -216,6 +256,17 @@ protected static Signature signature(ResultSetMetaData metaData)
     return signature(metaData, null, null);
   }
 
+  /** Returns the number of connections in the connection cache. */
+  public long getCachedConnectionCount() {
+    return connectionCache.size();
+  }
+
+  /** Returns the number of statements in the statement cache; that is, the
+   * number of statements that are open. */
+  public long getOpenStatementCount() {
+    return statementCache.size();
+  }
+
   /** Callback for {@link #connectionCache} member expiration. */
   private class ConnectionExpiryHandler
       implements RemovalListener<String, Connection> {
@@ -356,6 +407,16 @@ public JdbcMeta(String url, Properties info) throws SQLException {
     if (LOG.isDebugEnabled()) {
       LOG.debug("instantiated statement cache: " + statementCache.stats());
     }
+
+    this.frameMaxRowCount = Integer.parseInt(
+        info.getProperty(FrameSettings.MAX_ROW_COUNT.key(),
+            FrameSettings.MAX_ROW_COUNT.defaultValue()));
+    this.frameBufferRowCount = Integer.parseInt(
+        info.getProperty(FrameSettings.BUFFER_ROW_COUNT.key(),
+            FrameSettings.BUFFER_ROW_COUNT.defaultValue()));
+    this.frameMaxBytes = Long.parseLong(
+        info.getProperty(FrameSettings.MAX_BYTES.key(),
+            FrameSettings.MAX_BYTES.defaultValue()));
   }
 
   public Map<DatabaseProperty, Object> getDatabaseProperties() {
@@ -777,6 +838,12 @@ public Frame fetch(StatementHandle h, List<TypedValue> parameterValues,
       final StatementInfo statementInfo = Objects.requireNonNull(
           statementCache.getIfPresent(h.id),
           "Statement not found, potentially expired. " + h);
+      final SQLException failure = statementInfo.failure;
+      if (failure != null) {
+        // Reading the previous frame failed after it had been sent
+        statementInfo.failure = null;
+        throw failure;
+      }
       if (statementInfo.resultSet == null || parameterValues != null) {
         if (statementInfo.statement instanceof PreparedStatement) {
           final PreparedStatement preparedStatement =
@@ -792,17 +859,34 @@ public Frame fetch(StatementHandle h, List<TypedValue> parameterValues,
           }
         }
       }
-      if (statementInfo.resultSet == null) {
+      if (statementInfo.resultSet == null
+          || statementInfo.resultSet.isClosed()) {
         return Frame.EMPTY;
       } else {
-        return JdbcResultSet.frame(statementInfo.resultSet, offset,
-            fetchMaxRowCount, calendar);
+        // Rows beyond the first few are read from the result set as the
+        // frame is serialized, so a large frame is never materialized on
+        // the server.
+        return JdbcResultSet.streamingFrame(statementInfo.resultSet, offset,
+            frameRowCount(fetchMaxRowCount), frameBufferRowCount,
+            frameMaxBytes, calendar, statementInfo);
       }
     } catch (SQLException e) {
       throw propagate(e);
     }
   }
 
+  /** Returns the maximum number of rows in a frame, given the number that
+   * the client requested. */
+  private int frameRowCount(int fetchMaxRowCount) {
+    if (fetchMaxRowCount < 0) {
+      return frameMaxRowCount;
+    } else if (frameMaxRowCount < 0) {
+      return fetchMaxRowCount;
+    } else {
+      return Math.min(fetchMaxRowCount, frameMaxRowCount);
+    }
+  }
+
   private static String[] toArray(List<String> typeList) {
     if (typeList == null) {
       return null;
@@ -811,13 +895,21 @@ private static String[] toArray(List<String> typeList) {
   }
 
   /** All we know about a statement. */
-  private static class StatementInfo {
+  private static class StatementInfo
+      implements JdbcResultSet.FailureHandler {
     final Statement statement; // sometimes a PreparedStatement
     ResultSet resultSet;
+    /** Error that occurred while a streaming frame was being sent, and is
+     * to be reported by the next fetch; or null. */
+    volatile SQLException failure;
 
     private StatementInfo(Statement statement) {
       this.statement = Objects.requireNonNull(statement);
     }
+
+    public void onFailure(SQLException e) {
+      failure = e;
+    }
   }
 }
 
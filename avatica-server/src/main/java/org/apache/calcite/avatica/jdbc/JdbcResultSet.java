@@ -28,7 +28,9 @@
 import java.sql.Types;
 import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
 
 /** Implementation of {@link org.apache.calcite.avatica.Meta.MetaResultSet}
  *  upon a JDBC {@link java.sql.ResultSet}.
@@ -69,12 +71,8 @@ public static JdbcResultSet create(String connectionId, int statementId,
    * from a result set. */
   static Meta.Frame frame(ResultSet resultSet, long offset,
       int fetchMaxRowCount, Calendar calendar) throws SQLException {
-    final ResultSetMetaData metaData = resultSet.getMetaData();
-    final int columnCount = metaData.getColumnCount();
-    final int[] types = new int[columnCount];
-    for (int i = 0; i < types.length; i++) {
-      types[i] = metaData.getColumnType(i + 1);
-    }
+    final int[] types = types(resultSet);
+    final int columnCount = types.length;
     final List<Object> rows = new ArrayList<>();
     // Meta prepare/prepareAndExecute 0 return 0 row and done
     boolean done = fetchMaxRowCount == 0;
@@ -93,6 +91,72 @@ static Meta.Frame frame(ResultSet resultSet, long offset,
     return new Meta.Frame(offset, done, rows);
   }
 
+  /** Creates a frame whose rows are read from a result set as they are
+   * consumed; typically, as the frame is serialized into a response.
+   *
+   * <p>The frame contains at most {@code fetchMaxRowCount} rows (or all rows,
+   * if negative), and ends after the first row that takes the estimated size
+   * of its rows to {@code maxBytes} or more (no limit if negative).
+   *
+   * <p>The first {@code bufferRowCount} rows are read before the frame is
+   * returned. If the result set ends among them, the frame is marked done,
+   * and the client does not need to fetch again. Otherwise the remaining rows
+   * have not been read, so the frame is not marked done; when the result set
+   * is exhausted, it is closed, and the next fetch returns an empty frame that
+   * is done. The rows of such a frame can be iterated only once.
+   *
+   * <p>By the time a row beyond the first {@code bufferRowCount} is read, the
+   * response has typically been committed, so an error can no longer be
+   * reported in it. If reading fails, the frame ends early but is well
+   * formed (and not done), the result set is closed, and the error is given
+   * to {@code failureHandler}, so that the next fetch can report it. */
+  static Meta.Frame streamingFrame(ResultSet resultSet, long offset,
+      int fetchMaxRowCount, int bufferRowCount, long maxBytes,
+      Calendar calendar, FailureHandler failureHandler) throws SQLException {
+    final RowReader reader =
+        new RowReader(resultSet, types(resultSet), fetchMaxRowCount, maxBytes,
+            calendar);
+    final List<Object> rows = new ArrayList<>();
+    // Meta prepare/prepareAndExecute 0 return 0 row and done
+    boolean done = fetchMaxRowCount == 0;
+    while (!done) {
+      if (rows.size() >= bufferRowCount) {
+        return new Meta.Frame(offset, false,
+            new StreamingRows(rows, reader, failureHandler));
+      }
+      final Object[] row = reader.read();
+      if (row == null) {
+        done = reader.exhausted;
+        break;
+      }
+      rows.add(row);
+    }
+    return new Meta.Frame(offset, done, rows);
+  }
+
+  private static int[] types(ResultSet resultSet) throws SQLException {
+    final ResultSetMetaData metaData = resultSet.getMetaData();
+    final int[] types = new int[metaData.getColumnCount()];
+    for (int i = 0; i < types.length; i++) {
+      types[i] = metaData.getColumnType(i + 1);
+    }
+    return types;
+  }
+
+  /** Returns the approximate number of bytes that a value occupies when
+   * serialized. */
+  static long estimateSize(Object o) {
+    if (o == null) {
+      return 4;
+    } else if (o instanceof String) {
+      return ((String) o).length() + 2;
+    } else if (o instanceof byte[]) {
+      return ((byte[]) o).length;
+    } else {
+      return 8;
+    }
+  }
+
   private static Object getValue(ResultSet resultSet, int type, int j,
       Calendar calendar) throws SQLException {
     switch (type) {
@@ -132,6 +196,131 @@ private static Object getValue(ResultSet resultSet, int type, int j,
       return resultSet.getObject(j + 1);
     }
   }
+
+  /** Receives an error that occurs while the rows of a streaming frame are
+   * being read, after the frame has been returned.
+   *
+   * @see #streamingFrame */
+  interface FailureHandler {
+    void onFailure(SQLException e);
+  }
+
+  /** Reads rows from a {@link ResultSet} until it is exhausted or the
+   * limits of a frame are reached. */
+  private static class RowReader {
+    private final ResultSet resultSet;
+    private final int[] types;
+    private final int fetchMaxRowCount;
+    private final long maxBytes;
+    private final Calendar calendar;
+    int rowCount;
+    long byteCount;
+    boolean exhausted;
+
+    RowReader(ResultSet resultSet, int[] types, int fetchMaxRowCount,
+        long maxBytes, Calendar calendar) {
+      this.resultSet = resultSet;
+      this.types = types;
+      this.fetchMaxRowCount = fetchMaxRowCount;
+      this.maxBytes = maxBytes;
+      this.calendar = calendar;
+    }
+
+    /** Returns the next row, or null if there are no more rows in the
+     * result set or the frame is full. */
+    Object[] read() throws SQLException {
+      if (exhausted
+          || fetchMaxRowCount >= 0 && rowCount >= fetchMaxRowCount
+          || maxBytes >= 0 && byteCount >= maxBytes) {
+        return null;
+      }
+      if (!resultSet.next()) {
+        exhausted = true;
+        resultSet.close();
+        return null;
+      }
+      final Object[] columns = new Object[types.length];
+      for (int j = 0; j < types.length; j++) {
+        columns[j] = getValue(resultSet, types[j], j, calendar);
+        byteCount += estimateSize(columns[j]);
+      }
+      ++rowCount;
+      return columns;
+    }
+  }
+
+  /** Rows of a frame; some have already been read, and the rest are read from
+   * a {@link ResultSet} on demand.
+   *
+   * @see #streamingFrame */
+  private static class StreamingRows implements Iterable<Object> {
+    private final List<Object> buffer;
+    private final RowReader reader;
+    private final FailureHandler failureHandler;
+    private boolean started;
+
+    StreamingRows(List<Object> buffer, RowReader reader,
+        FailureHandler failureHandler) {
+      this.buffer = buffer;
+      this.reader = reader;
+      this.failureHandler = failureHandler;
+    }
+
+    public Iterator<Object> iterator() {
+      if (started) {
+        throw new IllegalStateException(
+            "rows of a streaming frame can only be read once");
+      }
+      started = true;
+      final Iterator<Object> bufferIterator = buffer.iterator();
+      return new Iterator<Object>() {
+        Object[] row;
+        boolean end;
+
+        public boolean hasNext() {
+          if (bufferIterator.hasNext()) {
+            return true;
+          }
+          if (row == null && !end) {
+            try {
+              row = reader.read();
+            } catch (SQLException e) {
+              // End the frame; the next fetch reports the error.
+              row = null;
+              fail(e);
+            }
+            end = row == null;
+          }
+          return row != null;
+        }
+
+        public Object next() {
+          if (!hasNext()) {
+            throw new NoSuchElementException();
+          }
+          if (bufferIterator.hasNext()) {
+            return bufferIterator.next();
+          }
+          final Object[] o = row;
+          row = null;
+          return o;
+        }
+
+        public void remove() {
+          throw new UnsupportedOperationException("remove");
+        }
+      };
+    }
+
+    private void fail(SQLException e) {
+      try {
+        reader.resultSet.close();
+      } catch (SQLException e2) {
+        e.setNextException(e2);
+      }
+      failureHandler.onFailure(e);
+    }
+  }
 }
 
 // End JdbcResultSet.java
@@ -27,8 +27,11 @@
 import org.eclipse.jetty.server.handler.AbstractHandler;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
 import javax.servlet.ServletException;
-import javax.servlet.ServletInputStream;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
@@ -52,23 +55,41 @@ public void handle(String target, Request baseRequest,
     if (request.getMethod().equals("POST")) {
       // First look for a request in the header, then look in the body.
       // The latter allows very large requests without hitting HTTP 413.
-      String rawRequest = request.getHeader("request");
-      if (rawRequest == null) {
-        try (ServletInputStream inputStream = request.getInputStream()) {
-          rawRequest = AvaticaUtils.readFully(inputStream);
+      final String rawRequest = request.getHeader("request");
+      final String jsonRequest;
+      if (rawRequest != null) {
+        // Jetty decodes headers as ISO-8859-1; the client encoded UTF-8
+        jsonRequest = new String(
+            rawRequest.getBytes(StandardCharsets.ISO_8859_1),
+            StandardCharsets.UTF_8);
+      } else {
+        try (InputStream inputStream =
+                 HttpCompression.requestStream(request)) {
+          jsonRequest =
+              new String(AvaticaUtils.readFullyToBytes(inputStream),
+                  StandardCharsets.UTF_8);
         }
       }
-      final String jsonRequest =
-          new String(rawRequest.getBytes("ISO-8859-1"), "UTF-8");
       if (LOG.isTraceEnabled()) {
         LOG.trace("request: " + jsonRequest);
       }
-      final String jsonResponse = jsonHandler.apply(jsonRequest);
-      if (LOG.isTraceEnabled()) {
-        LOG.trace("response: " + jsonResponse);
-      }
       baseRequest.setHandled(true);
-      response.getWriter().println(jsonResponse);
+      try (PrintWriter writer =
+               new PrintWriter(
+                   new OutputStreamWriter(
+                       HttpCompression.responseStream(request, response),
+                       "UTF-8"))) {
+        if (LOG.isTraceEnabled()) {
+          final String jsonResponse = jsonHandler.apply(jsonRequest);
+          LOG.trace("response: " + jsonResponse);
+          writer.print(jsonResponse);
+        } else {
+          // Write the response straight to the client; rows of a frame are
+          // read from the service as they are serialized.
+          jsonHandler.apply(jsonRequest, writer);
+        }
+        writer.println();
+      }
     }
   }
 }
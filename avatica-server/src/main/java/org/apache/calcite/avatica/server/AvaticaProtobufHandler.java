@@ -17,6 +17,7 @@
 package org.apache.calcite.avatica.server;
 
 import org.apache.calcite.avatica.AvaticaUtils;
+import org.apache.calcite.avatica.remote.ColumnarFrame;
 import org.apache.calcite.avatica.remote.ProtobufHandler;
 import org.apache.calcite.avatica.remote.ProtobufTranslationImpl;
 import org.apache.calcite.avatica.remote.Service;
@@ -25,9 +26,9 @@
 import org.eclipse.jetty.server.handler.AbstractHandler;
 
 import java.io.IOException;
-
+import java.io.InputStream;
+import java.io.OutputStream;
 import javax.servlet.ServletException;
-import javax.servlet.ServletInputStream;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
@@ -49,14 +50,17 @@ public void handle(String target, Request baseRequest,
     response.setStatus(HttpServletResponse.SC_OK);
     if (request.getMethod().equals("POST")) {
       byte[] requestBytes;
-      try (ServletInputStream inputStream = request.getInputStream()) {
+      try (InputStream inputStream = HttpCompression.requestStream(request)) {
         requestBytes = AvaticaUtils.readFullyToBytes(inputStream);
       }
 
-      byte[] responseBytes = pbHandler.apply(requestBytes);
-
       baseRequest.setHandled(true);
-      response.getOutputStream().write(responseBytes);
+      try (OutputStream outputStream =
+               HttpCompression.responseStream(request, response)) {
+        pbHandler.apply(requestBytes, outputStream,
+            ColumnarFrame.COLUMNAR.equals(
+                request.getHeader(ColumnarFrame.ENCODING_HEADER)));
+      }
     }
   }
 
@@ -0,0 +1,85 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.avatica.server;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Utilities for gzip compression of the bodies of HTTP requests and
+ * responses, negotiated using the standard {@code Content-Encoding} and
+ * {@code Accept-Encoding} headers.
+ *
+ * <p>Clients that send neither header, such as older versions of the remote
+ * driver, get uncompressed responses.
+ *
+ * @see org.apache.calcite.avatica.remote.AvaticaHttpClientImpl
+ */
+final class HttpCompression {
+  private HttpCompression() {
+  }
+
+  /** Returns the body of a request, decompressing it if the client
+   * compressed it. */
+  static InputStream requestStream(HttpServletRequest request)
+      throws IOException {
+    final InputStream inputStream = request.getInputStream();
+    if ("gzip".equalsIgnoreCase(request.getHeader("Content-Encoding"))) {
+      return new GZIPInputStream(inputStream);
+    }
+    return inputStream;
+  }
+
+  /** Returns a stream to which to write the body of a response, compressing
+   * it if the client accepts gzip. The caller must close the stream. */
+  static OutputStream responseStream(HttpServletRequest request,
+      HttpServletResponse response) throws IOException {
+    if (acceptsGzip(request.getHeader("Accept-Encoding"))) {
+      response.setHeader("Content-Encoding", "gzip");
+      return new GZIPOutputStream(response.getOutputStream());
+    }
+    return response.getOutputStream();
+  }
+
+  /** Returns whether an {@code Accept-Encoding} header allows gzip; for
+   * example "gzip, deflate" does, and "gzip;q=0" does not. */
+  static boolean acceptsGzip(String acceptEncoding) {
+    if (acceptEncoding == null) {
+      return false;
+    }
+    for (String coding : acceptEncoding.split(",")) {
+      final String[] parts = coding.split(";");
+      if (parts[0].trim().equalsIgnoreCase("gzip")) {
+        for (int i = 1; i < parts.length; i++) {
+          final String param = parts[i].replace(" ", "");
+          if (param.matches("q=0(\\.0*)?")) {
+            return false;
+          }
+        }
+        return true;
+      }
+    }
+    return false;
+  }
+}
+
+// End HttpCompression.java
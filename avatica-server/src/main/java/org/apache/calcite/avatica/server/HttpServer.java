@@ -27,19 +27,108 @@
 import org.eclipse.jetty.server.handler.HandlerList;
 import org.eclipse.jetty.util.thread.QueuedThreadPool;
 
+import java.util.Properties;
+
 /**
  * Avatica HTTP server.
+ *
+ * <p>Requests are processed by a bounded pool of worker threads, and
+ * rejected when too many are waiting; see {@link QueuingHandler}. The server
+ * records {@link ServerMetrics}; if {@link Settings#METRICS_ENABLED} is set, it
+ * returns them in response to {@code GET /metrics}. The sizes of the pools
+ * and queue are set using {@link Settings}.
  */
 public class HttpServer {
   private static final Log LOG = LogFactory.getLog(HttpServer.class);
 
+  private static final String SERVER_KEY_BASE = "avatica.server";
+
+  /** Configurable settings of the server's threads, queue and metrics. */
+  public enum Settings {
+    /** Minimum number of threads that Jetty keeps to accept connections and
+     * read requests. */
+    MIN_THREADS(SERVER_KEY_BASE + ".minthreads", "8"),
+
+    /** Maximum number of threads that Jetty uses to accept connections and
+     * read requests. */
+    MAX_THREADS(SERVER_KEY_BASE + ".maxthreads", "200"),
+
+    /** Number of worker threads that process requests. If 0, requests are
+     * processed by Jetty's threads, without limit. */
+    WORKER_THREADS(SERVER_KEY_BASE + ".workerthreads", "50"),
+
+    /** Maximum number of requests that wait for a worker thread; further
+     * requests are rejected. */
+    MAX_QUEUED(SERVER_KEY_BASE + ".maxqueued", "200"),
+
+    /** Time in milliseconds after which a request that is being processed by
+     * a worker thread fails; 0 means never. */
+    ASYNC_TIMEOUT(SERVER_KEY_BASE + ".asynctimeout", "0"),
+
+    /** Whether the server returns its metrics in response to
+     * {@code GET /metrics}. The endpoint is not authenticated, so it is off
+     * by default. */
+    METRICS_ENABLED(SERVER_KEY_BASE + ".metricsenabled", "false");
+
+    private final String key;
+    private final String defaultValue;
+
+    Settings(String key, String defaultValue) {
+      this.key = key;
+      this.defaultValue = defaultValue;
+    }
+
+    /** The configuration key for specifying this setting. */
+    public String key() {
+      return key;
+    }
+
+    /** The default value for this setting. */
+    public String defaultValue() {
+      return defaultValue;
+    }
+
+    /** Returns the value of this setting in a set of properties. */
+    long get(Properties info) {
+      return Long.parseLong(info.getProperty(key, defaultValue));
+    }
+
+    /** Returns the value of this boolean setting in a set of properties. */
+    boolean getBoolean(Properties info) {
+      return Boolean.parseBoolean(info.getProperty(key, defaultValue));
+    }
+  }
+
   private Server server;
   private int port = -1;
   private final Handler handler;
+  private final Properties info;
+  private final ServerMetrics metrics;
 
   public HttpServer(int port, Handler handler) {
+    this(port, handler, new Properties(), new ServerMetrics());
+  }
+
+  /** Creates an HttpServer.
+   *
+   * @param port Port to bind, or 0 to choose a free port
+   * @param handler Handler of Avatica requests
+   * @param info Settings; see {@link Settings}
+   * @param metrics Metrics
+   */
+  public HttpServer(int port, Handler handler, Properties info,
+      ServerMetrics metrics) {
     this.port = port;
-    this.handler = handler;
+    this.info = info;
+    this.metrics = metrics;
+    final int workerThreads = (int) Settings.WORKER_THREADS.get(info);
+    if (workerThreads > 0) {
+      this.handler = new QueuingHandler(handler, workerThreads,
+          (int) Settings.MAX_QUEUED.get(info),
+          Settings.ASYNC_TIMEOUT.get(info), metrics);
+    } else {
+      this.handler = handler;
+    }
   }
 
   public void start() {
@@ -47,7 +136,9 @@ public void start() {
       throw new RuntimeException("Server is already started");
     }
 
-    final QueuedThreadPool threadPool = new QueuedThreadPool();
+    final QueuedThreadPool threadPool =
+        new QueuedThreadPool((int) Settings.MAX_THREADS.get(info),
+            (int) Settings.MIN_THREADS.get(info));
     threadPool.setDaemon(true);
     server = new Server(threadPool);
     server.manage(threadPool);
@@ -59,7 +150,14 @@ public void start() {
     server.setConnectors(new Connector[] { connector });
 
     final HandlerList handlerList = new HandlerList();
-    handlerList.setHandlers(new Handler[] { handler, new DefaultHandler() });
+    if (Settings.METRICS_ENABLED.getBoolean(info)) {
+      handlerList.setHandlers(
+          new Handler[] {
+            handler, new MetricsHandler(metrics), new DefaultHandler()
+          });
+    } else {
+      handlerList.setHandlers(new Handler[] {handler, new DefaultHandler()});
+    }
     server.setHandler(handlerList);
     try {
       server.start();
@@ -94,6 +192,10 @@ public void join() throws InterruptedException {
   public int getPort() {
     return port;
   }
+
+  public ServerMetrics getMetrics() {
+    return metrics;
+  }
 }
 
 // End HttpServer.java
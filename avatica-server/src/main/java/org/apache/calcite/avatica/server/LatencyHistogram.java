@@ -0,0 +1,112 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.avatica.server;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram of latencies, safe for concurrent use.
+ *
+ * <p>Latencies are counted in buckets whose bounds are powers of 2
+ * microseconds, so recording is cheap and the memory used is fixed, and
+ * percentiles are accurate to within a factor of 2.
+ */
+public class LatencyHistogram {
+  /** Bucket 0 counts latencies under 1 microsecond; bucket {@code i} counts
+   * latencies in [2<sup>i - 1</sup>, 2<sup>i</sup>) microseconds; the last
+   * bucket also counts all longer latencies. */
+  private static final int BUCKET_COUNT = 40;
+
+  private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+  private final AtomicLong count = new AtomicLong();
+  private final AtomicLong totalNanos = new AtomicLong();
+  private final AtomicLong maxNanos = new AtomicLong();
+
+  /** Records a latency. */
+  public void record(long nanos) {
+    if (nanos < 0) {
+      nanos = 0;
+    }
+    final long micros = nanos / 1000;
+    final int bucket =
+        Math.min(BUCKET_COUNT - 1, 64 - Long.numberOfLeadingZeros(micros));
+    buckets.incrementAndGet(bucket);
+    count.incrementAndGet();
+    totalNanos.addAndGet(nanos);
+    for (;;) {
+      final long max = maxNanos.get();
+      if (nanos <= max || maxNanos.compareAndSet(max, nanos)) {
+        break;
+      }
+    }
+  }
+
+  /** Returns the number of latencies recorded. */
+  public long getCount() {
+    return count.get();
+  }
+
+  /** Returns the mean latency, in milliseconds. */
+  public double getMeanMillis() {
+    final long n = count.get();
+    return n == 0 ? 0d : totalNanos.get() / 1000000d / n;
+  }
+
+  /** Returns the longest latency, in milliseconds. */
+  public double getMaxMillis() {
+    return maxNanos.get() / 1000000d;
+  }
+
+  /** Returns an upper bound, in milliseconds, of a percentile of the
+   * latencies.
+   *
+   * @param percentile Percentile, between 0 and 100
+   */
+  public double getPercentileMillis(double percentile) {
+    final long n = count.get();
+    if (n == 0) {
+      return 0d;
+    }
+    final long rank = Math.max(1, (long) Math.ceil(percentile / 100d * n));
+    long seen = 0;
+    for (int i = 0; i < BUCKET_COUNT - 1; i++) {
+      seen += buckets.get(i);
+      if (seen >= rank) {
+        return Math.min((1L << i) / 1000d, getMaxMillis());
+      }
+    }
+    return getMaxMillis();
+  }
+
+  /** Returns a summary of the histogram, suitable for serializing as
+   * JSON. */
+  public Map<String, Object> toMap() {
+    final Map<String, Object> map = new LinkedHashMap<>();
+    map.put("count", getCount());
+    map.put("meanMillis", getMeanMillis());
+    map.put("p50Millis", getPercentileMillis(50));
+    map.put("p90Millis", getPercentileMillis(90));
+    map.put("p99Millis", getPercentileMillis(99));
+    map.put("maxMillis", getMaxMillis());
+    return map;
+  }
+}
+
+// End LatencyHistogram.java
@@ -17,6 +17,7 @@
 package org.apache.calcite.avatica.server;
 
 import org.apache.calcite.avatica.Meta;
+import org.apache.calcite.avatica.jdbc.JdbcMeta;
 import org.apache.calcite.avatica.remote.LocalService;
 import org.apache.calcite.avatica.remote.Service;
 
@@ -71,6 +72,9 @@ public static HttpServer start(String[] args) throws ClassNotFoundException,
   /**
    * Creates and starts an {@link HttpServer} using the given factory to create the Handler.
    *
+   * <p>The server's threads are configured using system properties; see
+   * {@link HttpServer.Settings}.
+   *
    * <p>Arguments are as follows:
    * <ul>
    *   <li>args[0]: the {@link org.apache.calcite.avatica.Meta.Factory} class
@@ -90,8 +94,13 @@ public static HttpServer start(String[] args, int port, HandlerFactory handlerFa
     Class<?> factoryClass = Class.forName(factoryClassName);
     Meta.Factory factory = (Meta.Factory) factoryClass.newInstance();
     Meta meta = factory.create(Arrays.asList(args).subList(1, args.length));
-    Service service = new LocalService(meta);
-    HttpServer server = new HttpServer(port, handlerFactory.createHandler(service));
+    ServerMetrics metrics = new ServerMetrics();
+    if (meta instanceof JdbcMeta) {
+      metrics.addGauges((JdbcMeta) meta);
+    }
+    Service service = new MetricsService(new LocalService(meta), metrics);
+    HttpServer server = new HttpServer(port, handlerFactory.createHandler(service),
+        System.getProperties(), metrics);
     server.start();
     return server;
   }
@@ -0,0 +1,172 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.avatica.server;
+
+import org.apache.calcite.avatica.remote.Service;
+
+/**
+ * Implementation of {@link Service} that records the latency of each request
+ * in a {@link ServerMetrics}, then delegates to another service.
+ *
+ * <p>Latencies are recorded per type of request, using the same names as the
+ * JSON serialization of requests, for example "prepareAndExecute" and
+ * "fetch". The latency of a request does not include the time taken to
+ * deserialize it, or to serialize its response; nor, for "fetch", the time
+ * taken to read the rows of a frame that are read while the frame is
+ * serialized.
+ */
+public class MetricsService implements Service {
+  private final Service service;
+  private final ServerMetrics metrics;
+
+  public MetricsService(Service service, ServerMetrics metrics) {
+    this.service = service;
+    this.metrics = metrics;
+  }
+
+  private void record(String name, long start) {
+    metrics.latency(name).record(System.nanoTime() - start);
+  }
+
+  public ResultSetResponse apply(CatalogsRequest request) {
+    final long start = System.nanoTime();
+    try {
+      return service.apply(request);
+    } finally {
+      record("getCatalogs", start);
+    }
+  }
+
+  public ResultSetResponse apply(SchemasRequest request) {
+    final long start = System.nanoTime();
+    try {
+      return service.apply(request);
+    } finally {
+      record("getSchemas", start);
+    }
+  }
+
+  public ResultSetResponse apply(TablesRequest request) {
+    final long start = System.nanoTime();
+    try {
+      return service.apply(request);
+    } finally {
+      record("getTables", start);
+    }
+  }
+
+  public ResultSetResponse apply(TableTypesRequest request) {
+    final long start = System.nanoTime();
+    try {
+      return service.apply(request);
+    } finally {
+      record("getTableTypes", start);
+    }
+  }
+
+  public ResultSetResponse apply(TypeInfoRequest request) {
+    final long start = System.nanoTime();
+    try {
+      return service.apply(request);
+    } finally {
+      record("getTypeInfo", start);
+    }
+  }
+
+  public ResultSetResponse apply(ColumnsRequest request) {
+    final long start = System.nanoTime();
+    try {
+      return service.apply(request);
+    } finally {
+      record("getColumns", start);
+    }
+  }
+
+  public PrepareResponse apply(PrepareRequest request) {
+    final long start = System.nanoTime();
+    try {
+      return service.apply(request);
+    } finally {
+      record("prepare", start);
+    }
+  }
+
+  public ExecuteResponse apply(PrepareAndExecuteRequest request) {
+    final long start = System.nanoTime();
+    try {
+      return service.apply(request);
+    } finally {
+      record("prepareAndExecute", start);
+    }
+  }
+
+  public FetchResponse apply(FetchRequest request) {
+    final long start = System.nanoTime();
+    try {
+      return service.apply(request);
+    } finally {
+      record("fetch", start);
+    }
+  }
+
+  public CreateStatementResponse apply(CreateStatementRequest request) {
+    final long start = System.nanoTime();
+    try {
+      return service.apply(request);
+    } finally {
+      record("createStatement", start);
+    }
+  }
+
+  public CloseStatementResponse apply(CloseStatementRequest request) {
+    final long start = System.nanoTime();
+    try {
+      return service.apply(request);
+    } finally {
+      record("closeStatement", start);
+    }
+  }
+
+  public CloseConnectionResponse apply(CloseConnectionRequest request) {
+    final long start = System.nanoTime();
+    try {
+      return service.apply(request);
+    } finally {
+      record("closeConnection", start);
+    }
+  }
+
+  public ConnectionSyncResponse apply(ConnectionSyncRequest request) {
+    final long start = System.nanoTime();
+    try {
+      return service.apply(request);
+    } finally {
+      record("connectionSync", start);
+    }
+  }
+
+  public DatabasePropertyResponse apply(DatabasePropertyRequest request) {
+    final long start = System.nanoTime();
+    try {
+      return service.apply(request);
+    } finally {
+      record("databaseProperties", start);
+    }
+  }
+}
+
+// End MetricsService.java
@@ -0,0 +1,224 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.avatica.server;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.eclipse.jetty.server.Handler;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.handler.HandlerWrapper;
+
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Jetty handler that processes requests on a bounded pool of worker threads,
+ * and rejects requests when the pool is busy.
+ *
+ * <p>Each {@code POST} request is put into asynchronous mode and queued for
+ * a worker, which calls the wrapped handler; so Jetty's threads are not
+ * tied up by long-running requests, such as fetches that read rows from the
+ * database as they are written to the client.
+ *
+ * <p>If all workers are busy and {@code maxQueued} requests are already
+ * waiting, the request is rejected immediately with HTTP status 503
+ * (Service Unavailable) and a {@code Retry-After} header, rather than waiting
+ * for a connection timeout.
+ *
+ * <p>A request that has not completed within {@code asyncTimeout}
+ * milliseconds is cancelled: if it is still queued it never runs, and if it
+ * is running its worker is interrupted. It gets status 503 unless its
+ * response has already been committed.
+ *
+ * @see HttpServer.Settings
+ */
+public class QueuingHandler extends HandlerWrapper {
+  private static final Log LOG = LogFactory.getLog(QueuingHandler.class);
+
+  private static final ThreadFactory THREAD_FACTORY =
+      new ThreadFactory() {
+        private final AtomicInteger count = new AtomicInteger();
+
+        public Thread newThread(Runnable r) {
+          final Thread thread =
+              new Thread(r, "avatica-worker-" + count.incrementAndGet());
+          thread.setDaemon(true);
+          return thread;
+        }
+      };
+
+  /** Name of the histogram of the time that requests wait for a worker. */
+  public static final String QUEUE_WAIT = "server.queueWait";
+
+  private final int workerThreads;
+  private final int maxQueued;
+  private final long asyncTimeout;
+  private final ServerMetrics metrics;
+  private ThreadPoolExecutor executor;
+
+  /** Creates a QueuingHandler.
+   *
+   * @param handler Handler that processes each request
+   * @param workerThreads Number of worker threads
+   * @param maxQueued Maximum number of requests waiting for a worker
+   * @param asyncTimeout Time in milliseconds after which a request that has
+   *                     not completed fails; 0 means never
+   * @param metrics Metrics
+   */
+  public QueuingHandler(Handler handler, int workerThreads, int maxQueued,
+      long asyncTimeout, final ServerMetrics metrics) {
+    if (workerThreads <= 0) {
+      throw new IllegalArgumentException("workerThreads must be positive");
+    }
+    this.workerThreads = workerThreads;
+    this.maxQueued = maxQueued;
+    this.asyncTimeout = asyncTimeout;
+    this.metrics = metrics;
+    setHandler(handler);
+    metrics.addGauge("server.activeRequests",
+        new ServerMetrics.Gauge() {
+          public long getValue() {
+            final ThreadPoolExecutor executor = QueuingHandler.this.executor;
+            return executor == null ? 0 : executor.getActiveCount();
+          }
+        });
+    metrics.addGauge("server.queuedRequests",
+        new ServerMetrics.Gauge() {
+          public long getValue() {
+            final ThreadPoolExecutor executor = QueuingHandler.this.executor;
+            return executor == null ? 0 : executor.getQueue().size();
+          }
+        });
+  }
+
+  @Override protected void doStart() throws Exception {
+    final BlockingQueue<Runnable> queue = maxQueued > 0
+        ? new ArrayBlockingQueue<Runnable>(maxQueued)
+        : new SynchronousQueue<Runnable>();
+    final ThreadPoolExecutor executor =
+        new ThreadPoolExecutor(workerThreads, workerThreads, 60,
+            TimeUnit.SECONDS, queue, THREAD_FACTORY);
+    executor.allowCoreThreadTimeOut(true);
+    this.executor = executor;
+    super.doStart();
+  }
+
+  @Override protected void doStop() throws Exception {
+    super.doStop();
+    executor.shutdown();
+    executor = null;
+  }
+
+  @Override public void handle(final String target, final Request baseRequest,
+      final HttpServletRequest request, final HttpServletResponse response)
+      throws IOException, ServletException {
+    if (!request.getMethod().equals("POST")) {
+      super.handle(target, baseRequest, request, response);
+      return;
+    }
+    baseRequest.setHandled(true);
+    final AsyncContext context = request.startAsync();
+    context.setTimeout(asyncTimeout);
+    final long queued = System.nanoTime();
+    final AtomicBoolean timedOut = new AtomicBoolean();
+    final Runnable runnable =
+        new Runnable() {
+          public void run() {
+            metrics.latency(QUEUE_WAIT).record(System.nanoTime() - queued);
+            process(target, baseRequest, request, response, context,
+                timedOut);
+          }
+        };
+    final FutureTask<Void> task = new FutureTask<>(runnable, null);
+    context.addListener(
+        new AsyncListener() {
+          public void onTimeout(AsyncEvent event) {
+            LOG.warn("Request timed out after " + asyncTimeout + " ms");
+            timedOut.set(true);
+            // If the worker has already started writing the response, we
+            // cannot change the status.
+            if (!response.isCommitted()) {
+              response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            }
+            // Stop the worker, or stop it from starting; it will not
+            // complete the request.
+            task.cancel(true);
+            event.getAsyncContext().complete();
+          }
+
+          public void onComplete(AsyncEvent event) {}
+
+          public void onError(AsyncEvent event) {}
+
+          public void onStartAsync(AsyncEvent event) {}
+        });
+    try {
+      executor.execute(task);
+    } catch (RejectedExecutionException e) {
+      metrics.rejected();
+      response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+      response.setHeader("Retry-After", "1");
+      context.complete();
+    }
+  }
+
+  /** Processes a request in a worker thread. */
+  private void process(String target, Request baseRequest,
+      HttpServletRequest request, HttpServletResponse response,
+      AsyncContext context, AtomicBoolean timedOut) {
+    try {
+      getHandler().handle(target, baseRequest, request, response);
+    } catch (Throwable e) {
+      if (timedOut.get()) {
+        // The listener has responded; the error is probably because we
+        // were interrupted, or the response was completed under us
+        LOG.debug("Error after request timed out", e);
+        return;
+      }
+      LOG.error("Error while processing request", e);
+      if (!response.isCommitted()) {
+        response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+      }
+    } finally {
+      try {
+        if (!timedOut.get()) {
+          context.complete();
+        }
+      } catch (IllegalStateException e) {
+        // The request timed out, and was completed by the listener
+      }
+    }
+  }
+}
+
+// End QueuingHandler.java
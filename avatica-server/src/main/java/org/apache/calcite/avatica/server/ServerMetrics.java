@@ -0,0 +1,119 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.avatica.server;
+
+import org.apache.calcite.avatica.jdbc.JdbcMeta;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Metrics of an Avatica server: a {@link LatencyHistogram} per type of
+ * request, the number of requests rejected because the server was busy, and
+ * gauges such as the number of open statements.
+ *
+ * <p>If {@link HttpServer.Settings#METRICS_ENABLED} is set, the server
+ * returns the metrics as JSON in response to {@code GET /metrics}; see
+ * {@link MetricsHandler}.
+ *
+ * @see MetricsService
+ * @see QueuingHandler
+ */
+public class ServerMetrics {
+  private final ConcurrentMap<String, LatencyHistogram> latencies =
+      new ConcurrentHashMap<>();
+  private final Map<String, Gauge> gauges = new ConcurrentSkipListMap<>();
+  private final AtomicLong rejectedCount = new AtomicLong();
+
+  /** Returns the histogram of latencies with a given name, creating it if
+   * necessary. */
+  public LatencyHistogram latency(String name) {
+    LatencyHistogram histogram = latencies.get(name);
+    if (histogram == null) {
+      histogram = new LatencyHistogram();
+      final LatencyHistogram previous =
+          latencies.putIfAbsent(name, histogram);
+      if (previous != null) {
+        histogram = previous;
+      }
+    }
+    return histogram;
+  }
+
+  /** Registers a gauge, replacing any gauge with the same name. */
+  public void addGauge(String name, Gauge gauge) {
+    gauges.put(name, gauge);
+  }
+
+  /** Registers gauges for the connections and statements held by a
+   * {@link JdbcMeta}. */
+  public void addGauges(final JdbcMeta meta) {
+    addGauge("jdbc.cachedConnections",
+        new Gauge() {
+          public long getValue() {
+            return meta.getCachedConnectionCount();
+          }
+        });
+    addGauge("jdbc.openStatements",
+        new Gauge() {
+          public long getValue() {
+            return meta.getOpenStatementCount();
+          }
+        });
+  }
+
+  /** Records that a request was rejected because the server was busy. */
+  public void rejected() {
+    rejectedCount.incrementAndGet();
+  }
+
+  /** Returns the number of requests rejected because the server was
+   * busy. */
+  public long getRejectedCount() {
+    return rejectedCount.get();
+  }
+
+  /** Returns the current value of all metrics, suitable for serializing as
+   * JSON. */
+  public Map<String, Object> snapshot() {
+    final Map<String, Object> latencyMap = new TreeMap<>();
+    for (Map.Entry<String, LatencyHistogram> entry : latencies.entrySet()) {
+      latencyMap.put(entry.getKey(), entry.getValue().toMap());
+    }
+    final Map<String, Object> gaugeMap = new LinkedHashMap<>();
+    for (Map.Entry<String, Gauge> entry : gauges.entrySet()) {
+      gaugeMap.put(entry.getKey(), entry.getValue().getValue());
+    }
+    final Map<String, Object> map = new LinkedHashMap<>();
+    map.put("latencies", latencyMap);
+    map.put("gauges", gaugeMap);
+    map.put("rejected", getRejectedCount());
+    return map;
+  }
+
+  /** Value that is sampled each time the metrics are read. */
+  public interface Gauge {
+    long getValue();
+  }
+}
+
+// End ServerMetrics.java
@@ -0,0 +1,155 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.avatica.jdbc;
+
+import org.apache.calcite.avatica.Meta;
+import org.apache.calcite.avatica.remote.JsonService;
+import org.apache.calcite.avatica.util.DateTimeUtils;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import org.junit.Test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Unit test for {@link JdbcResultSet}.
+ */
+public class JdbcResultSetTest {
+  /** Tests that if reading a streaming frame fails after the first rows have
+   * been sent, the frame ends early but can still be serialized, and the
+   * error is kept for the next fetch. */
+  @Test public void testStreamingFrameFailsPartway() throws Exception {
+    final FailingResultSet failing = new FailingResultSet(5);
+    final List<SQLException> failures = new ArrayList<>();
+    final Meta.Frame frame =
+        JdbcResultSet.streamingFrame(failing.resultSet(), 0, 100, 2, -1,
+            Calendar.getInstance(DateTimeUtils.GMT_ZONE),
+            new JdbcResultSet.FailureHandler() {
+              public void onFailure(SQLException e) {
+                failures.add(e);
+              }
+            });
+    assertThat(frame.done, is(false));
+    assertThat(failures.size(), is(0));
+
+    // Serializing the frame reads the rest of the rows, and fails after the
+    // fifth row. The JSON is complete, and has the rows read so far.
+    final String json = JsonService.MAPPER.writeValueAsString(frame);
+    final JsonNode node = JsonService.MAPPER.readTree(json);
+    assertThat(node.get("done").asBoolean(), is(false));
+    assertThat(node.get("rows").size(), is(5));
+    assertThat(node.get("rows").get(4).get(0).asInt(), is(4));
+    assertThat(failures.size(), is(1));
+    assertThat(failures.get(0).getMessage(), is("disk on fire"));
+    assertThat(failing.closed, is(true));
+  }
+
+  /** Tests that a streaming frame reads all rows of a result set that does
+   * not fail, and does not call the failure handler. */
+  @Test public void testStreamingFrame() throws Exception {
+    final FailingResultSet failing = new FailingResultSet(-1);
+    final SQLException[] failure = {null};
+    final Meta.Frame frame =
+        JdbcResultSet.streamingFrame(failing.resultSet(), 0, 3, 1, -1,
+            Calendar.getInstance(DateTimeUtils.GMT_ZONE),
+            new JdbcResultSet.FailureHandler() {
+              public void onFailure(SQLException e) {
+                failure[0] = e;
+              }
+            });
+    int n = 0;
+    for (Object row : frame.rows) {
+      assertThat(((Object[]) row)[0], is((Object) n));
+      ++n;
+    }
+    assertThat(n, is(3));
+    assertThat(failure[0], nullValue());
+  }
+
+  /** Result set with one INTEGER column whose value is the row number,
+   * starting from 0, that throws after a given number of rows (or never, if
+   * negative). */
+  private static class FailingResultSet implements InvocationHandler {
+    private final int failAfter;
+    private int row = -1;
+    boolean closed;
+
+    FailingResultSet(int failAfter) {
+      this.failAfter = failAfter;
+    }
+
+    ResultSet resultSet() {
+      return (ResultSet) Proxy.newProxyInstance(
+          getClass().getClassLoader(), new Class[] {ResultSet.class}, this);
+    }
+
+    public Object invoke(Object proxy, Method method, Object[] args)
+        throws Throwable {
+      switch (method.getName()) {
+      case "getMetaData":
+        return Proxy.newProxyInstance(getClass().getClassLoader(),
+            new Class[] {ResultSetMetaData.class},
+            new InvocationHandler() {
+              public Object invoke(Object proxy, Method method,
+                  Object[] args) {
+                switch (method.getName()) {
+                case "getColumnCount":
+                  return 1;
+                case "getColumnType":
+                  return Types.INTEGER;
+                default:
+                  throw new UnsupportedOperationException(method.getName());
+                }
+              }
+            });
+      case "next":
+        if (failAfter >= 0 && row + 1 >= failAfter) {
+          throw new SQLException("disk on fire");
+        }
+        ++row;
+        return true;
+      case "getInt":
+        return row;
+      case "wasNull":
+        return false;
+      case "close":
+        closed = true;
+        return null;
+      case "isClosed":
+        return closed;
+      default:
+        throw new UnsupportedOperationException(method.getName());
+      }
+    }
+  }
+}
+
+// End JdbcResultSetTest.java
@@ -18,6 +18,7 @@
 
 import org.apache.calcite.avatica.AvaticaConnection;
 import org.apache.calcite.avatica.AvaticaStatement;
+import org.apache.calcite.avatica.AvaticaUtils;
 import org.apache.calcite.avatica.ConnectionPropertiesImpl;
 import org.apache.calcite.avatica.ConnectionSpec;
 import org.apache.calcite.avatica.Meta;
@@ -37,22 +38,29 @@
 import org.junit.runners.Parameterized;
 import org.junit.runners.Parameterized.Parameters;
 
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
+import java.net.HttpURLConnection;
+import java.net.URL;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Properties;
 
 import static org.hamcrest.CoreMatchers.is;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 /** Tests covering {@link RemoteMeta}. */
 @RunWith(Parameterized.class)
@@ -113,10 +121,12 @@ public static List<Object[]> parameters() throws Exception {
   }
 
   private final HttpServer server;
+  private final Driver.Serialization serialization;
   private final String url;
 
   public RemoteMetaTest(HttpServer server, Driver.Serialization serialization) {
     this.server = server;
+    this.serialization = serialization;
     final int port = server.getPort();
     url = "jdbc:avatica:remote:url=http://localhost:" + port + ";serialization="
         + serialization.name();
@@ -227,6 +237,235 @@ private static String longString(String fragment, int length) {
     return buf.toString();
   }
 
+  /** Reads a result set that needs many fetches; each fetch streams a frame
+   * from the server's result set into the response. */
+  @Test public void testRemoteFetchManyFrames() throws Exception {
+    ConnectionSpec.getDatabaseLock().lock();
+    try (AvaticaConnection conn = (AvaticaConnection) DriverManager.getConnection(url);
+         Statement statement = conn.createStatement()) {
+      final ResultSet rs = statement.executeQuery(
+          "select e1.empno, e2.ename, e3.sal\n"
+          + "from EMP as e1, EMP as e2, EMP as e3");
+      int count = 0;
+      while (rs.next()) {
+        assertThat(rs.getString(2) == null, is(false));
+        count++;
+      }
+      assertThat(count, is(14 * 14 * 14));
+      rs.close();
+    } finally {
+      ConnectionSpec.getDatabaseLock().unlock();
+    }
+  }
+
+  /** Sends and receives characters that are not ASCII, which need more than
+   * one byte in UTF-8. */
+  @Test public void testRemoteNonAscii() throws Exception {
+    final String s = "caf\u00e9 \u00fcber \u4e2d\u6587";
+    ConnectionSpec.getDatabaseLock().lock();
+    try (Connection conn = DriverManager.getConnection(url);
+         Statement statement = conn.createStatement();
+         ResultSet rs = statement.executeQuery("select '" + s + "' as s\n"
+             + "from EMP where empno = 7369")) {
+      assertTrue(rs.next());
+      assertThat(rs.getString(1), is(s));
+      assertFalse(rs.next());
+    } finally {
+      ConnectionSpec.getDatabaseLock().unlock();
+    }
+  }
+
+  /** An unknown compression gives an error that lists the valid values. */
+  @Test public void testRemoteUnknownCompression() throws Exception {
+    try (Connection conn =
+             DriverManager.getConnection(url + ";compression=zip")) {
+      conn.createStatement();
+      fail("expected error");
+    } catch (Exception e) {
+      Throwable t = e;
+      while (t.getCause() != null
+          && !(t instanceof IllegalArgumentException)) {
+        t = t.getCause();
+      }
+      assertThat(t.getMessage(),
+          is("Unknown compression 'zip'; valid values are [NONE, GZIP]"));
+    }
+  }
+
+  /** Sends compressed requests and reads compressed responses. */
+  @Test public void testRemoteCompression() throws Exception {
+    final String gzipUrl = url + ";compression=gzip";
+    ConnectionSpec.getDatabaseLock().lock();
+    try (Connection conn = DriverManager.getConnection(gzipUrl);
+         Statement statement = conn.createStatement()) {
+      // Large enough that the request is compressed
+      final String s = longString("abcdefgh", 4000);
+      final ResultSet rs = statement.executeQuery("select '" + s + "' as s,\n"
+          + " e1.ename from EMP as e1, EMP as e2");
+      int count = 0;
+      while (rs.next()) {
+        assertThat(rs.getString(1), is(s));
+        count++;
+      }
+      assertThat(count, is(14 * 14));
+      rs.close();
+    } finally {
+      ConnectionSpec.getDatabaseLock().unlock();
+    }
+
+    // The server compresses only if asked.
+    final byte[] request = serialization == Driver.Serialization.JSON
+        ? "{\"request\":\"getCatalogs\"}".getBytes("UTF-8")
+        : new ProtobufTranslationImpl().serializeRequest(
+            new Service.CatalogsRequest());
+    for (boolean gzip : new boolean[] {false, true}) {
+      final HttpURLConnection connection = (HttpURLConnection)
+          new URL("http://localhost:" + server.getPort()).openConnection();
+      connection.setRequestMethod("POST");
+      connection.setDoOutput(true);
+      if (gzip) {
+        connection.setRequestProperty("Accept-Encoding", "gzip");
+      }
+      try (OutputStream out = connection.getOutputStream()) {
+        out.write(request);
+      }
+      assertThat(connection.getResponseCode(), is(200));
+      assertThat(connection.getContentEncoding(), is(gzip ? "gzip" : null));
+      try (InputStream in = connection.getInputStream()) {
+        AvaticaUtils.readFullyToBytes(in);
+      }
+    }
+  }
+
+  /** Reads result sets while fetching frames in the background, and closes
+   * a result set before all of its frames have been read. */
+  @Test public void testRemotePrefetch() throws Exception {
+    ConnectionSpec.getDatabaseLock().lock();
+    try (Connection conn =
+             DriverManager.getConnection(url + ";prefetchFrames=2");
+         Statement statement = conn.createStatement()) {
+      final String sql = "select e1.empno, e2.ename, e3.sal\n"
+          + "from EMP as e1, EMP as e2, EMP as e3";
+      ResultSet rs = statement.executeQuery(sql);
+      int count = 0;
+      while (rs.next()) {
+        count++;
+      }
+      assertThat(count, is(14 * 14 * 14));
+      rs.close();
+
+      rs = statement.executeQuery(sql);
+      for (count = 0; count < 150; count++) {
+        assertTrue(rs.next());
+      }
+      rs.close();
+
+      rs = statement.executeQuery("select count(*) from EMP");
+      assertTrue(rs.next());
+      assertThat(rs.getInt(1), is(14));
+      assertFalse(rs.next());
+      rs.close();
+    } finally {
+      ConnectionSpec.getDatabaseLock().unlock();
+    }
+  }
+
+  /** Reads a result set whose fetched frames are encoded in columns, and
+   * checks that the values, including nulls, are the same as when they are
+   * encoded in rows. */
+  @Test public void testRemoteColumnarFrames() throws Exception {
+    final String sql = "select e1.empno, e1.ename, e1.mgr, e1.sal, e1.comm,\n"
+        + " e2.hiredate\n"
+        + "from EMP as e1, EMP as e2";
+    ConnectionSpec.getDatabaseLock().lock();
+    try (Connection conn = DriverManager.getConnection(url);
+         Connection columnarConn =
+             DriverManager.getConnection(url + ";columnarFrames=true");
+         Statement statement = conn.createStatement();
+         Statement columnarStatement = columnarConn.createStatement();
+         ResultSet rs = statement.executeQuery(sql);
+         ResultSet columnarRs = columnarStatement.executeQuery(sql)) {
+      final int columnCount = rs.getMetaData().getColumnCount();
+      int count = 0;
+      while (rs.next()) {
+        assertTrue(columnarRs.next());
+        for (int i = 1; i <= columnCount; i++) {
+          assertThat(columnarRs.getString(i), is(rs.getString(i)));
+        }
+        assertThat(columnarRs.getInt(1), is(rs.getInt(1)));
+        assertThat(columnarRs.getLong(3), is(rs.getLong(3)));
+        assertThat(columnarRs.wasNull(), is(rs.wasNull()));
+        assertThat(columnarRs.getDouble(5), is(rs.getDouble(5)));
+        assertThat(columnarRs.wasNull(), is(rs.wasNull()));
+        count++;
+      }
+      assertFalse(columnarRs.next());
+      assertThat(count, is(14 * 14));
+    } finally {
+      ConnectionSpec.getDatabaseLock().unlock();
+    }
+  }
+
+  /** Tests that {@link JdbcMeta#fetch} returns frames whose rows are read on
+   * demand, limited by the frame size and byte budget. No rows are buffered,
+   * so no frame is known to be the last until the result set is exhausted. */
+  @Test public void testStreamingFrames() throws Exception {
+    final Properties info = new Properties();
+    info.put("user", CONNECTION_SPEC.username);
+    info.put("password", CONNECTION_SPEC.password);
+    info.put(JdbcMeta.FrameSettings.MAX_ROW_COUNT.key(), "20");
+    info.put(JdbcMeta.FrameSettings.MAX_BYTES.key(), "200");
+    info.put(JdbcMeta.FrameSettings.BUFFER_ROW_COUNT.key(), "0");
+    final JdbcMeta meta = new JdbcMeta(CONNECTION_SPEC.url, info);
+    ConnectionSpec.getDatabaseLock().lock();
+    try {
+      final Meta.ConnectionHandle ch = new Meta.ConnectionHandle("streaming");
+      final Meta.StatementHandle h = meta.createStatement(ch);
+      final Meta.ExecuteResult result = meta.prepareAndExecute(h,
+          "select e1.empno, e2.ename from EMP as e1, EMP as e2", -1, null);
+      final Meta.Frame firstFrame = result.resultSets.get(0).firstFrame;
+      int count = count(firstFrame.rows.iterator());
+      assertThat(count, is(100));
+      assertThat(firstFrame.done, is(false));
+      int frameCount = 0;
+      for (;;) {
+        final Meta.Frame frame = meta.fetch(h, null, count, 100);
+        if (frame.done) {
+          assertThat(count(frame.rows.iterator()), is(0));
+          break;
+        }
+        final int n = count(frame.rows.iterator());
+        // Each row is about 25 bytes, so the byte budget stops a frame
+        // before the row limit.
+        assertTrue(n < 20);
+        try {
+          frame.rows.iterator();
+          fail("expected error");
+        } catch (IllegalStateException e) {
+          assertThat(e.getMessage(),
+              is("rows of a streaming frame can only be read once"));
+        }
+        count += n;
+        ++frameCount;
+      }
+      assertThat(count, is(14 * 14));
+      assertTrue(frameCount > 5);
+      meta.closeStatement(h);
+      meta.closeConnection(ch);
+    } finally {
+      ConnectionSpec.getDatabaseLock().unlock();
+    }
+  }
+
+  private static int count(Iterator<Object> iterator) {
+    int n = 0;
+    while (iterator.hasNext()) {
+      iterator.next();
+      ++n;
+    }
+    return n;
+  }
+
   @Test public void testRemoteConnectionProperties() throws Exception {
     ConnectionSpec.getDatabaseLock().lock();
     try (AvaticaConnection conn = (AvaticaConnection) DriverManager.getConnection(url)) {
@@ -0,0 +1,42 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.avatica.server;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests {@link HttpCompression}.
+ */
+public class HttpCompressionTest {
+  @Test public void testAcceptsGzip() {
+    assertFalse(HttpCompression.acceptsGzip(null));
+    assertFalse(HttpCompression.acceptsGzip(""));
+    assertFalse(HttpCompression.acceptsGzip("deflate"));
+    assertFalse(HttpCompression.acceptsGzip("x-gzip"));
+    assertTrue(HttpCompression.acceptsGzip("gzip"));
+    assertTrue(HttpCompression.acceptsGzip("GZIP"));
+    assertTrue(HttpCompression.acceptsGzip("deflate, gzip"));
+    assertTrue(HttpCompression.acceptsGzip("gzip;q=0.5, deflate"));
+    assertFalse(HttpCompression.acceptsGzip("gzip;q=0"));
+    assertFalse(HttpCompression.acceptsGzip("deflate, gzip; q=0.0"));
+  }
+}
+
+// End HttpCompressionTest.java
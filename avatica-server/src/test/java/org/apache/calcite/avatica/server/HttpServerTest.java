@@ -0,0 +1,268 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.avatica.server;
+
+import org.apache.calcite.avatica.AvaticaUtils;
+import org.apache.calcite.avatica.ConnectionSpec;
+import org.apache.calcite.avatica.jdbc.JdbcMeta;
+import org.apache.calcite.avatica.remote.JsonService;
+import org.apache.calcite.avatica.remote.LocalService;
+
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.eclipse.jetty.server.handler.DefaultHandler;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the request queue and metrics of {@link HttpServer}.
+ */
+public class HttpServerTest {
+  private static final ConnectionSpec CONNECTION_SPEC = ConnectionSpec.HSQLDB;
+
+  @Test public void testLatencyHistogram() {
+    final LatencyHistogram histogram = new LatencyHistogram();
+    assertThat(histogram.getPercentileMillis(50), is(0d));
+    for (int i = 1; i <= 100; i++) {
+      histogram.record(i * 1000000L);
+    }
+    assertThat(histogram.getCount(), is(100L));
+    assertThat(histogram.getMeanMillis(), is(50.5d));
+    assertThat(histogram.getMaxMillis(), is(100d));
+    // Percentiles are upper bounds, accurate to a factor of 2
+    final double p50 = histogram.getPercentileMillis(50);
+    assertTrue(p50 >= 50 && p50 <= 100);
+    assertThat(histogram.getPercentileMillis(100), is(100d));
+  }
+
+  /** Tests that when the only worker is busy and the queue is empty, a
+   * request is rejected immediately. */
+  @Test public void testRejection() throws Exception {
+    final CountDownLatch started = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    final AbstractHandler handler = new AbstractHandler() {
+      public void handle(String target, Request baseRequest,
+          HttpServletRequest request, HttpServletResponse response)
+          throws IOException {
+        baseRequest.setHandled(true);
+        started.countDown();
+        try {
+          release.await();
+        } catch (InterruptedException e) {
+          throw new RuntimeException(e);
+        }
+        response.setStatus(HttpServletResponse.SC_OK);
+        response.getOutputStream().write("done".getBytes("UTF-8"));
+      }
+    };
+    final Properties info = new Properties();
+    info.setProperty(HttpServer.Settings.WORKER_THREADS.key(), "1");
+    info.setProperty(HttpServer.Settings.MAX_QUEUED.key(), "0");
+    final HttpServer server =
+        new HttpServer(0, handler, info, new ServerMetrics());
+    server.start();
+    final ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      final Future<Integer> first = executor.submit(
+          new Callable<Integer>() {
+            public Integer call() throws Exception {
+              return post(server.getPort());
+            }
+          });
+      started.await();
+      assertThat(post(server.getPort()),
+          is(HttpServletResponse.SC_SERVICE_UNAVAILABLE));
+      release.countDown();
+      assertThat(first.get(), is(HttpServletResponse.SC_OK));
+      assertThat(server.getMetrics().getRejectedCount(), is(1L));
+      // The client may see the response before the worker is free
+      awaitIdle(server);
+      assertThat(post(server.getPort()), is(HttpServletResponse.SC_OK));
+    } finally {
+      release.countDown();
+      executor.shutdown();
+      server.stop();
+    }
+  }
+
+  /** Tests that a request that times out while its worker is busy gets
+   * status 503, and that its worker is interrupted. */
+  @Test public void testTimeout() throws Exception {
+    final CountDownLatch interrupted = new CountDownLatch(1);
+    final AbstractHandler handler = new AbstractHandler() {
+      public void handle(String target, Request baseRequest,
+          HttpServletRequest request, HttpServletResponse response)
+          throws IOException {
+        baseRequest.setHandled(true);
+        try {
+          Thread.sleep(60000);
+        } catch (InterruptedException e) {
+          interrupted.countDown();
+          return;
+        }
+        response.setStatus(HttpServletResponse.SC_OK);
+      }
+    };
+    final Properties info = new Properties();
+    info.setProperty(HttpServer.Settings.WORKER_THREADS.key(), "1");
+    info.setProperty(HttpServer.Settings.ASYNC_TIMEOUT.key(), "200");
+    final HttpServer server =
+        new HttpServer(0, handler, info, new ServerMetrics());
+    server.start();
+    try {
+      assertThat(post(server.getPort()),
+          is(HttpServletResponse.SC_SERVICE_UNAVAILABLE));
+      assertTrue(interrupted.await(10, TimeUnit.SECONDS));
+      awaitIdle(server);
+    } finally {
+      server.stop();
+    }
+  }
+
+  /** Waits until no worker of a server is processing a request. */
+  private static void awaitIdle(HttpServer server) throws Exception {
+    final long deadline = System.currentTimeMillis() + 10000;
+    for (;;) {
+      final Map gauges =
+          (Map) server.getMetrics().snapshot().get("gauges");
+      if (((Long) gauges.get("server.activeRequests")) == 0L) {
+        return;
+      }
+      assertTrue("worker did not become idle",
+          System.currentTimeMillis() < deadline);
+      Thread.sleep(10);
+    }
+  }
+
+  /** Tests that the server returns latencies per type of request, and the
+   * number of open statements, in response to {@code GET /metrics}. */
+  @Test public void testMetrics() throws Exception {
+    final JdbcMeta meta = new JdbcMeta(CONNECTION_SPEC.url,
+        CONNECTION_SPEC.username, CONNECTION_SPEC.password);
+    final ServerMetrics metrics = new ServerMetrics();
+    metrics.addGauges(meta);
+    final Properties info = new Properties();
+    info.setProperty(HttpServer.Settings.METRICS_ENABLED.key(), "true");
+    final HttpServer server = new HttpServer(0,
+        new AvaticaHandler(
+            new MetricsService(new LocalService(meta), metrics)),
+        info, metrics);
+    server.start();
+    ConnectionSpec.getDatabaseLock().lock();
+    try {
+      final String url = "jdbc:avatica:remote:url=http://localhost:"
+          + server.getPort();
+      try (Connection conn = DriverManager.getConnection(url);
+           Statement statement = conn.createStatement()) {
+        final ResultSet rs = statement.executeQuery("select * from EMP");
+        assertTrue(rs.next());
+
+        final Map<String, Object> map = getMetrics(server.getPort());
+        final Map latencies = (Map) map.get("latencies");
+        final Map prepareAndExecute = (Map) latencies.get("prepareAndExecute");
+        assertThat(prepareAndExecute, notNullValue());
+        assertThat(prepareAndExecute.get("count"), is((Object) 1));
+        assertThat(latencies.get(QueuingHandler.QUEUE_WAIT), notNullValue());
+        final Map gauges = (Map) map.get("gauges");
+        assertThat(gauges.get("jdbc.openStatements"), is((Object) 1));
+        assertThat(gauges.get("jdbc.cachedConnections"), is((Object) 1));
+        assertThat(map.get("rejected"), is((Object) 0));
+        rs.close();
+      }
+    } finally {
+      ConnectionSpec.getDatabaseLock().unlock();
+      server.stop();
+    }
+  }
+
+  /** Tests that the server does not serve {@code GET /metrics} unless
+   * {@link HttpServer.Settings#METRICS_ENABLED} is set. */
+  @Test public void testMetricsDisabledByDefault() throws Exception {
+    final HttpServer server = new HttpServer(0, new DefaultHandler());
+    server.start();
+    try {
+      final URL url =
+          new URL("http://localhost:" + server.getPort() + MetricsHandler.PATH);
+      final HttpURLConnection connection =
+          (HttpURLConnection) url.openConnection();
+      assertThat(connection.getResponseCode(),
+          is(HttpURLConnection.HTTP_NOT_FOUND));
+    } finally {
+      server.stop();
+    }
+  }
+
+  private static int post(int port) throws IOException {
+    final HttpURLConnection connection = (HttpURLConnection)
+        new URL("http://localhost:" + port).openConnection();
+    connection.setRequestMethod("POST");
+    connection.setDoOutput(true);
+    try (OutputStream out = connection.getOutputStream()) {
+      out.write("{}".getBytes("UTF-8"));
+    }
+    final int responseCode = connection.getResponseCode();
+    final InputStream in = responseCode == HttpURLConnection.HTTP_OK
+        ? connection.getInputStream()
+        : connection.getErrorStream();
+    if (in != null) {
+      try {
+        AvaticaUtils.readFullyToBytes(in);
+      } finally {
+        in.close();
+      }
+    }
+    return responseCode;
+  }
+
+  private static Map<String, Object> getMetrics(int port) throws IOException {
+    final HttpURLConnection connection = (HttpURLConnection)
+        new URL("http://localhost:" + port + MetricsHandler.PATH)
+            .openConnection();
+    assertThat(connection.getResponseCode(), is(HttpURLConnection.HTTP_OK));
+    try (InputStream in = connection.getInputStream()) {
+      //noinspection unchecked
+      return JsonService.MAPPER.readValue(in, Map.class);
+    }
+  }
+}
+
+// End HttpServerTest.java
@@ -40,7 +40,21 @@ public enum BuiltInConnectionProperty implements ConnectionProperty {
   URL("url", Type.STRING, null, false),
 
   /** Serialization used over remote connections */
-  SERIALIZATION("serialization", Type.STRING, "json", false);
+  SERIALIZATION("serialization", Type.STRING, "json", false),
+
+  /** Compression of request and response bodies over remote connections;
+   * "none" or "gzip". */
+  COMPRESSION("compression", Type.STRING, "none", false),
+
+  /** Maximum number of frames of a result set that a remote connection
+   * fetches in the background, ahead of the rows that the application has
+   * read. The default, 0, means fetch each frame when it is needed. */
+  PREFETCH_FRAMES("prefetchFrames", Type.NUMBER, 0, false),
+
+  /** Whether a remote connection that uses protocol buffers asks the server
+   * to encode the rows of fetched frames in columns, which is more compact
+   * and allows numeric values to be read without boxing. */
+  COLUMNAR_FRAMES("columnarFrames", Type.BOOLEAN, false, false);
 
   private final String camelName;
   private final Type type;
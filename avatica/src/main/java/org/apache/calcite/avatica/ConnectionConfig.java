@@ -27,6 +27,9 @@ public interface ConnectionConfig {
   Service.Factory factory();
   String url();
   String serialization();
+  String compression();
+  int prefetchFrames();
+  boolean columnarFrames();
 }
 
 // End ConnectionConfig.java
@@ -48,6 +48,7 @@ public interface ConnectionProperty {
   /** Data type of property. */
   enum Type {
     BOOLEAN,
+    NUMBER,
     STRING,
     ENUM,
     PLUGIN;
@@ -56,6 +57,8 @@ public boolean valid(Object defaultValue) {
       switch (this) {
       case BOOLEAN:
         return defaultValue instanceof Boolean;
+      case NUMBER:
+        return defaultValue instanceof Number;
       case STRING:
       case PLUGIN:
         return defaultValue instanceof String;
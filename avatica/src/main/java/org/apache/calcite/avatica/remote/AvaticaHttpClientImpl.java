@@ -0,0 +1,126 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.avatica.remote;
+
+import org.apache.calcite.avatica.AvaticaUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Collections;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Implementation of {@link AvaticaHttpClient} that uses
+ * {@link HttpURLConnection}.
+ *
+ * <p>Connections are kept alive and pooled by the JDK, which returns a
+ * connection to its cache when the response has been read to the end and
+ * the stream closed; so this class always sends a fixed-length body, and
+ * always reads and closes the response, even after an error. The JDK keeps
+ * up to {@code http.maxConnections} (default 5) idle connections per
+ * server.
+ *
+ * <p>If compression is enabled, the client accepts gzip-compressed responses,
+ * and compresses requests larger than {@link #MIN_COMPRESS_SIZE} bytes.
+ */
+public class AvaticaHttpClientImpl implements AvaticaHttpClient {
+  /** Size of the smallest request body that is compressed. Smaller bodies
+   * gain little, and may even grow. */
+  public static final int MIN_COMPRESS_SIZE = 1024;
+
+  private final URL url;
+  private final Driver.Compression compression;
+  private final Map<String, String> headers;
+
+  public AvaticaHttpClientImpl(URL url, Driver.Compression compression,
+      Map<String, String> headers) {
+    this.url = url;
+    this.compression = compression;
+    this.headers = headers;
+  }
+
+  public AvaticaHttpClientImpl(URL url, Driver.Compression compression) {
+    this(url, compression, Collections.<String, String>emptyMap());
+  }
+
+  public AvaticaHttpClientImpl(URL url) {
+    this(url, Driver.Compression.NONE);
+  }
+
+  public byte[] send(byte[] request) {
+    try {
+      final HttpURLConnection connection =
+          (HttpURLConnection) url.openConnection();
+      connection.setRequestMethod("POST");
+      connection.setDoInput(true);
+      connection.setDoOutput(true);
+      for (Map.Entry<String, String> header : headers.entrySet()) {
+        connection.setRequestProperty(header.getKey(), header.getValue());
+      }
+      byte[] body = request;
+      if (compression == Driver.Compression.GZIP) {
+        connection.setRequestProperty("Accept-Encoding", "gzip");
+        if (request.length >= MIN_COMPRESS_SIZE) {
+          connection.setRequestProperty("Content-Encoding", "gzip");
+          body = gzip(request);
+        }
+      }
+      connection.setFixedLengthStreamingMode(body.length);
+      try (OutputStream outputStream = connection.getOutputStream()) {
+        outputStream.write(body);
+      }
+      final int responseCode = connection.getResponseCode();
+      if (responseCode != HttpURLConnection.HTTP_OK) {
+        // Read the error, so that the connection can be reused
+        final InputStream errorStream = connection.getErrorStream();
+        if (errorStream != null) {
+          try {
+            AvaticaUtils.readFullyToBytes(errorStream);
+          } finally {
+            errorStream.close();
+          }
+        }
+        throw new RuntimeException("response code " + responseCode);
+      }
+      try (InputStream inputStream = connection.getInputStream()) {
+        if ("gzip".equalsIgnoreCase(connection.getContentEncoding())) {
+          return AvaticaUtils.readFullyToBytes(
+              new GZIPInputStream(inputStream));
+        }
+        return AvaticaUtils.readFullyToBytes(inputStream);
+      }
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  private static byte[] gzip(byte[] bytes) throws IOException {
+    final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    try (GZIPOutputStream gzip = new GZIPOutputStream(baos)) {
+      gzip.write(bytes);
+    }
+    return baos.toByteArray();
+  }
+}
+
+// End AvaticaHttpClientImpl.java
@@ -0,0 +1,473 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.avatica.remote;
+
+import org.apache.calcite.avatica.Meta;
+import org.apache.calcite.avatica.proto.Common;
+import org.apache.calcite.avatica.proto.Responses;
+import org.apache.calcite.avatica.util.PrimitiveRow;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.InvalidProtocolBufferException;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Columnar encoding of the rows of a {@link Meta.Frame}, used in responses to
+ * {@link Service.FetchRequest} over protocol buffers.
+ *
+ * <p>The row-oriented encoding, {@link Common.Frame}, writes a
+ * {@link Common.TypedValue} message, with its type, for every cell. The
+ * columnar encoding divides the rows into blocks of at most
+ * {@link #BLOCK_SIZE} rows. For each block, it writes each column's type
+ * once, then a null bitmap, then the values of the column:
+ *
+ * <ul>
+ *   <li>{@code BOOLEAN}, {@code BYTE}, {@code SHORT}, {@code INTEGER} and
+ *   {@code LONG} columns as zig-zag varints;</li>
+ *   <li>{@code FLOAT} and {@code DOUBLE} columns as 8-byte doubles;</li>
+ *   <li>{@code STRING} columns as a dictionary of distinct values followed
+ *   by the ordinal of each value in the dictionary;</li>
+ *   <li>other columns, and columns whose values are of mixed types, as a
+ *   {@link Common.TypedValue} per value.</li>
+ * </ul>
+ *
+ * <p>The server reads rows from the frame's iterator one block at a time, so
+ * it never holds more than one block of rows in memory. This matters if
+ * the rows are streamed from a result set.
+ *
+ * <p>The client does not create an object per cell. Each row is a
+ * {@link PrimitiveRow} view onto the arrays of the frame's columns, so that
+ * numeric values are read without boxing.
+ *
+ * <p>The client asks for columnar frames by sending the
+ * {@link #ENCODING_HEADER} HTTP header; a server that does not understand
+ * the header sends row-oriented frames, which the client also accepts. The
+ * columnar frame is sent in a {@link Common.WireMessage} whose name is
+ * {@link #FETCH_RESPONSE_NAME}.
+ *
+ * @see org.apache.calcite.avatica.BuiltInConnectionProperty#COLUMNAR_FRAMES
+ */
+public class ColumnarFrame {
+  /** HTTP header by which a client asks for an encoding of frames. */
+  public static final String ENCODING_HEADER = "Avatica-Frame-Encoding";
+
+  /** Value of {@link #ENCODING_HEADER} that asks for columnar frames. */
+  public static final String COLUMNAR = "columnar";
+
+  /** Name, in a {@link Common.WireMessage}, of a fetch response whose frame
+   * is encoded in columns. */
+  public static final String FETCH_RESPONSE_NAME =
+      Responses.FetchResponse.class.getName() + "$Columnar";
+
+  /** Maximum number of rows in a block. */
+  static final int BLOCK_SIZE = 1024;
+
+  private ColumnarFrame() {}
+
+  /** Writes a fetch response, with its frame encoded in columns, to a
+   * stream. */
+  public static void writeResponse(Service.FetchResponse response,
+      OutputStream out) throws IOException {
+    Common.WireMessage.newBuilder()
+        .setName(FETCH_RESPONSE_NAME)
+        .setWrappedMessage(serialize(response.frame))
+        .build()
+        .writeTo(out);
+  }
+
+  /** Parses a fetch response that was written by
+   * {@link #writeResponse(Service.FetchResponse, OutputStream)}. */
+  public static Service.FetchResponse parseResponse(ByteString bytes)
+      throws InvalidProtocolBufferException {
+    return new Service.FetchResponse(parse(bytes));
+  }
+
+  /** Encodes a frame in columns.
+   *
+   * <p>Writes the rows in blocks, each prefixed by its number of rows and
+   * columns, and ends with an empty block. Every row must be a non-null
+   * array. */
+  public static ByteString serialize(Meta.Frame frame) throws IOException {
+    final ByteString.Output bytes = ByteString.newOutput();
+    final CodedOutputStream out = CodedOutputStream.newInstance(bytes);
+    out.writeUInt64NoTag(frame.offset);
+    out.writeBoolNoTag(frame.done);
+    final List<Object[]> block = new ArrayList<>(BLOCK_SIZE);
+    for (Object row : frame.rows) {
+      if (row == null) {
+        throw new RuntimeException("Null rows are not supported");
+      }
+      if (!(row instanceof Object[])) {
+        throw new RuntimeException("Only arrays are supported");
+      }
+      if (!block.isEmpty()
+          && ((Object[]) row).length != block.get(0).length) {
+        throw new RuntimeException("Rows have different numbers of columns");
+      }
+      block.add((Object[]) row);
+      if (block.size() == BLOCK_SIZE) {
+        writeBlock(out, block);
+        block.clear();
+      }
+    }
+    if (!block.isEmpty()) {
+      writeBlock(out, block);
+    }
+    out.writeUInt32NoTag(0);
+    out.flush();
+    return bytes.toByteString();
+  }
+
+  private static void writeBlock(CodedOutputStream out, List<Object[]> rows)
+      throws IOException {
+    final int columnCount = rows.get(0).length;
+    out.writeUInt32NoTag(rows.size());
+    out.writeUInt32NoTag(columnCount);
+    for (int i = 0; i < columnCount; i++) {
+      writeColumn(out, rows, i);
+    }
+  }
+
+  private static void writeColumn(CodedOutputStream out, List<Object[]> rows,
+      int column) throws IOException {
+    // Deduce the type of the column from its values. If the values are of
+    // different types, or of types that we do not encode specially, write a
+    // TypedValue for each.
+    Common.Rep rep = null;
+    int nullCount = 0;
+    final byte[] nulls = new byte[(rows.size() + 7) / 8];
+    for (int i = 0; i < rows.size(); i++) {
+      final Object value = rows.get(i)[column];
+      if (value == null) {
+        ++nullCount;
+        nulls[i >> 3] |= 1 << (i & 7);
+        continue;
+      }
+      final Common.Rep valueRep = rep(value);
+      if (rep == null) {
+        rep = valueRep;
+      } else if (rep != valueRep) {
+        rep = Common.Rep.OBJECT;
+      }
+    }
+    if (rep == null) {
+      rep = Common.Rep.NULL;
+    }
+    final Kind kind = Kind.of(rep);
+    out.writeUInt32NoTag(kind.ordinal());
+    out.writeUInt32NoTag(rep.getNumber());
+    out.writeUInt32NoTag(nullCount);
+    if (nullCount > 0) {
+      out.writeByteArrayNoTag(nulls);
+    }
+    switch (kind) {
+    case LONG:
+      for (Object[] row : rows) {
+        final Object value = row[column];
+        if (value instanceof Boolean) {
+          out.writeSInt64NoTag((Boolean) value ? 1 : 0);
+        } else if (value != null) {
+          out.writeSInt64NoTag(((Number) value).longValue());
+        }
+      }
+      break;
+    case DOUBLE:
+      for (Object[] row : rows) {
+        final Object value = row[column];
+        if (value != null) {
+          out.writeDoubleNoTag(((Number) value).doubleValue());
+        }
+      }
+      break;
+    case STRING:
+      final Map<String, Integer> codes = new HashMap<>();
+      final List<String> dictionary = new ArrayList<>();
+      final int[] values = new int[rows.size() - nullCount];
+      int n = 0;
+      for (Object[] row : rows) {
+        final String value = (String) row[column];
+        if (value != null) {
+          Integer code = codes.get(value);
+          if (code == null) {
+            code = dictionary.size();
+            codes.put(value, code);
+            dictionary.add(value);
+          }
+          values[n++] = code;
+        }
+      }
+      out.writeUInt32NoTag(dictionary.size());
+      for (String s : dictionary) {
+        out.writeStringNoTag(s);
+      }
+      for (int code : values) {
+        out.writeUInt32NoTag(code);
+      }
+      break;
+    default:
+      for (Object[] row : rows) {
+        final Object value = row[column];
+        if (value != null) {
+          out.writeMessageNoTag(Meta.Frame.serializeScalar(value));
+        }
+      }
+    }
+  }
+
+  /** Returns the representation of a non-null value, or
+   * {@link Common.Rep#OBJECT} if it is not a type that is encoded
+   * specially. */
+  private static Common.Rep rep(Object value) {
+    if (value instanceof Integer) {
+      return Common.Rep.INTEGER;
+    } else if (value instanceof Long) {
+      return Common.Rep.LONG;
+    } else if (value instanceof String) {
+      return Common.Rep.STRING;
+    } else if (value instanceof Double) {
+      return Common.Rep.DOUBLE;
+    } else if (value instanceof Boolean) {
+      return Common.Rep.BOOLEAN;
+    } else if (value instanceof Short) {
+      return Common.Rep.SHORT;
+    } else if (value instanceof Byte) {
+      return Common.Rep.BYTE;
+    } else if (value instanceof Float) {
+      return Common.Rep.FLOAT;
+    } else {
+      return Common.Rep.OBJECT;
+    }
+  }
+
+  /** Decodes a frame that was encoded in columns. */
+  public static Meta.Frame parse(ByteString bytes)
+      throws InvalidProtocolBufferException {
+    try {
+      final CodedInputStream in = bytes.newCodedInput();
+      in.setSizeLimit(Integer.MAX_VALUE);
+      final long offset = in.readUInt64();
+      final boolean done = in.readBool();
+      final List<Object> rows = new ArrayList<>();
+      for (;;) {
+        final int rowCount = in.readUInt32();
+        if (rowCount == 0) {
+          break;
+        }
+        final int columnCount = in.readUInt32();
+        final Column[] columns = new Column[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+          columns[i] = readColumn(in, rowCount);
+        }
+        for (int i = 0; i < rowCount; i++) {
+          rows.add(new Row(columns, i));
+        }
+      }
+      return new Meta.Frame(offset, done, rows);
+    } catch (InvalidProtocolBufferException e) {
+      throw e;
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  private static Column readColumn(CodedInputStream in, int rowCount)
+      throws IOException {
+    final Kind kind = Kind.values()[in.readUInt32()];
+    final Common.Rep rep = Common.Rep.valueOf(in.readUInt32());
+    final int nullCount = in.readUInt32();
+    final Column column = new Column(kind, rep,
+        nullCount > 0 ? in.readByteArray() : null);
+    switch (kind) {
+    case LONG:
+      final long[] longs = new long[rowCount];
+      for (int i = 0; i < rowCount; i++) {
+        if (!column.isNull(i)) {
+          longs[i] = in.readSInt64();
+        }
+      }
+      column.longs = longs;
+      break;
+    case DOUBLE:
+      final double[] doubles = new double[rowCount];
+      for (int i = 0; i < rowCount; i++) {
+        if (!column.isNull(i)) {
+          doubles[i] = in.readDouble();
+        }
+      }
+      column.doubles = doubles;
+      break;
+    case STRING:
+      final String[] dictionary = new String[in.readUInt32()];
+      for (int i = 0; i < dictionary.length; i++) {
+        dictionary[i] = in.readString();
+      }
+      final int[] codes = new int[rowCount];
+      for (int i = 0; i < rowCount; i++) {
+        if (!column.isNull(i)) {
+          codes[i] = in.readUInt32();
+        }
+      }
+      column.dictionary = dictionary;
+      column.codes = codes;
+      break;
+    default:
+      final Object[] objects = new Object[rowCount];
+      for (int i = 0; i < rowCount; i++) {
+        if (!column.isNull(i)) {
+          objects[i] = Meta.Frame.deserializeScalar(
+              Common.TypedValue.parseFrom(in.readBytes()));
+        }
+      }
+      column.objects = objects;
+    }
+    return column;
+  }
+
+  /** How the values of a column are encoded. */
+  private enum Kind {
+    LONG, DOUBLE, STRING, OBJECT;
+
+    static Kind of(Common.Rep rep) {
+      switch (rep) {
+      case BOOLEAN:
+      case BYTE:
+      case SHORT:
+      case INTEGER:
+      case LONG:
+        return LONG;
+      case FLOAT:
+      case DOUBLE:
+        return DOUBLE;
+      case STRING:
+        return STRING;
+      default:
+        return OBJECT;
+      }
+    }
+  }
+
+  /** Values of a column of a decoded frame. Depending on its {@link Kind},
+   * exactly one of {@link #longs}, {@link #doubles}, {@link #codes} or
+   * {@link #objects} is set. */
+  private static class Column {
+    final Kind kind;
+    final Common.Rep rep;
+    /** Bitmap of the rows whose value is null, or null if there are no null
+     * values. */
+    final byte[] nulls;
+    long[] longs;
+    double[] doubles;
+    int[] codes;
+    String[] dictionary;
+    Object[] objects;
+
+    Column(Kind kind, Common.Rep rep, byte[] nulls) {
+      this.kind = kind;
+      this.rep = rep;
+      this.nulls = nulls;
+    }
+
+    boolean isNull(int row) {
+      return nulls != null && (nulls[row >> 3] & (1 << (row & 7))) != 0;
+    }
+
+    /** Returns the value in a given row, boxed as the type that the server
+     * sent. */
+    Object get(int row) {
+      if (isNull(row)) {
+        return null;
+      }
+      switch (kind) {
+      case LONG:
+        final long v = longs[row];
+        switch (rep) {
+        case BOOLEAN:
+          return v != 0;
+        case BYTE:
+          return (byte) v;
+        case SHORT:
+          return (short) v;
+        case INTEGER:
+          return (int) v;
+        default:
+          return v;
+        }
+      case DOUBLE:
+        final double d = doubles[row];
+        return rep == Common.Rep.FLOAT ? (Object) (float) d : (Object) d;
+      case STRING:
+        return dictionary[codes[row]];
+      default:
+        return objects[row];
+      }
+    }
+  }
+
+  /** Row of a decoded frame; a view onto the arrays of its columns. */
+  private static class Row extends AbstractList<Object>
+      implements PrimitiveRow {
+    private final Column[] columns;
+    private final int row;
+
+    Row(Column[] columns, int row) {
+      this.columns = columns;
+      this.row = row;
+    }
+
+    @Override public Object get(int index) {
+      return columns[index].get(row);
+    }
+
+    @Override public int size() {
+      return columns.length;
+    }
+
+    public boolean isPrimitive(int i) {
+      final Kind kind = columns[i].kind;
+      return kind == Kind.LONG || kind == Kind.DOUBLE;
+    }
+
+    public boolean isNull(int i) {
+      return columns[i].isNull(row);
+    }
+
+    public long getLong(int i) {
+      final Column column = columns[i];
+      return column.kind == Kind.DOUBLE
+          ? (long) column.doubles[row]
+          : column.longs[row];
+    }
+
+    public double getDouble(int i) {
+      final Column column = columns[i];
+      return column.kind == Kind.LONG
+          ? (double) column.longs[row]
+          : column.doubles[row];
+    }
+  }
+}
+
+// End ColumnarFrame.java
@@ -27,9 +27,12 @@
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 
 /**
  * Avatica Remote JDBC driver.
@@ -53,6 +56,15 @@ public static enum Serialization {
     PROTOBUF;
   }
 
+  /**
+   * Defines the compression of request and response bodies used by the
+   * Driver
+   */
+  public static enum Compression {
+    NONE,
+    GZIP;
+  }
+
   @Override protected String getConnectStringPrefix() {
     return CONNECT_STRING_PREFIX;
   }
@@ -89,13 +101,23 @@ protected DriverVersion createDriverVersion() {
       }
 
       Serialization serializationType = getSerialization(config);
+      final Map<String, String> headers;
+      if (serializationType == Serialization.PROTOBUF
+          && config.columnarFrames()) {
+        headers = Collections.singletonMap(ColumnarFrame.ENCODING_HEADER,
+            ColumnarFrame.COLUMNAR);
+      } else {
+        headers = Collections.emptyMap();
+      }
+      final AvaticaHttpClient client =
+          new AvaticaHttpClientImpl(url, getCompression(config), headers);
 
       switch (serializationType) {
       case JSON:
-        service = new RemoteService(url);
+        service = new RemoteService(client);
         break;
       case PROTOBUF:
-        service = new RemoteProtobufService(url, new ProtobufTranslationImpl());
+        service = new RemoteProtobufService(client, new ProtobufTranslationImpl());
         break;
       default:
         throw new IllegalArgumentException("Unhandled serialization type: " + serializationType);
@@ -111,7 +133,7 @@ private Serialization getSerialization(ConnectionConfig config) {
     Serialization serializationType = Serialization.JSON;
     if (null != serializationStr) {
       try {
-        serializationType = Serialization.valueOf(serializationStr.toUpperCase());
+        serializationType = Serialization.valueOf(serializationStr.toUpperCase(Locale.ROOT));
       } catch (Exception e) {
         // Log a warning instead of failing harshly? Intentionally no loggers available?
         throw new RuntimeException(e);
@@ -120,6 +142,20 @@ private Serialization getSerialization(ConnectionConfig config) {
 
     return serializationType;
   }
+
+  private Compression getCompression(ConnectionConfig config) {
+    final String compressionStr = config.compression();
+    if (null == compressionStr) {
+      return Compression.NONE;
+    }
+    try {
+      return Compression.valueOf(compressionStr.toUpperCase(Locale.ROOT));
+    } catch (IllegalArgumentException e) {
+      throw new IllegalArgumentException("Unknown compression '"
+          + compressionStr + "'; valid values are "
+          + Arrays.toString(Compression.values()), e);
+    }
+  }
 }
 
 // End Driver.java
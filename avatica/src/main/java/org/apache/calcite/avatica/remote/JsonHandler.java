@@ -16,10 +16,12 @@
  */
 package org.apache.calcite.avatica.remote;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import java.io.IOException;
 import java.io.StringWriter;
+import java.io.Writer;
 
 /**
  * Implementation of {@link org.apache.calcite.avatica.remote.Handler}
@@ -47,6 +49,26 @@ public String apply(String jsonRequest) {
     }
   }
 
+  /** Handles a request, writing the response to a writer.
+   *
+   * <p>Unlike {@link #apply(String)}, does not build the response as a
+   * string; the rows of a frame are serialized as they are read, which
+   * matters if the service reads them lazily from a result set. Does not
+   * close the writer. */
+  public void apply(String jsonRequest, Writer writer) {
+    try {
+      Service.Request request = decode(jsonRequest, Service.Request.class);
+      final Service.Response response = request.accept(service);
+      final JsonGenerator generator = MAPPER.getFactory()
+          .createGenerator(writer)
+          .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+      MAPPER.writeValue(generator, response);
+      generator.flush();
+    } catch (IOException e) {
+      throw handle(e);
+    }
+  }
+
   private <T> T decode(String request, Class<T> valueType) throws IOException {
     return MAPPER.readValue(request, valueType);
   }
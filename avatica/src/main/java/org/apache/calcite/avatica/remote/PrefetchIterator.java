@@ -0,0 +1,221 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.avatica.remote;
+
+import org.apache.calcite.avatica.Meta;
+
+import java.io.Closeable;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Iterator over rows coming from a sequence of {@link Meta.Frame}s, which
+ * fetches frames in a background thread while the application reads the
+ * rows of the current frame.
+ *
+ * <p>At most {@code prefetchFrames} frames are waiting to be read; when the
+ * queue is full, the background thread waits. So the rows held in memory are
+ * bounded by the frame being read, the frames in the queue, and the frame
+ * being fetched.
+ *
+ * <p>Closing the iterator stops the background thread after its current
+ * fetch, and discards any frames that have not been read.
+ *
+ * <p>Background threads come from a small pool, one per iterator. If no
+ * thread of the pool is free, the iterator fetches each frame when it is
+ * needed, in the calling thread.
+ *
+ * @see org.apache.calcite.avatica.BuiltInConnectionProperty#PREFETCH_FRAMES
+ */
+class PrefetchIterator implements Iterator<Object>, Closeable {
+  /** Maximum number of iterators that fetch in the background at a time. */
+  private static final int MAX_THREADS =
+      Math.max(4, 2 * Runtime.getRuntime().availableProcessors());
+
+  private static final ThreadFactory THREAD_FACTORY =
+      new ThreadFactory() {
+        private final AtomicInteger count = new AtomicInteger();
+
+        public Thread newThread(Runnable r) {
+          final Thread thread =
+              new Thread(r, "avatica-prefetch-" + count.incrementAndGet());
+          thread.setDaemon(true);
+          return thread;
+        }
+      };
+
+  private static final ThreadPoolExecutor EXECUTOR =
+      new ThreadPoolExecutor(0, MAX_THREADS, 60L, TimeUnit.SECONDS,
+          new SynchronousQueue<Runnable>(), THREAD_FACTORY);
+
+  /** Number of rows requested by each fetch; the same as
+   * {@link org.apache.calcite.avatica.MetaImpl}. */
+  private static final int FETCH_SIZE = 100;
+
+  /** Frames, or the {@link Throwable} that stopped the background thread. */
+  private final BlockingQueue<Object> queue;
+  private final Meta meta;
+  private final Meta.StatementHandle handle;
+  /** Whether frames are fetched by a background thread. */
+  private final boolean prefetch;
+  private List<TypedValue> parameterValues;
+  private volatile boolean closed;
+  private Meta.Frame frame;
+  private Iterator<Object> rows;
+
+  PrefetchIterator(final Meta meta, final Meta.StatementHandle handle,
+      Meta.Frame firstFrame, final List<TypedValue> parameterValues,
+      int prefetchFrames) {
+    this.queue = new ArrayBlockingQueue<>(prefetchFrames);
+    this.meta = meta;
+    this.handle = handle;
+    this.parameterValues = parameterValues;
+    final Meta.Frame frame0;
+    if (firstFrame == null) {
+      frame0 = Meta.Frame.MORE;
+      rows = Collections.emptyList().iterator();
+    } else {
+      frame0 = firstFrame;
+      rows = firstFrame.rows.iterator();
+    }
+    frame = frame0;
+    prefetch = !frame0.done
+        && start(
+            new Runnable() {
+              public void run() {
+                fetchAll(meta, handle, frame0, parameterValues);
+              }
+            });
+    moveNext();
+  }
+
+  /** Runs a task in a thread of the pool, and returns true; or returns false
+   * if all threads are busy. */
+  private static boolean start(Runnable task) {
+    try {
+      EXECUTOR.execute(task);
+      return true;
+    } catch (RejectedExecutionException e) {
+      return false;
+    }
+  }
+
+  /** Fetches frames until the last frame has been fetched or the iterator
+   * is closed. Runs in a background thread. */
+  private void fetchAll(Meta meta, Meta.StatementHandle handle,
+      Meta.Frame firstFrame, List<TypedValue> parameterValues) {
+    try {
+      Meta.Frame f = firstFrame;
+      while (!f.done && !closed) {
+        f = meta.fetch(handle, parameterValues, f.offset, FETCH_SIZE);
+        parameterValues = null; // don't execute next time
+        if (f == null) {
+          f = Meta.Frame.EMPTY;
+        }
+        queue.put(f);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (Throwable e) {
+      try {
+        if (!closed) {
+          queue.put(e);
+        }
+      } catch (InterruptedException e2) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  public void close() {
+    closed = true;
+    rows = null;
+    // Unblock the background thread if it is waiting for space in the queue
+    queue.clear();
+  }
+
+  public void remove() {
+    throw new UnsupportedOperationException("remove");
+  }
+
+  public boolean hasNext() {
+    return rows != null;
+  }
+
+  public Object next() {
+    if (rows == null) {
+      throw new NoSuchElementException();
+    }
+    final Object o = rows.next();
+    moveNext();
+    return o;
+  }
+
+  private void moveNext() {
+    for (;;) {
+      if (rows.hasNext()) {
+        break;
+      }
+      if (frame.done) {
+        rows = null;
+        break;
+      }
+      frame = take();
+      // It is valid for rows to be empty, so we go around the loop again to
+      // check
+      rows = frame.rows.iterator();
+    }
+  }
+
+  /** Waits for the next frame from the background thread, or fetches it if
+   * there is no background thread. */
+  private Meta.Frame take() {
+    if (!prefetch) {
+      final Meta.Frame f =
+          meta.fetch(handle, parameterValues, frame.offset, FETCH_SIZE);
+      parameterValues = null; // don't execute next time
+      return f == null ? Meta.Frame.EMPTY : f;
+    }
+    final Object o;
+    try {
+      o = queue.take();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(e);
+    }
+    if (o instanceof RuntimeException) {
+      throw (RuntimeException) o;
+    } else if (o instanceof Error) {
+      throw (Error) o;
+    } else if (o instanceof Throwable) {
+      throw new RuntimeException((Throwable) o);
+    }
+    return (Meta.Frame) o;
+  }
+}
+
+// End PrefetchIterator.java
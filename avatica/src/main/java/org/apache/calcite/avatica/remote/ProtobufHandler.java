@@ -21,6 +21,7 @@
 import com.google.protobuf.InvalidProtocolBufferException;
 
 import java.io.IOException;
+import java.io.OutputStream;
 
 /**
  * Dispatches serialized protocol buffer messages to the provided {@link Service}
@@ -38,6 +39,45 @@ public ProtobufHandler(Service service, ProtobufTranslation translation) {
   }
 
   @Override public byte[] apply(byte[] requestBytes) {
+    // Get the response for the request
+    Response response = accept(requestBytes);
+
+    try {
+      // Serialize it into bytes for the wire.
+      return translation.serializeResponse(response);
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  /** Handles a request, writing the serialized response to an output stream
+   * rather than returning it as an array of bytes. Does not close the
+   * stream. */
+  public void apply(byte[] requestBytes, OutputStream out) {
+    apply(requestBytes, out, false);
+  }
+
+  /** Handles a request, writing the serialized response to an output stream.
+   * If {@code columnarFrames}, writes the frame of a
+   * {@link Service.FetchResponse} in columns; see {@link ColumnarFrame}. */
+  public void apply(byte[] requestBytes, OutputStream out,
+      boolean columnarFrames) {
+    Response response = accept(requestBytes);
+
+    try {
+      if (columnarFrames
+          && response instanceof Service.FetchResponse
+          && ((Service.FetchResponse) response).frame != null) {
+        ColumnarFrame.writeResponse((Service.FetchResponse) response, out);
+        return;
+      }
+      translation.serializeResponse(response, out);
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  private Response accept(byte[] requestBytes) {
     // Transform the protocol buffer bytes into a POJO
     // Encapsulate the task of transforming this since
     // the bytes also contain the PB request class name.
@@ -48,15 +88,7 @@ public ProtobufHandler(Service service, ProtobufTranslation translation) {
       throw new RuntimeException(e);
     }
 
-    // Get the response for the request
-    Response response = requestPojo.accept(service);
-
-    try {
-      // Serialize it into bytes for the wire.
-      return translation.serializeResponse(response);
-    } catch (IOException e) {
-      throw new RuntimeException(e);
-    }
+    return requestPojo.accept(service);
   }
 }
 
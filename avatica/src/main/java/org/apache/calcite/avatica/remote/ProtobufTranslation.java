@@ -22,6 +22,7 @@
 import com.google.protobuf.InvalidProtocolBufferException;
 
 import java.io.IOException;
+import java.io.OutputStream;
 
 /**
  * Generic interface to support parsing of serialized protocol buffers between client and server.
@@ -36,6 +37,16 @@ public interface ProtobufTranslation {
    */
   byte[] serializeResponse(Response response) throws IOException;
 
+  /**
+   * Serializes a {@link Response} as a protocol buffer to an output stream.
+   *
+   * @param response The response to serialize
+   * @param out The stream to write to
+   * @throws IOException If there are errors during serialization
+   */
+  void serializeResponse(Response response, OutputStream out)
+      throws IOException;
+
   /**
    * Serializes a {@link Request} as a protocol buffer.
    *
@@ -43,7 +43,6 @@
 import org.apache.calcite.avatica.remote.Service.Request;
 import org.apache.calcite.avatica.remote.Service.Response;
 
-import com.google.protobuf.ByteString;
 import com.google.protobuf.InvalidProtocolBufferException;
 import com.google.protobuf.Message;
 
@@ -171,9 +170,14 @@ public static ResponseTranslator getParserForResponse(String className) {
 
   @Override public byte[] serializeResponse(Response response) throws IOException {
     ByteArrayOutputStream out = new ByteArrayOutputStream();
+    serializeResponse(response, out);
+    return out.toByteArray();
+  }
+
+  @Override public void serializeResponse(Response response, OutputStream out)
+      throws IOException {
     Message responseMsg = response.serialize();
     serializeMessage(out, responseMsg);
-    return out.toByteArray();
   }
 
   @Override public byte[] serializeRequest(Request request) throws IOException {
@@ -184,13 +188,10 @@ public static ResponseTranslator getParserForResponse(String className) {
   }
 
   void serializeMessage(OutputStream out, Message msg) throws IOException {
-    ByteArrayOutputStream baos = new ByteArrayOutputStream();
-    msg.writeTo(baos);
-
-    // TODO Using ByteString is copying the bytes of the message which sucks. Could try to
-    // lift the ZeroCopy implementation from HBase.
+    // Serialize the message straight into a ByteString, rather than into an
+    // intermediate array of bytes that would then be copied.
     WireMessage wireMsg = WireMessage.newBuilder().setName(msg.getClass().getName()).
-        setWrappedMessage(ByteString.copyFrom(baos.toByteArray())).build();
+        setWrappedMessage(msg.toByteString()).build();
 
     wireMsg.writeTo(out);
   }
@@ -208,6 +209,9 @@ void serializeMessage(OutputStream out, Message msg) throws IOException {
     WireMessage wireMsg = WireMessage.parseFrom(bytes);
 
     String serializedMessageClassName = wireMsg.getName();
+    if (ColumnarFrame.FETCH_RESPONSE_NAME.equals(serializedMessageClassName)) {
+      return ColumnarFrame.parseResponse(wireMsg.getWrappedMessage());
+    }
     ResponseTranslator translator = getParserForResponse(serializedMessageClassName);
 
     return translator.transform(wireMsg.getWrappedMessage());
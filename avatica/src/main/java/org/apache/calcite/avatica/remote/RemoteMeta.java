@@ -26,6 +26,7 @@
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 
@@ -193,6 +194,26 @@ private MetaResultSet toResultSet(Class clazz,
     }
   }
 
+  /** {@inheritDoc}
+   *
+   * <p>If the connection's {@code prefetchFrames} property is positive,
+   * fetches frames in a background thread; see {@link PrefetchIterator}. */
+  @Override public Iterable<Object> createIterable(final StatementHandle handle,
+      Signature signature, final List<TypedValue> parameterValues,
+      final Frame firstFrame) {
+    final int prefetchFrames = connection.config().prefetchFrames();
+    if (prefetchFrames <= 0 || firstFrame != null && firstFrame.done) {
+      return super.createIterable(handle, signature, parameterValues,
+          firstFrame);
+    }
+    return new Iterable<Object>() {
+      public Iterator<Object> iterator() {
+        return new PrefetchIterator(RemoteMeta.this, handle, firstFrame,
+            parameterValues, prefetchFrames);
+      }
+    };
+  }
+
   @Override public Frame fetch(StatementHandle h,
       List<TypedValue> parameterValues, long offset, int fetchMaxRowCount) {
     final Service.FetchResponse response =
@@ -16,12 +16,7 @@
  */
 package org.apache.calcite.avatica.remote;
 
-import org.apache.calcite.avatica.AvaticaUtils;
-
-import java.io.DataOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.net.HttpURLConnection;
 import java.net.URL;
 
 /**
@@ -29,34 +24,26 @@
  * protocol buffers as the serialized form.
  */
 public class RemoteProtobufService extends ProtobufService {
-  private final URL url;
+  private final AvaticaHttpClient client;
   private final ProtobufTranslation translation;
 
   public RemoteProtobufService(URL url, ProtobufTranslation translation) {
-    this.url = url;
+    this(new AvaticaHttpClientImpl(url), translation);
+  }
+
+  public RemoteProtobufService(AvaticaHttpClient client,
+      ProtobufTranslation translation) {
+    this.client = client;
     this.translation = translation;
   }
 
   @Override public Response _apply(Request request) {
     try {
-      final HttpURLConnection connection =
-          (HttpURLConnection) url.openConnection();
-      connection.setRequestMethod("POST");
-      connection.setDoInput(true);
-      connection.setDoOutput(true);
-      try (DataOutputStream wr = new DataOutputStream(connection.getOutputStream())) {
-        // Convert the Request to a protobuf and send it over the wire
-        wr.write(translation.serializeRequest(request));
-        wr.flush();
-        wr.close();
-      }
-      final int responseCode = connection.getResponseCode();
-      if (responseCode != HttpURLConnection.HTTP_OK) {
-        throw new RuntimeException("response code " + responseCode);
-      }
-      final InputStream inputStream = connection.getInputStream();
-      // Read the (serialized protobuf) response off the wire and convert it back to a Response
-      return translation.parseResponse(AvaticaUtils.readFullyToBytes(inputStream));
+      // Convert the Request to a protobuf and send it over the wire
+      final byte[] response =
+          client.send(translation.serializeRequest(request));
+      // Convert the (serialized protobuf) response back to a Response
+      return translation.parseResponse(response);
     } catch (IOException e) {
       throw new RuntimeException(e);
     }
@@ -418,8 +418,21 @@ public <T> T getObject(Class<T> type) {
    * {@link #getLong()} method.
    */
   private abstract static class ExactNumericAccessor extends AccessorImpl {
+    /** The getter, if it can read values without boxing them; otherwise
+     * null. */
+    protected final PrimitiveGetter primitiveGetter;
+
     public ExactNumericAccessor(Getter getter) {
       super(getter);
+      this.primitiveGetter = getter instanceof PrimitiveGetter
+          ? (PrimitiveGetter) getter
+          : null;
+    }
+
+    /** Returns whether the current value can be read using
+     * {@link PrimitiveGetter#getLong()}. */
+    protected boolean isPrimitive() {
+      return primitiveGetter != null && primitiveGetter.isPrimitive();
     }
 
     public BigDecimal getBigDecimal(int scale) {
@@ -459,6 +472,9 @@ public BooleanAccessor(Getter getter) {
     }
 
     public boolean getBoolean() {
+      if (isPrimitive()) {
+        return primitiveGetter.getLong() != 0;
+      }
       Boolean o = (Boolean) getObject();
       return o != null && o;
     }
@@ -478,6 +494,9 @@ public ByteAccessor(Getter getter) {
     }
 
     public byte getByte() {
+      if (isPrimitive()) {
+        return (byte) primitiveGetter.getLong();
+      }
       Byte o = (Byte) getObject();
       return o == null ? 0 : o;
     }
@@ -497,6 +516,9 @@ public ShortAccessor(Getter getter) {
     }
 
     public short getShort() {
+      if (isPrimitive()) {
+        return (short) primitiveGetter.getLong();
+      }
       Short o = (Short) getObject();
       return o == null ? 0 : o;
     }
@@ -516,6 +538,9 @@ public IntAccessor(Getter getter) {
     }
 
     public int getInt() {
+      if (isPrimitive()) {
+        return (int) primitiveGetter.getLong();
+      }
       Integer o = (Integer) super.getObject();
       return o == null ? 0 : o;
     }
@@ -535,6 +560,9 @@ public LongAccessor(Getter getter) {
     }
 
     public long getLong() {
+      if (isPrimitive()) {
+        return primitiveGetter.getLong();
+      }
       Long o = (Long) super.getObject();
       return o == null ? 0 : o;
     }
@@ -545,8 +573,21 @@ public long getLong() {
    */
   private abstract static class ApproximateNumericAccessor
       extends AccessorImpl {
+    /** The getter, if it can read values without boxing them; otherwise
+     * null. */
+    protected final PrimitiveGetter primitiveGetter;
+
     public ApproximateNumericAccessor(Getter getter) {
       super(getter);
+      this.primitiveGetter = getter instanceof PrimitiveGetter
+          ? (PrimitiveGetter) getter
+          : null;
+    }
+
+    /** Returns whether the current value can be read using
+     * {@link PrimitiveGetter#getDouble()}. */
+    protected boolean isPrimitive() {
+      return primitiveGetter != null && primitiveGetter.isPrimitive();
     }
 
     public BigDecimal getBigDecimal(int scale) {
@@ -582,6 +623,9 @@ public FloatAccessor(Getter getter) {
     }
 
     public float getFloat() {
+      if (isPrimitive()) {
+        return (float) primitiveGetter.getDouble();
+      }
       Float o = (Float) getObject();
       return o == null ? 0f : o;
     }
@@ -601,6 +645,9 @@ public DoubleAccessor(Getter getter) {
     }
 
     public double getDouble() {
+      if (isPrimitive()) {
+        return primitiveGetter.getDouble();
+      }
       Double o = (Double) getObject();
       return o == null ? 0d : o;
     }
@@ -1284,6 +1331,26 @@ protected interface Getter {
     boolean wasNull();
   }
 
+  /** Getter that can read numeric values without boxing them, if the
+   * current record holds them as primitives.
+   *
+   * <p>The numeric accessors call {@link #isPrimitive()}, and if it returns
+   * true, call {@link #getLong()} or {@link #getDouble()} instead of
+   * {@link #getObject()}. */
+  protected interface PrimitiveGetter extends Getter {
+    /** Returns whether the value in the current record is held as a
+     * primitive. */
+    boolean isPrimitive();
+
+    /** Returns the value as a {@code long}, or 0 if it is null; sets
+     * {@link #wasNull()}. */
+    long getLong();
+
+    /** Returns the value as a {@code double}, or 0 if it is null; sets
+     * {@link #wasNull()}. */
+    double getDouble();
+  }
+
   /** Abstract implementation of {@link Getter}. */
   protected abstract class AbstractGetter implements Getter {
     public boolean wasNull() {
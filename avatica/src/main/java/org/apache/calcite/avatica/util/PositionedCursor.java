@@ -56,8 +56,12 @@ public Object getObject() {
 
   /** Implementation of
    * {@link org.apache.calcite.avatica.util.AbstractCursor.Getter}
-   * that reads items from a list. */
-  protected class ListGetter extends AbstractGetter {
+   * that reads items from a list.
+   *
+   * <p>If the list is a {@link PrimitiveRow}, reads numeric values without
+   * boxing them. */
+  protected class ListGetter extends AbstractGetter
+      implements PrimitiveGetter {
     protected final int index;
 
     public ListGetter(int index) {
@@ -69,6 +73,24 @@ public Object getObject() {
       wasNull[0] = o == null;
       return o;
     }
+
+    public boolean isPrimitive() {
+      final Object row = current();
+      return row instanceof PrimitiveRow
+          && ((PrimitiveRow) row).isPrimitive(index);
+    }
+
+    public long getLong() {
+      final PrimitiveRow row = (PrimitiveRow) current();
+      wasNull[0] = row.isNull(index);
+      return row.getLong(index);
+    }
+
+    public double getDouble() {
+      final PrimitiveRow row = (PrimitiveRow) current();
+      wasNull[0] = row.isNull(index);
+      return row.getDouble(index);
+    }
   }
 
   /** Implementation of
@@ -0,0 +1,46 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.avatica.util;
+
+/**
+ * Row that holds some of its values as primitives, so that a cursor can read
+ * them without boxing.
+ *
+ * <p>A row that implements this interface is usually also a
+ * {@link java.util.List}, whose {@code get} method boxes the value.
+ *
+ * @see PositionedCursor.ListGetter
+ */
+public interface PrimitiveRow {
+  /** Returns whether the value of a field is held as a primitive, and
+   * therefore can be read using {@link #getLong(int)} or
+   * {@link #getDouble(int)}. */
+  boolean isPrimitive(int i);
+
+  /** Returns whether the value of a field is null. */
+  boolean isNull(int i);
+
+  /** Returns the value of a primitive field as a {@code long}, or 0 if it is
+   * null. */
+  long getLong(int i);
+
+  /** Returns the value of a primitive field as a {@code double}, or 0 if it
+   * is null. */
+  double getDouble(int i);
+}
+
+// End PrimitiveRow.java
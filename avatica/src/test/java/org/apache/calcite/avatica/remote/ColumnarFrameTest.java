@@ -0,0 +1,184 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.avatica.remote;
+
+import org.apache.calcite.avatica.Meta.Frame;
+import org.apache.calcite.avatica.util.PrimitiveRow;
+
+import com.google.protobuf.ByteString;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests the columnar encoding of {@link Frame}, {@link ColumnarFrame}.
+ */
+public class ColumnarFrameTest {
+  private static Frame roundTrip(Frame frame) throws Exception {
+    final Frame copy = ColumnarFrame.parse(ColumnarFrame.serialize(frame));
+    assertThat(copy.offset, is(frame.offset));
+    assertThat(copy.done, is(frame.done));
+    final Iterator<Object> copyIter = copy.rows.iterator();
+    for (Object row : frame.rows) {
+      assertThat(copyIter.hasNext(), is(true));
+      final Object copyRow = copyIter.next();
+      assertThat(copyRow, instanceOf(List.class));
+      assertArrayEquals((Object[]) row, ((List) copyRow).toArray());
+    }
+    assertThat(copyIter.hasNext(), is(false));
+    return copy;
+  }
+
+  @Test public void testEmpty() throws Exception {
+    roundTrip(Frame.EMPTY);
+    roundTrip(new Frame(100, false, Collections.<Object>emptyList()));
+  }
+
+  @Test public void testTypes() throws Exception {
+    final List<Object> rows = new ArrayList<>();
+    for (int i = 0; i < 20; i++) {
+      rows.add(
+          new Object[] {
+            i, (long) i * Integer.MAX_VALUE, -i / 3d, (float) i / 4,
+            (short) i, (byte) -i, i % 2 == 0, "s" + (i % 3),
+            new byte[] {(byte) i}, 'c', null
+          });
+    }
+    final Frame copy = roundTrip(new Frame(40, true, rows));
+    final Object row = copy.rows.iterator().next();
+    assertThat(((List) row).get(0), instanceOf(Integer.class));
+    assertThat(((List) row).get(3), instanceOf(Float.class));
+    assertThat(((List) row).get(6), instanceOf(Boolean.class));
+  }
+
+  @Test public void testNulls() throws Exception {
+    final List<Object> rows = new ArrayList<>();
+    for (int i = 0; i < 11; i++) {
+      rows.add(
+          new Object[] {
+            i % 3 == 0 ? null : i,
+            i % 2 == 0 ? null : "x",
+            i % 5 == 0 ? null : i * 0.5d,
+          });
+    }
+    final Frame copy = roundTrip(new Frame(0, false, rows));
+
+    // Numeric values are primitives, and null values are 0
+    final Iterator<Object> iterator = copy.rows.iterator();
+    final PrimitiveRow row0 = (PrimitiveRow) iterator.next();
+    final PrimitiveRow row1 = (PrimitiveRow) iterator.next();
+    assertThat(row0.isPrimitive(0), is(true));
+    assertThat(row0.isPrimitive(1), is(false));
+    assertThat(row0.isPrimitive(2), is(true));
+    assertThat(row0.isNull(0), is(true));
+    assertThat(row0.getLong(0), is(0L));
+    assertThat(row1.isNull(0), is(false));
+    assertThat(row1.getLong(0), is(1L));
+    assertThat(row1.getDouble(2), is(0.5d));
+  }
+
+  /** A column whose values are of different types is sent as a typed value
+   * per cell. */
+  @Test public void testMixedTypes() throws Exception {
+    final List<Object> rows = Arrays.<Object>asList(
+        new Object[] {1, null},
+        new Object[] {"a", null},
+        new Object[] {2L, null});
+    final Frame copy = roundTrip(new Frame(0, true, rows));
+    final PrimitiveRow row = (PrimitiveRow) copy.rows.iterator().next();
+    assertThat(row.isPrimitive(0), is(false));
+    assertThat(((List) row).get(1), nullValue());
+  }
+
+  /** Rows are read from the frame's iterator and encoded a block at a
+   * time; each block deduces its own column types. */
+  @Test public void testBlocks() throws Exception {
+    final int rowCount = 2 * ColumnarFrame.BLOCK_SIZE + 3;
+    final Iterable<Object> rows =
+        new Iterable<Object>() {
+          public Iterator<Object> iterator() {
+            return new Iterator<Object>() {
+              int i = 0;
+
+              public boolean hasNext() {
+                return i < rowCount;
+              }
+
+              public Object next() {
+                final int j = i++;
+                return new Object[] {
+                  j, j < ColumnarFrame.BLOCK_SIZE ? (Object) "a" : j
+                };
+              }
+
+              public void remove() {
+                throw new UnsupportedOperationException();
+              }
+            };
+          }
+        };
+    final Frame copy = roundTrip(new Frame(0, true, rows));
+    int n = 0;
+    for (Object row : copy.rows) {
+      assertThat(((PrimitiveRow) row).isPrimitive(1),
+          is(n++ >= ColumnarFrame.BLOCK_SIZE));
+    }
+    assertThat(n, is(rowCount));
+  }
+
+  /** A null row cannot be encoded, and is not silently dropped. */
+  @Test public void testNullRow() throws Exception {
+    final List<Object> rows =
+        Arrays.<Object>asList(new Object[] {1}, null, new Object[] {2});
+    try {
+      final ByteString bytes =
+          ColumnarFrame.serialize(new Frame(0, true, rows));
+      fail("expected error, got " + bytes);
+    } catch (RuntimeException e) {
+      assertThat(e.getMessage(), is("Null rows are not supported"));
+    }
+  }
+
+  @Test public void testResponse() throws Exception {
+    final List<Object> rows = new ArrayList<>();
+    rows.add(new Object[] {1, "a"});
+    final Service.FetchResponse response =
+        new Service.FetchResponse(new Frame(0, true, rows));
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    ColumnarFrame.writeResponse(response, out);
+    final Service.Response copy =
+        new ProtobufTranslationImpl().parseResponse(out.toByteArray());
+    assertThat(copy, instanceOf(Service.FetchResponse.class));
+    final Frame frame = ((Service.FetchResponse) copy).frame;
+    assertThat(((List) frame.rows.iterator().next()).get(1), is((Object) "a"));
+  }
+}
+
+// End ColumnarFrameTest.java
@@ -82,7 +82,20 @@ enum Variable {
     /** Time zone in which the current statement is executing. Required;
      * defaults to the time zone of the JVM if the connection does not specify a
      * time zone. */
-    TIME_ZONE("timeZone", TimeZone.class);
+    TIME_ZONE("timeZone", TimeZone.class),
+
+    /** Number of rows or groups an operator may hold in memory before it
+     * spills to disk. Optional; if absent or 0, operators never spill. */
+    SPILL_THRESHOLD("spillThreshold", Integer.class),
+
+    /** Number of threads that parallel operators use. Optional; if absent,
+     * 0 or 1, operators run in a single thread. */
+    PARALLELISM("parallelism", Integer.class),
+
+    /** Number of rows that the JDBC adapter asks a data source to return per
+     * round trip; the fetch size of the current statement. Optional; if
+     * absent or 0, the fetch size of the JDBC schema is used. */
+    FETCH_SIZE("fetchSize", Integer.class);
 
     public final String camelName;
     public final Class clazz;
@@ -18,6 +18,7 @@
 
 import org.apache.calcite.DataContext;
 import org.apache.calcite.adapter.java.AbstractQueryableTable;
+import org.apache.calcite.adapter.java.JavaTypeFactory;
 import org.apache.calcite.linq4j.AbstractEnumerable;
 import org.apache.calcite.linq4j.Enumerable;
 import org.apache.calcite.linq4j.Enumerator;
@@ -25,28 +26,43 @@
 import org.apache.calcite.linq4j.QueryProvider;
 import org.apache.calcite.linq4j.Queryable;
 import org.apache.calcite.linq4j.tree.Primitive;
+import org.apache.calcite.plan.RelOptUtil;
 import org.apache.calcite.rel.RelCollation;
 import org.apache.calcite.rel.RelCollations;
+import org.apache.calcite.rel.RelFieldCollation;
 import org.apache.calcite.rel.type.RelDataType;
 import org.apache.calcite.rel.type.RelDataTypeFactory;
+import org.apache.calcite.rel.type.RelDataTypeField;
 import org.apache.calcite.rel.type.RelProtoDataType;
+import org.apache.calcite.rex.RexCall;
+import org.apache.calcite.rex.RexInputRef;
+import org.apache.calcite.rex.RexLiteral;
+import org.apache.calcite.rex.RexNode;
+import org.apache.calcite.runtime.ColumnBatch;
+import org.apache.calcite.schema.BatchScannableTable;
 import org.apache.calcite.schema.ScannableTable;
 import org.apache.calcite.schema.SchemaPlus;
 import org.apache.calcite.schema.Statistic;
 import org.apache.calcite.schema.Statistics;
 import org.apache.calcite.schema.impl.AbstractTableQueryable;
+import org.apache.calcite.sql.SqlKind;
 import org.apache.calcite.util.ImmutableBitSet;
 import org.apache.calcite.util.Pair;
 
 import com.google.common.base.Supplier;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
+import com.google.common.primitives.Ints;
 
 import java.lang.reflect.Array;
 import java.lang.reflect.Type;
+import java.math.BigDecimal;
 import java.util.AbstractList;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 
 /**
@@ -54,17 +70,55 @@
  * Column store formats are chosen based on the type and distribution of the
  * values in the column; see {@link Representation} and
  * {@link RepresentationType}.
+ *
+ * <p>Numeric columns have a {@link ZoneMap}, and
+ * {@link #scan(DataContext, List)} uses the zone maps to skip blocks of rows
+ * that cannot match a filter; {@link ArrayTableIndexScan} calls it if the
+ * filter does not constrain a sorted field.
+ *
+ * <p>The rows are sorted on the leading field of each collation, and
+ * {@link #lookup} uses binary search to find the rows whose value of such a
+ * field lies in given ranges; see {@link ArrayTableIndexScan}.
  */
-class ArrayTable extends AbstractQueryableTable implements ScannableTable {
+class ArrayTable extends AbstractQueryableTable
+    implements ScannableTable, BatchScannableTable {
   private final RelProtoDataType protoRowType;
   private final Supplier<Content> supplier;
+  private final Appender appender;
+  /** Contents after rows have been appended; null until then. */
+  private volatile Content content;
 
   /** Creates an ArrayTable. */
   public ArrayTable(Type elementType, RelProtoDataType protoRowType,
       Supplier<Content> supplier) {
+    this(elementType, protoRowType, supplier, null);
+  }
+
+  /** Creates an ArrayTable to which rows can be appended. */
+  ArrayTable(Type elementType, RelProtoDataType protoRowType,
+      Supplier<Content> supplier, Appender appender) {
     super(elementType);
     this.protoRowType = protoRowType;
     this.supplier = supplier;
+    this.appender = appender;
+  }
+
+  /** Returns the current contents of this table, loading them if
+   * necessary. */
+  Content content() {
+    final Content content = this.content;
+    return content != null ? content : supplier.get();
+  }
+
+  /** Appends rows to this table.
+   *
+   * <p>Queries that have already started continue to read the previous
+   * contents. */
+  synchronized void append(Enumerable<?> rows) {
+    if (appender == null) {
+      throw new UnsupportedOperationException("cannot append to " + this);
+    }
+    content = appender.append(content(), rows);
   }
 
   public RelDataType getRowType(RelDataTypeFactory typeFactory) {
@@ -73,7 +127,7 @@ public RelDataType getRowType(RelDataTypeFactory typeFactory) {
 
   public Statistic getStatistic() {
     final List<ImmutableBitSet> keys = Lists.newArrayList();
-    final Content content = supplier.get();
+    final Content content = content();
     for (Ord<Column> ord : Ord.zip(content.columns)) {
       if (ord.e.cardinality == content.size) {
         keys.add(ImmutableBitSet.of(ord.i));
@@ -85,19 +139,167 @@ public Statistic getStatistic() {
   public Enumerable<Object[]> scan(DataContext root) {
     return new AbstractEnumerable<Object[]>() {
       public Enumerator<Object[]> enumerator() {
-        final Content content = supplier.get();
+        final Content content = content();
         return content.arrayEnumerator();
       }
     };
   }
 
+  /** Returns the rows of this table, skipping blocks of rows that cannot
+   * match filters.
+   *
+   * <p>The contract is the same as
+   * {@link org.apache.calcite.schema.FilterableTable#scan}, but the rows are
+   * not checked against the filters, so no filters are removed from the list.
+   * This table does not implement {@code FilterableTable}, because
+   * {@link org.apache.calcite.rel.rules.FilterTableScanRule} would then
+   * convert every filtered scan of a clone table to an interpreted scan. */
+  public Enumerable<Object[]> scan(DataContext root, List<RexNode> filters) {
+    final List<RexNode> conditions = conjunctions(filters);
+    return new AbstractEnumerable<Object[]>() {
+      public Enumerator<Object[]> enumerator() {
+        final Content content = content();
+        return content.arrayEnumerator(
+            bounds(content, -1, null, conditions));
+      }
+    };
+  }
+
+  /** Returns the number of rows that {@link #scan(DataContext, List)} would
+   * return: the number of rows in blocks that may match filters. */
+  int blockRowCount(List<RexNode> filters) {
+    final Content content = content();
+    final int[] bounds = bounds(content, -1, null, conjunctions(filters));
+    if (bounds == null) {
+      return content.size;
+    }
+    int count = 0;
+    for (int i = 0; i < bounds.length; i += 2) {
+      count += bounds[i + 1] - bounds[i];
+    }
+    return count;
+  }
+
+  /** Returns the rows of this table whose value of a sorted field is in one
+   * of a list of closed ranges, skipping blocks of rows that cannot match
+   * filters. As in {@link #scan(DataContext, List)}, the rows are not
+   * checked against the filters.
+   *
+   * <p>A null bound means that the range is unbounded at that end. Keys are
+   * numeric, or dates or times represented as numbers. If the field is no
+   * longer sorted (because rows have been appended since the query was
+   * planned), returns the rows in the blocks that may match the filters.
+   *
+   * @param field Ordinal of the sorted field
+   * @param ranges Closed ranges of values of the field
+   * @param filters Filters, used only to skip blocks
+   */
+  public Enumerable<Object[]> lookup(final int field,
+      final List<Pair<Comparable, Comparable>> ranges,
+      List<RexNode> filters) {
+    final List<RexNode> conditions = conjunctions(filters);
+    return new AbstractEnumerable<Object[]>() {
+      public Enumerator<Object[]> enumerator() {
+        final Content content = content();
+        return content.arrayEnumerator(
+            bounds(content, field, ranges, conditions));
+      }
+    };
+  }
+
+  /** Returns batches of the rows that {@link #lookup} would return, or if
+   * {@code field} is -1, of the rows that {@link #scan(DataContext, List)}
+   * would return. Batches are as in {@link #scanBatches(DataContext, int)},
+   * but never span two of the ranges of rows that are read. */
+  public Enumerable<ColumnBatch> scanBatches(DataContext root,
+      final int batchSize, final int field,
+      final List<Pair<Comparable, Comparable>> ranges,
+      List<RexNode> filters) {
+    final Type[] fieldClasses = fieldClasses(root.getTypeFactory());
+    final List<RexNode> conditions = conjunctions(filters);
+    return new AbstractEnumerable<ColumnBatch>() {
+      public Enumerator<ColumnBatch> enumerator() {
+        final Content content = content();
+        return content.batchEnumerator(fieldClasses, batchSize,
+            bounds(content, field, ranges, conditions));
+      }
+    };
+  }
+
+  /** Returns the ranges of rows that may match conditions, as for
+   * {@link Content#arrayEnumerator(int[])}. If {@code field} is a sorted
+   * field, reads only the rows whose value is in one of {@code ranges}. */
+  private static int[] bounds(Content content, int field,
+      List<Pair<Comparable, Comparable>> ranges, List<RexNode> conditions) {
+    final int[] blockBounds =
+        Content.toBounds(content.blocks(conditions), content.size);
+    final RelFieldCollation collation = field < 0
+        ? null
+        : sortedField(content.collations, field);
+    if (collation == null) {
+      return blockBounds;
+    }
+    return Content.intersect(content.bounds(collation, ranges), blockBounds);
+  }
+
+  private static List<RexNode> conjunctions(List<RexNode> filters) {
+    final List<RexNode> conditions = new ArrayList<>();
+    for (RexNode filter : filters) {
+      conditions.addAll(RelOptUtil.conjunctions(filter));
+    }
+    return conditions;
+  }
+
+  /** Returns the collation of a field if the rows are sorted in ascending
+   * order on that field, or null. */
+  static RelFieldCollation sortedField(List<RelCollation> collations,
+      int field) {
+    for (RelCollation collation : collations) {
+      final List<RelFieldCollation> fieldCollations =
+          collation.getFieldCollations();
+      if (!fieldCollations.isEmpty()
+          && fieldCollations.get(0).getFieldIndex() == field) {
+        final RelFieldCollation fieldCollation = fieldCollations.get(0);
+        switch (fieldCollation.direction) {
+        case ASCENDING:
+        case STRICTLY_ASCENDING:
+          return fieldCollation;
+        }
+      }
+    }
+    return null;
+  }
+
+  public Enumerable<ColumnBatch> scanBatches(DataContext root,
+      final int batchSize) {
+    final Type[] fieldClasses = fieldClasses(root.getTypeFactory());
+    return new AbstractEnumerable<ColumnBatch>() {
+      public Enumerator<ColumnBatch> enumerator() {
+        final Content content = content();
+        return content.batchEnumerator(fieldClasses, batchSize);
+      }
+    };
+  }
+
+  /** Returns the Java class of each field, as required by
+   * {@link BatchScannableTable#scanBatches}. */
+  private Type[] fieldClasses(JavaTypeFactory typeFactory) {
+    final List<RelDataTypeField> fields =
+        getRowType(typeFactory).getFieldList();
+    final Type[] fieldClasses = new Type[fields.size()];
+    for (int i = 0; i < fieldClasses.length; i++) {
+      fieldClasses[i] = typeFactory.getJavaClass(fields.get(i).getType());
+    }
+    return fieldClasses;
+  }
+
   public <T> Queryable<T> asQueryable(final QueryProvider queryProvider,
       SchemaPlus schema, String tableName) {
     return new AbstractTableQueryable<T>(queryProvider, schema, this,
         tableName) {
       @SuppressWarnings("unchecked")
       public Enumerator<T> enumerator() {
-        final Content content = supplier.get();
+        final Content content = content();
         return content.enumerator();
       }
     };
@@ -108,6 +310,12 @@ private static <T> Pair<Object, T> toPair(Object dataSet) {
     return (Pair<Object, T>) dataSet;
   }
 
+  /** Creates the contents of a table from its existing contents and some
+   * rows to append. */
+  interface Appender {
+    Content append(Content content, Enumerable<?> rows);
+  }
+
   /** How a column's values are represented. */
   enum RepresentationType {
     /** Constant. Contains only one value.
@@ -193,6 +401,31 @@ enum RepresentationType {
      * @see ByteStringDictionary
      */
     BYTE_STRING_DICTIONARY,
+
+    /**
+     * Array of primitives held in a memory-mapped file, outside the Java
+     * heap. Same layout as {@link #PRIMITIVE_ARRAY}.
+     *
+     * @see MappedPrimitiveArray
+     */
+    MAPPED_PRIMITIVE_ARRAY,
+
+    /**
+     * Bit-sliced primitive array held in a memory-mapped file. Same layout as
+     * {@link #BIT_SLICED_PRIMITIVE_ARRAY}.
+     *
+     * @see MappedBitSlicedPrimitiveArray
+     */
+    MAPPED_BIT_SLICED_PRIMITIVE_ARRAY,
+
+    /**
+     * Object array held in a memory-mapped file. Each value is serialized,
+     * and is deserialized each time it is read; an array of offsets locates
+     * the value for each row.
+     *
+     * @see MappedObjectArray
+     */
+    MAPPED_OBJECT_ARRAY,
   }
 
   /** Column definition and value set. */
@@ -200,14 +433,23 @@ public static class Column {
     final Representation representation;
     final Object dataSet;
     final int cardinality;
+    /** Zone map, or null if the column has none. */
+    final ZoneMap zoneMap;
 
     Column(Representation representation, Object data, int cardinality) {
+      this(representation, data, cardinality, null);
+    }
+
+    Column(Representation representation, Object data, int cardinality,
+        ZoneMap zoneMap) {
       this.representation = representation;
       this.dataSet = data;
       this.cardinality = cardinality;
+      this.zoneMap = zoneMap;
     }
 
     public Column permute(int[] sources) {
+      // The zone map is not valid after the rows have moved.
       return new Column(
           representation,
           representation.permute(dataSet, sources),
@@ -236,6 +478,64 @@ public int size() {
     }
   }
 
+  /** Minimum value, maximum value, and number of null values of a column in
+   * each block of {@link #BLOCK_SIZE} consecutive rows.
+   *
+   * <p>Values must be mutually comparable. {@link ColumnLoader} creates zone
+   * maps only for numeric columns (including dates and times, which are
+   * stored as numbers), and {@link Content#blocks} only uses them to
+   * evaluate comparisons with numeric literals. */
+  public static class ZoneMap {
+    /** Number of rows in a block. */
+    public static final int BLOCK_SIZE = 1024;
+
+    /** Least non-null value in each block; null if all values are null. */
+    final Comparable[] mins;
+    /** Greatest non-null value in each block; null if all values are null. */
+    final Comparable[] maxes;
+    final int[] nullCounts;
+
+    ZoneMap(Comparable[] mins, Comparable[] maxes, int[] nullCounts) {
+      assert mins.length == maxes.length
+          && mins.length == nullCounts.length;
+      this.mins = mins;
+      this.maxes = maxes;
+      this.nullCounts = nullCounts;
+    }
+
+    /** Creates the zone map of a list of values, optionally permuted. */
+    static ZoneMap of(List<? extends Comparable> values, int[] sources) {
+      final int size = values.size();
+      final int blockCount = (size + BLOCK_SIZE - 1) / BLOCK_SIZE;
+      final Comparable[] mins = new Comparable[blockCount];
+      final Comparable[] maxes = new Comparable[blockCount];
+      final int[] nullCounts = new int[blockCount];
+      for (int i = 0; i < size; i++) {
+        final Comparable value = values.get(sources == null ? i : sources[i]);
+        final int block = i / BLOCK_SIZE;
+        if (value == null) {
+          ++nullCounts[block];
+          continue;
+        }
+        //noinspection unchecked
+        if (mins[block] == null || mins[block].compareTo(value) > 0) {
+          mins[block] = value;
+        }
+        //noinspection unchecked
+        if (maxes[block] == null || maxes[block].compareTo(value) < 0) {
+          maxes[block] = value;
+        }
+      }
+      return new ZoneMap(mins, maxes, nullCounts);
+    }
+
+    @Override public String toString() {
+      return "ZoneMap(mins=" + Arrays.toString(mins)
+          + ", maxes=" + Arrays.toString(maxes)
+          + ", nullCounts=" + Arrays.toString(nullCounts) + ")";
+    }
+  }
+
   /** Representation of the values of a column. */
   public interface Representation {
     /** Returns the representation type. */
@@ -314,8 +614,8 @@ public String toString(Object dataSet) {
    * primitive values. */
   public static class PrimitiveArray implements Representation {
     final int ordinal;
-    private final Primitive primitive;
-    private final Primitive p;
+    final Primitive primitive;
+    final Primitive p;
 
     public PrimitiveArray(int ordinal, Primitive primitive, Primitive p) {
       this.ordinal = ordinal;
@@ -692,40 +992,19 @@ public Object permute(Object dataSet, int[] sources) {
     public Object getObject(Object dataSet, int ordinal) {
       final long[] longs = (long[]) dataSet;
       final int chunksPerWord = 64 / bitCount;
-      final int word = ordinal / chunksPerWord;
-      final long v = longs[word];
-      final int chunk = ordinal % chunksPerWord;
-      final int mask = (1 << bitCount) - 1;
-      final int signMask = 1 << (bitCount - 1);
-      final int shift = chunk * bitCount;
-      final long w = v >> shift;
-      long x = w & mask;
-      if (signed && (x & signMask) != 0) {
-        x = -x;
-      }
-      switch (primitive) {
-      case BOOLEAN:
-        return x != 0;
-      case BYTE:
-        return (byte) x;
-      case CHAR:
-        return (char) x;
-      case SHORT:
-        return (short) x;
-      case INT:
-        return (int) x;
-      case LONG:
-        return x;
-      default:
-        throw new AssertionError(primitive + " unexpected");
-      }
+      return box(primitive, extract(longs[ordinal / chunksPerWord], ordinal));
     }
 
     public int getInt(Object dataSet, int ordinal) {
       final long[] longs = (long[]) dataSet;
       final int chunksPerWord = 64 / bitCount;
-      final int word = ordinal / chunksPerWord;
-      final long v = longs[word];
+      return (int) extract(longs[ordinal / chunksPerWord], ordinal);
+    }
+
+    /** Extracts the value of row {@code ordinal} from the word that holds
+     * it. */
+    long extract(long v, int ordinal) {
+      final int chunksPerWord = 64 / bitCount;
       final int chunk = ordinal % chunksPerWord;
       final int mask = (1 << bitCount) - 1;
       final int signMask = 1 << (bitCount - 1);
@@ -735,7 +1014,7 @@ public int getInt(Object dataSet, int ordinal) {
       if (signed && (x & signMask) != 0) {
         x = -x;
       }
-      return (int) x;
+      return x;
     }
 
     public static long getLong(int bitCount, long[] values, int ordinal) {
@@ -782,6 +1061,218 @@ public String toString(Object dataSet) {
     }
   }
 
+  /** Representation that stores the values of a column in a memory-mapped
+   * region of primitive values. The data set is a
+   * {@link MappedColumnStore.Region}.
+   *
+   * <p>Created by {@link MappedColumnStore} from a {@link PrimitiveArray};
+   * data sets are read-only. */
+  public static class MappedPrimitiveArray implements Representation {
+    final int ordinal;
+    final Primitive primitive;
+    final Primitive p;
+
+    public MappedPrimitiveArray(int ordinal, Primitive primitive,
+        Primitive p) {
+      this.ordinal = ordinal;
+      this.primitive = primitive;
+      this.p = p;
+    }
+
+    public String toString() {
+      return "MappedPrimitiveArray(ordinal=" + ordinal
+          + ", primitive=" + primitive
+          + ", p=" + p
+          + ")";
+    }
+
+    public RepresentationType getType() {
+      return RepresentationType.MAPPED_PRIMITIVE_ARRAY;
+    }
+
+    public Object freeze(ColumnLoader.ValueSet valueSet, int[] sources) {
+      throw new UnsupportedOperationException("read-only");
+    }
+
+    public Object permute(Object dataSet, int[] sources) {
+      throw new UnsupportedOperationException("read-only");
+    }
+
+    public Object getObject(Object dataSet, int ordinal) {
+      final MappedColumnStore.Region region =
+          (MappedColumnStore.Region) dataSet;
+      switch (primitive) {
+      case FLOAT:
+      case DOUBLE:
+        final double d = region.getDouble(primitive, ordinal);
+        return p == Primitive.FLOAT ? (Object) (float) d : (Object) d;
+      default:
+        return box(p, region.getLong(primitive, ordinal));
+      }
+    }
+
+    public int getInt(Object dataSet, int ordinal) {
+      final MappedColumnStore.Region region =
+          (MappedColumnStore.Region) dataSet;
+      return (int) region.getLong(primitive, ordinal);
+    }
+
+    public int size(Object dataSet) {
+      final MappedColumnStore.Region region =
+          (MappedColumnStore.Region) dataSet;
+      return (int) (region.length / (primitive.size / 8));
+    }
+
+    public String toString(Object dataSet) {
+      return Column.asList(this, dataSet).toString();
+    }
+
+    /** Copies {@code count} values, starting at {@code start}, into an
+     * array. Returns false if the array is not of the stored type, and the
+     * values must be copied one by one. */
+    boolean copy(Object dataSet, int start, int count, Object target) {
+      if (primitive != p
+          || target.getClass().getComponentType() != p.primitiveClass) {
+        return false;
+      }
+      ((MappedColumnStore.Region) dataSet).copy(primitive, start, count,
+          target);
+      return true;
+    }
+  }
+
+  /** Representation that stores numeric values in a bit-sliced array in a
+   * memory-mapped region of {@code long} words. The data set is a
+   * {@link MappedColumnStore.Region}.
+   *
+   * <p>Created by {@link MappedColumnStore} from a
+   * {@link BitSlicedPrimitiveArray}; data sets are read-only. */
+  public static class MappedBitSlicedPrimitiveArray
+      extends BitSlicedPrimitiveArray {
+    MappedBitSlicedPrimitiveArray(
+        int ordinal, int bitCount, Primitive primitive, boolean signed) {
+      super(ordinal, bitCount, primitive, signed);
+    }
+
+    @Override public String toString() {
+      return "MappedBitSlicedPrimitiveArray(ordinal=" + ordinal
+          + ", bitCount=" + bitCount
+          + ", primitive=" + primitive
+          + ", signed=" + signed + ")";
+    }
+
+    @Override public RepresentationType getType() {
+      return RepresentationType.MAPPED_BIT_SLICED_PRIMITIVE_ARRAY;
+    }
+
+    @Override public Object freeze(ColumnLoader.ValueSet valueSet,
+        int[] sources) {
+      throw new UnsupportedOperationException("read-only");
+    }
+
+    @Override public Object permute(Object dataSet, int[] sources) {
+      throw new UnsupportedOperationException("read-only");
+    }
+
+    @Override public Object getObject(Object dataSet, int ordinal) {
+      return box(primitive, extract(word(dataSet, ordinal), ordinal));
+    }
+
+    @Override public int getInt(Object dataSet, int ordinal) {
+      return (int) extract(word(dataSet, ordinal), ordinal);
+    }
+
+    private long word(Object dataSet, int ordinal) {
+      final MappedColumnStore.Region region =
+          (MappedColumnStore.Region) dataSet;
+      return region.getLong(Primitive.LONG, ordinal / (64 / bitCount));
+    }
+
+    @Override public int size(Object dataSet) {
+      final MappedColumnStore.Region region =
+          (MappedColumnStore.Region) dataSet;
+      return (int) (region.length / 8) * (64 / bitCount);
+    }
+  }
+
+  /** Representation that stores column values in a memory-mapped region,
+   * serialized. The data set is a pair of {@link MappedColumnStore.Region}:
+   * the offset of each value (with one extra offset, the end of the last
+   * value), and the serialized values.
+   *
+   * <p>Created by {@link MappedColumnStore} from an {@link ObjectArray} or any
+   * other representation that it cannot map directly; data sets are
+   * read-only. */
+  public static class MappedObjectArray implements Representation {
+    final int ordinal;
+
+    public MappedObjectArray(int ordinal) {
+      this.ordinal = ordinal;
+    }
+
+    public String toString() {
+      return "MappedObjectArray(ordinal=" + ordinal + ")";
+    }
+
+    public RepresentationType getType() {
+      return RepresentationType.MAPPED_OBJECT_ARRAY;
+    }
+
+    public Object freeze(ColumnLoader.ValueSet valueSet, int[] sources) {
+      throw new UnsupportedOperationException("read-only");
+    }
+
+    public Object permute(Object dataSet, int[] sources) {
+      throw new UnsupportedOperationException("read-only");
+    }
+
+    public Object getObject(Object dataSet, int ordinal) {
+      @SuppressWarnings("unchecked")
+      final Pair<MappedColumnStore.Region, MappedColumnStore.Region> pair =
+          (Pair<MappedColumnStore.Region, MappedColumnStore.Region>) dataSet;
+      final long start = pair.left.getLong(Primitive.LONG, ordinal);
+      final long end = pair.left.getLong(Primitive.LONG, ordinal + 1);
+      return MappedColumnStore.decode(
+          pair.right.getBytes(start, (int) (end - start)));
+    }
+
+    public int getInt(Object dataSet, int ordinal) {
+      return ((Number) getObject(dataSet, ordinal)).intValue();
+    }
+
+    public int size(Object dataSet) {
+      @SuppressWarnings("unchecked")
+      final Pair<MappedColumnStore.Region, MappedColumnStore.Region> pair =
+          (Pair<MappedColumnStore.Region, MappedColumnStore.Region>) dataSet;
+      return (int) (pair.left.length / 8) - 1;
+    }
+
+    public String toString(Object dataSet) {
+      return Column.asList(this, dataSet).toString();
+    }
+  }
+
+  /** Converts a value that is stored as a {@code long} to the type that a
+   * column returns. */
+  static Object box(Primitive primitive, long x) {
+    switch (primitive) {
+    case BOOLEAN:
+      return x != 0;
+    case BYTE:
+      return (byte) x;
+    case CHAR:
+      return (char) x;
+    case SHORT:
+      return (short) x;
+    case INT:
+      return (int) x;
+    case LONG:
+      return x;
+    default:
+      throw new AssertionError(primitive + " unexpected");
+    }
+  }
+
   private static <E> List<E> permuteList(
       final List<E> list, final int[] sources) {
     if (sources == null) {
@@ -800,9 +1291,9 @@ public int size() {
 
   /** Contents of a table. */
   public static class Content {
-    private final List<Column> columns;
-    private final int size;
-    private final ImmutableList<RelCollation> collations;
+    final List<Column> columns;
+    final int size;
+    final ImmutableList<RelCollation> collations;
 
     public Content(List<? extends Column> columns, int size,
         Iterable<? extends RelCollation> collations) {
@@ -824,12 +1315,323 @@ public <T> Enumerator<T> enumerator() {
       if (columns.size() == 1) {
         return (Enumerator<T>) new ObjectEnumerator(size, columns.get(0));
       } else {
-        return (Enumerator<T>) new ArrayEnumerator(size, columns);
+        return (Enumerator<T>) new ArrayEnumerator(size, columns, null);
       }
     }
 
     public Enumerator<Object[]> arrayEnumerator() {
-      return new ArrayEnumerator(size, columns);
+      return new ArrayEnumerator(size, columns, null);
+    }
+
+    /** Returns an enumerator over the rows in some ranges of row numbers.
+     *
+     * @param bounds Start (inclusive) and end (exclusive) of each range,
+     *   ascending, disjoint and non-empty; or null for all rows
+     */
+    Enumerator<Object[]> arrayEnumerator(int[] bounds) {
+      return new ArrayEnumerator(size, columns, bounds);
+    }
+
+    /** Returns the ranges of row numbers that contain the rows whose value of
+     * a sorted field is in one of a list of closed ranges; see
+     * {@link #arrayEnumerator(int[])}. */
+    int[] bounds(RelFieldCollation collation,
+        List<Pair<Comparable, Comparable>> ranges) {
+      final Column column = columns.get(collation.getFieldIndex());
+      final boolean nullsFirst =
+          collation.nullDirection == RelFieldCollation.NullDirection.FIRST;
+      // Rows with non-null values are in [start, end).
+      final int start = nullsFirst ? search(column, null, true, 0, size) : 0;
+      final int end = nullsFirst ? size : search(column, null, false, 0, size);
+      final List<int[]> list = new ArrayList<>();
+      for (Pair<Comparable, Comparable> range : ranges) {
+        final int lo = range.left == null
+            ? start
+            : search(column, range.left, false, start, end);
+        final int hi = range.right == null
+            ? end
+            : search(column, range.right, true, lo, end);
+        if (lo < hi) {
+          list.add(new int[] {lo, hi});
+        }
+      }
+      Collections.sort(list,
+          new Comparator<int[]>() {
+            public int compare(int[] o1, int[] o2) {
+              return Integer.compare(o1[0], o2[0]);
+            }
+          });
+      // Merge overlapping ranges.
+      final int[] bounds = new int[list.size() * 2];
+      int n = 0;
+      for (int[] range : list) {
+        if (n > 0 && range[0] <= bounds[n - 1]) {
+          bounds[n - 1] = Math.max(bounds[n - 1], range[1]);
+        } else {
+          bounds[n++] = range[0];
+          bounds[n++] = range[1];
+        }
+      }
+      return Arrays.copyOf(bounds, n);
+    }
+
+    /** Returns the first row in {@code [lo, hi)} whose value of a sorted
+     * column is greater than (if {@code strict}) or greater than or equal to
+     * a key, or {@code hi} if there is no such row. A null key finds the
+     * first null value if nulls sort last, or the first non-null value if
+     * nulls sort first. */
+    private static int search(Column column, Comparable key, boolean strict,
+        int lo, int hi) {
+      while (lo < hi) {
+        final int mid = (lo + hi) >>> 1;
+        final Comparable value = (Comparable)
+            column.representation.getObject(column.dataSet, mid);
+        final boolean before;
+        if (key == null) {
+          // Searching for the boundary between nulls and non-nulls
+          before = strict ? value == null : value != null;
+        } else if (value == null) {
+          // Nulls are at the other end of [lo, hi); see bounds
+          before = false;
+        } else {
+          final int c = compare(value, key);
+          before = strict ? c <= 0 : c < 0;
+        }
+        if (before) {
+          lo = mid + 1;
+        } else {
+          hi = mid;
+        }
+      }
+      return lo;
+    }
+
+    /** Converts a set of blocks into ranges of row numbers; see
+     * {@link #arrayEnumerator(int[])}. */
+    static int[] toBounds(BitSet blocks, int size) {
+      if (blocks == null) {
+        return null;
+      }
+      final List<Integer> list = new ArrayList<>();
+      for (int block = blocks.nextSetBit(0); block >= 0;) {
+        final int endBlock = blocks.nextClearBit(block);
+        list.add(block * ZoneMap.BLOCK_SIZE);
+        list.add(Math.min(endBlock * ZoneMap.BLOCK_SIZE, size));
+        block = blocks.nextSetBit(endBlock);
+      }
+      return Ints.toArray(list);
+    }
+
+    /** Returns the intersection of two lists of ranges of row numbers; see
+     * {@link #arrayEnumerator(int[])}. Null means all rows. */
+    static int[] intersect(int[] bounds0, int[] bounds1) {
+      if (bounds0 == null) {
+        return bounds1;
+      }
+      if (bounds1 == null) {
+        return bounds0;
+      }
+      final List<Integer> list = new ArrayList<>();
+      int i = 0;
+      int j = 0;
+      while (i < bounds0.length && j < bounds1.length) {
+        final int lo = Math.max(bounds0[i], bounds1[j]);
+        final int hi = Math.min(bounds0[i + 1], bounds1[j + 1]);
+        if (lo < hi) {
+          list.add(lo);
+          list.add(hi);
+        }
+        if (bounds0[i + 1] < bounds1[j + 1]) {
+          i += 2;
+        } else {
+          j += 2;
+        }
+      }
+      return Ints.toArray(list);
+    }
+
+    /** Returns the blocks of rows that may contain rows that satisfy all of
+     * a list of conditions, or null if all blocks may. Each block is
+     * {@link ZoneMap#BLOCK_SIZE} rows. */
+    BitSet blocks(List<RexNode> conditions) {
+      if (conditions.isEmpty() || size == 0) {
+        return null;
+      }
+      final int blockCount = (size + ZoneMap.BLOCK_SIZE - 1)
+          / ZoneMap.BLOCK_SIZE;
+      final BitSet blocks = new BitSet(blockCount);
+      blocks.set(0, blockCount);
+      for (int block = 0; block < blockCount; block++) {
+        for (RexNode condition : conditions) {
+          if (!mayMatch(condition, block)) {
+            blocks.clear(block);
+            break;
+          }
+        }
+      }
+      return blocks;
+    }
+
+    /** Returns whether a block may contain rows for which a condition is
+     * true. */
+    private boolean mayMatch(RexNode node, int block) {
+      switch (node.getKind()) {
+      case AND:
+        for (RexNode operand : ((RexCall) node).getOperands()) {
+          if (!mayMatch(operand, block)) {
+            return false;
+          }
+        }
+        return true;
+      case OR:
+        for (RexNode operand : ((RexCall) node).getOperands()) {
+          if (mayMatch(operand, block)) {
+            return true;
+          }
+        }
+        return false;
+      case IS_NULL:
+      case IS_NOT_NULL:
+        final RexNode operand = ((RexCall) node).getOperands().get(0);
+        if (!(operand instanceof RexInputRef)) {
+          return true;
+        }
+        final ZoneMap zoneMap =
+            columns.get(((RexInputRef) operand).getIndex()).zoneMap;
+        if (zoneMap == null) {
+          return true;
+        }
+        final int nullCount = zoneMap.nullCounts[block];
+        return node.getKind() == SqlKind.IS_NULL
+            ? nullCount > 0
+            : nullCount < blockSize(block);
+      case EQUALS:
+      case NOT_EQUALS:
+      case LESS_THAN:
+      case LESS_THAN_OR_EQUAL:
+      case GREATER_THAN:
+      case GREATER_THAN_OR_EQUAL:
+        final List<RexNode> operands = ((RexCall) node).getOperands();
+        if (operands.get(0) instanceof RexInputRef
+            && operands.get(1) instanceof RexLiteral) {
+          return mayMatch(node.getKind(), (RexInputRef) operands.get(0),
+              (RexLiteral) operands.get(1), block);
+        }
+        if (operands.get(1) instanceof RexInputRef
+            && operands.get(0) instanceof RexLiteral) {
+          return mayMatch(node.getKind().reverse(),
+              (RexInputRef) operands.get(1), (RexLiteral) operands.get(0),
+              block);
+        }
+        return true;
+      default:
+        return true;
+      }
+    }
+
+    /** Returns whether a block may contain rows for which
+     * "{@code ref kind literal}" is true. */
+    private boolean mayMatch(SqlKind kind, RexInputRef ref, RexLiteral literal,
+        int block) {
+      final ZoneMap zoneMap = columns.get(ref.getIndex()).zoneMap;
+      final Comparable value = numericValue(literal);
+      if (zoneMap == null || value == null) {
+        return true;
+      }
+      final Comparable min = zoneMap.mins[block];
+      final Comparable max = zoneMap.maxes[block];
+      if (min == null) {
+        // All values are null, so the comparison is never true.
+        return false;
+      }
+      switch (kind) {
+      case EQUALS:
+        return compare(min, value) <= 0 && compare(max, value) >= 0;
+      case NOT_EQUALS:
+        return compare(min, value) != 0 || compare(max, value) != 0;
+      case LESS_THAN:
+        return compare(min, value) < 0;
+      case LESS_THAN_OR_EQUAL:
+        return compare(min, value) <= 0;
+      case GREATER_THAN:
+        return compare(max, value) > 0;
+      case GREATER_THAN_OR_EQUAL:
+        return compare(max, value) >= 0;
+      default:
+        throw new AssertionError(kind);
+      }
+    }
+
+    private int blockSize(int block) {
+      return Math.min(ZoneMap.BLOCK_SIZE, size - block * ZoneMap.BLOCK_SIZE);
+    }
+
+    /** Returns the value of a literal in the form that a column would hold
+     * it, or null if it is not numeric. Dates, times and timestamps are held
+     * as numbers. */
+    static Comparable numericValue(RexLiteral literal) {
+      switch (literal.getTypeName()) {
+      case DATE:
+      case TIME:
+      case TIMESTAMP:
+        return (Comparable) literal.getValue2();
+      default:
+        final Comparable value = literal.getValue();
+        return value instanceof Number ? value : null;
+      }
+    }
+
+    /** Compares two numbers of possibly different types. If either is
+     * floating-point, compares as {@code double}, as does generated code that
+     * compares a {@code DOUBLE} column with a {@code DECIMAL} literal. */
+    static int compare(Comparable v0, Comparable v1) {
+      if (isIntegral(v0) && isIntegral(v1)) {
+        return Long.compare(((Number) v0).longValue(),
+            ((Number) v1).longValue());
+      }
+      if (v0 instanceof Double || v0 instanceof Float
+          || v1 instanceof Double || v1 instanceof Float) {
+        // Not Double.compare: -0.0 and 0.0 are equal, and NaN is treated as
+        // equal to anything, so that it never causes a block to be skipped.
+        final double d0 = ((Number) v0).doubleValue();
+        final double d1 = ((Number) v1).doubleValue();
+        return d0 < d1 ? -1 : d0 > d1 ? 1 : 0;
+      }
+      return toBigDecimal((Number) v0).compareTo(toBigDecimal((Number) v1));
+    }
+
+    private static boolean isIntegral(Object o) {
+      return o instanceof Integer
+          || o instanceof Long
+          || o instanceof Short
+          || o instanceof Byte;
+    }
+
+    private static BigDecimal toBigDecimal(Number number) {
+      if (number instanceof BigDecimal) {
+        return (BigDecimal) number;
+      }
+      if (isIntegral(number)) {
+        return BigDecimal.valueOf(number.longValue());
+      }
+      return new BigDecimal(number.doubleValue());
+    }
+
+    /** Returns an enumerator over batches of rows; see
+     * {@link BatchScannableTable#scanBatches}. */
+    public Enumerator<ColumnBatch> batchEnumerator(Type[] fieldClasses,
+        int batchSize) {
+      return batchEnumerator(fieldClasses, batchSize, null);
+    }
+
+    /** Returns an enumerator over batches of rows; see
+     * {@link BatchScannableTable#scanBatches}. If {@code bounds} is not
+     * null, returns only the rows in those ranges; see
+     * {@link #arrayEnumerator(int[])}. */
+    public Enumerator<ColumnBatch> batchEnumerator(Type[] fieldClasses,
+        int batchSize, int[] bounds) {
+      return new BatchEnumerator(size, columns,
+          ColumnBatch.create(fieldClasses, batchSize), batchSize, bounds);
     }
 
     /** Enumerator over a table with a single column; each element
@@ -863,15 +1665,23 @@ public void close() {
     }
 
     /** Enumerator over a table with more than one column; each element
-     * returned is an array. */
+     * returned is an array. If {@code bounds} is not null, returns only the
+     * rows in those ranges; see {@link #arrayEnumerator(int[])}. */
     private static class ArrayEnumerator implements Enumerator<Object[]> {
       final int rowCount;
       final List<Column> columns;
+      final int[] bounds;
       int i = -1;
+      /** End of the current range. */
+      int end = 0;
+      /** Index in {@link #bounds} of the next range. */
+      int b = 0;
 
-      public ArrayEnumerator(int rowCount, List<Column> columns) {
+      public ArrayEnumerator(int rowCount, List<Column> columns,
+          int[] bounds) {
         this.rowCount = rowCount;
         this.columns = columns;
+        this.bounds = bounds;
       }
 
       public Object[] current() {
@@ -884,11 +1694,116 @@ public Object[] current() {
       }
 
       public boolean moveNext() {
-        return ++i < rowCount;
+        if (bounds == null) {
+          return ++i < rowCount;
+        }
+        if (++i < end) {
+          return true;
+        }
+        if (b >= bounds.length) {
+          return false;
+        }
+        // Skip to the start of the next range.
+        i = bounds[b];
+        end = bounds[b + 1];
+        b += 2;
+        return true;
       }
 
       public void reset() {
         i = -1;
+        end = 0;
+        b = 0;
+      }
+
+      public void close() {
+      }
+    }
+
+    /** Enumerator that returns batches of rows, copying the values of each
+     * column into an array. If {@code bounds} is not null, returns only the
+     * rows in those ranges, and a batch never spans two ranges. */
+    private static class BatchEnumerator implements Enumerator<ColumnBatch> {
+      final int rowCount;
+      final List<Column> columns;
+      final ColumnBatch batch;
+      final int batchSize;
+      final int[] bounds;
+      int offset = 0;
+      /** End of the current range. */
+      int end;
+      /** Index in {@link #bounds} of the next range. */
+      int b = 0;
+
+      public BatchEnumerator(int rowCount, List<Column> columns,
+          ColumnBatch batch, int batchSize, int[] bounds) {
+        this.rowCount = rowCount;
+        this.columns = columns;
+        this.batch = batch;
+        this.batchSize = batchSize;
+        this.bounds = bounds;
+        this.end = bounds == null ? rowCount : 0;
+      }
+
+      public ColumnBatch current() {
+        return batch;
+      }
+
+      public boolean moveNext() {
+        while (offset >= end) {
+          if (bounds == null || b >= bounds.length) {
+            return false;
+          }
+          // Skip to the start of the next range.
+          offset = bounds[b];
+          end = bounds[b + 1];
+          b += 2;
+        }
+        final int n = Math.min(batchSize, end - offset);
+        for (int j = 0; j < batch.columns.length; j++) {
+          copy(columns.get(j), offset, n, batch.columns[j]);
+        }
+        batch.size = n;
+        offset += n;
+        return true;
+      }
+
+      /** Copies {@code count} values of a column, starting at
+       * {@code start}, into a column array. */
+      private static void copy(Column column, int start, int count,
+          Object target) {
+        final Representation representation = column.representation;
+        final Object dataSet = column.dataSet;
+        switch (representation.getType()) {
+        case PRIMITIVE_ARRAY:
+          if (dataSet.getClass() == target.getClass()) {
+            System.arraycopy(dataSet, start, target, 0, count);
+            return;
+          }
+          break;
+        case OBJECT_ARRAY:
+          if (target instanceof Object[]) {
+            System.arraycopy(dataSet, start, target, 0, count);
+            return;
+          }
+          break;
+        case MAPPED_PRIMITIVE_ARRAY:
+          if (((MappedPrimitiveArray) representation)
+              .copy(dataSet, start, count, target)) {
+            return;
+          }
+          break;
+        }
+        for (int i = 0; i < count; i++) {
+          ColumnBatch.set(target, i,
+              representation.getObject(dataSet, start + i));
+        }
+      }
+
+      public void reset() {
+        offset = 0;
+        end = bounds == null ? rowCount : 0;
+        b = 0;
       }
 
       public void close() {
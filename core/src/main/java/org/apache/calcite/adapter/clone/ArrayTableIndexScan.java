@@ -0,0 +1,360 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.adapter.clone;
+
+import org.apache.calcite.DataContext;
+import org.apache.calcite.adapter.enumerable.EnumerableBatchRel;
+import org.apache.calcite.adapter.enumerable.EnumerableConvention;
+import org.apache.calcite.adapter.enumerable.EnumerableRelImplementor;
+import org.apache.calcite.adapter.enumerable.JavaRowFormat;
+import org.apache.calcite.adapter.enumerable.PhysType;
+import org.apache.calcite.adapter.enumerable.PhysTypeImpl;
+import org.apache.calcite.linq4j.Enumerable;
+import org.apache.calcite.linq4j.tree.BlockBuilder;
+import org.apache.calcite.linq4j.tree.Expression;
+import org.apache.calcite.linq4j.tree.Expressions;
+import org.apache.calcite.plan.RelOptCluster;
+import org.apache.calcite.plan.RelOptCost;
+import org.apache.calcite.plan.RelOptPlanner;
+import org.apache.calcite.plan.RelOptTable;
+import org.apache.calcite.plan.RelOptUtil;
+import org.apache.calcite.plan.RelTraitSet;
+import org.apache.calcite.rel.RelCollation;
+import org.apache.calcite.rel.RelCollationTraitDef;
+import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.rel.RelWriter;
+import org.apache.calcite.rel.core.TableScan;
+import org.apache.calcite.rel.metadata.RelMetadataQuery;
+import org.apache.calcite.rex.RexCall;
+import org.apache.calcite.rex.RexInputRef;
+import org.apache.calcite.rex.RexLiteral;
+import org.apache.calcite.rex.RexNode;
+import org.apache.calcite.rex.RexUtil;
+import org.apache.calcite.runtime.Bindable;
+import org.apache.calcite.runtime.ColumnBatch;
+import org.apache.calcite.sql.SqlKind;
+import org.apache.calcite.util.BuiltInMethod;
+import org.apache.calcite.util.ImmutableBitSet;
+import org.apache.calcite.util.Pair;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Supplier;
+import com.google.common.collect.ImmutableList;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Scan of a clone table that reads only the rows whose value of a sorted
+ * field lies in a list of ranges, using binary search.
+ *
+ * <p>The ranges are deduced from {@code =}, {@code IN}, {@code BETWEEN} and
+ * comparison conditions on the sorted field; see {@link #ranges}. All of the
+ * conditions are also used to skip blocks of rows using zone maps; see
+ * {@link ArrayTable#lookup}. The scan may return rows that do not satisfy
+ * the conditions, so {@link ArrayTableIndexScanRule} leaves a filter on top
+ * of it.
+ *
+ * <p>If {@link #key} is -1, the scan has no sorted field, and only skips
+ * blocks of rows; see {@link ArrayTable#scan(DataContext, List)}.
+ *
+ * <p>The scan can also return its rows in batches of columns, so that an
+ * {@link org.apache.calcite.adapter.enumerable.EnumerableCalc} on top of it
+ * runs in batch mode; see {@link #implementBatches}.
+ */
+public class ArrayTableIndexScan extends TableScan
+    implements EnumerableBatchRel {
+  /** Ordinal of the sorted field, or -1 to only skip blocks. */
+  public final int key;
+  /** Conditions; each is a conjunction of the filter. */
+  public final ImmutableList<RexNode> filters;
+  /** Closed ranges of values of the sorted field. */
+  final ImmutableList<Pair<Comparable, Comparable>> ranges;
+  /** Conditions that constrain the sorted field, and were used to deduce
+   * {@link #ranges}. */
+  final ImmutableList<RexNode> keyFilters;
+  /** Number of rows in the blocks that the zone maps say may match
+   * {@link #filters}, if {@link #key} is -1; otherwise -1. Computed once,
+   * when the scan is created. */
+  final int blockRowCount;
+
+  /** Creates an ArrayTableIndexScan.
+   *
+   * <p>Use {@link #create} unless you know what you are doing. */
+  ArrayTableIndexScan(RelOptCluster cluster, RelTraitSet traitSet,
+      RelOptTable table, int key, ImmutableList<RexNode> filters,
+      int blockRowCount) {
+    super(cluster, traitSet, table);
+    this.key = key;
+    this.filters = Preconditions.checkNotNull(filters);
+    this.blockRowCount = blockRowCount;
+    Preconditions.checkArgument((key < 0) == (blockRowCount >= 0));
+    final List<RexNode> keyFilters = new ArrayList<>();
+    final List<Pair<Comparable, Comparable>> ranges = key < 0
+        ? ImmutableList.<Pair<Comparable, Comparable>>of()
+        : ranges(key, filters, keyFilters);
+    Preconditions.checkArgument(ranges != null);
+    this.ranges = ImmutableList.copyOf(ranges);
+    this.keyFilters = ImmutableList.copyOf(keyFilters);
+    assert getConvention() instanceof EnumerableConvention;
+  }
+
+  /** Creates an ArrayTableIndexScan. */
+  public static ArrayTableIndexScan create(RelOptCluster cluster,
+      final RelOptTable relOptTable, int key, List<RexNode> filters) {
+    final RelTraitSet traitSet =
+        cluster.traitSetOf(EnumerableConvention.INSTANCE)
+            .replaceIfs(RelCollationTraitDef.INSTANCE,
+                new Supplier<List<RelCollation>>() {
+                  public List<RelCollation> get() {
+                    return relOptTable.getCollationList();
+                  }
+                });
+    final int blockRowCount = key < 0
+        ? relOptTable.unwrap(ArrayTable.class).blockRowCount(filters)
+        : -1;
+    return new ArrayTableIndexScan(cluster, traitSet, relOptTable, key,
+        ImmutableList.copyOf(filters), blockRowCount);
+  }
+
+  @Override public RelNode copy(RelTraitSet traitSet, List<RelNode> inputs) {
+    assert inputs.isEmpty();
+    return new ArrayTableIndexScan(getCluster(), traitSet, table, key,
+        filters, blockRowCount);
+  }
+
+  @Override public RelWriter explainTerms(RelWriter pw) {
+    return super.explainTerms(pw)
+        .itemIf("key", key, key >= 0)
+        .item("filters", filters);
+  }
+
+  /** {@inheritDoc}
+   *
+   * <p>Estimates the number of rows in the ranges using the selectivity of
+   * the conditions on the sorted field. If the field is unique and the
+   * ranges are single values, there is at most one row per value.
+   *
+   * <p>If there is no sorted field, the rows are those in the blocks that
+   * the table's zone maps say may match the conditions. */
+  @Override public double getRows() {
+    if (key < 0) {
+      return blockRowCount;
+    }
+    final double rowCount = table.getRowCount();
+    final Double selectivity =
+        RelMetadataQuery.getSelectivity(this,
+            RexUtil.composeConjunction(getCluster().getRexBuilder(),
+                keyFilters, false));
+    double rows = selectivity == null ? rowCount : rowCount * selectivity;
+    if (isPoints() && table.isKey(ImmutableBitSet.of(key))) {
+      rows = Math.min(rows, ranges.size());
+    }
+    return rows;
+  }
+
+  /** {@inheritDoc}
+   *
+   * <p>The cost is proportional to the number of rows in the ranges, plus a
+   * binary search for each end of each range. */
+  @Override public RelOptCost computeSelfCost(RelOptPlanner planner) {
+    final double rows = getRows();
+    final double searches =
+        ranges.size() * 2 * Math.log(table.getRowCount() + 1) / Math.log(2);
+    return planner.getCostFactory().makeCost(rows, rows + searches + 1, 0);
+  }
+
+  /** Returns whether the ranges are single values; see {@link #ranges}. */
+  private boolean isPoints() {
+    return key >= 0 && points(key, keyFilters.get(0)) != null;
+  }
+
+  public Result implement(EnumerableRelImplementor implementor, Prefer pref) {
+    final PhysType physType =
+        PhysTypeImpl.of(implementor.getTypeFactory(), getRowType(),
+            JavaRowFormat.ARRAY);
+    final BlockBuilder builder = new BlockBuilder();
+    final Expression enumerable_ = builder.append("enumerable",
+        Expressions.convert_(
+            Expressions.call(
+                implementor.stash(toBindable(), Bindable.class),
+                BuiltInMethod.BINDABLE_BIND.method,
+                implementor.getRootExpression()),
+            Enumerable.class));
+    builder.add(
+        getRowType().getFieldCount() == 1
+            ? Expressions.call(BuiltInMethod.SLICE0.method, enumerable_)
+            : enumerable_);
+    return implementor.result(physType, builder.toBlock());
+  }
+
+  public Expression implementBatches(EnumerableRelImplementor implementor,
+      int batchSize) {
+    return Expressions.convert_(
+        Expressions.call(
+            implementor.stash(toBatchBindable(batchSize), Bindable.class),
+            BuiltInMethod.BINDABLE_BIND.method,
+            implementor.getRootExpression()),
+        Enumerable.class);
+  }
+
+  /** Returns an object that reads the rows at run time. */
+  private Bindable<Object[]> toBindable() {
+    final ArrayTable arrayTable = table.unwrap(ArrayTable.class);
+    final int key = this.key;
+    final List<Pair<Comparable, Comparable>> ranges = this.ranges;
+    final List<RexNode> filters = this.filters;
+    return new Bindable<Object[]>() {
+      public Enumerable<Object[]> bind(DataContext dataContext) {
+        if (key < 0) {
+          return arrayTable.scan(dataContext, filters);
+        }
+        return arrayTable.lookup(key, ranges, filters);
+      }
+    };
+  }
+
+  /** Returns an object that reads the rows at run time in batches of at
+   * most {@code batchSize} rows. */
+  private Bindable<ColumnBatch> toBatchBindable(final int batchSize) {
+    final ArrayTable arrayTable = table.unwrap(ArrayTable.class);
+    final int key = this.key;
+    final List<Pair<Comparable, Comparable>> ranges = this.ranges;
+    final List<RexNode> filters = this.filters;
+    return new Bindable<ColumnBatch>() {
+      public Enumerable<ColumnBatch> bind(DataContext dataContext) {
+        return arrayTable.scanBatches(dataContext, batchSize, key, ranges,
+            filters);
+      }
+    };
+  }
+
+  /** Deduces the ranges of values that a field may have in rows that
+   * satisfy a list of conditions, or returns null if the conditions do not
+   * constrain the field.
+   *
+   * <p>If there is a condition of the form "{@code field = literal}", or a
+   * disjunction of such conditions (which is how the SQL-to-rel converter
+   * expands "{@code field IN (literal, ...)}"), the ranges are single values.
+   * Otherwise the range is the intersection of comparisons such as
+   * "{@code field >= literal}" (which is how it expands
+   * "{@code field BETWEEN literal AND literal}"); strict comparisons give
+   * the same range as non-strict ones. Literals must be numeric, or dates or
+   * times.
+   *
+   * @param key Ordinal of field
+   * @param filters Conditions
+   * @param keyFilters List to which to add the conditions used
+   * @return Closed ranges; a null bound means that the range is unbounded
+   */
+  static List<Pair<Comparable, Comparable>> ranges(int key,
+      List<RexNode> filters, List<RexNode> keyFilters) {
+    for (RexNode filter : filters) {
+      final List<Comparable> points = points(key, filter);
+      if (points != null) {
+        keyFilters.add(filter);
+        final List<Pair<Comparable, Comparable>> ranges = new ArrayList<>();
+        for (Comparable point : points) {
+          ranges.add(Pair.of(point, point));
+        }
+        return ranges;
+      }
+    }
+    Comparable lower = null;
+    Comparable upper = null;
+    boolean constrained = false;
+    for (RexNode filter : filters) {
+      final Pair<SqlKind, Comparable> comparison = comparison(key, filter);
+      if (comparison == null) {
+        continue;
+      }
+      final Comparable value = comparison.right;
+      switch (comparison.left) {
+      case GREATER_THAN:
+      case GREATER_THAN_OR_EQUAL:
+        if (lower == null || ArrayTable.Content.compare(value, lower) > 0) {
+          lower = value;
+        }
+        break;
+      case LESS_THAN:
+      case LESS_THAN_OR_EQUAL:
+        if (upper == null || ArrayTable.Content.compare(value, upper) < 0) {
+          upper = value;
+        }
+        break;
+      default:
+        continue;
+      }
+      keyFilters.add(filter);
+      constrained = true;
+    }
+    if (!constrained) {
+      return null;
+    }
+    return ImmutableList.of(Pair.of(lower, upper));
+  }
+
+  /** Returns the values if a condition is "{@code field = literal}" or a
+   * disjunction of such conditions, otherwise null. */
+  private static List<Comparable> points(int key, RexNode filter) {
+    final List<Comparable> points = new ArrayList<>();
+    for (RexNode e : RelOptUtil.disjunctions(filter)) {
+      final Pair<SqlKind, Comparable> comparison = comparison(key, e);
+      if (comparison == null || comparison.left != SqlKind.EQUALS) {
+        return null;
+      }
+      points.add(comparison.right);
+    }
+    return points.isEmpty() ? null : points;
+  }
+
+  /** Returns the comparison operator and value if a condition compares a
+   * field with a numeric literal, otherwise null. If the literal is on the
+   * left, reverses the operator. */
+  private static Pair<SqlKind, Comparable> comparison(int key,
+      RexNode filter) {
+    switch (filter.getKind()) {
+    case EQUALS:
+    case LESS_THAN:
+    case LESS_THAN_OR_EQUAL:
+    case GREATER_THAN:
+    case GREATER_THAN_OR_EQUAL:
+      final RexNode op0 = ((RexCall) filter).getOperands().get(0);
+      final RexNode op1 = ((RexCall) filter).getOperands().get(1);
+      if (isField(key, op0) && op1 instanceof RexLiteral) {
+        return value(filter.getKind(), (RexLiteral) op1);
+      }
+      if (isField(key, op1) && op0 instanceof RexLiteral) {
+        return value(filter.getKind().reverse(), (RexLiteral) op0);
+      }
+    }
+    return null;
+  }
+
+  private static boolean isField(int key, RexNode node) {
+    return node instanceof RexInputRef
+        && ((RexInputRef) node).getIndex() == key;
+  }
+
+  private static Pair<SqlKind, Comparable> value(SqlKind kind,
+      RexLiteral literal) {
+    final Comparable value = ArrayTable.Content.numericValue(literal);
+    return value == null ? null : Pair.of(kind, value);
+  }
+}
+
+// End ArrayTableIndexScan.java
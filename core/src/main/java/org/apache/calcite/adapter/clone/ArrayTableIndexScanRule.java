@@ -0,0 +1,97 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.adapter.clone;
+
+import org.apache.calcite.plan.RelOptRule;
+import org.apache.calcite.plan.RelOptRuleCall;
+import org.apache.calcite.plan.RelOptTable;
+import org.apache.calcite.plan.RelOptUtil;
+import org.apache.calcite.rel.RelCollation;
+import org.apache.calcite.rel.RelFieldCollation;
+import org.apache.calcite.rel.core.Filter;
+import org.apache.calcite.rel.core.TableScan;
+import org.apache.calcite.rex.RexNode;
+
+import com.google.common.base.Predicate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Planner rule that converts a {@link Filter} on a {@link TableScan} of a
+ * clone table to a {@link Filter} on an {@link ArrayTableIndexScan}, if the
+ * filter constrains a field on which the table is sorted, or if the table's
+ * zone maps show that some blocks of rows cannot match the filter.
+ *
+ * <p>The planner chooses between the index scan and a full scan based on
+ * cost; the index scan estimates its row count using
+ * {@link org.apache.calcite.rel.metadata.RelMdSelectivity}.
+ */
+public class ArrayTableIndexScanRule extends RelOptRule {
+  private static final Predicate<TableScan> PREDICATE =
+      new Predicate<TableScan>() {
+        public boolean apply(TableScan scan) {
+          return !(scan instanceof ArrayTableIndexScan)
+              && scan.getTable().unwrap(ArrayTable.class) != null;
+        }
+      };
+
+  public static final ArrayTableIndexScanRule INSTANCE =
+      new ArrayTableIndexScanRule();
+
+  private ArrayTableIndexScanRule() {
+    super(
+        operand(Filter.class,
+            operand(TableScan.class, null, PREDICATE, none())),
+        "ArrayTableIndexScanRule");
+  }
+
+  @Override public void onMatch(RelOptRuleCall call) {
+    final Filter filter = call.rel(0);
+    final TableScan scan = call.rel(1);
+    final RelOptTable table = scan.getTable();
+    final List<RexNode> filters =
+        RelOptUtil.conjunctions(filter.getCondition());
+    for (RelCollation collation : table.getCollationList()) {
+      if (collation.getFieldCollations().isEmpty()) {
+        continue;
+      }
+      final int key = collation.getFieldCollations().get(0).getFieldIndex();
+      final RelFieldCollation fieldCollation =
+          ArrayTable.sortedField(table.getCollationList(), key);
+      if (fieldCollation == null
+          || ArrayTableIndexScan.ranges(key, filters,
+              new ArrayList<RexNode>()) == null) {
+        continue;
+      }
+      final ArrayTableIndexScan indexScan =
+          ArrayTableIndexScan.create(scan.getCluster(), table, key, filters);
+      call.transformTo(
+          filter.copy(filter.getTraitSet(), indexScan,
+              filter.getCondition()));
+    }
+    final ArrayTableIndexScan blockScan =
+        ArrayTableIndexScan.create(scan.getCluster(), table, -1, filters);
+    if (blockScan.blockRowCount < table.getRowCount()) {
+      call.transformTo(
+          filter.copy(filter.getTraitSet(), blockScan,
+              filter.getCondition()));
+    }
+  }
+}
+
+// End ArrayTableIndexScanRule.java
@@ -24,7 +24,7 @@
 import org.apache.calcite.linq4j.QueryProvider;
 import org.apache.calcite.linq4j.Queryable;
 import org.apache.calcite.rel.RelCollation;
-import org.apache.calcite.rel.RelCollations;
+import org.apache.calcite.rel.type.RelDataType;
 import org.apache.calcite.rel.type.RelProtoDataType;
 import org.apache.calcite.schema.QueryableTable;
 import org.apache.calcite.schema.Schema;
@@ -38,22 +38,44 @@
 import com.google.common.base.Suppliers;
 import com.google.common.collect.ImmutableList;
 
+import java.io.File;
 import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
 import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 
 import static org.apache.calcite.schema.impl.MaterializedViewTable.MATERIALIZATION_CONNECTION;
 
 /**
  * Schema that contains in-memory copies of tables from a JDBC schema.
+ *
+ * <p>If a directory is specified, each table's columns are stored in files
+ * in that directory and mapped into memory, rather than held on the Java
+ * heap. Tables are copied from the source the first time they are used, and
+ * files that already exist are used as they are, so the contents survive a
+ * restart. A table that has a column whose values cannot be stored in files,
+ * such as a column of type {@code ANY}, is held on the heap.
  */
 public class CloneSchema extends AbstractSchema {
   // TODO: implement 'driver' property
   // TODO: implement 'source' property
   // TODO: test Factory
 
+  /** Maximum length of the base name of a table's files; leaves room for
+   * suffixes such as ".data.tmp" within the usual limit of 255. */
+  private static final int MAX_FILE_NAME_LENGTH = 200;
+
   private final SchemaPlus sourceSchema;
+  private final File directory;
+  private final Supplier<Map<String, Table>> tableMap =
+      Suppliers.memoize(
+          new Supplier<Map<String, Table>>() {
+            public Map<String, Table> get() {
+              return createTableMap();
+            }
+          });
 
   /**
    * Creates a CloneSchema.
@@ -61,11 +83,48 @@ public class CloneSchema extends AbstractSchema {
    * @param sourceSchema JDBC data source
    */
   public CloneSchema(SchemaPlus sourceSchema) {
+    this(sourceSchema, null);
+  }
+
+  /**
+   * Creates a CloneSchema whose tables are stored in files.
+   *
+   * @param sourceSchema JDBC data source
+   * @param directory Directory to hold the tables' files, or null to hold
+   *                  tables on the heap
+   */
+  public CloneSchema(SchemaPlus sourceSchema, File directory) {
     super();
     this.sourceSchema = sourceSchema;
+    this.directory = directory;
   }
 
   @Override protected Map<String, Table> getTableMap() {
+    return tableMap.get();
+  }
+
+  /** Appends rows to a table.
+   *
+   * <p>Use this to refresh a table incrementally. For example, if rows are
+   * only ever inserted into the source table, and each new row has a higher
+   * value of an "id" column, read the rows whose id is greater than the
+   * greatest id in the copy. The rows must be of the same type as the rows of
+   * the source table. Existing rows are not read from the source again, but
+   * all rows are re-encoded. The table keeps a declared collation only if
+   * the rows, old and new, still satisfy it.
+   *
+   * @param name Table name
+   * @param rows Rows to append
+   */
+  public void append(String name, Enumerable<?> rows) {
+    final Table table = getTableMap().get(name);
+    if (!(table instanceof ArrayTable)) {
+      throw new IllegalArgumentException("unknown table " + name);
+    }
+    ((ArrayTable) table).append(rows);
+  }
+
+  private Map<String, Table> createTableMap() {
     final Map<String, Table> map = new LinkedHashMap<>();
     for (String name : sourceSchema.getTableNames()) {
       final Table table = sourceSchema.getTable(name);
@@ -85,7 +144,37 @@ private Table createCloneTable(QueryProvider queryProvider,
     final JavaTypeFactory typeFactory =
         ((CalciteConnection) queryProvider).getTypeFactory();
     return createCloneTable(typeFactory, Schemas.proto(sourceTable),
-        ImmutableList.<RelCollation>of(), null, queryable);
+        ImmutableList.<RelCollation>of(), null, queryable,
+        directory == null ? null : new File(directory, fileName(name)));
+  }
+
+  /** Returns the base name of the files that hold a table.
+   *
+   * <p>Letters, digits, '_' and '-' are kept, and other characters are
+   * escaped as '%' and the hex digits of their UTF-8 bytes, so that a table
+   * name such as "../x" cannot refer to a file outside the directory, and
+   * distinct table names have distinct files. A name that would be too long
+   * for a file system is truncated and followed by a hash of the full
+   * name. */
+  static String fileName(String name) {
+    final StringBuilder buf = new StringBuilder();
+    for (byte b : name.getBytes(StandardCharsets.UTF_8)) {
+      final char c = (char) (b & 0xFF);
+      if (c >= 'a' && c <= 'z'
+          || c >= 'A' && c <= 'Z'
+          || c >= '0' && c <= '9'
+          || c == '_'
+          || c == '-') {
+        buf.append(c);
+      } else {
+        buf.append(String.format(Locale.ROOT, "%%%02X", (int) c));
+      }
+    }
+    if (buf.length() > MAX_FILE_NAME_LENGTH) {
+      buf.setLength(MAX_FILE_NAME_LENGTH - 9);
+      buf.append(String.format(Locale.ROOT, "-%08x", name.hashCode()));
+    }
+    return buf.toString();
   }
 
   @Deprecated // to be removed before 2.0
@@ -100,6 +189,35 @@ public static <T> Table createCloneTable(final JavaTypeFactory typeFactory,
   public static <T> Table createCloneTable(final JavaTypeFactory typeFactory,
       final RelProtoDataType protoRowType, final List<RelCollation> collations,
       final List<ColumnMetaData.Rep> repList, final Enumerable<T> source) {
+    return createCloneTable(typeFactory, protoRowType, collations, repList,
+        source, null);
+  }
+
+  /** Creates a table that holds a copy of the data in an enumerable.
+   *
+   * <p>If {@code file} is not null, the table is stored in files with that
+   * base name. If the files exist and were written for the same row type, the
+   * table reads them and does not read {@code source}.
+   *
+   * @param typeFactory Type factory
+   * @param protoRowType Row type
+   * @param collations Collations of the source data, if known
+   * @param repList Physical row types, or null if not known
+   * @param source Source data
+   * @param file Base name of files to hold the table, or null to hold the
+   *             table on the heap; ignored if a column's values cannot be
+   *             stored in files
+   */
+  public static <T> Table createCloneTable(final JavaTypeFactory typeFactory,
+      final RelProtoDataType protoRowType, final List<RelCollation> collations,
+      final List<ColumnMetaData.Rep> repList, final Enumerable<T> source,
+      File file) {
+    if (file != null
+        && !MappedColumnStore.canStore(typeFactory,
+            protoRowType.apply(typeFactory))) {
+      file = null;
+    }
+    final File storeFile = file;
     final Type elementType;
     if (source instanceof QueryableTable) {
       elementType = ((QueryableTable) source).getElementType();
@@ -118,18 +236,50 @@ public static <T> Table createCloneTable(final JavaTypeFactory typeFactory,
         Suppliers.memoize(
             new Supplier<ArrayTable.Content>() {
               public ArrayTable.Content get() {
-                final ColumnLoader loader =
-                    new ColumnLoader<>(typeFactory, source, protoRowType,
-                        repList);
-                final List<RelCollation> collation2 =
-                    collations.isEmpty()
-                        && loader.sortField >= 0
-                        ? RelCollations.createSingleton(loader.sortField)
-                        : collations;
-                return new ArrayTable.Content(loader.representationValues,
-                    loader.size(), collation2);
+                if (storeFile != null) {
+                  final ArrayTable.Content content =
+                      MappedColumnStore.load(storeFile,
+                          protoRowType.apply(typeFactory));
+                  if (content != null) {
+                    return content;
+                  }
+                }
+                return load(typeFactory, protoRowType, collations, repList,
+                    null, source, storeFile);
               }
-            }));
+            }),
+        new ArrayTable.Appender() {
+          public ArrayTable.Content append(ArrayTable.Content content,
+              Enumerable<?> rows) {
+            return load(typeFactory, protoRowType, collations, repList,
+                content, rows, storeFile);
+          }
+        });
+  }
+
+  /** Loads rows into a table, appending them to its existing contents if
+   * any, and writes them to files if {@code file} is not null. */
+  private static ArrayTable.Content load(JavaTypeFactory typeFactory,
+      RelProtoDataType protoRowType, List<RelCollation> collations,
+      List<ColumnMetaData.Rep> repList, ArrayTable.Content content,
+      Enumerable<?> source, File file) {
+    if (file == null) {
+      final ColumnLoader<?> loader =
+          new ColumnLoader<>(typeFactory, content, source, protoRowType,
+              collations, repList, null);
+      return new ArrayTable.Content(loader.representationValues,
+          loader.size(), loader.collations());
+    }
+    // Each column goes to the files as soon as it is loaded; then we map the
+    // files.
+    final RelDataType rowType = protoRowType.apply(typeFactory);
+    try (MappedColumnStore.Writer writer = new MappedColumnStore.Writer(file)) {
+      final ColumnLoader<?> loader =
+          new ColumnLoader<>(typeFactory, content, source, protoRowType,
+              collations, repList, writer);
+      writer.commit(rowType, loader.size(), loader.collations());
+    }
+    return MappedColumnStore.load(file, rowType);
   }
 
   /** Schema factory that creates a
@@ -149,12 +299,16 @@ public ArrayTable.Content get() {
    *         jdbcDriver: 'com.mysql.jdbc.Driver',
    *         jdbcUrl: 'jdbc:mysql://localhost/foodmart',
    *         jdbcUser: 'foodmart',
-   *         jdbcPassword: 'foodmart'
+   *         jdbcPassword: 'foodmart',
+   *         directory: '/var/cache/foodmart'
    *       }
    *     }
    *   ]
    * }
    * }</pre>
+   *
+   * <p>The optional {@code directory} operand causes tables to be stored in
+   * memory-mapped files in that directory.
    */
   public static class Factory implements SchemaFactory {
     public Schema create(
@@ -164,7 +318,9 @@ public Schema create(
       SchemaPlus schema =
           parentSchema.add(name,
               JdbcSchema.create(parentSchema, name + "$source", operand));
-      return new CloneSchema(schema);
+      final String directory = (String) operand.get("directory");
+      return new CloneSchema(schema,
+          directory == null ? null : new File(directory));
     }
   }
 }
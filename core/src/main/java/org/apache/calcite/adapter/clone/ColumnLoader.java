@@ -20,26 +20,39 @@
 import org.apache.calcite.avatica.ColumnMetaData;
 import org.apache.calcite.avatica.util.DateTimeUtils;
 import org.apache.calcite.linq4j.Enumerable;
-import org.apache.calcite.linq4j.Ord;
+import org.apache.calcite.linq4j.Enumerator;
 import org.apache.calcite.linq4j.tree.Primitive;
+import org.apache.calcite.rel.RelCollation;
+import org.apache.calcite.rel.RelCollations;
+import org.apache.calcite.rel.RelFieldCollation;
 import org.apache.calcite.rel.type.RelDataType;
 import org.apache.calcite.rel.type.RelDataTypeField;
 import org.apache.calcite.rel.type.RelProtoDataType;
+import org.apache.calcite.runtime.SharedExecutor;
 
 import com.google.common.base.Function;
-import com.google.common.collect.Lists;
-
+import com.google.common.collect.ImmutableList;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
 import java.lang.reflect.Type;
 import java.sql.Date;
 import java.sql.Time;
 import java.sql.Timestamp;
-import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 /**
  * Column loader.
@@ -78,10 +91,21 @@ public Integer apply(Date a0) {
         }
       };
 
-  public final List<T> list = new ArrayList<>();
+  /** Number of rows that are read from the source before their values are
+   * added to the columns. */
+  static final int CHUNK_SIZE = 4096;
+
+  /** Maximum number of tasks that load the columns of a table: the number of
+   * processors. The tasks run in the {@link SharedExecutor}, which limits
+   * the number of threads that all loaders and queries use. */
+  static final int THREADS = Runtime.getRuntime().availableProcessors();
+
   public final List<ArrayTable.Column> representationValues = new ArrayList<>();
   private final JavaTypeFactory typeFactory;
+  private final MappedColumnStore.Writer writer;
   public final int sortField;
+  private int size;
+  private List<RelCollation> collations;
 
   /** Creates a column loader, and performs the load.
    *
@@ -93,16 +117,59 @@ public Integer apply(Date a0) {
       Enumerable<T> sourceTable,
       RelProtoDataType protoRowType,
       List<ColumnMetaData.Rep> repList) {
+    this(typeFactory, null, sourceTable, protoRowType, repList);
+  }
+
+  /** Creates a column loader that appends the rows of a source to the
+   * existing contents of a table, and performs the load. */
+  ColumnLoader(JavaTypeFactory typeFactory,
+      ArrayTable.Content content,
+      Enumerable<T> sourceTable,
+      RelProtoDataType protoRowType,
+      List<ColumnMetaData.Rep> repList) {
+    this(typeFactory, content, sourceTable, protoRowType,
+        ImmutableList.<RelCollation>of(), repList, null);
+  }
+
+  /** Creates a column loader that appends the rows of a source to the
+   * existing contents of a table, optionally writing the columns to files,
+   * and performs the load.
+   *
+   * <p>The existing values are not read from the source again, but all
+   * columns are re-encoded, because the new values may need a different
+   * representation, and re-sorted.
+   *
+   * <p>If {@code writer} is not null, the values of each column are written
+   * to a temporary file as they are read, and the columns are then read
+   * back, frozen and written one at a time, so that the loader never holds
+   * more than one column on the heap.
+   *
+   * @param typeFactory Type factory
+   * @param content Existing contents of the table, or null
+   * @param sourceTable Source data
+   * @param protoRowType Logical row type
+   * @param collations Collations of the existing and source rows, if known
+   * @param repList Physical row types, or null if not known
+   * @param writer Writer to which to send each column as soon as it is
+   *               frozen, instead of adding it to
+   *               {@link #representationValues}, or null */
+  ColumnLoader(JavaTypeFactory typeFactory,
+      ArrayTable.Content content,
+      Enumerable<T> sourceTable,
+      RelProtoDataType protoRowType,
+      List<RelCollation> collations,
+      List<ColumnMetaData.Rep> repList,
+      MappedColumnStore.Writer writer) {
     this.typeFactory = typeFactory;
+    this.writer = writer;
     final RelDataType rowType = protoRowType.apply(typeFactory);
     if (repList == null) {
       repList =
           Collections.nCopies(rowType.getFieldCount(),
               ColumnMetaData.Rep.OBJECT);
     }
-    sourceTable.into(list);
     final int[] sorts = {-1};
-    load(rowType, repList, sorts);
+    load(rowType, repList, content, sourceTable, collations, sorts);
     this.sortField = sorts[0];
   }
 
@@ -169,120 +236,330 @@ static boolean isIdentity(int[] sources) {
   }
 
   public int size() {
-    return list.size();
+    return size;
+  }
+
+  /** Returns the collations of the loaded rows: those of the given
+   * collations that the rows still satisfy, or, if there are none, the sort
+   * key, if any. */
+  public List<RelCollation> collations() {
+    return collations;
   }
 
+  /** Loads the columns.
+   *
+   * <p>Rows are read from the source in chunks, and the values of each
+   * column are added to its {@link ValueSet}; while a chunk is being added,
+   * the next chunk is read. Then the first unique column, if any, is chosen
+   * as the sort key, and each column chooses its representation and freezes
+   * its values. Columns are divided among up to {@link #THREADS} tasks. */
   private void load(final RelDataType elementType,
-      List<ColumnMetaData.Rep> repList, int[] sort) {
-    final List<Type> types =
-        new AbstractList<Type>() {
-          final List<RelDataTypeField> fields =
-              elementType.getFieldList();
-          public Type get(int index) {
-            return typeFactory.getJavaClass(
-                fields.get(index).getType());
-          }
+      List<ColumnMetaData.Rep> repList, final ArrayTable.Content content,
+      Enumerable<T> sourceTable, List<RelCollation> collations, int[] sort) {
+    final List<RelDataTypeField> fields = elementType.getFieldList();
+    final ValueSet[] valueSets = new ValueSet[fields.size()];
+    final List<Function<Object, Object>> converters = new ArrayList<>();
+    for (int i = 0; i < valueSets.length; i++) {
+      final Type type = typeFactory.getJavaClass(fields.get(i).getType());
+      final Class clazz = type instanceof Class
+          ? (Class) type
+          : Object.class;
+      valueSets[i] = writer == null
+          ? new ValueSet(clazz)
+          : new SpilledValueSet(clazz, writer.tempFile(".col" + i));
+      converters.add(converter(repList.get(i), fields.get(i).getType()));
+    }
+    final ValueSet[] allValueSets = valueSets.clone();
+    try {
+      load(valueSets, converters, content, sourceTable, collations, sort);
+    } finally {
+      for (ValueSet valueSet : allValueSets) {
+        if (valueSet instanceof SpilledValueSet) {
+          ((SpilledValueSet) valueSet).discard();
+        }
+      }
+    }
+  }
 
-          public int size() {
-            return fields.size();
-          }
-        };
-    int[] sources = null;
-    for (final Ord<Type> pair : Ord.zip(types)) {
-      @SuppressWarnings("unchecked")
-      final List<?> sliceList =
-          types.size() == 1
-              ? list
-              : new AbstractList<Object>() {
-                final int slice = pair.i;
-
-                public Object get(int index) {
-                  return ((Object[]) list.get(index))[slice];
+  private void load(final ValueSet[] valueSets,
+      List<Function<Object, Object>> converters,
+      final ArrayTable.Content content, Enumerable<T> sourceTable,
+      List<RelCollation> collations, int[] sort) {
+    final int columnCount = valueSets.length;
+
+    // Add the existing values, which have already been converted.
+    if (content != null) {
+      await(
+          submit(columnCount,
+              new ColumnAction() {
+                public void apply(int column) {
+                  final ArrayTable.Column c = content.columns.get(column);
+                  for (int i = 0; i < content.size; i++) {
+                    valueSets[column].add(
+                        (Comparable) c.representation.getObject(c.dataSet,
+                            i));
+                  }
                 }
+              }));
+      size = content.size;
+    }
 
-                public int size() {
-                  return list.size();
-                }
-              };
-      final List<?> list2 =
-          wrap(
-              repList.get(pair.i),
-              sliceList,
-              elementType.getFieldList().get(pair.i).getType());
-      final Class clazz = pair.e instanceof Class
-          ? (Class) pair.e
-          : Object.class;
-      ValueSet valueSet = new ValueSet(clazz);
-      for (Object o : list2) {
-        valueSet.add((Comparable) o);
+    // Read chunks of rows, and add each chunk's values while reading the
+    // next.
+    Object[] chunk = new Object[CHUNK_SIZE];
+    Object[] spare = new Object[CHUNK_SIZE];
+    List<Future<?>> futures = Collections.emptyList();
+    int n = 0;
+    try (Enumerator<T> enumerator = sourceTable.enumerator()) {
+      while (enumerator.moveNext()) {
+        chunk[n++] = enumerator.current();
+        if (n == CHUNK_SIZE) {
+          await(futures);
+          futures = add(valueSets, converters, chunk, n);
+          final Object[] next = spare;
+          spare = chunk;
+          chunk = next;
+          size += n;
+          n = 0;
+        }
       }
-      if (sort != null
-          && sort[0] < 0
-          && valueSet.map.keySet().size() == list.size()) {
-        // We have discovered a the first unique key in the table.
-        sort[0] = pair.i;
-        final Comparable[] values =
-            valueSet.values.toArray(new Comparable[list.size()]);
-        final Kev[] kevs = new Kev[list.size()];
-        for (int i = 0; i < kevs.length; i++) {
-          kevs[i] = new Kev(i, values[i]);
+    }
+    await(futures);
+    await(add(valueSets, converters, chunk, n));
+    size += n;
+
+    int[] sources = null;
+    if (sort != null) {
+      for (int i = 0; i < columnCount; i++) {
+        final ValueSet valueSet = valueSets[i].values();
+        if (valueSet.map.keySet().size() == size) {
+          // We have discovered the first unique key in the table.
+          sort[0] = i;
+          sources = sortSources(valueSet);
+          valueSets[i] = valueSet;
+          break;
         }
-        Arrays.sort(kevs);
-        sources = new int[list.size()];
-        for (int i = 0; i < sources.length; i++) {
-          sources[i] = kevs[i].source;
+      }
+    }
+
+    // Appended rows, or sorting on a unique key, may have broken the
+    // declared collations.
+    if (content != null || sources != null) {
+      final List<RelCollation> list = new ArrayList<>();
+      for (RelCollation collation : collations) {
+        if (isSorted(collation, valueSets, sources)) {
+          list.add(collation);
         }
+      }
+      collations = list;
+    }
+    this.collations = collations.isEmpty() && sort != null && sort[0] >= 0
+        ? RelCollations.createSingleton(sort[0])
+        : ImmutableList.copyOf(collations);
+
+    if (writer != null) {
+      // One column at a time, so that only one is on the heap.
+      for (int i = 0; i < columnCount; i++) {
+        final ArrayTable.Column column =
+            valueSets[i].values().freeze(i, sources);
+        valueSets[i] = null; // allow gc
+        writer.add(column);
+      }
+      return;
+    }
+
+    final ArrayTable.Column[] columns = new ArrayTable.Column[columnCount];
+    final int[] finalSources = sources;
+    await(
+        submit(columnCount,
+            new ColumnAction() {
+              public void apply(int column) {
+                columns[column] =
+                    valueSets[column].freeze(column, finalSources);
+                valueSets[column] = null; // allow gc
+              }
+            }));
+    representationValues.addAll(Arrays.asList(columns));
+  }
 
-        if (isIdentity(sources)) {
-          // Table was already sorted. Clear the permutation.
-          // We've already set sort[0], so we won't check for another
-          // sorted column.
-          sources = null;
-        } else {
-          // Re-sort all previous columns.
-          for (int i = 0; i < pair.i; i++) {
-            representationValues.set(
-                i, representationValues.get(i).permute(sources));
+  /** Returns whether rows, in the order given by {@code sources}, are sorted
+   * on a collation. */
+  private boolean isSorted(RelCollation collation, ValueSet[] valueSets,
+      int[] sources) {
+    final List<RelFieldCollation> fieldCollations =
+        collation.getFieldCollations();
+    final List<List<Comparable>> columns = new ArrayList<>();
+    for (RelFieldCollation fieldCollation : fieldCollations) {
+      columns.add(valueSets[fieldCollation.getFieldIndex()].values().values);
+    }
+    for (int i = 1; i < size; i++) {
+      final int previous = sources == null ? i - 1 : sources[i - 1];
+      final int current = sources == null ? i : sources[i];
+      int c = 0;
+      for (int j = 0; j < columns.size() && c == 0; j++) {
+        c = compare(fieldCollations.get(j), columns.get(j).get(previous),
+            columns.get(j).get(current));
+      }
+      if (c > 0) {
+        return false;
+      }
+      if (c == 0) {
+        for (RelFieldCollation fieldCollation : fieldCollations) {
+          switch (fieldCollation.direction) {
+          case STRICTLY_ASCENDING:
+          case STRICTLY_DESCENDING:
+            return false;
           }
         }
       }
-      representationValues.add(valueSet.freeze(pair.i, sources));
     }
+    return true;
+  }
+
+  private static int compare(RelFieldCollation fieldCollation,
+      Comparable c1, Comparable c2) {
+    final int nullComparison = fieldCollation.nullDirection.nullComparison;
+    switch (fieldCollation.direction) {
+    case ASCENDING:
+    case STRICTLY_ASCENDING:
+      return RelFieldCollation.compare(c1, c2, nullComparison);
+    default:
+      return RelFieldCollation.compare(c2, c1, -nullComparison);
+    }
+  }
+
+  /** Returns the permutation that sorts the rows on the values of a unique
+   * column, or null if they are already sorted. */
+  private int[] sortSources(ValueSet valueSet) {
+    final Comparable[] values =
+        valueSet.values.toArray(new Comparable[size]);
+    final Kev[] kevs = new Kev[size];
+    for (int i = 0; i < kevs.length; i++) {
+      kevs[i] = new Kev(i, values[i]);
+    }
+    Arrays.sort(kevs);
+    final int[] sources = new int[size];
+    for (int i = 0; i < sources.length; i++) {
+      sources[i] = kevs[i].source;
+    }
+    // If the table was already sorted, there is no need to permute.
+    return isIdentity(sources) ? null : sources;
+  }
+
+  /** Starts adding the values of the first {@code n} rows of a chunk to the
+   * value sets of the columns. */
+  private List<Future<?>> add(final ValueSet[] valueSets,
+      final List<Function<Object, Object>> converters, final Object[] chunk,
+      final int n) {
+    final boolean singleColumn = valueSets.length == 1;
+    return submit(valueSets.length,
+        new ColumnAction() {
+          public void apply(int column) {
+            final ValueSet valueSet = valueSets[column];
+            final Function<Object, Object> converter = converters.get(column);
+            for (int i = 0; i < n; i++) {
+              Object o =
+                  singleColumn ? chunk[i] : ((Object[]) chunk[i])[column];
+              if (converter != null) {
+                o = converter.apply(o);
+              }
+              valueSet.add((Comparable) o);
+            }
+          }
+        });
+  }
+
+  /** Action performed on one column of a table. */
+  private interface ColumnAction {
+    void apply(int column);
+  }
+
+  /** Divides the columns of a table among up to {@link #THREADS} tasks, each
+   * of which applies an action to its columns, and returns the tasks. If
+   * there is only one thread, or the {@link SharedExecutor} does not have
+   * enough free threads, applies the action in the calling thread. */
+  private static List<Future<?>> submit(final int columnCount,
+      final ColumnAction action) {
+    final int taskCount = Math.min(THREADS, columnCount);
+    if (taskCount <= 1 || !SharedExecutor.tryReserve(taskCount)) {
+      for (int i = 0; i < columnCount; i++) {
+        action.apply(i);
+      }
+      return Collections.emptyList();
+    }
+    final List<Future<?>> futures = new ArrayList<>();
+    for (int t = 0; t < taskCount; t++) {
+      final int task = t;
+      futures.add(
+          SharedExecutor.submit(
+              new Runnable() {
+                public void run() {
+                  for (int i = task; i < columnCount; i += taskCount) {
+                    action.apply(i);
+                  }
+                }
+              }));
+    }
+    return futures;
   }
 
-  /** Adapt for some types that we represent differently internally than their
-   * JDBC types. {@link java.sql.Timestamp} values that are not null are
-   * converted to {@code long}, but nullable timestamps are acquired using
-   * {@link java.sql.ResultSet#getObject(int)} and therefore the Timestamp
-   * value needs to be converted to a {@link Long}. Similarly
-   * {@link java.sql.Date} and {@link java.sql.Time} values to
+  /** Waits for tasks to complete, re-throwing any exception that they
+   * threw. */
+  private static void await(List<Future<?>> futures) {
+    for (Future<?> future : futures) {
+      try {
+        future.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new RuntimeException(e);
+      } catch (ExecutionException e) {
+        final Throwable cause = e.getCause();
+        if (cause instanceof RuntimeException) {
+          throw (RuntimeException) cause;
+        }
+        if (cause instanceof Error) {
+          throw (Error) cause;
+        }
+        throw new RuntimeException(cause);
+      }
+    }
+  }
+
+  /** Returns a function that converts values of some types that we
+   * represent differently internally than their JDBC types, or null if
+   * values do not need to be converted. {@link java.sql.Timestamp} values
+   * that are not null are converted to {@code long}, but nullable timestamps
+   * are acquired using {@link java.sql.ResultSet#getObject(int)} and
+   * therefore the Timestamp value needs to be converted to a {@link Long}.
+   * Similarly {@link java.sql.Date} and {@link java.sql.Time} values to
    * {@link Integer}. */
-  private static List wrap(ColumnMetaData.Rep rep, List list,
+  @SuppressWarnings("unchecked")
+  private static Function<Object, Object> converter(ColumnMetaData.Rep rep,
       RelDataType type) {
     switch (type.getSqlTypeName()) {
     case TIMESTAMP:
       switch (rep) {
       case OBJECT:
       case JAVA_SQL_TIMESTAMP:
-        return Lists.transform(list, TIMESTAMP_TO_LONG);
+        return (Function) TIMESTAMP_TO_LONG;
       }
       break;
     case TIME:
       switch (rep) {
       case OBJECT:
       case JAVA_SQL_TIME:
-        return Lists.transform(list, TIME_TO_INT);
+        return (Function) TIME_TO_INT;
       }
       break;
     case DATE:
       switch (rep) {
       case OBJECT:
       case JAVA_SQL_DATE:
-        return Lists.transform(list, DATE_TO_INT);
+        return (Function) DATE_TO_INT;
       }
       break;
     }
-    return list;
+    return null;
   }
 
   /**
@@ -323,13 +600,25 @@ void add(Comparable e) {
       values.add(e);
     }
 
+    /** Returns a value set that holds the values; this one. */
+    ValueSet values() {
+      return this;
+    }
+
     /** Freezes the contents of this value set into a column, optionally
      * re-ordering if {@code sources} is specified. */
     ArrayTable.Column freeze(int ordinal, int[] sources) {
       ArrayTable.Representation representation = chooseRep(ordinal);
       final int cardinality = map.size() + (containsNull ? 1 : 0);
       final Object data = representation.freeze(this, sources);
-      return new ArrayTable.Column(representation, data, cardinality);
+      // Zone maps are only useful for numeric columns (see
+      // ArrayTable.Content.blocks).
+      final ArrayTable.ZoneMap zoneMap =
+          min == null || min instanceof Number
+              ? ArrayTable.ZoneMap.of(values, sources)
+              : null;
+      return new ArrayTable.Column(representation, data, cardinality,
+          zoneMap);
     }
 
     ArrayTable.Representation chooseRep(int ordinal) {
@@ -456,6 +745,62 @@ private static long abs2(long v) {
     }
   }
 
+  /** Value set that writes its values to a temporary file, rather than
+   * holding them on the heap, until {@link #values()} reads them back. */
+  static class SpilledValueSet extends ValueSet {
+    private final File file;
+    private DataOutputStream out;
+    private int count;
+
+    SpilledValueSet(Class clazz, File file) {
+      super(clazz);
+      this.file = file;
+      try {
+        this.out = new DataOutputStream(
+            new BufferedOutputStream(new FileOutputStream(file)));
+      } catch (IOException e) {
+        throw new RuntimeException("Error while writing " + file, e);
+      }
+    }
+
+    @Override void add(Comparable e) {
+      try {
+        MappedColumnStore.writeValue(out, e);
+        ++count;
+      } catch (IOException ex) {
+        throw new RuntimeException("Error while writing " + file, ex);
+      }
+    }
+
+    /** Reads the values into a new value set. */
+    @Override ValueSet values() {
+      final ValueSet valueSet = new ValueSet(clazz);
+      try {
+        out.close();
+        try (DataInputStream in = new DataInputStream(
+                 new BufferedInputStream(new FileInputStream(file)))) {
+          for (int i = 0; i < count; i++) {
+            valueSet.add((Comparable) MappedColumnStore.readValue(in));
+          }
+        }
+      } catch (IOException e) {
+        throw new RuntimeException("Error while reading " + file, e);
+      }
+      return valueSet;
+    }
+
+    /** Closes and deletes the file. */
+    void discard() {
+      try {
+        out.close();
+      } catch (IOException e) {
+        // ignore; we are discarding the file
+      }
+      //noinspection ResultOfMethodCallIgnored
+      file.delete();
+    }
+  }
+
   /** Key-value pair. */
   private static class Kev implements Comparable<Kev> {
     private final int source;
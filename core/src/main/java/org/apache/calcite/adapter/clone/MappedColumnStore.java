@@ -0,0 +1,954 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.adapter.clone;
+
+import org.apache.calcite.adapter.java.JavaTypeFactory;
+import org.apache.calcite.avatica.util.ByteString;
+import org.apache.calcite.linq4j.tree.Primitive;
+import org.apache.calcite.rel.RelCollation;
+import org.apache.calcite.rel.RelCollations;
+import org.apache.calcite.rel.RelFieldCollation;
+import org.apache.calcite.rel.type.RelDataType;
+import org.apache.calcite.rel.type.RelDataTypeField;
+import org.apache.calcite.util.Pair;
+
+import com.google.common.collect.ImmutableSet;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Type;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Stores the contents of an {@link ArrayTable} in files, and maps them back
+ * into memory.
+ *
+ * <p>A table whose base path is {@code f} is stored in two files. The
+ * {@code f.data} file holds the column values in the same layout as the
+ * in-memory representations: primitive arrays, bit-sliced arrays of
+ * {@code long} words, and, for object columns, serialized values and an
+ * array of their offsets. The {@code f.meta} file holds the row type, the row
+ * count and collations, and for each column its representation, cardinality,
+ * the location of its values in the data file, small items such as
+ * constants and dictionaries, and its {@link ArrayTable.ZoneMap}, if any.
+ *
+ * <p>Values are written with a tag for each supported type; see
+ * {@link #canStore}. Values are never serialized as Java objects, because
+ * the files are in a directory chosen by the user, and reading objects from
+ * them could run arbitrary code. A table with a column of another type is
+ * not stored in files.
+ *
+ * <p>The meta file starts with a format version, and holds the length and
+ * CRC-32 checksum of the data file; it ends with a checksum of its own
+ * contents. {@link #load} checks all of them, and ignores files that do not
+ * match, so that the table is loaded again from its source.
+ *
+ * <p>{@link #load} reads the meta file onto the heap but maps the data file,
+ * so a table may be larger than the heap, and the operating system pages
+ * values in as they are read. Loading reads the data file once, to check its
+ * checksum. The
+ * mapped representations are {@link ArrayTable.MappedPrimitiveArray},
+ * {@link ArrayTable.MappedBitSlicedPrimitiveArray} and
+ * {@link ArrayTable.MappedObjectArray}; dictionaries and constants use the
+ * usual representations.
+ *
+ * <p>Files are written to temporary names and renamed, so a crash while
+ * writing leaves no files or the previous files. Files are not refreshed if
+ * the source data changes; delete them to force a reload.
+ */
+class MappedColumnStore {
+  private static final int MAGIC = 0xCA1C0C01;
+  private static final int VERSION = 3;
+  private static final int BUFFER_SIZE = 1 << 16;
+
+  /** Representation codes in the meta file. */
+  private static final byte CONSTANT = 0;
+  private static final byte PRIMITIVE_ARRAY = 1;
+  private static final byte BIT_SLICED_PRIMITIVE_ARRAY = 2;
+  private static final byte OBJECT_DICTIONARY = 3;
+  private static final byte OBJECT_ARRAY = 4;
+
+  /** Value tags; the same encoding as
+   * {@code org.apache.calcite.runtime.SpillFile}. */
+  private static final byte NULL = 0;
+  private static final byte FALSE = 1;
+  private static final byte TRUE = 2;
+  private static final byte BYTE = 3;
+  private static final byte SHORT = 4;
+  private static final byte INT = 5;
+  private static final byte LONG = 6;
+  private static final byte FLOAT = 7;
+  private static final byte DOUBLE = 8;
+  private static final byte CHAR = 9;
+  private static final byte STRING = 10;
+  private static final byte DECIMAL = 11;
+  private static final byte BYTE_STRING = 12;
+  private static final byte SQL_DATE = 16;
+  private static final byte SQL_TIME = 17;
+  private static final byte SQL_TIMESTAMP = 18;
+
+  /** Classes of values that can be stored; values of any other class cannot
+   * be written. */
+  private static final ImmutableSet<Class> STORABLE_CLASSES =
+      ImmutableSet.<Class>of(Boolean.class, Byte.class, Short.class,
+          Integer.class, Long.class, Float.class, Double.class,
+          Character.class, String.class, BigDecimal.class, ByteString.class,
+          java.sql.Date.class, java.sql.Time.class, java.sql.Timestamp.class);
+
+  private MappedColumnStore() {
+  }
+
+  private static File metaFile(File file) {
+    return new File(file.getPath() + ".meta");
+  }
+
+  private static File dataFile(File file) {
+    return new File(file.getPath() + ".data");
+  }
+
+  /** Returns whether every field of a row type has a Java class whose
+   * values can be stored in files; that is, a primitive type, or one of
+   * {@link #STORABLE_CLASSES}. */
+  static boolean canStore(JavaTypeFactory typeFactory, RelDataType rowType) {
+    for (RelDataTypeField field : rowType.getFieldList()) {
+      final Type type = typeFactory.getJavaClass(field.getType());
+      if (!(type instanceof Class)) {
+        return false;
+      }
+      final Class clazz = Primitive.box((Class) type);
+      if (!STORABLE_CLASSES.contains(clazz)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /** Returns whether files for a table exist. */
+  static boolean exists(File file) {
+    return metaFile(file).exists() && dataFile(file).exists();
+  }
+
+  /** Deletes the files of a table. */
+  static void delete(File file) {
+    //noinspection ResultOfMethodCallIgnored
+    metaFile(file).delete();
+    //noinspection ResultOfMethodCallIgnored
+    dataFile(file).delete();
+  }
+
+  /** Writes the contents of a table to files. */
+  static void write(File file, RelDataType rowType,
+      ArrayTable.Content content) {
+    try (Writer writer = new Writer(file)) {
+      for (ArrayTable.Column column : content.columns) {
+        writer.add(column);
+      }
+      writer.commit(rowType, content.size, content.collations);
+    }
+  }
+
+  private static void rename(File from, File to) throws IOException {
+    //noinspection ResultOfMethodCallIgnored
+    to.delete();
+    if (!from.renameTo(to)) {
+      throw new IOException("Could not rename " + from + " to " + to);
+    }
+  }
+
+  private static void writeColumn(DataOutputStream meta, DataWriter data,
+      int ordinal, ArrayTable.Representation representation, Object dataSet)
+      throws IOException {
+    switch (representation.getType()) {
+    case CONSTANT:
+      meta.writeByte(CONSTANT);
+      meta.writeInt(ordinal);
+      writeValue(meta, representation.getObject(dataSet, 0));
+      meta.writeInt(representation.size(dataSet));
+      return;
+
+    case PRIMITIVE_ARRAY:
+      final ArrayTable.PrimitiveArray primitiveArray =
+          (ArrayTable.PrimitiveArray) representation;
+      if (data.canWrite(primitiveArray.primitive)) {
+        meta.writeByte(PRIMITIVE_ARRAY);
+        meta.writeInt(ordinal);
+        meta.writeUTF(primitiveArray.primitive.name());
+        meta.writeUTF(primitiveArray.p.name());
+        final long start = data.align();
+        data.putArray(primitiveArray.primitive, dataSet);
+        writeSection(meta, start, data.position);
+        return;
+      }
+      break;
+
+    case BIT_SLICED_PRIMITIVE_ARRAY:
+      final ArrayTable.BitSlicedPrimitiveArray bitSliced =
+          (ArrayTable.BitSlicedPrimitiveArray) representation;
+      meta.writeByte(BIT_SLICED_PRIMITIVE_ARRAY);
+      meta.writeInt(ordinal);
+      meta.writeInt(bitSliced.bitCount);
+      meta.writeUTF(bitSliced.primitive.name());
+      meta.writeBoolean(bitSliced.signed);
+      final long start = data.align();
+      data.putArray(Primitive.LONG, dataSet);
+      writeSection(meta, start, data.position);
+      return;
+
+    case OBJECT_DICTIONARY:
+      final ArrayTable.ObjectDictionary dictionary =
+          (ArrayTable.ObjectDictionary) representation;
+      @SuppressWarnings("unchecked")
+      final Pair<Object, Comparable[]> pair =
+          (Pair<Object, Comparable[]>) dataSet;
+      meta.writeByte(OBJECT_DICTIONARY);
+      meta.writeInt(ordinal);
+      writeColumn(meta, data, -1, dictionary.representation, pair.left);
+      meta.writeInt(pair.right.length);
+      for (Comparable value : pair.right) {
+        writeValue(meta, value);
+      }
+      return;
+    }
+
+    // Any other representation: write each value, tagged with its type.
+    final int size = representation.size(dataSet);
+    final long[] offsets = new long[size + 1];
+    final long start = data.align();
+    for (int i = 0; i < size; i++) {
+      offsets[i] = data.position - start;
+      data.put(encode(representation.getObject(dataSet, i)));
+    }
+    offsets[size] = data.position - start;
+    final long end = data.position;
+    final long offsetStart = data.align();
+    data.putArray(Primitive.LONG, offsets);
+    meta.writeByte(OBJECT_ARRAY);
+    meta.writeInt(ordinal);
+    writeSection(meta, offsetStart, data.position);
+    writeSection(meta, start, end);
+  }
+
+  private static void writeSection(DataOutputStream meta, long start,
+      long end) throws IOException {
+    meta.writeLong(start);
+    meta.writeLong(end - start);
+  }
+
+  /** Maps the files of a table into memory and returns its contents;
+   * returns null if the files do not exist, were written for a different
+   * row type or by an incompatible version, or do not match their
+   * checksums. */
+  static ArrayTable.Content load(File file, RelDataType rowType) {
+    if (!exists(file)) {
+      return null;
+    }
+    try (RandomAccessFile data = new RandomAccessFile(dataFile(file), "r")) {
+      final byte[] metaBytes = Files.readAllBytes(metaFile(file).toPath());
+      if (metaBytes.length < 16) {
+        return null;
+      }
+      final DataInputStream meta =
+          new DataInputStream(new ByteArrayInputStream(metaBytes));
+      if (meta.readInt() != MAGIC
+          || meta.readInt() != VERSION
+          || checksum(metaBytes, metaBytes.length - 8)
+              != ByteBuffer.wrap(metaBytes, metaBytes.length - 8, 8)
+                  .getLong()) {
+        return null;
+      }
+      final long dataLength = meta.readLong();
+      final long dataChecksum = meta.readLong();
+      if (data.length() != dataLength
+          || checksum(data.getChannel()) != dataChecksum
+          || !rowType.getFullTypeString().equals(readValue(meta))) {
+        return null;
+      }
+      final int size = meta.readInt();
+      final List<RelCollation> collations = new ArrayList<>();
+      for (int i = meta.readInt(); i > 0; i--) {
+        final List<RelFieldCollation> fieldCollations = new ArrayList<>();
+        for (int j = meta.readInt(); j > 0; j--) {
+          fieldCollations.add(
+              new RelFieldCollation(meta.readInt(),
+                  RelFieldCollation.Direction.valueOf(meta.readUTF()),
+                  RelFieldCollation.NullDirection.valueOf(meta.readUTF())));
+        }
+        collations.add(RelCollations.of(fieldCollations));
+      }
+      final List<ArrayTable.Column> columns = new ArrayList<>();
+      for (int i = meta.readInt(); i > 0; i--) {
+        final int cardinality = meta.readInt();
+        final Pair<ArrayTable.Representation, Object> pair =
+            readColumn(meta, data.getChannel());
+        final ArrayTable.ZoneMap zoneMap = readZoneMap(meta);
+        columns.add(
+            new ArrayTable.Column(pair.left, pair.right, cardinality,
+                zoneMap));
+      }
+      return new ArrayTable.Content(columns, size, collations);
+    } catch (IOException e) {
+      throw new RuntimeException("Error while reading column store " + file,
+          e);
+    }
+  }
+
+  /** Returns the CRC-32 checksum of the first {@code length} bytes of an
+   * array. */
+  private static long checksum(byte[] bytes, int length) {
+    final CRC32 crc = new CRC32();
+    crc.update(bytes, 0, length);
+    return crc.getValue();
+  }
+
+  /** Returns the CRC-32 checksum of the contents of a file. */
+  private static long checksum(FileChannel channel) throws IOException {
+    final CRC32 crc = new CRC32();
+    final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    long position = 0;
+    for (;;) {
+      buffer.clear();
+      final int n = channel.read(buffer, position);
+      if (n < 0) {
+        return crc.getValue();
+      }
+      crc.update(buffer.array(), 0, n);
+      position += n;
+    }
+  }
+
+  private static void writeZoneMap(DataOutputStream meta,
+      ArrayTable.ZoneMap zoneMap) throws IOException {
+    meta.writeBoolean(zoneMap != null);
+    if (zoneMap == null) {
+      return;
+    }
+    meta.writeInt(zoneMap.mins.length);
+    for (int i = 0; i < zoneMap.mins.length; i++) {
+      writeValue(meta, zoneMap.mins[i]);
+      writeValue(meta, zoneMap.maxes[i]);
+      meta.writeInt(zoneMap.nullCounts[i]);
+    }
+  }
+
+  private static ArrayTable.ZoneMap readZoneMap(DataInputStream meta)
+      throws IOException {
+    if (!meta.readBoolean()) {
+      return null;
+    }
+    final int blockCount = meta.readInt();
+    final Comparable[] mins = new Comparable[blockCount];
+    final Comparable[] maxes = new Comparable[blockCount];
+    final int[] nullCounts = new int[blockCount];
+    for (int i = 0; i < blockCount; i++) {
+      mins[i] = (Comparable) readValue(meta);
+      maxes[i] = (Comparable) readValue(meta);
+      nullCounts[i] = meta.readInt();
+    }
+    return new ArrayTable.ZoneMap(mins, maxes, nullCounts);
+  }
+
+  private static Pair<ArrayTable.Representation, Object> readColumn(
+      DataInputStream meta, FileChannel channel)
+      throws IOException {
+    final byte type = meta.readByte();
+    final int ordinal = meta.readInt();
+    switch (type) {
+    case CONSTANT:
+      final Object value = readValue(meta);
+      return Pair.<ArrayTable.Representation, Object>of(
+          new ArrayTable.Constant(ordinal),
+          Pair.of(value, meta.readInt()));
+    case PRIMITIVE_ARRAY:
+      final Primitive primitive = Primitive.valueOf(meta.readUTF());
+      final Primitive p = Primitive.valueOf(meta.readUTF());
+      return Pair.<ArrayTable.Representation, Object>of(
+          new ArrayTable.MappedPrimitiveArray(ordinal, primitive, p),
+          readSection(meta, channel));
+    case BIT_SLICED_PRIMITIVE_ARRAY:
+      final int bitCount = meta.readInt();
+      final Primitive primitive2 = Primitive.valueOf(meta.readUTF());
+      final boolean signed = meta.readBoolean();
+      return Pair.<ArrayTable.Representation, Object>of(
+          new ArrayTable.MappedBitSlicedPrimitiveArray(ordinal, bitCount,
+              primitive2, signed),
+          readSection(meta, channel));
+    case OBJECT_DICTIONARY:
+      final Pair<ArrayTable.Representation, Object> codes =
+          readColumn(meta, channel);
+      final Comparable[] codeValues = new Comparable[meta.readInt()];
+      for (int i = 0; i < codeValues.length; i++) {
+        codeValues[i] = (Comparable) readValue(meta);
+      }
+      return Pair.<ArrayTable.Representation, Object>of(
+          new ArrayTable.ObjectDictionary(ordinal, codes.left),
+          Pair.of(codes.right, codeValues));
+    case OBJECT_ARRAY:
+      final Region offsets = readSection(meta, channel);
+      final Region values = readSection(meta, channel);
+      return Pair.<ArrayTable.Representation, Object>of(
+          new ArrayTable.MappedObjectArray(ordinal),
+          Pair.of(offsets, values));
+    default:
+      throw new AssertionError("unknown representation " + type);
+    }
+  }
+
+  private static Region readSection(DataInputStream meta,
+      FileChannel channel) throws IOException {
+    final long start = meta.readLong();
+    final long length = meta.readLong();
+    return Region.map(channel, start, length);
+  }
+
+  /** Serializes a value. */
+  static byte[] encode(Object o) throws IOException {
+    final ByteArrayOutputStream buf = new ByteArrayOutputStream();
+    writeValue(new DataOutputStream(buf), o);
+    return buf.toByteArray();
+  }
+
+  /** Deserializes a value created by {@link #encode}. */
+  static Object decode(byte[] bytes) {
+    if (bytes[0] == STRING) {
+      // Fast path for the most common case.
+      return new String(bytes, 5, bytes.length - 5, StandardCharsets.UTF_8);
+    }
+    try {
+      return readValue(new DataInputStream(new ByteArrayInputStream(bytes)));
+    } catch (IOException e) {
+      throw new RuntimeException("Error while reading value", e);
+    }
+  }
+
+  static void writeValue(DataOutput out, Object o)
+      throws IOException {
+    if (o == null) {
+      out.writeByte(NULL);
+    } else if (o instanceof String) {
+      out.writeByte(STRING);
+      writeBytes(out, ((String) o).getBytes(StandardCharsets.UTF_8));
+    } else if (o instanceof Integer) {
+      out.writeByte(INT);
+      out.writeInt((Integer) o);
+    } else if (o instanceof Long) {
+      out.writeByte(LONG);
+      out.writeLong((Long) o);
+    } else if (o instanceof Boolean) {
+      out.writeByte((Boolean) o ? TRUE : FALSE);
+    } else if (o instanceof Double) {
+      out.writeByte(DOUBLE);
+      out.writeDouble((Double) o);
+    } else if (o instanceof BigDecimal) {
+      final BigDecimal decimal = (BigDecimal) o;
+      out.writeByte(DECIMAL);
+      out.writeInt(decimal.scale());
+      writeBytes(out, decimal.unscaledValue().toByteArray());
+    } else if (o instanceof Short) {
+      out.writeByte(SHORT);
+      out.writeShort((Short) o);
+    } else if (o instanceof Byte) {
+      out.writeByte(BYTE);
+      out.writeByte((Byte) o);
+    } else if (o instanceof Float) {
+      out.writeByte(FLOAT);
+      out.writeFloat((Float) o);
+    } else if (o instanceof Character) {
+      out.writeByte(CHAR);
+      out.writeChar((Character) o);
+    } else if (o instanceof ByteString) {
+      out.writeByte(BYTE_STRING);
+      writeBytes(out, ((ByteString) o).getBytes());
+    } else if (o instanceof java.sql.Date) {
+      out.writeByte(SQL_DATE);
+      out.writeLong(((java.sql.Date) o).getTime());
+    } else if (o instanceof java.sql.Time) {
+      out.writeByte(SQL_TIME);
+      out.writeLong(((java.sql.Time) o).getTime());
+    } else if (o instanceof java.sql.Timestamp) {
+      final java.sql.Timestamp timestamp = (java.sql.Timestamp) o;
+      out.writeByte(SQL_TIMESTAMP);
+      out.writeLong(timestamp.getTime());
+      out.writeInt(timestamp.getNanos());
+    } else {
+      throw new IllegalArgumentException("Cannot store value of "
+          + o.getClass() + " in column store");
+    }
+  }
+
+  private static void writeBytes(DataOutput out, byte[] bytes)
+      throws IOException {
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  static Object readValue(DataInput in)
+      throws IOException {
+    final byte tag = in.readByte();
+    switch (tag) {
+    case NULL:
+      return null;
+    case FALSE:
+      return false;
+    case TRUE:
+      return true;
+    case BYTE:
+      return in.readByte();
+    case SHORT:
+      return in.readShort();
+    case INT:
+      return in.readInt();
+    case LONG:
+      return in.readLong();
+    case FLOAT:
+      return in.readFloat();
+    case DOUBLE:
+      return in.readDouble();
+    case CHAR:
+      return in.readChar();
+    case STRING:
+      return new String(readBytes(in), StandardCharsets.UTF_8);
+    case DECIMAL:
+      final int scale = in.readInt();
+      return new BigDecimal(new BigInteger(readBytes(in)), scale);
+    case BYTE_STRING:
+      return new ByteString(readBytes(in));
+    case SQL_DATE:
+      return new java.sql.Date(in.readLong());
+    case SQL_TIME:
+      return new java.sql.Time(in.readLong());
+    case SQL_TIMESTAMP:
+      final java.sql.Timestamp timestamp = new java.sql.Timestamp(in.readLong());
+      timestamp.setNanos(in.readInt());
+      return timestamp;
+    default:
+      throw new IOException("unknown tag " + tag);
+    }
+  }
+
+  private static byte[] readBytes(DataInput in) throws IOException {
+    final byte[] bytes = new byte[in.readInt()];
+    in.readFully(bytes);
+    return bytes;
+  }
+
+  /** Writes the contents of a table to files one column at a time, so that
+   * a loader needs to hold only one column on the heap.
+   *
+   * <p>Each column's values go to the data file as soon as it is
+   * {@link #add added}; its entry in the meta file is buffered, because the
+   * meta file starts with the row count and collations, which are not known
+   * until all columns have been loaded. {@link #commit} writes the meta file
+   * and renames both files; closing a writer that has not been committed
+   * deletes the temporary files. */
+  static class Writer implements Closeable {
+    private final File file;
+    private final File metaTemp;
+    private final File dataTemp;
+    private final FileOutputStream dataStream;
+    private final DataWriter data;
+    private final ByteArrayOutputStream columnBuf =
+        new ByteArrayOutputStream();
+    private final DataOutputStream columnMeta =
+        new DataOutputStream(columnBuf);
+    private int columnCount;
+    private boolean closed;
+
+    Writer(File file) {
+      this.file = file;
+      this.metaTemp = new File(metaFile(file).getPath() + ".tmp");
+      this.dataTemp = new File(dataFile(file).getPath() + ".tmp");
+      final File parent = file.getAbsoluteFile().getParentFile();
+      if (parent != null) {
+        //noinspection ResultOfMethodCallIgnored
+        parent.mkdirs();
+      }
+      try {
+        this.dataStream = new FileOutputStream(dataTemp);
+      } catch (IOException e) {
+        throw new RuntimeException("Error while writing column store " + file,
+            e);
+      }
+      this.data = new DataWriter(dataStream.getChannel());
+    }
+
+    /** Returns a file, next to the table's files, that a loader may use for
+     * temporary data. The caller must delete it. */
+    File tempFile(String suffix) {
+      return new File(file.getPath() + suffix + ".tmp");
+    }
+
+    /** Writes the next column. */
+    void add(ArrayTable.Column column) {
+      try {
+        columnMeta.writeInt(column.cardinality);
+        writeColumn(columnMeta, data, columnCount, column.representation,
+            column.dataSet);
+        writeZoneMap(columnMeta, column.zoneMap);
+        ++columnCount;
+      } catch (IOException e) {
+        throw new RuntimeException("Error while writing column store " + file,
+            e);
+      }
+    }
+
+    /** Writes the meta file, and renames the temporary files so that they
+     * replace the table's files. */
+    void commit(RelDataType rowType, int size,
+        List<RelCollation> collations) {
+      try {
+        data.flush();
+        dataStream.close();
+        final ByteArrayOutputStream metaBuf = new ByteArrayOutputStream();
+        try (DataOutputStream meta = new DataOutputStream(metaBuf)) {
+          meta.writeInt(MAGIC);
+          meta.writeInt(VERSION);
+          meta.writeLong(data.position);
+          meta.writeLong(data.crc.getValue());
+          writeValue(meta, rowType.getFullTypeString());
+          meta.writeInt(size);
+          meta.writeInt(collations.size());
+          for (RelCollation collation : collations) {
+            meta.writeInt(collation.getFieldCollations().size());
+            for (RelFieldCollation fieldCollation
+                : collation.getFieldCollations()) {
+              meta.writeInt(fieldCollation.getFieldIndex());
+              meta.writeUTF(fieldCollation.direction.name());
+              meta.writeUTF(fieldCollation.nullDirection.name());
+            }
+          }
+          meta.writeInt(columnCount);
+          columnBuf.writeTo(meta);
+          meta.flush();
+          meta.writeLong(checksum(metaBuf.toByteArray(), metaBuf.size()));
+        }
+        try (OutputStream out = new FileOutputStream(metaTemp)) {
+          metaBuf.writeTo(out);
+        }
+        // Data file first; the meta file's existence marks a complete table.
+        rename(dataTemp, dataFile(file));
+        rename(metaTemp, metaFile(file));
+        closed = true;
+      } catch (IOException e) {
+        throw new RuntimeException("Error while writing column store " + file,
+            e);
+      }
+    }
+
+    public void close() {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      try {
+        dataStream.close();
+      } catch (IOException e) {
+        // ignore; we are discarding the file
+      }
+      //noinspection ResultOfMethodCallIgnored
+      metaTemp.delete();
+      //noinspection ResultOfMethodCallIgnored
+      dataTemp.delete();
+    }
+  }
+
+  /** Region of a file that has been mapped into memory.
+   *
+   * <p>A {@link ByteBuffer} cannot be larger than 2 GB, so a region consists
+   * of several buffers of 1 GB each. Values are aligned to their size, and
+   * so never straddle two buffers. Reads are absolute, so one region can be
+   * read by several threads at once. */
+  static class Region {
+    private static final int SEGMENT_BITS = 30;
+    private static final long SEGMENT_SIZE = 1L << SEGMENT_BITS;
+    private static final long SEGMENT_MASK = SEGMENT_SIZE - 1;
+
+    private final ByteBuffer[] segments;
+    /** Length of the region, in bytes. */
+    final long length;
+
+    private Region(ByteBuffer[] segments, long length) {
+      this.segments = segments;
+      this.length = length;
+    }
+
+    static Region map(FileChannel channel, long start, long length)
+        throws IOException {
+      final ByteBuffer[] segments =
+          new ByteBuffer[(int) ((length + SEGMENT_SIZE - 1) >>> SEGMENT_BITS)];
+      for (int i = 0; i < segments.length; i++) {
+        final long offset = (long) i << SEGMENT_BITS;
+        segments[i] = channel.map(FileChannel.MapMode.READ_ONLY,
+            start + offset, Math.min(SEGMENT_SIZE, length - offset))
+            .order(ByteOrder.LITTLE_ENDIAN);
+      }
+      return new Region(segments, length);
+    }
+
+    private ByteBuffer segment(long position) {
+      return segments[(int) (position >>> SEGMENT_BITS)];
+    }
+
+    private static int offset(long position) {
+      return (int) (position & SEGMENT_MASK);
+    }
+
+    /** Returns the {@code index}th value of a fixed-point type. */
+    long getLong(Primitive primitive, long index) {
+      final long position;
+      switch (primitive) {
+      case BYTE:
+        return segment(index).get(offset(index));
+      case SHORT:
+        position = index << 1;
+        return segment(position).getShort(offset(position));
+      case CHAR:
+        position = index << 1;
+        return segment(position).getChar(offset(position));
+      case INT:
+        position = index << 2;
+        return segment(position).getInt(offset(position));
+      case LONG:
+        position = index << 3;
+        return segment(position).getLong(offset(position));
+      default:
+        throw new AssertionError(primitive + " unexpected");
+      }
+    }
+
+    /** Returns the {@code index}th value of a floating-point type. */
+    double getDouble(Primitive primitive, long index) {
+      final long position;
+      switch (primitive) {
+      case FLOAT:
+        position = index << 2;
+        return segment(position).getFloat(offset(position));
+      case DOUBLE:
+        position = index << 3;
+        return segment(position).getDouble(offset(position));
+      default:
+        throw new AssertionError(primitive + " unexpected");
+      }
+    }
+
+    /** Copies {@code count} values, starting at the {@code start}th, into
+     * an array of the same type. */
+    void copy(Primitive primitive, long start, int count, Object target) {
+      switch (primitive) {
+      case BYTE:
+        final byte[] bytes = (byte[]) target;
+        for (int i = 0; i < count; i++) {
+          bytes[i] = (byte) getLong(primitive, start + i);
+        }
+        return;
+      case SHORT:
+        final short[] shorts = (short[]) target;
+        for (int i = 0; i < count; i++) {
+          shorts[i] = (short) getLong(primitive, start + i);
+        }
+        return;
+      case CHAR:
+        final char[] chars = (char[]) target;
+        for (int i = 0; i < count; i++) {
+          chars[i] = (char) getLong(primitive, start + i);
+        }
+        return;
+      case INT:
+        final int[] ints = (int[]) target;
+        for (int i = 0; i < count; i++) {
+          ints[i] = (int) getLong(primitive, start + i);
+        }
+        return;
+      case LONG:
+        final long[] longs = (long[]) target;
+        for (int i = 0; i < count; i++) {
+          longs[i] = getLong(primitive, start + i);
+        }
+        return;
+      case FLOAT:
+        final float[] floats = (float[]) target;
+        for (int i = 0; i < count; i++) {
+          floats[i] = (float) getDouble(primitive, start + i);
+        }
+        return;
+      case DOUBLE:
+        final double[] doubles = (double[]) target;
+        for (int i = 0; i < count; i++) {
+          doubles[i] = getDouble(primitive, start + i);
+        }
+        return;
+      default:
+        throw new AssertionError(primitive + " unexpected");
+      }
+    }
+
+    /** Returns {@code count} bytes starting at a given position. */
+    byte[] getBytes(long position, int count) {
+      final byte[] bytes = new byte[count];
+      int done = 0;
+      while (done < count) {
+        final ByteBuffer buffer = segment(position).duplicate();
+        buffer.position(offset(position));
+        final int n = Math.min(buffer.remaining(), count - done);
+        buffer.get(bytes, done, n);
+        done += n;
+        position += n;
+      }
+      return bytes;
+    }
+  }
+
+  /** Writes primitive values to a file channel, in the byte order that
+   * {@link Region} reads, and keeps track of the position. */
+  private static class DataWriter {
+    private final FileChannel channel;
+    private final ByteBuffer buffer =
+        ByteBuffer.allocate(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    /** Checksum of the bytes written so far. */
+    final CRC32 crc = new CRC32();
+    long position;
+
+    DataWriter(FileChannel channel) {
+      this.channel = channel;
+    }
+
+    boolean canWrite(Primitive primitive) {
+      switch (primitive) {
+      case BYTE:
+      case SHORT:
+      case CHAR:
+      case INT:
+      case LONG:
+      case FLOAT:
+      case DOUBLE:
+        return true;
+      default:
+        return false;
+      }
+    }
+
+    /** Pads to a multiple of 8 bytes, so that the next value is aligned
+     * whatever its type; returns the new position. */
+    long align() throws IOException {
+      while ((position & 7) != 0) {
+        reserve(1);
+        buffer.put((byte) 0);
+        ++position;
+      }
+      return position;
+    }
+
+    private void reserve(int n) throws IOException {
+      if (buffer.remaining() < n) {
+        flush();
+      }
+    }
+
+    void flush() throws IOException {
+      buffer.flip();
+      crc.update(buffer.array(), 0, buffer.limit());
+      while (buffer.hasRemaining()) {
+        channel.write(buffer);
+      }
+      buffer.clear();
+    }
+
+    void put(byte[] bytes) throws IOException {
+      int done = 0;
+      while (done < bytes.length) {
+        reserve(1);
+        final int n = Math.min(buffer.remaining(), bytes.length - done);
+        buffer.put(bytes, done, n);
+        done += n;
+      }
+      position += bytes.length;
+    }
+
+    /** Writes the elements of an array of a given primitive type. */
+    void putArray(Primitive primitive, Object array) throws IOException {
+      switch (primitive) {
+      case BYTE:
+        put((byte[]) array);
+        return;
+      case SHORT:
+        for (short v : (short[]) array) {
+          reserve(2);
+          buffer.putShort(v);
+        }
+        position += 2L * ((short[]) array).length;
+        return;
+      case CHAR:
+        for (char v : (char[]) array) {
+          reserve(2);
+          buffer.putChar(v);
+        }
+        position += 2L * ((char[]) array).length;
+        return;
+      case INT:
+        for (int v : (int[]) array) {
+          reserve(4);
+          buffer.putInt(v);
+        }
+        position += 4L * ((int[]) array).length;
+        return;
+      case LONG:
+        for (long v : (long[]) array) {
+          reserve(8);
+          buffer.putLong(v);
+        }
+        position += 8L * ((long[]) array).length;
+        return;
+      case FLOAT:
+        for (float v : (float[]) array) {
+          reserve(4);
+          buffer.putFloat(v);
+        }
+        position += 4L * ((float[]) array).length;
+        return;
+      case DOUBLE:
+        for (double v : (double[]) array) {
+          reserve(8);
+          buffer.putDouble(v);
+        }
+        position += 8L * ((double[]) array).length;
+        return;
+      default:
+        throw new AssertionError(primitive + " unexpected");
+      }
+    }
+  }
+}
+
+// End MappedColumnStore.java
@@ -18,6 +18,7 @@
 
 import org.apache.calcite.adapter.java.JavaTypeFactory;
 import org.apache.calcite.linq4j.Ord;
+import org.apache.calcite.linq4j.function.Function1;
 import org.apache.calcite.linq4j.function.Function2;
 import org.apache.calcite.linq4j.tree.BlockStatement;
 import org.apache.calcite.linq4j.tree.Expression;
@@ -29,6 +30,7 @@
 import org.apache.calcite.rel.type.RelDataType;
 import org.apache.calcite.rel.type.RelDataTypeField;
 import org.apache.calcite.rex.RexNode;
+import org.apache.calcite.util.Pair;
 
 import com.google.common.collect.ImmutableList;
 
@@ -158,6 +160,42 @@ static Expression joinSelector(JoinRelType joinType, PhysType physType,
         physType.record(expressions),
         parameters);
   }
+
+  /** Returns expressions for functions that convert rows of a given physical
+   * type to arrays and back, or null constants if the rows need no
+   * conversion.
+   *
+   * <p>Operators that spill rows to disk use them, so that records of
+   * generated classes are written field by field rather than by Java
+   * serialization. */
+  static Pair<Expression, Expression> spillConverters(
+      JavaTypeFactory typeFactory, PhysType physType) {
+    if (physType.getFormat() != JavaRowFormat.CUSTOM
+        || physType.getJavaRowType() instanceof Class) {
+      return Pair.<Expression, Expression>of(
+          Expressions.constant(null, Function1.class),
+          Expressions.constant(null, Function1.class));
+    }
+    final PhysType arrayPhysType =
+        PhysTypeImpl.of(typeFactory, physType.getRowType(),
+            JavaRowFormat.ARRAY);
+    final ParameterExpression row_ =
+        Expressions.parameter(physType.getJavaRowType(), "row");
+    final ParameterExpression array_ =
+        Expressions.parameter(Object[].class, "array");
+    final List<Expression> rowFields = new ArrayList<>();
+    final List<Expression> arrayFields = new ArrayList<>();
+    final int fieldCount = physType.getRowType().getFieldCount();
+    for (int i = 0; i < fieldCount; i++) {
+      rowFields.add(physType.fieldReference(row_, i));
+      arrayFields.add(arrayPhysType.fieldReference(array_, i));
+    }
+    return Pair.<Expression, Expression>of(
+        Expressions.lambda(Function1.class, arrayPhysType.record(rowFields),
+            row_),
+        Expressions.lambda(Function1.class, physType.record(arrayFields),
+            array_));
+  }
 }
 
 // End EnumUtils.java
@@ -16,10 +16,12 @@
  */
 package org.apache.calcite.adapter.enumerable;
 
+import org.apache.calcite.DataContext;
 import org.apache.calcite.adapter.enumerable.impl.AggAddContextImpl;
 import org.apache.calcite.adapter.enumerable.impl.AggResultContextImpl;
 import org.apache.calcite.adapter.java.JavaTypeFactory;
 import org.apache.calcite.linq4j.Ord;
+import org.apache.calcite.linq4j.function.EqualityComparer;
 import org.apache.calcite.linq4j.function.Function0;
 import org.apache.calcite.linq4j.function.Function1;
 import org.apache.calcite.linq4j.function.Function2;
@@ -421,15 +423,39 @@ public RexToLixTranslator rowTranslator() {
                   resultBlock.toBlock(),
                   key_,
                   acc_));
-      builder.add(
-          Expressions.return_(null,
-              Expressions.call(childExp,
-                  BuiltInMethod.GROUP_BY2.method,
-                  Expressions.list(keySelector_,
-                      accumulatorInitializer,
-                      accumulatorAdder,
-                      resultSelector_)
-                      .appendIfNotNull(keyPhysType.comparer()))));
+      final Expression comparer =
+          Util.first(keyPhysType.comparer(),
+              Expressions.constant(null, EqualityComparer.class));
+      if (EnumerableExchange.isHashExchange(getInput(), groupSet.asList())) {
+        // Input is partitioned on the group key, so each partition can be
+        // aggregated by a separate thread.
+        builder.add(
+            Expressions.return_(null,
+                Expressions.call(BuiltInMethod.PARALLEL_GROUP_BY.method,
+                    childExp,
+                    keySelector_,
+                    accumulatorInitializer,
+                    accumulatorAdder,
+                    resultSelector_,
+                    comparer,
+                    Expressions.call(BuiltInMethod.PARALLELISM.method,
+                        DataContext.ROOT))));
+      } else {
+        final Pair<Expression, Expression> converters =
+            EnumUtils.spillConverters(typeFactory, inputPhysType);
+        builder.add(
+            Expressions.return_(null,
+                Expressions.call(BuiltInMethod.SPILLING_GROUP_BY.method,
+                    DataContext.ROOT,
+                    childExp,
+                    keySelector_,
+                    accumulatorInitializer,
+                    accumulatorAdder,
+                    resultSelector_,
+                    comparer,
+                    builder.append("toArray", converters.left),
+                    builder.append("fromArray", converters.right))));
+      }
     }
     return implementor.result(physType, builder.toBlock());
   }
@@ -0,0 +1,44 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.adapter.enumerable;
+
+import org.apache.calcite.linq4j.tree.Expression;
+
+/**
+ * Enumerable relational expression that can also return its rows in batches
+ * of columns, like a scan of a
+ * {@link org.apache.calcite.schema.BatchScannableTable}.
+ *
+ * <p>{@link EnumerableCalc} reads such an input a batch at a time if the
+ * "batchSize" connection property is positive.
+ */
+public interface EnumerableBatchRel extends EnumerableRel {
+  /** Returns an expression for an
+   * {@link org.apache.calcite.linq4j.Enumerable} of
+   * {@link org.apache.calcite.runtime.ColumnBatch} over the rows of this
+   * relational expression, with the same contract as
+   * {@link org.apache.calcite.schema.BatchScannableTable#scanBatches}, or
+   * null if it cannot return batches.
+   *
+   * @param implementor Implementor
+   * @param batchSize Maximum number of rows per batch
+   */
+  Expression implementBatches(EnumerableRelImplementor implementor,
+      int batchSize);
+}
+
+// End EnumerableBatchRel.java
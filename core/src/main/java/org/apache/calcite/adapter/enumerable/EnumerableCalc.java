@@ -18,6 +18,8 @@
 
 import org.apache.calcite.DataContext;
 import org.apache.calcite.adapter.java.JavaTypeFactory;
+import org.apache.calcite.config.CalciteConnectionConfig;
+import org.apache.calcite.config.CalciteConnectionProperty;
 import org.apache.calcite.linq4j.Enumerator;
 import org.apache.calcite.linq4j.tree.BlockBuilder;
 import org.apache.calcite.linq4j.tree.BlockStatement;
@@ -26,8 +28,10 @@
 import org.apache.calcite.linq4j.tree.Expressions;
 import org.apache.calcite.linq4j.tree.MemberDeclaration;
 import org.apache.calcite.linq4j.tree.ParameterExpression;
+import org.apache.calcite.linq4j.tree.Statement;
 import org.apache.calcite.linq4j.tree.Types;
 import org.apache.calcite.plan.RelOptCluster;
+import org.apache.calcite.plan.RelOptTable;
 import org.apache.calcite.plan.RelTraitSet;
 import org.apache.calcite.rel.RelCollation;
 import org.apache.calcite.rel.RelCollationTraitDef;
@@ -37,7 +41,10 @@
 import org.apache.calcite.rel.core.Calc;
 import org.apache.calcite.rel.metadata.RelMdCollation;
 import org.apache.calcite.rel.metadata.RelMdDistribution;
+import org.apache.calcite.rel.type.RelDataTypeField;
 import org.apache.calcite.rex.RexProgram;
+import org.apache.calcite.runtime.ColumnBatch;
+import org.apache.calcite.schema.BatchScannableTable;
 import org.apache.calcite.util.BuiltInMethod;
 import org.apache.calcite.util.Pair;
 import org.apache.calcite.util.Util;
@@ -45,10 +52,14 @@
 import com.google.common.base.Supplier;
 import com.google.common.collect.ImmutableList;
 
+import java.lang.reflect.Array;
 import java.lang.reflect.Modifier;
 import java.lang.reflect.Type;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import static org.apache.calcite.adapter.enumerable.EnumUtils.BRIDGE_METHODS;
 import static org.apache.calcite.adapter.enumerable.EnumUtils.NO_EXPRS;
@@ -114,6 +125,15 @@ public Result implement(EnumerableRelImplementor implementor, Prefer pref) {
     final BlockBuilder builder = new BlockBuilder();
     final EnumerableRel child = (EnumerableRel) getInput();
 
+    final int batchSize = batchSize();
+    if (batchSize > 0) {
+      final Expression batches =
+          batchInputExpression(implementor, child, batchSize);
+      if (batches != null) {
+        return implementBatch(implementor, pref, batches, batchSize);
+      }
+    }
+
     final Result result =
         implementor.visitChild(this, 0, child, pref);
 
@@ -256,9 +276,337 @@ public Result implement(EnumerableRelImplementor implementor, Prefer pref) {
     return implementor.result(physType, builder.toBlock());
   }
 
+  /** Returns the number of rows per batch, from the "batchSize" connection
+   * property; see {@link CalciteConnectionProperty#BATCH_SIZE}. */
+  private int batchSize() {
+    final CalciteConnectionConfig config =
+        getCluster().getPlanner().getContext()
+            .unwrap(CalciteConnectionConfig.class);
+    return config == null ? 0 : config.batchSize();
+  }
+
+  /** Returns an expression for the batches of rows that the input returns,
+   * if the input is a scan of a {@link BatchScannableTable} or an
+   * {@link EnumerableBatchRel}, and its fields can all be held in a
+   * {@link ColumnBatch}; otherwise null. */
+  private static Expression batchInputExpression(
+      EnumerableRelImplementor implementor, EnumerableRel child,
+      int batchSize) {
+    for (RelDataTypeField field : child.getRowType().getFieldList()) {
+      switch (field.getType().getSqlTypeName()) {
+      case ARRAY:
+      case MULTISET:
+        return null;
+      }
+    }
+    if (child instanceof EnumerableBatchRel) {
+      return ((EnumerableBatchRel) child).implementBatches(implementor,
+          batchSize);
+    }
+    if (!(child instanceof EnumerableTableScan)) {
+      return null;
+    }
+    final RelOptTable table = child.getTable();
+    if (table.unwrap(BatchScannableTable.class) == null) {
+      return null;
+    }
+    final Expression expression =
+        table.getExpression(BatchScannableTable.class);
+    if (expression == null
+        || !Types.isAssignableFrom(BatchScannableTable.class,
+            expression.getType())) {
+      return null;
+    }
+    return Expressions.call(expression,
+        BuiltInMethod.BATCH_SCANNABLE_TABLE_SCAN.method,
+        DataContext.ROOT,
+        Expressions.constant(batchSize));
+  }
+
+  /** Generates code that reads batches of rows from a
+   * {@link BatchScannableTable} or an {@link EnumerableBatchRel}.
+   *
+   * <p>For each batch, {@code moveNext} evaluates the condition in a loop
+   * over the column arrays and records the qualifying rows in a selection
+   * vector; {@code current} evaluates the projections for one row of the
+   * selection vector. Rows that do not qualify are never converted to an
+   * array, and primitive columns are not boxed. */
+  private Result implementBatch(EnumerableRelImplementor implementor,
+      Prefer pref, Expression batches, int batchSize) {
+    final JavaTypeFactory typeFactory = implementor.getTypeFactory();
+    final BlockBuilder builder = new BlockBuilder();
+    final PhysType inputPhysType =
+        PhysTypeImpl.of(typeFactory, getInput().getRowType(),
+            JavaRowFormat.ARRAY);
+    final PhysType physType =
+        PhysTypeImpl.of(
+            typeFactory, getRowType(), pref.prefer(JavaRowFormat.ARRAY));
+
+    // final Enumerable<ColumnBatch> inputEnumerable =
+    //     ((BatchScannableTable) table).scanBatches(root, 1024);
+    // return new Enumerable<IntString>() {
+    //     Enumerator<IntString> enumerator() {
+    //         return new Enumerator<IntString>() {
+    //             Object[] columns;
+    //             final int[] selection = new int[1024];
+    //             int count = 0;
+    //             int pos = -1;
+    //             public boolean moveNext() {
+    //                 while (++pos >= count) {
+    //                     if (!inputEnumerator.moveNext()) {
+    //                         return false;
+    //                     }
+    //                     final ColumnBatch batch = inputEnumerator.current();
+    //                     columns = batch.columns;
+    //                     pos = -1;
+    //                     final int[] column0 = (int[]) columns[0];
+    //                     int n = 0;
+    //                     for (int i = 0; i < batch.size; i++) {
+    //                         if (column0[i] > 10) {
+    //                             selection[n++] = i;
+    //                         }
+    //                     }
+    //                     count = n;
+    //                 }
+    //                 return true;
+    //             }
+    // ...
+    final Type outputJavaType = physType.getJavaRowType();
+    final Type enumeratorType =
+        Types.of(Enumerator.class, outputJavaType);
+    final ParameterExpression inputEnumerator =
+        Expressions.parameter(
+            Types.of(Enumerator.class, ColumnBatch.class), "inputEnumerator");
+    final ParameterExpression columns_ =
+        Expressions.parameter(Object[].class, "columns");
+    final ParameterExpression selection_ =
+        Expressions.parameter(int[].class, "selection");
+    final ParameterExpression count_ =
+        Expressions.parameter(int.class, "count");
+    final ParameterExpression pos_ =
+        Expressions.parameter(int.class, "pos");
+    final ParameterExpression batch_ =
+        Expressions.parameter(ColumnBatch.class, "batch");
+    final ParameterExpression i_ = Expressions.parameter(int.class, "i");
+    final ParameterExpression n_ = Expressions.parameter(int.class, "n");
+
+    final List<Statement> refill = new ArrayList<>();
+    refill.add(
+        Expressions.ifThen(
+            Expressions.not(
+                Expressions.call(inputEnumerator,
+                    BuiltInMethod.ENUMERATOR_MOVE_NEXT.method)),
+            Expressions.return_(null, Expressions.constant(false))));
+    refill.add(
+        Expressions.declare(Modifier.FINAL, batch_,
+            Expressions.convert_(
+                Expressions.call(inputEnumerator,
+                    BuiltInMethod.ENUMERATOR_CURRENT.method),
+                ColumnBatch.class)));
+    refill.add(
+        Expressions.statement(
+            Expressions.assign(columns_,
+                Expressions.field(batch_, "columns"))));
+    refill.add(
+        Expressions.statement(
+            Expressions.assign(pos_, Expressions.constant(-1))));
+    final Expression batchSize_ = Expressions.field(batch_, "size");
+    if (program.getCondition() == null) {
+      refill.add(
+          Expressions.statement(Expressions.assign(count_, batchSize_)));
+    } else {
+      final BlockBuilder builder2 = new BlockBuilder();
+      final BatchInputGetter inputGetter =
+          new BatchInputGetter(inputPhysType, columns_, i_);
+      final Expression condition =
+          RexToLixTranslator.translateCondition(
+              program,
+              typeFactory,
+              builder2,
+              inputGetter,
+              implementor.allCorrelateVariables);
+      builder2.add(
+          Expressions.ifThen(
+              condition,
+              Expressions.statement(
+                  Expressions.assign(
+                      Expressions.arrayIndex(selection_,
+                          Expressions.postIncrementAssign(n_)),
+                      i_))));
+      refill.addAll(inputGetter.declarations);
+      refill.add(Expressions.declare(0, n_, Expressions.constant(0)));
+      refill.add(
+          Expressions.for_(
+              Expressions.declare(0, i_, Expressions.constant(0)),
+              Expressions.lessThan(i_, batchSize_),
+              Expressions.preIncrementAssign(i_),
+              builder2.toBlock()));
+      refill.add(Expressions.statement(Expressions.assign(count_, n_)));
+    }
+    final BlockStatement moveNextBody =
+        Expressions.block(
+            Expressions.while_(
+                Expressions.greaterThanOrEqual(
+                    Expressions.preIncrementAssign(pos_), count_),
+                Expressions.block(refill)),
+            Expressions.return_(null, Expressions.constant(true)));
+
+    final BlockBuilder builder3 = new BlockBuilder();
+    final Expression row =
+        program.getCondition() == null
+            ? pos_
+            : builder3.append("row", Expressions.arrayIndex(selection_, pos_));
+    final BatchInputGetter inputGetter =
+        new BatchInputGetter(inputPhysType, columns_, row);
+    final List<Expression> expressions =
+        RexToLixTranslator.translateProjects(
+            program,
+            typeFactory,
+            builder3,
+            physType,
+            DataContext.ROOT,
+            inputGetter,
+            implementor.allCorrelateVariables);
+    builder3.add(
+        Expressions.return_(
+            null, physType.record(expressions)));
+    final List<Statement> currentStatements =
+        new ArrayList<>(inputGetter.declarations);
+    currentStatements.addAll(builder3.toBlock().statements);
+    final BlockStatement currentBody = Expressions.block(currentStatements);
+
+    final Expression inputEnumerable =
+        builder.append(
+            "inputEnumerable",
+            batches, false);
+    final List<MemberDeclaration> memberDeclarations = new ArrayList<>();
+    memberDeclarations.add(
+        Expressions.fieldDecl(
+            Modifier.PUBLIC
+            | Modifier.FINAL,
+            inputEnumerator,
+            Expressions.call(
+                inputEnumerable,
+                BuiltInMethod.ENUMERABLE_ENUMERATOR.method)));
+    memberDeclarations.add(
+        Expressions.fieldDecl(Modifier.PUBLIC, columns_, null));
+    if (program.getCondition() != null) {
+      memberDeclarations.add(
+          Expressions.fieldDecl(
+              Modifier.PUBLIC
+              | Modifier.FINAL,
+              selection_,
+              Expressions.newArrayBounds(int.class, 1,
+                  Expressions.constant(batchSize))));
+    }
+    memberDeclarations.add(
+        Expressions.fieldDecl(Modifier.PUBLIC, count_,
+            Expressions.constant(0)));
+    memberDeclarations.add(
+        Expressions.fieldDecl(Modifier.PUBLIC, pos_,
+            Expressions.constant(-1)));
+    memberDeclarations.add(
+        EnumUtils.overridingMethodDecl(
+            BuiltInMethod.ENUMERATOR_RESET.method,
+            NO_PARAMS,
+            Expressions.block(
+                Expressions.statement(
+                    Expressions.call(
+                        inputEnumerator,
+                        BuiltInMethod.ENUMERATOR_RESET.method)),
+                Expressions.statement(
+                    Expressions.assign(count_, Expressions.constant(0))),
+                Expressions.statement(
+                    Expressions.assign(pos_, Expressions.constant(-1))))));
+    memberDeclarations.add(
+        EnumUtils.overridingMethodDecl(
+            BuiltInMethod.ENUMERATOR_MOVE_NEXT.method,
+            NO_PARAMS,
+            moveNextBody));
+    memberDeclarations.add(
+        EnumUtils.overridingMethodDecl(
+            BuiltInMethod.ENUMERATOR_CLOSE.method,
+            NO_PARAMS,
+            Blocks.toFunctionBlock(
+                Expressions.call(
+                    inputEnumerator,
+                    BuiltInMethod.ENUMERATOR_CLOSE.method))));
+    memberDeclarations.add(
+        Expressions.methodDecl(
+            Modifier.PUBLIC,
+            BRIDGE_METHODS
+                ? Object.class
+                : outputJavaType,
+            "current",
+            NO_PARAMS,
+            currentBody));
+    final Expression body =
+        Expressions.new_(
+            enumeratorType,
+            NO_EXPRS,
+            memberDeclarations);
+    builder.add(
+        Expressions.return_(
+            null,
+            Expressions.new_(
+                BuiltInMethod.ABSTRACT_ENUMERABLE_CTOR.constructor,
+                NO_EXPRS,
+                ImmutableList.<MemberDeclaration>of(
+                    Expressions.methodDecl(
+                        Modifier.PUBLIC,
+                        enumeratorType,
+                        BuiltInMethod.ENUMERABLE_ENUMERATOR.method.getName(),
+                        NO_PARAMS,
+                        Blocks.toFunctionBlock(body))))));
+    return implementor.result(physType, builder.toBlock());
+  }
+
   public RexProgram getProgram() {
     return program;
   }
+
+  /** Implementation of {@link RexToLixTranslator.InputGetter} that reads
+   * fields from the column arrays of a {@link ColumnBatch}.
+   *
+   * <p>Each column that is referenced is cast to its array type once, in
+   * one of the {@link #declarations}, which the caller must place before the
+   * code that reads the fields. */
+  private static class BatchInputGetter
+      implements RexToLixTranslator.InputGetter {
+    private final PhysType physType;
+    private final Expression columns;
+    private final Expression row;
+    private final Map<Integer, ParameterExpression> columnVariables =
+        new HashMap<>();
+    final List<Statement> declarations = new ArrayList<>();
+
+    BatchInputGetter(PhysType physType, Expression columns, Expression row) {
+      this.physType = physType;
+      this.columns = columns;
+      this.row = row;
+    }
+
+    public Expression field(BlockBuilder list, int index, Type storageType) {
+      ParameterExpression column = columnVariables.get(index);
+      if (column == null) {
+        final Class arrayClass =
+            Array.newInstance(
+                ColumnBatch.componentType(physType.fieldClass(index)), 0)
+                .getClass();
+        column = Expressions.parameter(arrayClass, "column" + index);
+        declarations.add(
+            Expressions.declare(Modifier.FINAL, column,
+                Expressions.convert_(
+                    Expressions.arrayIndex(columns,
+                        Expressions.constant(index)),
+                    arrayClass)));
+        columnVariables.put(index, column);
+      }
+      return RexToLixTranslator.convert(
+          Expressions.arrayIndex(column, row),
+          storageType != null ? storageType : physType.fieldClass(index));
+    }
+  }
 }
 
 // End EnumerableCalc.java
@@ -18,6 +18,7 @@
 
 import org.apache.calcite.DataContext;
 import org.apache.calcite.avatica.Helper;
+import org.apache.calcite.config.CalciteConnectionProperty;
 import org.apache.calcite.interpreter.InterpretableConvention;
 import org.apache.calcite.interpreter.InterpretableRel;
 import org.apache.calcite.interpreter.Interpreter;
@@ -41,8 +42,16 @@
 import org.apache.calcite.runtime.Hook;
 import org.apache.calcite.runtime.Typed;
 import org.apache.calcite.runtime.Utilities;
+import org.apache.calcite.util.Pair;
 import org.apache.calcite.util.Util;
 
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.LoadingCache;
+
 import org.codehaus.commons.compiler.CompileException;
 import org.codehaus.commons.compiler.CompilerFactoryFactory;
 import org.codehaus.commons.compiler.IClassBodyEvaluator;
@@ -52,6 +61,8 @@
 import java.io.StringReader;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 
 /**
  * Relational expression that converts an enumerable input to interpretable
@@ -62,6 +73,26 @@
  */
 public class EnumerableInterpretable extends ConverterImpl
     implements InterpretableRel {
+  /** Caches of compiled bindables, one per maximum size, each keyed by
+   * generated source code and number of fields. Shared by all connections in
+   * this JVM; see {@link CalciteConnectionProperty#BINDABLE_CACHE_MAX_SIZE}.
+   *
+   * <p>Two plans that generate identical code can share a class, because the
+   * generated code retrieves stashed values and parameters from the
+   * {@link DataContext} at bind time, not at compile time. */
+  private static final LoadingCache<Integer,
+      Cache<Pair<String, Integer>, Bindable>> BINDABLE_CACHES =
+      CacheBuilder.newBuilder().build(
+          new CacheLoader<Integer, Cache<Pair<String, Integer>, Bindable>>() {
+            public Cache<Pair<String, Integer>, Bindable> load(
+                Integer maxSize) {
+              return CacheBuilder.newBuilder()
+                  .maximumSize(maxSize)
+                  .recordStats()
+                  .build();
+            }
+          });
+
   protected EnumerableInterpretable(RelOptCluster cluster, RelNode input) {
     super(cluster, ConventionTraitDef.INSTANCE,
         cluster.traitSetOf(InterpretableConvention.INSTANCE), input);
@@ -85,6 +116,15 @@ public Node implement(final InterpreterImplementor implementor) {
   public static Bindable toBindable(Map<String, Object> parameters,
       CalcitePrepare.SparkHandler spark, EnumerableRel rel,
       EnumerableRel.Prefer prefer) {
+    return toBindable(parameters, spark, rel, prefer, 0);
+  }
+
+  /** Generates and compiles code for a relational expression, re-using a
+   * class compiled earlier for identical code if {@code cacheMaxSize} is
+   * positive. */
+  public static Bindable toBindable(Map<String, Object> parameters,
+      CalcitePrepare.SparkHandler spark, EnumerableRel rel,
+      EnumerableRel.Prefer prefer, int cacheMaxSize) {
     EnumerableRelImplementor relImplementor =
         new EnumerableRelImplementor(rel.getCluster().getRexBuilder(),
             parameters);
@@ -102,7 +142,8 @@ public static Bindable toBindable(Map<String, Object> parameters,
       if (spark != null && spark.enabled()) {
         return spark.compile(expr, s);
       } else {
-        return getBindable(expr, s, rel.getRowType().getFieldCount());
+        return getBindable(expr, s, rel.getRowType().getFieldCount(),
+            cacheMaxSize);
       }
     } catch (Exception e) {
       throw Helper.INSTANCE.wrap("Error while compiling generated Java code:\n"
@@ -112,12 +153,57 @@ public static Bindable toBindable(Map<String, Object> parameters,
 
   static ArrayBindable getArrayBindable(ClassDeclaration expr, String s,
       int fieldCount) throws CompileException, IOException {
-    Bindable bindable = getBindable(expr, s, fieldCount);
+    Bindable bindable = getBindable(expr, s, fieldCount, 0);
     return box(bindable);
   }
 
-  static Bindable getBindable(ClassDeclaration expr, String s, int fieldCount)
+  static Bindable getBindable(final ClassDeclaration expr, final String s,
+      final int fieldCount, int cacheMaxSize)
       throws CompileException, IOException {
+    if (cacheMaxSize <= 0) {
+      return compile(expr, s, fieldCount);
+    }
+    try {
+      return BINDABLE_CACHES.getUnchecked(cacheMaxSize).get(Pair.of(s, fieldCount),
+          new Callable<Bindable>() {
+            public Bindable call() throws Exception {
+              return compile(expr, s, fieldCount);
+            }
+          });
+    } catch (ExecutionException e) {
+      final Throwable cause = e.getCause();
+      if (cause instanceof CompileException) {
+        throw (CompileException) cause;
+      }
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      }
+      throw Throwables.propagate(cause);
+    }
+  }
+
+  /** Returns statistics (hits, misses, evictions) of the caches of compiled
+   * bindables, summed over all cache sizes. All counts are zero if no
+   * connection has enabled caching. */
+  public static CacheStats getBindableCacheStats() {
+    CacheStats stats = new CacheStats(0, 0, 0, 0, 0, 0);
+    for (Cache<Pair<String, Integer>, Bindable> cache
+        : BINDABLE_CACHES.asMap().values()) {
+      stats = stats.plus(cache.stats());
+    }
+    return stats;
+  }
+
+  /** Removes all entries from the caches of compiled bindables. */
+  public static void clearBindableCache() {
+    for (Cache<Pair<String, Integer>, Bindable> cache
+        : BINDABLE_CACHES.asMap().values()) {
+      cache.invalidateAll();
+    }
+  }
+
+  private static Bindable compile(ClassDeclaration expr, String s,
+      int fieldCount) throws CompileException, IOException {
     ICompilerFactory compilerFactory;
     try {
       compilerFactory = CompilerFactoryFactory.getDefaultCompilerFactory();
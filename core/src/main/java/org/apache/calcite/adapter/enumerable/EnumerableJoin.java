@@ -16,9 +16,14 @@
  */
 package org.apache.calcite.adapter.enumerable;
 
+import org.apache.calcite.DataContext;
+import org.apache.calcite.linq4j.function.EqualityComparer;
+import org.apache.calcite.linq4j.function.LongFunction1;
 import org.apache.calcite.linq4j.tree.BlockBuilder;
 import org.apache.calcite.linq4j.tree.Expression;
 import org.apache.calcite.linq4j.tree.Expressions;
+import org.apache.calcite.linq4j.tree.ParameterExpression;
+import org.apache.calcite.linq4j.tree.Primitive;
 import org.apache.calcite.plan.RelOptCluster;
 import org.apache.calcite.plan.RelOptCost;
 import org.apache.calcite.plan.RelOptPlanner;
@@ -170,6 +175,50 @@ public Result implement(EnumerableRelImplementor implementor, Prefer pref) {
     final PhysType physType =
         PhysTypeImpl.of(
             implementor.getTypeFactory(), getRowType(), pref.preferArray());
+    final Expression selector =
+        EnumUtils.joinSelector(joinType,
+            physType,
+            ImmutableList.of(
+                leftResult.physType, rightResult.physType));
+    if (EnumerableExchange.isHashExchange(left, leftKeys)
+        && EnumerableExchange.isHashExchange(right, rightKeys)) {
+      // Both inputs are partitioned on the join key, so each partition can
+      // be joined by a separate thread.
+      final PhysType keyPhysType =
+          leftResult.physType.project(leftKeys, JavaRowFormat.LIST);
+      return implementor.result(
+          physType,
+          builder.append(
+              Expressions.call(
+                  BuiltInMethod.PARALLEL_JOIN.method,
+                  leftExpression,
+                  rightExpression,
+                  leftResult.physType.generateAccessor(leftKeys),
+                  rightResult.physType.generateAccessor(rightKeys),
+                  selector,
+                  Util.first(keyPhysType.comparer(),
+                      Expressions.constant(null, EqualityComparer.class)),
+                  Expressions.constant(joinType.generatesNullsOnLeft()),
+                  Expressions.constant(joinType.generatesNullsOnRight()),
+                  Expressions.call(BuiltInMethod.PARALLELISM.method,
+                      DataContext.ROOT)))
+              .toBlock());
+    }
+    if (isPrimitiveKey(leftResult.physType, rightResult.physType)) {
+      return implementor.result(
+          physType,
+          builder.append(
+              Expressions.call(
+                  BuiltInMethod.HASH_JOIN_LONG.method,
+                  leftExpression,
+                  rightExpression,
+                  longKeySelector(leftResult.physType, leftKeys.get(0)),
+                  longKeySelector(rightResult.physType, rightKeys.get(0)),
+                  selector,
+                  Expressions.constant(joinType.generatesNullsOnLeft()),
+                  Expressions.constant(joinType.generatesNullsOnRight())))
+              .toBlock());
+    }
     final PhysType keyPhysType =
         leftResult.physType.project(
             leftKeys, JavaRowFormat.LIST);
@@ -183,10 +232,7 @@ public Result implement(EnumerableRelImplementor implementor, Prefer pref) {
                     rightExpression,
                     leftResult.physType.generateAccessor(leftKeys),
                     rightResult.physType.generateAccessor(rightKeys),
-                    EnumUtils.joinSelector(joinType,
-                        physType,
-                        ImmutableList.of(
-                            leftResult.physType, rightResult.physType)))
+                    selector)
                     .append(
                         Util.first(keyPhysType.comparer(),
                             Expressions.constant(null)))
@@ -197,6 +243,45 @@ public Result implement(EnumerableRelImplementor implementor, Prefer pref) {
                             joinType.generatesNullsOnRight())))).toBlock());
   }
 
+  /** Returns whether this join has a single key whose Java class is the same
+   * non-nullable integer type on both sides, and can therefore use
+   * {@link org.apache.calcite.linq4j.EnumerableDefaults#hashJoinLong}. */
+  private boolean isPrimitiveKey(PhysType leftPhysType,
+      PhysType rightPhysType) {
+    if (leftKeys.size() != 1) {
+      return false;
+    }
+    final Class leftClass = leftPhysType.fieldClass(leftKeys.get(0));
+    final Class rightClass = rightPhysType.fieldClass(rightKeys.get(0));
+    if (leftClass != rightClass) {
+      return false;
+    }
+    final Primitive primitive = Primitive.of(leftClass);
+    if (primitive == null) {
+      return false;
+    }
+    switch (primitive) {
+    case BYTE:
+    case SHORT:
+    case INT:
+    case LONG:
+      return true;
+    default:
+      return false;
+    }
+  }
+
+  /** Generates a function that returns the key of a row as a
+   * {@code long}. */
+  private static Expression longKeySelector(PhysType physType, int field) {
+    final ParameterExpression v1 =
+        Expressions.parameter(physType.getJavaRowType(), "v1");
+    return Expressions.lambda(
+        LongFunction1.class,
+        Expressions.convert_(physType.fieldReference(v1, field), long.class),
+        v1);
+  }
+
 }
 
 // End EnumerableJoin.java
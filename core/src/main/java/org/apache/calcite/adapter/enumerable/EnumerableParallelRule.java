@@ -0,0 +1,190 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.adapter.enumerable;
+
+import org.apache.calcite.config.CalciteConnectionConfig;
+import org.apache.calcite.config.CalciteConnectionProperty;
+import org.apache.calcite.plan.RelOptRule;
+import org.apache.calcite.plan.RelOptRuleCall;
+import org.apache.calcite.plan.RelOptRuleOperand;
+import org.apache.calcite.plan.hep.HepRelVertex;
+import org.apache.calcite.rel.RelDistribution;
+import org.apache.calcite.rel.RelDistributions;
+import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.rel.core.Exchange;
+import org.apache.calcite.rel.metadata.RelMetadataQuery;
+
+import com.google.common.collect.ImmutableList;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Planner rule that inserts an {@link EnumerableExchange} below a large
+ * scan, aggregate or join, so that it runs in parallel with the rest of
+ * the plan.
+ *
+ * <p>The rules operate on physical plans and are intended for a
+ * {@link org.apache.calcite.plan.hep.HepPlanner} pass after the main
+ * optimization; see
+ * {@link org.apache.calcite.tools.Programs#standard()}. They only fire if
+ * the input has at least as many rows as the
+ * {@link CalciteConnectionProperty#PARALLEL_ROW_COUNT} connection property
+ * of the planner's context.</p>
+ *
+ * <ul>
+ * <li>{@link #SCAN} reads a table scan in a separate thread;</li>
+ * <li>{@link #AGGREGATE} partitions the input of an aggregate by hash of its
+ * group key;</li>
+ * <li>{@link #JOIN} partitions both inputs of a join by hash of their join
+ * keys.</li>
+ * </ul>
+ */
+public abstract class EnumerableParallelRule extends RelOptRule {
+  public static final EnumerableParallelRule SCAN = new ScanRule();
+
+  public static final EnumerableParallelRule AGGREGATE = new AggregateRule();
+
+  public static final EnumerableParallelRule JOIN = new JoinRule();
+
+  /** Rules that insert exchanges. */
+  public static final List<EnumerableParallelRule> RULES =
+      ImmutableList.of(SCAN, AGGREGATE, JOIN);
+
+  protected EnumerableParallelRule(RelOptRuleOperand operand,
+      String description) {
+    super(operand, description);
+  }
+
+  /** Returns whether a relational expression is large enough to be worth
+   * reading in a separate thread. */
+  protected static boolean isLarge(RelOptRuleCall call, RelNode rel) {
+    final CalciteConnectionConfig config =
+        call.getPlanner().getContext().unwrap(CalciteConnectionConfig.class);
+    final int minRowCount = config == null
+        ? (Integer) CalciteConnectionProperty.PARALLEL_ROW_COUNT.defaultValue()
+        : config.parallelRowCount();
+    final Double rowCount = RelMetadataQuery.getRowCount(rel);
+    return rowCount != null && rowCount >= minRowCount;
+  }
+
+  /** Returns an exchange with a given distribution over a relational
+   * expression, or null if it already has that distribution. Any existing
+   * exchange is replaced. */
+  protected static RelNode exchange(RelNode input,
+      RelDistribution distribution) {
+    if (input instanceof Exchange) {
+      if (((Exchange) input).getDistribution().equals(distribution)) {
+        return null;
+      }
+      input = ((Exchange) input).getInput();
+    }
+    return EnumerableExchange.create(input, distribution);
+  }
+
+  /** Rule that reads a large table scan in a separate thread. */
+  private static class ScanRule extends EnumerableParallelRule {
+    ScanRule() {
+      super(
+          operand(EnumerableRel.class,
+              unordered(operand(EnumerableTableScan.class, none()))),
+          "EnumerableParallelRule:scan");
+    }
+
+    @Override public void onMatch(RelOptRuleCall call) {
+      final RelNode parent = call.rel(0);
+      final EnumerableTableScan scan = call.rel(1);
+      if (parent instanceof Exchange || !isLarge(call, scan)) {
+        return;
+      }
+      final List<RelNode> inputs = new ArrayList<>(parent.getInputs());
+      for (int i = 0; i < inputs.size(); i++) {
+        final RelNode input = inputs.get(i);
+        if (input == scan
+            || input instanceof HepRelVertex
+            && ((HepRelVertex) input).getCurrentRel() == scan) {
+          inputs.set(i,
+              EnumerableExchange.create(scan,
+                  RelDistributions.ROUND_ROBIN_DISTRIBUTED));
+          call.transformTo(parent.copy(parent.getTraitSet(), inputs));
+          return;
+        }
+      }
+    }
+  }
+
+  /** Rule that partitions the input of a large aggregate by its group
+   * key. */
+  private static class AggregateRule extends EnumerableParallelRule {
+    AggregateRule() {
+      super(
+          operand(EnumerableAggregate.class,
+              operand(RelNode.class, any())),
+          "EnumerableParallelRule:aggregate");
+    }
+
+    @Override public void onMatch(RelOptRuleCall call) {
+      final EnumerableAggregate aggregate = call.rel(0);
+      final RelNode input0 = call.rel(1);
+      if (aggregate.getGroupType() != EnumerableAggregate.Group.SIMPLE
+          || aggregate.getGroupCount() == 0
+          || !isLarge(call, input0)) {
+        return;
+      }
+      final RelNode input =
+          exchange(input0,
+              RelDistributions.hash(aggregate.getGroupSet().asList()));
+      if (input != null) {
+        call.transformTo(
+            aggregate.copy(aggregate.getTraitSet(), ImmutableList.of(input)));
+      }
+    }
+  }
+
+  /** Rule that partitions both inputs of a large join by their join keys. */
+  private static class JoinRule extends EnumerableParallelRule {
+    JoinRule() {
+      super(
+          operand(EnumerableJoin.class,
+              operand(RelNode.class, any()),
+              operand(RelNode.class, any())),
+          "EnumerableParallelRule:join");
+    }
+
+    @Override public void onMatch(RelOptRuleCall call) {
+      final EnumerableJoin join = call.rel(0);
+      final RelNode left0 = call.rel(1);
+      final RelNode right0 = call.rel(2);
+      if (join.getLeftKeys().isEmpty()
+          || !isLarge(call, left0) && !isLarge(call, right0)) {
+        return;
+      }
+      final RelNode left =
+          exchange(left0, RelDistributions.hash(join.getLeftKeys()));
+      final RelNode right =
+          exchange(right0, RelDistributions.hash(join.getRightKeys()));
+      if (left != null || right != null) {
+        call.transformTo(
+            join.copy(join.getTraitSet(),
+                ImmutableList.of(left != null ? left : left0,
+                    right != null ? right : right0)));
+      }
+    }
+  }
+}
+
+// End EnumerableParallelRule.java
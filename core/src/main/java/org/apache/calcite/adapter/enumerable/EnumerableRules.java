@@ -98,6 +98,9 @@ private EnumerableRules() {
 
   public static final EnumerableTableFunctionScanRule
   ENUMERABLE_TABLE_FUNCTION_SCAN_RULE = new EnumerableTableFunctionScanRule();
+
+  public static final EnumerableExchangeRule ENUMERABLE_EXCHANGE_RULE =
+      new EnumerableExchangeRule();
 }
 
 // End EnumerableRules.java
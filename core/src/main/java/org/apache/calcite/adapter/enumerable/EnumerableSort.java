@@ -16,6 +16,7 @@
  */
 package org.apache.calcite.adapter.enumerable;
 
+import org.apache.calcite.DataContext;
 import org.apache.calcite.linq4j.tree.BlockBuilder;
 import org.apache.calcite.linq4j.tree.Expression;
 import org.apache.calcite.linq4j.tree.Expressions;
@@ -28,6 +29,8 @@
 import org.apache.calcite.util.BuiltInMethod;
 import org.apache.calcite.util.Pair;
 
+import java.util.Comparator;
+
 /** Implementation of {@link org.apache.calcite.rel.core.Sort} in
  * {@link org.apache.calcite.adapter.enumerable.EnumerableConvention enumerable calling convention}. */
 public class EnumerableSort extends Sort implements EnumerableRel {
@@ -81,14 +84,23 @@ public Result implement(EnumerableRelImplementor implementor, Prefer pref) {
         inputPhysType.generateCollationKey(
             collation.getFieldCollations());
 
+    final Expression comparator =
+        pair.right == null
+            ? Expressions.constant(null, Comparator.class)
+            : builder.append("comparator", pair.right);
+    final Expression keySelector = builder.append("keySelector", pair.left);
+    final Pair<Expression, Expression> converters =
+        EnumUtils.spillConverters(implementor.getTypeFactory(),
+            inputPhysType);
     builder.add(
         Expressions.return_(null,
-            Expressions.call(childExp,
-                BuiltInMethod.ORDER_BY.method,
-                Expressions.list(
-                    builder.append("keySelector", pair.left))
-                    .appendIfNotNull(
-                        builder.appendIfNotNull("comparator", pair.right)))));
+            Expressions.call(BuiltInMethod.SPILLING_ORDER_BY.method,
+                DataContext.ROOT,
+                childExp,
+                keySelector,
+                comparator,
+                builder.append("toArray", converters.left),
+                builder.append("fromArray", converters.right))));
     return implementor.result(physType, builder.toBlock());
   }
 }
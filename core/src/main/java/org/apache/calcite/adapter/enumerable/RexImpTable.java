@@ -264,13 +264,13 @@ public class RexImpTable {
     map.put(IS_NOT_FALSE, new IsXxxImplementor(false, true));
 
     // LIKE and SIMILAR
-    final MethodImplementor likeImplementor =
-        new MethodImplementor(BuiltInMethod.LIKE.method);
+    final LikeImplementor likeImplementor =
+        new LikeImplementor("like", "likeMatcher");
     defineImplementor(LIKE, NullPolicy.STRICT, likeImplementor, false);
     defineImplementor(NOT_LIKE, NullPolicy.STRICT,
         NotImplementor.of(likeImplementor), false);
-    final MethodImplementor similarImplementor =
-        new MethodImplementor(BuiltInMethod.SIMILAR.method);
+    final LikeImplementor similarImplementor =
+        new LikeImplementor("similar", "similarMatcher");
     defineImplementor(SIMILAR_TO, NullPolicy.STRICT, similarImplementor, false);
     defineImplementor(NOT_SIMILAR_TO, NullPolicy.STRICT,
         NotImplementor.of(similarImplementor), false);
@@ -1540,6 +1540,42 @@ public Expression implement(
     }
   }
 
+  /** Implementor for the {@code LIKE} and {@code SIMILAR TO} operators.
+   *
+   * <p>If the pattern and escape are literals, generates a call to a
+   * matcher factory method; the code optimizer hoists the call into a static
+   * field, so the pattern is compiled once rather than for every row.
+   * Otherwise generates a call to a method that looks up the compiled pattern
+   * in a cache. */
+  private static class LikeImplementor implements NotNullImplementor {
+    private final String methodName;
+    private final String matcherMethodName;
+
+    LikeImplementor(String methodName, String matcherMethodName) {
+      this.methodName = methodName;
+      this.matcherMethodName = matcherMethodName;
+    }
+
+    public Expression implement(
+        RexToLixTranslator translator,
+        RexCall call,
+        List<Expression> translatedOperands) {
+      final List<Expression> patternOperands =
+          Util.skip(translatedOperands, 1);
+      for (Expression operand : patternOperands) {
+        if (!(operand instanceof ConstantExpression)) {
+          return Expressions.call(SqlFunctions.class, methodName,
+              translatedOperands);
+        }
+      }
+      return Expressions.call(
+          Expressions.call(SqlFunctions.class, matcherMethodName,
+              patternOperands),
+          BuiltInMethod.LIKE_MATCHER_MATCHES.method,
+          translatedOperands.get(0));
+    }
+  }
+
   /** Implementor for binary operators. */
   private static class BinaryImplementor implements NotNullImplementor {
     /** Types that can be arguments to comparison operators such as
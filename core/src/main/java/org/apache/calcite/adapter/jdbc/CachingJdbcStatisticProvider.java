@@ -0,0 +1,73 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.adapter.jdbc;
+
+import org.apache.calcite.util.Pair;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Implementation of {@link JdbcStatisticProvider} that caches the statistics
+ * read by another provider, and refreshes them in the background.
+ *
+ * @see JdbcStatistics#cache(JdbcStatisticProvider, long)
+ */
+class CachingJdbcStatisticProvider implements JdbcStatisticProvider {
+  private static final Logger LOGGER =
+      Logger.getLogger(CachingJdbcStatisticProvider.class.getName());
+
+  private final LoadingCache<Pair<JdbcSchema, String>, JdbcStatistic> cache;
+
+  /** Creates a CachingJdbcStatisticProvider. */
+  CachingJdbcStatisticProvider(final JdbcStatisticProvider provider,
+      long ttl) {
+    CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder();
+    if (ttl > 0) {
+      builder = builder.refreshAfterWrite(ttl, TimeUnit.MILLISECONDS);
+    }
+    cache = builder.build(
+        JdbcUtils.asyncReloading(
+            new CacheLoader<Pair<JdbcSchema, String>, JdbcStatistic>() {
+              public JdbcStatistic load(Pair<JdbcSchema, String> key) {
+                try {
+                  final JdbcStatistic statistic =
+                      provider.statistic(key.left, key.right);
+                  return statistic == null
+                      ? JdbcStatistic.UNKNOWN
+                      : statistic;
+                } catch (Exception e) {
+                  LOGGER.log(Level.WARNING,
+                      "Failed to read statistics of table '" + key.right
+                      + "'", e);
+                  return JdbcStatistic.UNKNOWN;
+                }
+              }
+            }));
+  }
+
+  public JdbcStatistic statistic(JdbcSchema schema, String tableName) {
+    return cache.getUnchecked(Pair.of(schema, tableName));
+  }
+}
+
+// End CachingJdbcStatisticProvider.java
@@ -0,0 +1,270 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.adapter.jdbc;
+
+import org.apache.calcite.adapter.enumerable.EnumerableConvention;
+import org.apache.calcite.adapter.enumerable.EnumerableRel;
+import org.apache.calcite.adapter.enumerable.EnumerableRelImplementor;
+import org.apache.calcite.adapter.enumerable.JavaRowFormat;
+import org.apache.calcite.adapter.enumerable.PhysType;
+import org.apache.calcite.adapter.enumerable.PhysTypeImpl;
+import org.apache.calcite.adapter.java.JavaTypeFactory;
+import org.apache.calcite.linq4j.function.Function1;
+import org.apache.calcite.linq4j.tree.BlockBuilder;
+import org.apache.calcite.linq4j.tree.Expression;
+import org.apache.calcite.linq4j.tree.Expressions;
+import org.apache.calcite.linq4j.tree.ParameterExpression;
+import org.apache.calcite.plan.RelOptCluster;
+import org.apache.calcite.plan.RelOptCost;
+import org.apache.calcite.plan.RelOptPlanner;
+import org.apache.calcite.plan.RelTraitSet;
+import org.apache.calcite.prepare.CalcitePrepareImpl;
+import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.rel.RelWriter;
+import org.apache.calcite.rel.SingleRel;
+import org.apache.calcite.rel.core.JoinRelType;
+import org.apache.calcite.rel.metadata.RelMdUtil;
+import org.apache.calcite.rel.metadata.RelMetadataQuery;
+import org.apache.calcite.rel.type.RelDataType;
+import org.apache.calcite.rex.RexNode;
+import org.apache.calcite.runtime.Hook;
+import org.apache.calcite.schema.Schemas;
+import org.apache.calcite.sql.SqlDialect;
+import org.apache.calcite.sql.SqlDynamicParam;
+import org.apache.calcite.sql.SqlNode;
+import org.apache.calcite.sql.SqlNodeList;
+import org.apache.calcite.sql.fun.SqlStdOperatorTable;
+import org.apache.calcite.sql.parser.SqlParserPos;
+import org.apache.calcite.util.BuiltInMethod;
+import org.apache.calcite.util.ImmutableIntList;
+
+import com.google.common.base.Preconditions;
+
+import java.util.List;
+
+/**
+ * Join of an enumerable input to a table in a JDBC data source that, rather
+ * than reading the whole table, sends the join keys of each batch of input
+ * rows to the data source as parameters of a query.
+ *
+ * <p>For example, if {@code t} is a JDBC table joined on {@code t.k}, each
+ * batch of input rows executes
+ * "{@code SELECT * FROM t WHERE k IN (?, ?, ...)}". When the input is small
+ * and the table is large, this reads far fewer rows than a hash join that
+ * reads the whole table.
+ *
+ * <p>The table is not an input of this relational expression: it is only
+ * ever read through the parameterized query, so its full-scan cost does not
+ * apply. Created by {@link JdbcRules.JdbcBindJoinRule}; see
+ * {@link org.apache.calcite.runtime.BindJoinEnumerable} for the run-time
+ * behavior.
+ */
+public class JdbcBindJoin extends SingleRel implements EnumerableRel {
+  /** Number of distinct keys sent to the data source per query. */
+  public static final int BATCH_SIZE = 100;
+
+  /** Cost of a query round trip, in rows. */
+  private static final double QUERY_COST = 100d;
+
+  private static final SqlParserPos POS = SqlParserPos.ZERO;
+
+  public final JdbcTableScan scan;
+  public final ImmutableIntList leftKeys;
+  public final ImmutableIntList rightKeys;
+  public final JoinRelType joinType;
+  /** Equi-join condition, in terms of the input and the table; used only to
+   * estimate the number of rows. */
+  public final RexNode condition;
+  public final int batchSize;
+
+  /** Creates a JdbcBindJoin. */
+  protected JdbcBindJoin(RelOptCluster cluster, RelTraitSet traitSet,
+      RelNode input, JdbcTableScan scan, ImmutableIntList leftKeys,
+      ImmutableIntList rightKeys, JoinRelType joinType, RexNode condition,
+      RelDataType rowType, int batchSize) {
+    super(cluster, traitSet, input);
+    this.scan = Preconditions.checkNotNull(scan);
+    this.leftKeys = Preconditions.checkNotNull(leftKeys);
+    this.rightKeys = Preconditions.checkNotNull(rightKeys);
+    this.joinType = Preconditions.checkNotNull(joinType);
+    this.condition = Preconditions.checkNotNull(condition);
+    this.rowType = Preconditions.checkNotNull(rowType);
+    this.batchSize = batchSize;
+    Preconditions.checkArgument(!leftKeys.isEmpty()
+        && leftKeys.size() == rightKeys.size());
+    Preconditions.checkArgument(joinType == JoinRelType.INNER
+        || joinType == JoinRelType.LEFT);
+    Preconditions.checkArgument(batchSize > 0);
+    assert getConvention() instanceof EnumerableConvention;
+  }
+
+  /** Creates a JdbcBindJoin. */
+  public static JdbcBindJoin create(RelNode input, JdbcTableScan scan,
+      ImmutableIntList leftKeys, ImmutableIntList rightKeys,
+      JoinRelType joinType, RexNode condition, RelDataType rowType) {
+    final RelOptCluster cluster = input.getCluster();
+    return new JdbcBindJoin(cluster,
+        cluster.traitSetOf(EnumerableConvention.INSTANCE), input, scan,
+        leftKeys, rightKeys, joinType, condition, rowType, BATCH_SIZE);
+  }
+
+  @Override public RelNode copy(RelTraitSet traitSet, List<RelNode> inputs) {
+    return new JdbcBindJoin(getCluster(), traitSet, sole(inputs), scan,
+        leftKeys, rightKeys, joinType, condition, rowType, batchSize);
+  }
+
+  @Override public RelWriter explainTerms(RelWriter pw) {
+    return super.explainTerms(pw)
+        .item("table", scan.getTable().getQualifiedName())
+        .item("leftKeys", leftKeys)
+        .item("rightKeys", rightKeys)
+        .item("joinType", joinType.name().toLowerCase())
+        .item("batchSize", batchSize);
+  }
+
+  /** {@inheritDoc}
+   *
+   * <p>Estimates the number of rows in the same way as a join of the input
+   * to the whole table; a left join returns at least one row per input
+   * row. */
+  @Override public double getRows() {
+    final double leftRowCount = RelMetadataQuery.getRowCount(getInput());
+    final double rowCount = leftRowCount * scan.getRows()
+        * RelMdUtil.guessSelectivity(condition);
+    return joinType == JoinRelType.LEFT
+        ? Math.max(rowCount, leftRowCount)
+        : rowCount;
+  }
+
+  /** {@inheritDoc}
+   *
+   * <p>The cost is the rows returned, plus the input rows, plus a fixed
+   * cost for each query. Unlike a hash join, it does not depend on the
+   * number of rows in the table. */
+  @Override public RelOptCost computeSelfCost(RelOptPlanner planner) {
+    final double leftRowCount = RelMetadataQuery.getRowCount(getInput());
+    final double queryCount = Math.ceil(leftRowCount / batchSize);
+    return planner.getCostFactory().makeCost(
+        getRows() + leftRowCount + queryCount * QUERY_COST, 0, 0);
+  }
+
+  public Result implement(EnumerableRelImplementor implementor, Prefer pref) {
+    // Generate:
+    //   BindJoinEnumerable.of(left, schema.getDataSource(),
+    //       "select ... where k in (?, ...)", ...)
+    final JavaTypeFactory typeFactory = implementor.getTypeFactory();
+    final BlockBuilder builder = new BlockBuilder();
+    final Result leftResult =
+        implementor.visitChild(this, 0, (EnumerableRel) getInput(),
+            Prefer.ARRAY);
+    final Expression left0_ = builder.append("left", leftResult.block);
+    final Expression left_;
+    if (leftResult.physType.getFormat() == JavaRowFormat.SCALAR) {
+      // A conversion to ARRAY format would leave a single field as a scalar
+      final ParameterExpression o_ =
+          Expressions.parameter(leftResult.physType.getJavaRowType(), "o");
+      left_ =
+          Expressions.call(left0_, BuiltInMethod.SELECT.method,
+              Expressions.lambda(Function1.class,
+                  Expressions.newArrayInit(Object.class, o_), o_));
+    } else {
+      left_ =
+          leftResult.physType.convertTo(left0_,
+              PhysTypeImpl.of(typeFactory, getInput().getRowType(),
+                  JavaRowFormat.ARRAY));
+    }
+    final JdbcConvention jdbcConvention =
+        (JdbcConvention) scan.getConvention();
+    final String sql = generateSql(jdbcConvention.dialect);
+    if (CalcitePrepareImpl.DEBUG) {
+      System.out.println("[" + sql + "]");
+    }
+    Hook.QUERY_PLAN.run(sql);
+    final PhysType rightPhysType =
+        PhysTypeImpl.of(typeFactory, scan.getRowType(), JavaRowFormat.ARRAY,
+            false);
+    final Expression rowBuilderFactory_ =
+        builder.append("rowBuilderFactory",
+            JdbcToEnumerableConverter.rowBuilderFactory(implementor, builder,
+                rightPhysType, jdbcConvention.dialect, true));
+    builder.add(
+        Expressions.return_(null,
+            Expressions.call(
+                BuiltInMethod.BIND_JOIN_ENUMERABLE_OF.method,
+                left_,
+                Expressions.call(
+                    Schemas.unwrap(jdbcConvention.expression,
+                        JdbcSchema.class),
+                    BuiltInMethod.JDBC_SCHEMA_DATA_SOURCE.method),
+                Expressions.constant(sql),
+                Expressions.constant(leftKeys.toIntArray()),
+                Expressions.constant(rightKeys.toIntArray()),
+                Expressions.constant(batchSize),
+                Expressions.constant(joinType == JoinRelType.LEFT),
+                Expressions.constant(scan.getRowType().getFieldCount()),
+                rowBuilderFactory_)));
+    final PhysType physType =
+        PhysTypeImpl.of(typeFactory, getRowType(), JavaRowFormat.ARRAY,
+            false);
+    return implementor.result(physType, builder.toBlock());
+  }
+
+  /** Generates the query on the table, with a parameter for each key of
+   * each row of a batch. */
+  private String generateSql(SqlDialect dialect) {
+    final JdbcImplementor jdbcImplementor =
+        new JdbcImplementor(dialect,
+            (JavaTypeFactory) getCluster().getTypeFactory());
+    final JdbcImplementor.Result result = jdbcImplementor.visitChild(0, scan);
+    final JdbcImplementor.Builder builder =
+        result.builder(scan, JdbcImplementor.Clause.WHERE);
+    builder.setWhere(keyCondition(builder.context));
+    return builder.result().asQuery().toSqlString(dialect).getSql();
+  }
+
+  /** Returns "{@code k IN (?, ...)}" if there is one key, otherwise
+   * "{@code (k0 = ? AND k1 = ?) OR ...}". */
+  private SqlNode keyCondition(JdbcImplementor.Context context) {
+    if (rightKeys.size() == 1) {
+      final SqlNodeList params = new SqlNodeList(POS);
+      for (int i = 0; i < batchSize; i++) {
+        params.add(new SqlDynamicParam(i, POS));
+      }
+      return SqlStdOperatorTable.IN.createCall(POS,
+          context.field(rightKeys.get(0)), params);
+    }
+    int p = 0;
+    SqlNode condition = null;
+    for (int i = 0; i < batchSize; i++) {
+      SqlNode conjunction = null;
+      for (int key : rightKeys) {
+        final SqlNode equals =
+            SqlStdOperatorTable.EQUALS.createCall(POS, context.field(key),
+                new SqlDynamicParam(p++, POS));
+        conjunction = conjunction == null
+            ? equals
+            : SqlStdOperatorTable.AND.createCall(POS, conjunction, equals);
+      }
+      condition = condition == null
+          ? conjunction
+          : SqlStdOperatorTable.OR.createCall(POS, condition, conjunction);
+    }
+    return condition;
+  }
+}
+
+// End JdbcBindJoin.java
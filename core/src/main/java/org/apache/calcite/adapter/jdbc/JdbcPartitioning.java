@@ -0,0 +1,361 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.adapter.jdbc;
+
+import org.apache.calcite.avatica.util.DateTimeUtils;
+import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.rel.core.Aggregate;
+import org.apache.calcite.rel.core.AggregateCall;
+import org.apache.calcite.rel.type.RelDataType;
+import org.apache.calcite.rel.type.RelDataTypeField;
+import org.apache.calcite.rex.RexBuilder;
+import org.apache.calcite.rex.RexNode;
+import org.apache.calcite.sql.SqlAggFunction;
+import org.apache.calcite.sql.fun.SqlStdOperatorTable;
+import org.apache.calcite.sql.type.SqlTypeName;
+import org.apache.calcite.util.Pair;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Describes how to split a scan of a {@link JdbcTable} into several queries,
+ * each reading a partition of the table, that run concurrently over separate
+ * connections.
+ *
+ * <p>Partitions are defined by the values of one column. A {@link Kind#RANGE}
+ * partitioning splits the range of a numeric, date or timestamp column into
+ * {@link #count} intervals of equal width; a {@link Kind#HASH} partitioning
+ * assigns rows by the value of an integer column modulo {@link #count}.
+ * Rows whose value is null belong to the first partition. The partitions
+ * are disjoint and together contain every row, even if the bounds are out of
+ * date.
+ *
+ * <p>Partitionings are specified in the "partitions" operand of a JDBC
+ * schema, for example:
+ *
+ * <pre>{@code
+ * partitions: [
+ *   {
+ *     table: 'sales_fact_1997',
+ *     column: 'time_id',
+ *     kind: 'range',
+ *     count: 4,
+ *     lower: 367,
+ *     upper: 730
+ *   }
+ * ]
+ * }</pre>
+ *
+ * <p>If {@code lower} and {@code upper} are not specified for a range
+ * partitioning, the minimum and maximum values of the column are read from
+ * the data source the first time the table is scanned.
+ */
+public class JdbcPartitioning {
+  public final String column;
+  public final Kind kind;
+  public final int count;
+  /** Lower bound of the values of the column: a number, or for date and
+   * timestamp columns, a string; or null. */
+  public final Object lower;
+  /** Upper bound of the values of the column, or null. */
+  public final Object upper;
+
+  /** Creates a JdbcPartitioning. */
+  public JdbcPartitioning(String column, Kind kind, int count, Object lower,
+      Object upper) {
+    this.column = Preconditions.checkNotNull(column);
+    this.kind = Preconditions.checkNotNull(kind);
+    this.count = count;
+    this.lower = lower;
+    this.upper = upper;
+    Preconditions.checkArgument(count > 0, "partition count must be positive");
+    Preconditions.checkArgument((lower == null) == (upper == null),
+        "specify both lower and upper bound, or neither");
+  }
+
+  /** Creates a map of partitionings, keyed by JDBC table name, from the
+   * "partitions" operand of a schema. */
+  public static ImmutableMap<String, JdbcPartitioning> createMap(
+      List<Map<String, Object>> operand) {
+    final ImmutableMap.Builder<String, JdbcPartitioning> builder =
+        ImmutableMap.builder();
+    if (operand != null) {
+      for (Map<String, Object> map : operand) {
+        final String table = (String) map.get("table");
+        final String kind = (String) map.get("kind");
+        final Number count = (Number) map.get("count");
+        builder.put(Preconditions.checkNotNull(table, "table"),
+            new JdbcPartitioning((String) map.get("column"),
+                kind == null
+                    ? Kind.RANGE
+                    : Kind.valueOf(kind.toUpperCase(Locale.ROOT)),
+                count == null ? 1 : count.intValue(),
+                map.get("lower"), map.get("upper")));
+      }
+    }
+    return builder.build();
+  }
+
+  @Override public String toString() {
+    return kind + "(" + column + ", " + count + ")";
+  }
+
+  /** Returns the conditions that define the partitions of a table, or an
+   * empty list if the table cannot be partitioned (for example, if a range
+   * partitioning has no bounds because the table is empty).
+   *
+   * @param rexBuilder Rex builder
+   * @param rowType Row type of the table
+   * @param range Minimum and maximum values of the column, used if this
+   *              partitioning does not specify bounds
+   */
+  public List<RexNode> conditions(RexBuilder rexBuilder, RelDataType rowType,
+      Pair<Object, Object> range) {
+    final RelDataTypeField field = rowType.getField(column, true, false);
+    if (field == null) {
+      throw new IllegalArgumentException("partition column '" + column
+          + "' not found");
+    }
+    if (count < 2) {
+      return ImmutableList.of();
+    }
+    final RexNode ref = rexBuilder.makeInputRef(field.getType(),
+        field.getIndex());
+    final SqlTypeName typeName = field.getType().getSqlTypeName();
+    final List<RexNode> conditions = new ArrayList<>();
+    switch (kind) {
+    case HASH:
+      if (!SqlTypeName.INT_TYPES.contains(typeName)) {
+        throw new IllegalArgumentException("hash partition column '" + column
+            + "' must have integer type");
+      }
+      // MOD of a negative value is negative, so partition i holds the rows
+      // where "MOD(c, count)" is i or i - count.
+      final RexNode mod =
+          rexBuilder.makeCall(SqlStdOperatorTable.MOD, ref,
+              rexBuilder.makeExactLiteral(BigDecimal.valueOf(count)));
+      for (int i = 0; i < count; i++) {
+        conditions.add(
+            rexBuilder.makeCall(SqlStdOperatorTable.OR,
+                equals(rexBuilder, mod, i),
+                i == 0
+                    ? rexBuilder.makeCall(SqlStdOperatorTable.IS_NULL, ref)
+                    : equals(rexBuilder, mod, i - count)));
+      }
+      return conditions;
+    case RANGE:
+    default:
+      final Object lower = this.lower != null ? this.lower : range.left;
+      final Object upper = this.upper != null ? this.upper : range.right;
+      if (lower == null || upper == null) {
+        return ImmutableList.of();
+      }
+      final double lo = ordinal(typeName, lower);
+      final double hi = ordinal(typeName, upper);
+      RexNode previous = null;
+      for (int i = 1; i < count; i++) {
+        final RexNode bound =
+            literal(rexBuilder, field.getType(), lo + (hi - lo) * i / count);
+        final RexNode lessThan =
+            rexBuilder.makeCall(SqlStdOperatorTable.LESS_THAN, ref, bound);
+        conditions.add(
+            previous == null
+                ? rexBuilder.makeCall(SqlStdOperatorTable.OR, lessThan,
+                    rexBuilder.makeCall(SqlStdOperatorTable.IS_NULL, ref))
+                : rexBuilder.makeCall(SqlStdOperatorTable.AND,
+                    rexBuilder.makeCall(
+                        SqlStdOperatorTable.GREATER_THAN_OR_EQUAL, ref,
+                        previous),
+                    lessThan));
+        previous = bound;
+      }
+      conditions.add(
+          rexBuilder.makeCall(SqlStdOperatorTable.GREATER_THAN_OR_EQUAL, ref,
+              previous));
+      return conditions;
+    }
+  }
+
+  private static RexNode equals(RexBuilder rexBuilder, RexNode e, int i) {
+    return rexBuilder.makeCall(SqlStdOperatorTable.EQUALS, e,
+        rexBuilder.makeExactLiteral(BigDecimal.valueOf(i)));
+  }
+
+  /** Converts a bound to a number: days since the epoch for a date,
+   * milliseconds since the epoch for a timestamp. */
+  private static double ordinal(SqlTypeName typeName, Object o) {
+    switch (typeName) {
+    case DATE:
+      if (o instanceof String) {
+        return DateTimeUtils.dateStringToUnixDate((String) o);
+      }
+      if (o instanceof java.util.Date) {
+        return Math.floor((double) ((java.util.Date) o).getTime()
+            / DateTimeUtils.MILLIS_PER_DAY);
+      }
+      break;
+    case TIMESTAMP:
+      if (o instanceof String) {
+        return DateTimeUtils.timestampStringToUnixDate((String) o);
+      }
+      if (o instanceof java.util.Date) {
+        return ((java.util.Date) o).getTime();
+      }
+      break;
+    default:
+      if (SqlTypeName.NUMERIC_TYPES.contains(typeName)
+          && o instanceof Number) {
+        return ((Number) o).doubleValue();
+      }
+    }
+    throw new IllegalArgumentException("cannot partition column of type "
+        + typeName + " by value " + o);
+  }
+
+  /** Creates a literal of a column's type from a value returned by
+   * {@link #ordinal}. */
+  private static RexNode literal(RexBuilder rexBuilder, RelDataType type,
+      double value) {
+    final Calendar calendar;
+    switch (type.getSqlTypeName()) {
+    case DATE:
+      calendar = Calendar.getInstance(DateTimeUtils.GMT_ZONE, Locale.ROOT);
+      calendar.setTimeInMillis(
+          (long) Math.ceil(value) * DateTimeUtils.MILLIS_PER_DAY);
+      return rexBuilder.makeDateLiteral(calendar);
+    case TIMESTAMP:
+      calendar = Calendar.getInstance(DateTimeUtils.GMT_ZONE, Locale.ROOT);
+      calendar.setTimeInMillis((long) Math.ceil(value));
+      return rexBuilder.makeTimestampLiteral(calendar, 0);
+    case FLOAT:
+    case REAL:
+    case DOUBLE:
+      return rexBuilder.makeApproxLiteral(BigDecimal.valueOf(value), type);
+    case DECIMAL:
+      return rexBuilder.makeExactLiteral(
+          BigDecimal.valueOf(value).setScale(type.getScale(),
+              RoundingMode.CEILING), type);
+    default:
+      return rexBuilder.makeExactLiteral(
+          BigDecimal.valueOf((long) Math.ceil(value)), type);
+    }
+  }
+
+  /** Returns one copy of a tree of JDBC relational expressions per
+   * partition, each reading only that partition of the table, or null if
+   * the tree cannot be split.
+   *
+   * <p>The tree can be split if it consists of filters and projects on a
+   * scan of a partitioned table. If {@code aggregate} is true, the root may
+   * also be an aggregate whose functions can be computed by combining
+   * the results for each partition; see {@link #rollup}. */
+  static List<RelNode> split(RelNode rel, boolean aggregate) {
+    if (rel instanceof JdbcTableScan) {
+      final JdbcTableScan scan = (JdbcTableScan) rel;
+      final List<RexNode> conditions = scan.jdbcTable.partitionConditions(
+          scan.getCluster().getRexBuilder(), scan.getRowType());
+      if (conditions.isEmpty()) {
+        return null;
+      }
+      final List<RelNode> list = new ArrayList<>();
+      for (RexNode condition : conditions) {
+        list.add(
+            new JdbcRules.JdbcFilter(scan.getCluster(), scan.getTraitSet(),
+                scan, condition));
+      }
+      return list;
+    }
+    if (rel instanceof Aggregate) {
+      if (!aggregate || !canRollup((Aggregate) rel)) {
+        return null;
+      }
+    } else if (!(rel instanceof JdbcRules.JdbcFilter
+        || rel instanceof JdbcRules.JdbcProject
+        || rel instanceof JdbcRules.JdbcCalc)) {
+      return null;
+    }
+    final List<RelNode> inputs = split(rel.getInput(0), false);
+    if (inputs == null) {
+      return null;
+    }
+    final List<RelNode> list = new ArrayList<>();
+    for (RelNode input : inputs) {
+      list.add(rel.copy(rel.getTraitSet(), ImmutableList.of(input)));
+    }
+    return list;
+  }
+
+  /** Returns whether the results of an aggregate over each partition of its
+   * input can be combined into the result over the whole input. */
+  static boolean canRollup(Aggregate aggregate) {
+    if (aggregate.getGroupType() != Aggregate.Group.SIMPLE) {
+      return false;
+    }
+    for (AggregateCall aggCall : aggregate.getAggCallList()) {
+      if (aggCall.isDistinct() || rollup(aggCall, 0) == null) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /** Returns the aggregate call that combines the results of an aggregate
+   * call over each partition, or null if they cannot be combined.
+   *
+   * @param aggCall Aggregate call
+   * @param arg Ordinal of the field that holds the result of the call over
+   *            a partition
+   */
+  static AggregateCall rollup(AggregateCall aggCall, int arg) {
+    final SqlAggFunction aggregation = aggCall.getAggregation();
+    final SqlAggFunction aggFunction;
+    if (aggregation == SqlStdOperatorTable.COUNT) {
+      aggFunction = SqlStdOperatorTable.SUM0;
+    } else if (aggregation == SqlStdOperatorTable.SUM
+        || aggregation == SqlStdOperatorTable.SUM0
+        || aggregation == SqlStdOperatorTable.MIN
+        || aggregation == SqlStdOperatorTable.MAX) {
+      aggFunction = aggregation;
+    } else {
+      return null;
+    }
+    return AggregateCall.create(aggFunction, false, ImmutableList.of(arg), -1,
+        aggCall.getType(), aggCall.getName());
+  }
+
+  /** Kind of partitioning. */
+  public enum Kind {
+    /** Splits the range of values of the column into intervals of equal
+     * width. */
+    RANGE,
+    /** Assigns rows by the value of the column modulo the partition
+     * count. */
+    HASH
+  }
+}
+
+// End JdbcPartitioning.java
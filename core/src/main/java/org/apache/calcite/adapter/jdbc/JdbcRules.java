@@ -16,6 +16,7 @@
  */
 package org.apache.calcite.adapter.jdbc;
 
+import org.apache.calcite.adapter.enumerable.EnumerableJoin;
 import org.apache.calcite.linq4j.Ord;
 import org.apache.calcite.linq4j.Queryable;
 import org.apache.calcite.linq4j.tree.Expression;
@@ -25,6 +26,7 @@
 import org.apache.calcite.plan.RelOptCost;
 import org.apache.calcite.plan.RelOptPlanner;
 import org.apache.calcite.plan.RelOptRule;
+import org.apache.calcite.plan.RelOptRuleCall;
 import org.apache.calcite.plan.RelOptTable;
 import org.apache.calcite.plan.RelTrait;
 import org.apache.calcite.plan.RelTraitSet;
@@ -60,6 +62,7 @@
 import org.apache.calcite.rel.logical.LogicalValues;
 import org.apache.calcite.rel.metadata.RelMetadataQuery;
 import org.apache.calcite.rel.type.RelDataType;
+import org.apache.calcite.rel.type.RelDataTypeField;
 import org.apache.calcite.rex.RexCall;
 import org.apache.calcite.rex.RexInputRef;
 import org.apache.calcite.rex.RexLiteral;
@@ -92,6 +95,8 @@
 import org.apache.calcite.sql.type.InferTypes;
 import org.apache.calcite.sql.type.OperandTypes;
 import org.apache.calcite.sql.type.ReturnTypes;
+import org.apache.calcite.sql.type.SqlTypeName;
+import org.apache.calcite.sql.type.SqlTypeUtil;
 import org.apache.calcite.sql.validate.SqlValidatorUtil;
 import org.apache.calcite.util.ImmutableBitSet;
 import org.apache.calcite.util.Pair;
@@ -102,6 +107,7 @@
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.EnumSet;
 import java.util.List;
 import java.util.Set;
 import java.util.logging.Logger;
@@ -123,6 +129,7 @@ public static List<RelOptRule> rules(JdbcConvention out) {
     return ImmutableList.<RelOptRule>of(
         new JdbcToEnumerableConverterRule(out),
         new JdbcJoinRule(out),
+        new JdbcBindJoinRule(out),
         new JdbcCalcRule(out),
         new JdbcProjectRule(out),
         new JdbcFilterRule(out),
@@ -455,6 +462,64 @@ private static JoinType joinType(JoinRelType joinType) {
     }
   }
 
+  /**
+   * Rule that converts an {@link EnumerableJoin} whose right input is a scan
+   * of a JDBC table into a {@link JdbcBindJoin}, which looks up the keys of
+   * the left input in batches rather than reading the whole table.
+   *
+   * <p>Fires only for inner and left joins whose keys have the same type on
+   * both sides, and whose types can be bound as parameters without
+   * conversion. The planner chooses between the joins based on cost.
+   */
+  public static class JdbcBindJoinRule extends RelOptRule {
+    private static final Set<SqlTypeName> KEY_TYPES =
+        EnumSet.of(SqlTypeName.BOOLEAN, SqlTypeName.TINYINT,
+            SqlTypeName.SMALLINT, SqlTypeName.INTEGER, SqlTypeName.BIGINT,
+            SqlTypeName.CHAR, SqlTypeName.VARCHAR);
+
+    JdbcBindJoinRule(JdbcConvention out) {
+      super(
+          operand(EnumerableJoin.class,
+              operand(RelNode.class, any()),
+              operand(JdbcToEnumerableConverter.class,
+                  operand(JdbcTableScan.class, out, none()))),
+          "JdbcBindJoinRule:" + out);
+    }
+
+    @Override public void onMatch(RelOptRuleCall call) {
+      final EnumerableJoin join = call.rel(0);
+      final JdbcTableScan scan = call.rel(3);
+      switch (join.getJoinType()) {
+      case INNER:
+      case LEFT:
+        break;
+      default:
+        return;
+      }
+      if (join.getLeftKeys().isEmpty()) {
+        return;
+      }
+      final List<RelDataTypeField> leftFields =
+          join.getLeft().getRowType().getFieldList();
+      final List<RelDataTypeField> rightFields =
+          scan.getRowType().getFieldList();
+      for (Pair<Integer, Integer> pair
+          : Pair.zip(join.getLeftKeys(), join.getRightKeys())) {
+        final RelDataType leftType = leftFields.get(pair.left).getType();
+        final RelDataType rightType = rightFields.get(pair.right).getType();
+        if (!KEY_TYPES.contains(rightType.getSqlTypeName())
+            || !SqlTypeUtil.equalSansNullability(
+                join.getCluster().getTypeFactory(), leftType, rightType)) {
+          return;
+        }
+      }
+      call.transformTo(
+          JdbcBindJoin.create(join.getLeft(), scan, join.getLeftKeys(),
+              join.getRightKeys(), join.getJoinType(), join.getCondition(),
+              join.getRowType()));
+    }
+  }
+
   /**
    * Rule to convert a {@link org.apache.calcite.rel.logical.LogicalCalc} to an
    * {@link org.apache.calcite.adapter.jdbc.JdbcRules.JdbcCalc}.
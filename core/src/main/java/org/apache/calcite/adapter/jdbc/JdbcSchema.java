@@ -16,6 +16,7 @@
  */
 package org.apache.calcite.adapter.jdbc;
 
+import org.apache.calcite.DataContext;
 import org.apache.calcite.avatica.SqlType;
 import org.apache.calcite.linq4j.tree.Expression;
 import org.apache.calcite.rel.type.RelDataType;
@@ -28,16 +29,23 @@
 import org.apache.calcite.schema.SchemaFactory;
 import org.apache.calcite.schema.SchemaPlus;
 import org.apache.calcite.schema.Schemas;
+import org.apache.calcite.schema.Statistic;
+import org.apache.calcite.schema.Statistics;
 import org.apache.calcite.schema.Table;
 import org.apache.calcite.sql.SqlDialect;
 import org.apache.calcite.sql.type.SqlTypeFactoryImpl;
 import org.apache.calcite.sql.type.SqlTypeName;
 import org.apache.calcite.util.Util;
 
+import com.google.common.base.Objects;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableMultimap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Multimap;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
@@ -45,8 +53,11 @@
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import javax.sql.DataSource;
 
 /**
@@ -62,7 +73,30 @@ public class JdbcSchema implements Schema {
   final String schema;
   public final SqlDialect dialect;
   final JdbcConvention convention;
-  private ImmutableMap<String, JdbcTable> tableMap;
+  /** How to partition scans of tables, keyed by JDBC table name. */
+  final ImmutableMap<String, JdbcPartitioning> partitionings;
+  /** Number of rows to fetch per round trip, or 0 to use the driver's
+   * default. */
+  final int fetchSize;
+  /** Reads statistics about tables; null if statistics are not read. */
+  final JdbcStatisticProvider statisticProvider;
+  /** How long to cache the names and row types of tables, in milliseconds;
+   * 0 means until {@link #invalidate()}, negative means that table names are
+   * read again whenever {@link #getTableNames()} is called. */
+  final long metadataTtl;
+  /** Map of tables by name; has a single entry whose key is the empty
+   * string. */
+  private final LoadingCache<String, ImmutableMap<String, JdbcTable>>
+  tableMapCache;
+  /** Row types of tables. An entry is never refreshed, because the row type
+   * of a table must not change while it is in use; if a table's columns
+   * change, {@link #computeTables()} replaces the table. */
+  private final LoadingCache<JdbcTable, RelProtoDataType> rowTypeCache;
+  /** Most recently read map of tables; used to re-use tables whose
+   * definition has not changed. */
+  private volatile ImmutableMap<String, JdbcTable> tableMap;
+  /** Time at which the set of tables was last seen to change. */
+  private volatile long changed = Long.MIN_VALUE;
 
   /**
    * Creates a JDBC schema.
@@ -75,28 +109,87 @@ public class JdbcSchema implements Schema {
    */
   public JdbcSchema(DataSource dataSource, SqlDialect dialect,
       JdbcConvention convention, String catalog, String schema) {
+    this(dataSource, dialect, convention, catalog, schema, Config.DEFAULT);
+  }
+
+  /**
+   * Creates a JDBC schema with a given configuration.
+   *
+   * @param dataSource Data source
+   * @param dialect SQL dialect
+   * @param convention Calling convention
+   * @param catalog Catalog name, or null
+   * @param schema Schema name pattern
+   * @param config How to partition scans of tables, how many rows to fetch
+   *               per round trip, whether to read statistics, and how long to
+   *               cache the definitions of tables; see {@link #configBuilder()}
+   */
+  public JdbcSchema(DataSource dataSource, SqlDialect dialect,
+      JdbcConvention convention, String catalog, String schema,
+      Config config) {
     super();
     this.dataSource = dataSource;
     this.dialect = dialect;
     this.convention = convention;
     this.catalog = catalog;
     this.schema = schema;
+    this.partitionings = config.partitionings();
+    this.fetchSize = config.fetchSize();
+    this.statisticProvider = config.statisticProvider();
+    this.metadataTtl = config.metadataTtl();
+    this.tableMapCache = cacheBuilder(metadataTtl).build(
+        JdbcUtils.asyncReloading(
+            new CacheLoader<String, ImmutableMap<String, JdbcTable>>() {
+              public ImmutableMap<String, JdbcTable> load(String key) {
+                return computeTables();
+              }
+            }));
+    this.rowTypeCache = CacheBuilder.newBuilder().weakKeys().build(
+        new CacheLoader<JdbcTable, RelProtoDataType>() {
+          public RelProtoDataType load(JdbcTable table) throws SQLException {
+            return getRelDataType(table.jdbcCatalogName,
+                table.jdbcSchemaName, table.jdbcTableName);
+          }
+        });
     assert dialect != null;
     assert dataSource != null;
   }
 
+  /** Returns a builder for a cache of metadata that refreshes entries after
+   * a given time, if positive. */
+  private static CacheBuilder<Object, Object> cacheBuilder(long ttl) {
+    final CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder();
+    return ttl > 0
+        ? builder.refreshAfterWrite(ttl, TimeUnit.MILLISECONDS)
+        : builder;
+  }
+
   public static JdbcSchema create(
       SchemaPlus parentSchema,
       String name,
       DataSource dataSource,
       String catalog,
       String schema) {
+    return create(parentSchema, name, dataSource, catalog, schema,
+        Config.DEFAULT);
+  }
+
+  /** Creates a JdbcSchema with a given configuration; see
+   * {@link #configBuilder()}. */
+  public static JdbcSchema create(
+      SchemaPlus parentSchema,
+      String name,
+      DataSource dataSource,
+      String catalog,
+      String schema,
+      Config config) {
     final Expression expression =
         Schemas.subSchemaExpression(parentSchema, name, JdbcSchema.class);
     final SqlDialect dialect = createDialect(dataSource);
     final JdbcConvention convention =
         JdbcConvention.of(dialect, expression, name);
-    return new JdbcSchema(dataSource, dialect, convention, catalog, schema);
+    return new JdbcSchema(dataSource, dialect, convention, catalog, schema,
+        config);
   }
 
   /**
@@ -129,8 +222,24 @@ public static JdbcSchema create(
     }
     String jdbcCatalog = (String) operand.get("jdbcCatalog");
     String jdbcSchema = (String) operand.get("jdbcSchema");
-    return JdbcSchema.create(
-        parentSchema, name, dataSource, jdbcCatalog, jdbcSchema);
+    @SuppressWarnings("unchecked")
+    final List<Map<String, Object>> partitions =
+        (List<Map<String, Object>>) operand.get("partitions");
+    final Number fetchSize = (Number) operand.get("fetchSize");
+    final Number metadataTtl = (Number) operand.get("metadataTtl");
+    final ConfigBuilder configBuilder = configBuilder()
+        .setPartitionings(JdbcPartitioning.createMap(partitions))
+        .setStatisticProvider(
+            JdbcStatistics.create((String) operand.get("statisticProvider"),
+                (Number) operand.get("statisticTtl")));
+    if (fetchSize != null) {
+      configBuilder.setFetchSize(fetchSize.intValue());
+    }
+    if (metadataTtl != null) {
+      configBuilder.setMetadataTtl(metadataTtl.longValue());
+    }
+    return JdbcSchema.create(parentSchema, name, dataSource, jdbcCatalog,
+        jdbcSchema, configBuilder.build());
   }
 
   /** Returns a suitable SQL dialect for the given data source. */
@@ -154,7 +263,7 @@ public boolean isMutable() {
   }
 
   public boolean contentsHaveChangedSince(long lastCheck, long now) {
-    return false;
+    return changed > lastCheck;
   }
 
   // Used by generated code.
@@ -162,6 +271,33 @@ public DataSource getDataSource() {
     return dataSource;
   }
 
+  /** Returns the number of rows to fetch per round trip when executing a
+   * statement: the fetch size of the current Calcite statement, if set,
+   * otherwise the fetch size of this schema. 0 means use the driver's
+   * default. Used by generated code.
+   *
+   * @see DataContext.Variable#FETCH_SIZE */
+  public int getFetchSize(DataContext root) {
+    final Integer fetchSize =
+        root == null ? null : DataContext.Variable.FETCH_SIZE.<Integer>get(root);
+    return fetchSize != null && fetchSize != 0 ? fetchSize : this.fetchSize;
+  }
+
+  /** Returns statistics about a table, or {@link Statistics#UNKNOWN} if this
+   * schema does not read statistics. */
+  Statistic getStatistic(String tableName) {
+    if (statisticProvider == null) {
+      return Statistics.UNKNOWN;
+    }
+    try {
+      return statisticProvider.statistic(this, tableName);
+    } catch (SQLException e) {
+      throw new RuntimeException(
+          "Exception while reading statistics of table '" + tableName + "'",
+          e);
+    }
+  }
+
   public Expression getExpression(SchemaPlus parentSchema, String name) {
     return Schemas.subSchemaExpression(parentSchema, name, JdbcSchema.class);
   }
@@ -179,7 +315,44 @@ public final Set<String> getFunctionNames() {
     return getFunctions().keySet();
   }
 
-  private ImmutableMap<String, JdbcTable> computeTables() {
+  /** Discards the cached names and row types of tables, so that they are
+   * read from the data source the next time they are needed. */
+  public void invalidate() {
+    tableMap = null;
+    tableMapCache.invalidateAll();
+    rowTypeCache.invalidateAll();
+    changed = System.currentTimeMillis();
+  }
+
+  /** Replaces a table with a new table whose row type is read from the data
+   * source the next time it is needed. Queries that are already using the
+   * old table keep its row type. */
+  public synchronized void invalidate(String tableName) {
+    final ImmutableMap<String, JdbcTable> tableMap = this.tableMap;
+    final JdbcTable table = tableMap == null ? null : tableMap.get(tableName);
+    if (table == null) {
+      return;
+    }
+    final Map<String, JdbcTable> map = new LinkedHashMap<>(tableMap);
+    map.put(tableName,
+        new JdbcTable(this, table.jdbcCatalogName, table.jdbcSchemaName,
+            tableName, table.getJdbcTableType()));
+    this.tableMap = ImmutableMap.copyOf(map);
+    tableMapCache.put("", this.tableMap);
+    changed = System.currentTimeMillis();
+  }
+
+  /** Reads the tables from the data source.
+   *
+   * <p>If {@link #metadataTtl} is not negative, re-uses the tables of the
+   * previous read that have the same name and type, so that their row types
+   * remain cached. If the row type of such a table has been read, reads it
+   * again, and if its columns have changed, creates a new table. The row type
+   * of a table never changes, because a query that is being prepared or
+   * executed may be using it. */
+  private synchronized ImmutableMap<String, JdbcTable> computeTables() {
+    final ImmutableMap<String, JdbcTable> previousMap =
+        metadataTtl < 0 ? null : tableMap;
     Connection connection = null;
     ResultSet resultSet = null;
     try {
@@ -215,11 +388,44 @@ private ImmutableMap<String, JdbcTable> computeTables() {
         if (tableType == TableType.OTHER  && tableTypeName2 != null) {
           System.out.println("Unknown table type: " + tableTypeName2);
         }
-        final JdbcTable table =
-            new JdbcTable(this, catalogName, schemaName, tableName, tableType);
-        builder.put(tableName, table);
+        final JdbcTable previous =
+            previousMap == null ? null : previousMap.get(tableName);
+        if (previous != null
+            && Objects.equal(previous.jdbcCatalogName, catalogName)
+            && Objects.equal(previous.jdbcSchemaName, schemaName)
+            && previous.getJdbcTableType() == tableType) {
+          final RelProtoDataType protoRowType =
+              rowTypeCache.getIfPresent(previous);
+          if (protoRowType == null) {
+            builder.put(tableName, previous);
+            continue;
+          }
+          final RelProtoDataType newProtoRowType =
+              getRelDataType(metaData, catalogName, schemaName, tableName);
+          if (sameRowType(protoRowType, newProtoRowType)) {
+            builder.put(tableName, previous);
+            continue;
+          }
+          final JdbcTable table =
+              new JdbcTable(this, catalogName, schemaName, tableName,
+                  tableType);
+          rowTypeCache.put(table, newProtoRowType);
+          builder.put(tableName, table);
+          continue;
+        }
+        builder.put(tableName,
+            new JdbcTable(this, catalogName, schemaName, tableName,
+                tableType));
+      }
+      final ImmutableMap<String, JdbcTable> map = builder.build();
+      if (tableMap != null
+          && (previousMap == null
+              ? !tableMap.keySet().equals(map.keySet())
+              : !previousMap.equals(map))) {
+        changed = System.currentTimeMillis();
       }
-      return builder.build();
+      tableMap = map;
+      return map;
     } catch (SQLException e) {
       throw new RuntimeException(
           "Exception while reading tables", e);
@@ -228,16 +434,37 @@ private ImmutableMap<String, JdbcTable> computeTables() {
     }
   }
 
+  /** Returns whether two proto row types have the same field names and
+   * types. */
+  private static boolean sameRowType(RelProtoDataType protoRowType0,
+      RelProtoDataType protoRowType1) {
+    final RelDataTypeFactory typeFactory =
+        new SqlTypeFactoryImpl(RelDataTypeSystem.DEFAULT);
+    return protoRowType0.apply(typeFactory).getFullTypeString().equals(
+        protoRowType1.apply(typeFactory).getFullTypeString());
+  }
+
   public Table getTable(String name) {
     return getTableMap(false).get(name);
   }
 
-  private synchronized ImmutableMap<String, JdbcTable> getTableMap(
-      boolean force) {
-    if (force || tableMap == null) {
-      tableMap = computeTables();
+  private ImmutableMap<String, JdbcTable> getTableMap(boolean force) {
+    if (force) {
+      tableMapCache.invalidateAll();
+    }
+    return tableMapCache.getUnchecked("");
+  }
+
+  /** Returns the row type of a table, reading it from the data source if it
+   * is not cached. */
+  RelProtoDataType getProtoRowType(JdbcTable table) {
+    try {
+      return rowTypeCache.getUnchecked(table);
+    } catch (UncheckedExecutionException e) {
+      throw new RuntimeException(
+          "Exception while reading definition of table '"
+              + table.jdbcTableName + "'", e.getCause());
     }
-    return tableMap;
   }
 
   RelProtoDataType getRelDataType(String catalogName, String schemaName,
@@ -358,9 +585,10 @@ private RelDataType parseTypeString(RelDataTypeFactory typeFactory,
   }
 
   public Set<String> getTableNames() {
-    // This method is called during a cache refresh. We can take it as a signal
-    // that we need to re-build our own cache.
-    return getTableMap(true).keySet();
+    // This method is called during a cache refresh. Unless we cache table
+    // names for a given time, we take it as a signal that we need to re-build
+    // our own cache.
+    return getTableMap(metadataTtl < 0).keySet();
   }
 
   public Schema getSubSchema(String name) {
@@ -372,7 +600,7 @@ public Set<String> getSubSchemaNames() {
     return ImmutableSet.of();
   }
 
-  private static void close(
+  static void close(
       Connection connection, Statement statement, ResultSet resultSet) {
     if (resultSet != null) {
       try {
@@ -414,12 +642,34 @@ private static void close(
    *         jdbcDriver: 'com.mysql.jdbc.Driver',
    *         jdbcUrl: 'jdbc:mysql://localhost/foodmart',
    *         jdbcUser: 'foodmart',
-   *         jdbcPassword: 'foodmart'
+   *         jdbcPassword: 'foodmart',
+   *         partitions: [
+   *           {
+   *             table: 'sales_fact_1997',
+   *             column: 'time_id',
+   *             kind: 'range',
+   *             count: 4
+   *           }
+   *         ]
    *       }
    *     }
    *   ]
    * }
    * }</pre>
+   *
+   * <p>The optional "partitions" operand describes how to scan tables in
+   * partitions; see {@link JdbcPartitioning}.
+   *
+   * <p>The optional "statisticProvider" operand is the name of a class that
+   * implements {@link JdbcStatisticProvider}, or of a static field such as
+   * "org.apache.calcite.adapter.jdbc.JdbcStatistics#AUTO"; statistics are
+   * cached for "statisticTtl" milliseconds (default one hour).
+   *
+   * <p>The optional "metadataTtl" operand is how long, in milliseconds, to
+   * cache the names and row types of tables before reading them again in the
+   * background; 0 means until {@link JdbcSchema#invalidate()} is called.
+   * If not specified, the names of tables are read whenever Calcite refreshes
+   * its own cache of the schema.
    */
   public static class Factory implements SchemaFactory {
     public Schema create(
@@ -429,6 +679,111 @@ public Schema create(
       return JdbcSchema.create(parentSchema, name, operand);
     }
   }
+
+  /** Creates a builder for a {@link Config}. */
+  public static ConfigBuilder configBuilder() {
+    return new ConfigBuilder();
+  }
+
+  /** Configuration of a JDBC schema: how to partition scans of its tables,
+   * how many rows to fetch per round trip, whether to read statistics about
+   * its tables, and how long to cache their definitions.
+   *
+   * @see ConfigBuilder */
+  public interface Config {
+    /** Default configuration. */
+    Config DEFAULT = configBuilder().build();
+
+    /** How to partition scans of tables, keyed by JDBC table name. */
+    ImmutableMap<String, JdbcPartitioning> partitionings();
+
+    /** Number of rows to fetch per round trip, or 0 to use the driver's
+     * default. */
+    int fetchSize();
+
+    /** Reads statistics about tables, or null if statistics are not read;
+     * see {@link JdbcStatistics}. */
+    JdbcStatisticProvider statisticProvider();
+
+    /** How long to cache the names and row types of tables, in
+     * milliseconds, before reading them again in the background; 0 means
+     * until {@link #invalidate()} is called; negative means read the names
+     * of tables whenever {@link #getTableNames()} is called. */
+    long metadataTtl();
+  }
+
+  /** Builder for a {@link Config}. */
+  public static class ConfigBuilder {
+    private ImmutableMap<String, JdbcPartitioning> partitionings =
+        ImmutableMap.of();
+    private int fetchSize = 0;
+    private JdbcStatisticProvider statisticProvider = null;
+    private long metadataTtl = -1;
+
+    private ConfigBuilder() {}
+
+    public ConfigBuilder setPartitionings(
+        Map<String, JdbcPartitioning> partitionings) {
+      this.partitionings = ImmutableMap.copyOf(partitionings);
+      return this;
+    }
+
+    public ConfigBuilder setFetchSize(int fetchSize) {
+      this.fetchSize = fetchSize;
+      return this;
+    }
+
+    public ConfigBuilder setStatisticProvider(
+        JdbcStatisticProvider statisticProvider) {
+      this.statisticProvider = statisticProvider;
+      return this;
+    }
+
+    public ConfigBuilder setMetadataTtl(long metadataTtl) {
+      this.metadataTtl = metadataTtl;
+      return this;
+    }
+
+    /** Builds a {@link Config}. */
+    public Config build() {
+      return new ConfigImpl(partitionings, fetchSize, statisticProvider,
+          metadataTtl);
+    }
+  }
+
+  /** Implementation of {@link Config}.
+   * Called by builder; all values are in private final fields. */
+  private static class ConfigImpl implements Config {
+    private final ImmutableMap<String, JdbcPartitioning> partitionings;
+    private final int fetchSize;
+    private final JdbcStatisticProvider statisticProvider;
+    private final long metadataTtl;
+
+    private ConfigImpl(ImmutableMap<String, JdbcPartitioning> partitionings,
+        int fetchSize, JdbcStatisticProvider statisticProvider,
+        long metadataTtl) {
+      this.partitionings = partitionings;
+      this.fetchSize = fetchSize;
+      this.statisticProvider = statisticProvider;
+      this.metadataTtl = metadataTtl;
+    }
+
+    public ImmutableMap<String, JdbcPartitioning> partitionings() {
+      return partitionings;
+    }
+
+    public int fetchSize() {
+      return fetchSize;
+    }
+
+    public JdbcStatisticProvider statisticProvider() {
+      return statisticProvider;
+    }
+
+    public long metadataTtl() {
+      return metadataTtl;
+    }
+  }
 }
 
 // End JdbcSchema.java
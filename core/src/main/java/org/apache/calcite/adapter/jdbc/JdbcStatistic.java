@@ -0,0 +1,154 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.adapter.jdbc;
+
+import org.apache.calcite.rel.RelCollation;
+import org.apache.calcite.rel.RelDistribution;
+import org.apache.calcite.rel.RelDistributionTraitDef;
+import org.apache.calcite.schema.ColumnStatistic;
+import org.apache.calcite.schema.Statistic;
+import org.apache.calcite.util.ImmutableBitSet;
+
+import com.google.common.collect.ImmutableList;
+
+import java.util.List;
+
+/**
+ * Statistics about a table in a JDBC data source, read by a
+ * {@link JdbcStatisticProvider}.
+ *
+ * <p>As well as the row count and unique keys, it holds the number of
+ * distinct values, the fraction of nulls and a histogram of each column, which
+ * the metadata providers use to estimate selectivity; see
+ * {@link ColumnStatistic}.
+ */
+public class JdbcStatistic implements Statistic, ColumnStatistic {
+  /** Statistic that knows nothing about a table. */
+  public static final JdbcStatistic UNKNOWN =
+      new JdbcStatistic(null, ImmutableList.<ImmutableBitSet>of(),
+          ImmutableList.<Column>of());
+
+  public final Double rowCount;
+  public final ImmutableList<ImmutableBitSet> keys;
+  /** Statistics of each column, in the order of the columns in the table; or
+   * empty if not known. */
+  public final ImmutableList<Column> columns;
+
+  /** Creates a JdbcStatistic. */
+  public JdbcStatistic(Double rowCount, List<ImmutableBitSet> keys,
+      List<Column> columns) {
+    this.rowCount = rowCount;
+    this.keys = ImmutableList.copyOf(keys);
+    this.columns = ImmutableList.copyOf(columns);
+  }
+
+  @Override public String toString() {
+    return "{rowCount: " + rowCount + ", keys: " + keys + ", columns: "
+        + columns + "}";
+  }
+
+  public Double getRowCount() {
+    return rowCount;
+  }
+
+  public boolean isKey(ImmutableBitSet columns) {
+    for (ImmutableBitSet key : keys) {
+      if (columns.contains(key)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  public List<RelCollation> getCollations() {
+    return ImmutableList.of();
+  }
+
+  public RelDistribution getDistribution() {
+    return RelDistributionTraitDef.INSTANCE.getDefault();
+  }
+
+  public Double getDistinctCount(int column) {
+    return column < columns.size() ? columns.get(column).distinctCount : null;
+  }
+
+  public Double getNullFraction(int column) {
+    return column < columns.size() ? columns.get(column).nullFraction : null;
+  }
+
+  /** {@inheritDoc}
+   *
+   * <p>The histogram is equi-depth: each bucket, between two consecutive
+   * bounds, holds the same number of values. Values within a bucket are
+   * assumed to be uniformly distributed. */
+  public Double getFractionBelow(int column, double value) {
+    if (column >= columns.size()) {
+      return null;
+    }
+    final List<Double> bounds = columns.get(column).histogram;
+    if (bounds.size() < 2) {
+      return null;
+    }
+    if (value <= bounds.get(0)) {
+      return 0d;
+    }
+    final int bucketCount = bounds.size() - 1;
+    if (value >= bounds.get(bucketCount)) {
+      return 1d;
+    }
+    int i = 0;
+    while (value >= bounds.get(i + 1)) {
+      ++i;
+    }
+    final double low = bounds.get(i);
+    final double high = bounds.get(i + 1);
+    return (i + (value - low) / (high - low)) / bucketCount;
+  }
+
+  /** Statistics about a column. Each field may be null, meaning not
+   * known. */
+  public static class Column {
+    /** Column that nothing is known about. */
+    public static final Column UNKNOWN =
+        new Column(null, null, ImmutableList.<Double>of());
+
+    /** Number of distinct non-null values. */
+    public final Double distinctCount;
+    /** Fraction of rows in which the column is null. */
+    public final Double nullFraction;
+    /** Bounds of an equi-depth histogram of the non-null values, in ascending
+     * order; empty if there is no histogram. The first bound is the minimum
+     * value, and the last is the maximum. Values are represented as in
+     * {@link ColumnStatistic}. */
+    public final ImmutableList<Double> histogram;
+
+    /** Creates a Column. */
+    public Column(Double distinctCount, Double nullFraction,
+        List<Double> histogram) {
+      this.distinctCount = distinctCount;
+      this.nullFraction = nullFraction;
+      this.histogram = ImmutableList.copyOf(histogram);
+    }
+
+    @Override public String toString() {
+      return "{distinctCount: " + distinctCount + ", nullFraction: "
+          + nullFraction + ", histogram: " + histogram + "}";
+    }
+  }
+}
+
+// End JdbcStatistic.java
@@ -0,0 +1,39 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.adapter.jdbc;
+
+import java.sql.SQLException;
+
+/**
+ * Reads statistics about the tables of a {@link JdbcSchema} from its data
+ * source.
+ *
+ * @see JdbcStatistics
+ */
+public interface JdbcStatisticProvider {
+  /** Returns statistics about a table.
+   *
+   * @param schema Schema
+   * @param tableName Name of a table in the schema
+   * @return Statistics, never null; {@link JdbcStatistic#UNKNOWN} if nothing
+   * is known
+   */
+  JdbcStatistic statistic(JdbcSchema schema, String tableName)
+      throws SQLException;
+}
+
+// End JdbcStatisticProvider.java
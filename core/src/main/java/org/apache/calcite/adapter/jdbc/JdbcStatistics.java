@@ -0,0 +1,196 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.adapter.jdbc;
+
+import org.apache.calcite.avatica.AvaticaUtils;
+import org.apache.calcite.rel.type.RelDataType;
+import org.apache.calcite.rel.type.RelDataTypeSystem;
+import org.apache.calcite.runtime.SqlFunctions;
+import org.apache.calcite.sql.SqlDialect;
+import org.apache.calcite.sql.type.SqlTypeFactoryImpl;
+import org.apache.calcite.sql.type.SqlTypeName;
+import org.apache.calcite.util.ImmutableBitSet;
+
+import com.google.common.collect.ImmutableList;
+
+import java.sql.DatabaseMetaData;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Utilities for {@link JdbcStatistic} and {@link JdbcStatisticProvider}.
+ */
+public class JdbcStatistics {
+  private JdbcStatistics() {}
+
+  /** How long, in milliseconds, statistics are cached before they are read
+   * again, if a schema does not specify. One hour. */
+  public static final long DEFAULT_TTL = 60L * 60L * 1000L;
+
+  /** Statistics provider that executes a "SELECT COUNT(*)" query against the
+   * table, and a "SELECT COUNT(DISTINCT ...), MIN(...), MAX(...) ..." query
+   * against a sample of its rows. The row count is exact; the other
+   * statistics are estimates. */
+  public static final JdbcStatisticProvider SQL =
+      SqlJdbcStatisticProvider.INSTANCE;
+
+  /** Statistics provider that reads the statistics that PostgreSQL's
+   * {@code ANALYZE} command gathers, from the {@code pg_class} and
+   * {@code pg_stats} catalog tables. If a table has not been analyzed, uses
+   * {@link #SQL}. */
+  public static final JdbcStatisticProvider POSTGRESQL =
+      PostgresqlJdbcStatisticProvider.INSTANCE;
+
+  /** Statistics provider that uses the catalog of the data source if Calcite
+   * knows how to read it (currently, only for PostgreSQL), and otherwise
+   * uses {@link #SQL}. */
+  public static final JdbcStatisticProvider AUTO =
+      new JdbcStatisticProvider() {
+        public JdbcStatistic statistic(JdbcSchema schema, String tableName)
+            throws SQLException {
+          switch (schema.dialect.getDatabaseProduct()) {
+          case POSTGRESQL:
+            return POSTGRESQL.statistic(schema, tableName);
+          default:
+            return SQL.statistic(schema, tableName);
+          }
+        }
+      };
+
+  /** Wraps a statistic provider in a cache. Statistics are read the first
+   * time they are needed; after {@code ttl} milliseconds, they are read again
+   * in a background thread, and meanwhile the old statistics are used.
+   *
+   * <p>If the provider fails, the failure is logged, and
+   * {@link JdbcStatistic#UNKNOWN} is cached in its place.
+   *
+   * @param provider Underlying provider
+   * @param ttl How long to use statistics before reading them again, in
+   *            milliseconds; if 0 or negative, statistics are never read
+   *            again
+   */
+  public static JdbcStatisticProvider cache(JdbcStatisticProvider provider,
+      long ttl) {
+    return new CachingJdbcStatisticProvider(provider, ttl);
+  }
+
+  /** Creates a caching statistic provider from the attributes of a schema in
+   * a model, or returns null if the schema does not read statistics.
+   *
+   * @param className Name of a class that implements
+   *                  {@link JdbcStatisticProvider}, or of a static field, as
+   *                  in {@link AvaticaUtils#instantiatePlugin}; for example
+   *                  "org.apache.calcite.adapter.jdbc.JdbcStatistics#AUTO";
+   *                  or null
+   * @param ttl How long to cache statistics, in milliseconds, or null to use
+   *            {@link #DEFAULT_TTL}
+   */
+  public static JdbcStatisticProvider create(String className, Number ttl) {
+    if (className == null) {
+      return null;
+    }
+    return cache(
+        AvaticaUtils.instantiatePlugin(JdbcStatisticProvider.class,
+            className),
+        ttl == null ? DEFAULT_TTL : ttl.longValue());
+  }
+
+  /** Returns the row type of a table. */
+  static RelDataType rowType(JdbcTable table) {
+    return table.getRowType(new SqlTypeFactoryImpl(RelDataTypeSystem.DEFAULT));
+  }
+
+  /** Returns the SQL name of a table, qualified by catalog and schema, as
+   * used in statements sent to its data source. */
+  static String sqlName(JdbcTable table, SqlDialect dialect) {
+    return table.tableName().toSqlString(dialect).getSql();
+  }
+
+  /** Returns the primary key of a table, if it has one, as read from the JDBC
+   * catalog. */
+  static List<ImmutableBitSet> primaryKeys(DatabaseMetaData metaData,
+      JdbcTable table, RelDataType rowType) throws SQLException {
+    final List<Integer> ordinals = new ArrayList<>();
+    final ResultSet resultSet =
+        metaData.getPrimaryKeys(table.jdbcCatalogName, table.jdbcSchemaName,
+            table.jdbcTableName);
+    try {
+      while (resultSet.next()) {
+        final int ordinal =
+            rowType.getFieldNames().indexOf(resultSet.getString(4));
+        if (ordinal < 0) {
+          return ImmutableList.of();
+        }
+        ordinals.add(ordinal);
+      }
+    } finally {
+      resultSet.close();
+    }
+    return ordinals.isEmpty()
+        ? ImmutableList.<ImmutableBitSet>of()
+        : ImmutableList.of(ImmutableBitSet.of(ordinals));
+  }
+
+  /** Returns whether Calcite can build a histogram of values of a given
+   * type; that is, whether the values are numbers or date-times. */
+  static boolean isRanged(SqlTypeName typeName) {
+    switch (typeName) {
+    case TINYINT:
+    case SMALLINT:
+    case INTEGER:
+    case BIGINT:
+    case DECIMAL:
+    case FLOAT:
+    case REAL:
+    case DOUBLE:
+    case DATE:
+    case TIME:
+    case TIMESTAMP:
+      return true;
+    default:
+      return false;
+    }
+  }
+
+  /** Reads a value of a numeric or date-time column as a {@code double}, as
+   * represented in {@link org.apache.calcite.schema.ColumnStatistic}; returns
+   * null if the value is null. */
+  static Double value(ResultSet resultSet, int i, SqlTypeName typeName)
+      throws SQLException {
+    switch (typeName) {
+    case DATE:
+      final Date date = resultSet.getDate(i);
+      return date == null ? null : (double) SqlFunctions.toInt(date);
+    case TIME:
+      final Time time = resultSet.getTime(i);
+      return time == null ? null : (double) SqlFunctions.toInt(time);
+    case TIMESTAMP:
+      final Timestamp timestamp = resultSet.getTimestamp(i);
+      return timestamp == null ? null : (double) SqlFunctions.toLong(timestamp);
+    default:
+      final double d = resultSet.getDouble(i);
+      return d == 0d && resultSet.wasNull() ? null : d;
+    }
+  }
+}
+
+// End JdbcStatistics.java
@@ -30,13 +30,16 @@
 import org.apache.calcite.rel.type.RelDataType;
 import org.apache.calcite.rel.type.RelDataTypeFactory;
 import org.apache.calcite.rel.type.RelDataTypeField;
-import org.apache.calcite.rel.type.RelProtoDataType;
+import org.apache.calcite.rex.RexBuilder;
+import org.apache.calcite.rex.RexNode;
 import org.apache.calcite.runtime.ResultSetEnumerable;
 import org.apache.calcite.schema.ScannableTable;
 import org.apache.calcite.schema.Schema;
 import org.apache.calcite.schema.SchemaPlus;
+import org.apache.calcite.schema.Statistic;
 import org.apache.calcite.schema.TranslatableTable;
 import org.apache.calcite.schema.impl.AbstractTableQueryable;
+import org.apache.calcite.sql.SqlDialect;
 import org.apache.calcite.sql.SqlIdentifier;
 import org.apache.calcite.sql.SqlNodeList;
 import org.apache.calcite.sql.SqlSelect;
@@ -48,9 +51,13 @@
 
 import com.google.common.base.Function;
 import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
 
+import java.sql.Connection;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -67,12 +74,14 @@
  */
 class JdbcTable extends AbstractQueryableTable
     implements TranslatableTable, ScannableTable {
-  private RelProtoDataType protoRowType;
   private final JdbcSchema jdbcSchema;
-  private final String jdbcCatalogName;
-  private final String jdbcSchemaName;
-  private final String jdbcTableName;
+  final String jdbcCatalogName;
+  final String jdbcSchemaName;
+  final String jdbcTableName;
   private final Schema.TableType jdbcTableType;
+  /** Minimum and maximum values of the partitioning column; read from the
+   * data source on first use. */
+  private Pair<Object, Object> partitionRange;
 
   public JdbcTable(JdbcSchema jdbcSchema, String jdbcCatalogName,
       String jdbcSchemaName, String tableName, Schema.TableType jdbcTableType) {
@@ -88,30 +97,26 @@ public String toString() {
     return "JdbcTable {" + jdbcTableName + "}";
   }
 
+  /** {@inheritDoc}
+   *
+   * <p>If the schema has a {@link JdbcStatisticProvider}, the statistic is a
+   * {@link JdbcStatistic}, which also has statistics about columns. */
+  @Override public Statistic getStatistic() {
+    return jdbcSchema.getStatistic(jdbcTableName);
+  }
+
   @Override public Schema.TableType getJdbcTableType() {
     return jdbcTableType;
   }
 
   public RelDataType getRowType(RelDataTypeFactory typeFactory) {
-    if (protoRowType == null) {
-      try {
-        protoRowType =
-            jdbcSchema.getRelDataType(
-                jdbcCatalogName,
-                jdbcSchemaName,
-                jdbcTableName);
-      } catch (SQLException e) {
-        throw new RuntimeException(
-            "Exception while reading definition of table '" + jdbcTableName
-                + "'", e);
-      }
-    }
-    return protoRowType.apply(typeFactory);
+    return jdbcSchema.getProtoRowType(this).apply(typeFactory);
   }
 
   private List<Pair<ColumnMetaData.Rep, Integer>> fieldClasses(
       final JavaTypeFactory typeFactory) {
-    final RelDataType rowType = protoRowType.apply(typeFactory);
+    final RelDataType rowType =
+        jdbcSchema.getProtoRowType(this).apply(typeFactory);
     return Lists.transform(rowType.getFieldList(),
         new Function<RelDataTypeField, Pair<ColumnMetaData.Rep, Integer>>() {
           public Pair<ColumnMetaData.Rep, Integer>
@@ -139,6 +144,52 @@ SqlString generateSql() {
     return writer.toSqlString();
   }
 
+  /** Returns the conditions that define the partitions of this table, or an
+   * empty list if scans of this table are not partitioned.
+   *
+   * @see JdbcPartitioning */
+  List<RexNode> partitionConditions(RexBuilder rexBuilder,
+      RelDataType rowType) {
+    final JdbcPartitioning partitioning =
+        jdbcSchema.partitionings.get(jdbcTableName);
+    if (partitioning == null) {
+      return ImmutableList.of();
+    }
+    final Pair<Object, Object> range =
+        partitioning.kind == JdbcPartitioning.Kind.RANGE
+            && partitioning.lower == null
+            ? partitionRange(partitioning.column)
+            : Pair.of(null, null);
+    return partitioning.conditions(rexBuilder, rowType, range);
+  }
+
+  /** Returns the minimum and maximum values of a column, reading them from
+   * the data source the first time. */
+  private synchronized Pair<Object, Object> partitionRange(String column) {
+    if (partitionRange == null) {
+      final SqlDialect dialect = jdbcSchema.dialect;
+      final String sql = "SELECT MIN(" + dialect.quoteIdentifier(column)
+          + "), MAX(" + dialect.quoteIdentifier(column) + ") FROM "
+          + tableName().toSqlString(dialect).getSql();
+      Connection connection = null;
+      Statement statement = null;
+      ResultSet resultSet = null;
+      try {
+        connection = jdbcSchema.getDataSource().getConnection();
+        statement = connection.createStatement();
+        resultSet = statement.executeQuery(sql);
+        resultSet.next();
+        partitionRange = Pair.of(resultSet.getObject(1),
+            resultSet.getObject(2));
+      } catch (SQLException e) {
+        throw new RuntimeException("while executing SQL [" + sql + "]", e);
+      } finally {
+        JdbcSchema.close(connection, statement, resultSet);
+      }
+    }
+    return partitionRange;
+  }
+
   SqlIdentifier tableName() {
     final List<String> strings = new ArrayList<>();
     if (jdbcSchema.catalog != null) {
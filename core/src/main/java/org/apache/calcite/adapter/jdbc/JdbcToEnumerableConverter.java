@@ -16,12 +16,15 @@
  */
 package org.apache.calcite.adapter.jdbc;
 
+import org.apache.calcite.adapter.enumerable.EnumerableAggregate;
 import org.apache.calcite.adapter.enumerable.EnumerableRel;
 import org.apache.calcite.adapter.enumerable.EnumerableRelImplementor;
 import org.apache.calcite.adapter.enumerable.JavaRowFormat;
 import org.apache.calcite.adapter.enumerable.PhysType;
 import org.apache.calcite.adapter.enumerable.PhysTypeImpl;
 import org.apache.calcite.adapter.java.JavaTypeFactory;
+import org.apache.calcite.linq4j.Enumerable;
+import org.apache.calcite.linq4j.Ord;
 import org.apache.calcite.linq4j.tree.BlockBuilder;
 import org.apache.calcite.linq4j.tree.Expression;
 import org.apache.calcite.linq4j.tree.Expressions;
@@ -34,8 +37,11 @@
 import org.apache.calcite.plan.RelOptPlanner;
 import org.apache.calcite.plan.RelTraitSet;
 import org.apache.calcite.prepare.CalcitePrepareImpl;
+import org.apache.calcite.rel.InvalidRelException;
 import org.apache.calcite.rel.RelNode;
 import org.apache.calcite.rel.convert.ConverterImpl;
+import org.apache.calcite.rel.core.Aggregate;
+import org.apache.calcite.rel.core.AggregateCall;
 import org.apache.calcite.rel.type.RelDataType;
 import org.apache.calcite.runtime.Hook;
 import org.apache.calcite.runtime.SqlFunctions;
@@ -43,9 +49,14 @@
 import org.apache.calcite.sql.SqlDialect;
 import org.apache.calcite.sql.type.SqlTypeName;
 import org.apache.calcite.util.BuiltInMethod;
+import org.apache.calcite.util.ImmutableBitSet;
+
+import com.google.common.collect.ImmutableList;
 
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
+import java.lang.reflect.Type;
+import java.math.BigDecimal;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
@@ -59,16 +70,29 @@
 public class JdbcToEnumerableConverter
     extends ConverterImpl
     implements EnumerableRel {
+  /** Whether the input is an aggregate that is computed separately for each
+   * partition of a table; see {@link #implementRollup}. */
+  private final boolean partial;
+
   protected JdbcToEnumerableConverter(
       RelOptCluster cluster,
       RelTraitSet traits,
       RelNode input) {
+    this(cluster, traits, input, false);
+  }
+
+  private JdbcToEnumerableConverter(
+      RelOptCluster cluster,
+      RelTraitSet traits,
+      RelNode input,
+      boolean partial) {
     super(cluster, ConventionTraitDef.INSTANCE, traits, input);
+    this.partial = partial;
   }
 
   @Override public RelNode copy(RelTraitSet traitSet, List<RelNode> inputs) {
     return new JdbcToEnumerableConverter(
-        getCluster(), traitSet, sole(inputs));
+        getCluster(), traitSet, sole(inputs), partial);
   }
 
   @Override public RelOptCost computeSelfCost(RelOptPlanner planner) {
@@ -76,29 +100,141 @@ protected JdbcToEnumerableConverter(
   }
 
   public Result implement(EnumerableRelImplementor implementor, Prefer pref) {
+    final JdbcRel child = (JdbcRel) getInput();
+    if (!partial
+        && child instanceof Aggregate
+        && JdbcPartitioning.split(child, true) != null) {
+      final Result result = implementRollup(implementor, pref);
+      if (result != null) {
+        return result;
+      }
+    }
     // Generate:
-    //   ResultSetEnumerable.of(schema.getDataSource(), "select ...")
+    //   ResultSetEnumerable.of(schema.getDataSource(), "select ...",
+    //       rowBuilderFactory, schema.getFetchSize(root))
+    // or, if the table is scanned in partitions,
+    //   ParallelEnumerables.merge(
+    //       Arrays.asList(
+    //           ResultSetEnumerable.of(schema.getDataSource(), "select ...",
+    //               rowBuilderFactory, schema.getFetchSize(root)),
+    //           ...))
     final BlockBuilder builder0 = new BlockBuilder(false);
-    final JdbcRel child = (JdbcRel) getInput();
     final PhysType physType =
         PhysTypeImpl.of(
             implementor.getTypeFactory(), getRowType(),
             pref.prefer(JavaRowFormat.CUSTOM));
     final JdbcConvention jdbcConvention =
         (JdbcConvention) child.getConvention();
-    String sql = generateSql(jdbcConvention.dialect);
-    if (CalcitePrepareImpl.DEBUG) {
-      System.out.println("[" + sql + "]");
+    List<RelNode> partitions = JdbcPartitioning.split(child, partial);
+    if (partitions == null) {
+      partitions = ImmutableList.<RelNode>of(child);
+    }
+    final List<String> sqls = new ArrayList<>();
+    for (RelNode partition : partitions) {
+      String sql = generateSql(jdbcConvention.dialect, partition);
+      if (CalcitePrepareImpl.DEBUG) {
+        System.out.println("[" + sql + "]");
+      }
+      Hook.QUERY_PLAN.run(sql);
+      sqls.add(sql);
+    }
+    final Expression rowBuilderFactory_ =
+        builder0.append("rowBuilderFactory",
+            rowBuilderFactory(implementor, builder0, physType,
+                jdbcConvention.dialect, false));
+    final Expression schema_ =
+        builder0.append("schema",
+            Schemas.unwrap(jdbcConvention.expression, JdbcSchema.class));
+    final Expression dataSource_ =
+        Expressions.call(schema_,
+            BuiltInMethod.JDBC_SCHEMA_DATA_SOURCE.method);
+    final Expression fetchSize_ =
+        builder0.append("fetchSize",
+            Expressions.call(schema_,
+                BuiltInMethod.JDBC_SCHEMA_FETCH_SIZE.method,
+                implementor.getRootExpression()));
+    final Expression enumerable;
+    if (sqls.size() == 1) {
+      final Expression sql_ =
+          builder0.append("sql", Expressions.constant(sqls.get(0)));
+      enumerable =
+          builder0.append(
+              "enumerable",
+              Expressions.call(
+                  BuiltInMethod.RESULT_SET_ENUMERABLE_OF_FETCH_SIZE.method,
+                  dataSource_,
+                  sql_,
+                  rowBuilderFactory_,
+                  fetchSize_));
+    } else {
+      final Expression dataSource2_ =
+          builder0.append("dataSource", dataSource_);
+      final List<Expression> enumerables = new ArrayList<>();
+      for (String sql : sqls) {
+        enumerables.add(
+            Expressions.call(
+                BuiltInMethod.RESULT_SET_ENUMERABLE_OF_FETCH_SIZE.method,
+                dataSource2_,
+                Expressions.constant(sql),
+                rowBuilderFactory_,
+                fetchSize_));
+      }
+      enumerable =
+          builder0.append(
+              "enumerable",
+              Expressions.call(
+                  BuiltInMethod.PARALLEL_MERGE.method,
+                  Expressions.call(
+                      BuiltInMethod.ARRAYS_AS_LIST.method,
+                      Expressions.newArrayInit(Enumerable.class,
+                          enumerables))));
+    }
+    builder0.add(
+        Expressions.return_(null, enumerable));
+    return implementor.result(physType, builder0.toBlock());
+  }
+
+  /** Implements an aggregate on a partitioned table by computing the
+   * aggregate over each partition, concurrently, and combining the results
+   * in an {@link EnumerableAggregate}. For example, {@code COUNT(*)} becomes
+   * the {@code SUM} of the counts of the partitions.
+   *
+   * <p>Returns null if the combining aggregate cannot be implemented. */
+  private Result implementRollup(EnumerableRelImplementor implementor,
+      Prefer pref) {
+    final Aggregate aggregate = (Aggregate) getInput();
+    final int groupCount = aggregate.getGroupCount();
+    final List<AggregateCall> aggCalls = new ArrayList<>();
+    for (Ord<AggregateCall> aggCall : Ord.zip(aggregate.getAggCallList())) {
+      aggCalls.add(JdbcPartitioning.rollup(aggCall.e, groupCount + aggCall.i));
     }
-    Hook.QUERY_PLAN.run(sql);
-    final Expression sql_ =
-        builder0.append("sql", Expressions.constant(sql));
-    final int fieldCount = getRowType().getFieldCount();
+    final EnumerableAggregate rollup;
+    try {
+      rollup = new EnumerableAggregate(getCluster(), traitSet,
+          new JdbcToEnumerableConverter(getCluster(), traitSet, aggregate,
+              true),
+          false, ImmutableBitSet.range(groupCount), null, aggCalls);
+    } catch (InvalidRelException e) {
+      return null;
+    }
+    return rollup.implement(implementor, pref);
+  }
+
+  /** Generates a function that, given a {@link ResultSet}, returns a
+   * function that converts the current row into the Java representation of
+   * {@code physType}. The row is an {@code Object[]}, or the value itself if
+   * there is one field and {@code array} is false.
+   *
+   * <p>Used by {@link JdbcBindJoin} as well as by this converter. */
+  static Expression rowBuilderFactory(EnumerableRelImplementor implementor,
+      BlockBuilder builder0, PhysType physType, SqlDialect dialect,
+      boolean array) {
+    final int fieldCount = physType.getRowType().getFieldCount();
     BlockBuilder builder = new BlockBuilder();
     final ParameterExpression resultSet_ =
         Expressions.parameter(Modifier.FINAL, ResultSet.class,
             builder.newName("resultSet"));
-    CalendarPolicy calendarPolicy = CalendarPolicy.of(jdbcConvention.dialect);
+    CalendarPolicy calendarPolicy = CalendarPolicy.of(dialect);
     final Expression calendar_;
     switch (calendarPolicy) {
     case LOCAL:
@@ -110,7 +246,7 @@ public Result implement(EnumerableRelImplementor implementor, Prefer pref) {
     default:
       calendar_ = null;
     }
-    if (fieldCount == 1) {
+    if (fieldCount == 1 && !array) {
       final ParameterExpression value_ =
           Expressions.parameter(Object.class, builder.newName("value"));
       builder.add(Expressions.declare(Modifier.FINAL, value_, null));
@@ -132,39 +268,23 @@ public Result implement(EnumerableRelImplementor implementor, Prefer pref) {
     }
     final ParameterExpression e_ =
         Expressions.parameter(SQLException.class, builder.newName("e"));
-    final Expression rowBuilderFactory_ =
-        builder0.append("rowBuilderFactory",
-            Expressions.lambda(
-                Expressions.block(
-                    Expressions.return_(null,
-                        Expressions.lambda(
-                            Expressions.block(
-                                Expressions.tryCatch(
-                                    builder.toBlock(),
-                                    Expressions.catch_(
-                                        e_,
-                                        Expressions.throw_(
-                                            Expressions.new_(
-                                                RuntimeException.class,
-                                                e_)))))))),
-                resultSet_));
-    final Expression enumerable =
-        builder0.append(
-            "enumerable",
-            Expressions.call(
-                BuiltInMethod.RESULT_SET_ENUMERABLE_OF.method,
-                Expressions.call(
-                    Schemas.unwrap(jdbcConvention.expression,
-                        JdbcSchema.class),
-                    BuiltInMethod.JDBC_SCHEMA_DATA_SOURCE.method),
-                sql_,
-                rowBuilderFactory_));
-    builder0.add(
-        Expressions.return_(null, enumerable));
-    return implementor.result(physType, builder0.toBlock());
+    return Expressions.lambda(
+        Expressions.block(
+            Expressions.return_(null,
+                Expressions.lambda(
+                    Expressions.block(
+                        Expressions.tryCatch(
+                            builder.toBlock(),
+                            Expressions.catch_(
+                                e_,
+                                Expressions.throw_(
+                                    Expressions.new_(
+                                        RuntimeException.class,
+                                        e_)))))))),
+        resultSet_);
   }
 
-  private UnaryExpression getTimeZoneExpression(
+  private static UnaryExpression getTimeZoneExpression(
       EnumerableRelImplementor implementor) {
     return Expressions.convert_(
         Expressions.call(
@@ -174,7 +294,7 @@ private UnaryExpression getTimeZoneExpression(
         TimeZone.class);
   }
 
-  private void generateGet(EnumerableRelImplementor implementor,
+  private static void generateGet(EnumerableRelImplementor implementor,
       PhysType physType, BlockBuilder builder, ParameterExpression resultSet_,
       int i, Expression target, Expression calendar_,
       CalendarPolicy calendarPolicy) {
@@ -226,7 +346,8 @@ private void generateGet(EnumerableRelImplementor implementor,
       break;
     default:
       source = Expressions.call(
-          resultSet_, jdbcGetMethod(primitive), Expressions.constant(i + 1));
+          resultSet_, jdbcGetMethod(primitive, physType.fieldClass(i)),
+          Expressions.constant(i + 1));
     }
     builder.add(
         Expressions.statement(
@@ -234,8 +355,9 @@ private void generateGet(EnumerableRelImplementor implementor,
                 target, source)));
 
     // [CALCITE-596] If primitive type columns contain null value, returns null
-    // object
-    if (primitive != null) {
+    // object. A column declared NOT NULL never contains null, so we save a
+    // call to the driver.
+    if (primitive != null && fieldType.isNullable()) {
       builder.add(
           Expressions.ifThen(
               Expressions.call(resultSet_, "wasNull"),
@@ -245,7 +367,7 @@ private void generateGet(EnumerableRelImplementor implementor,
     }
   }
 
-  private Method getMethod(SqlTypeName sqlTypeName, boolean nullable,
+  private static Method getMethod(SqlTypeName sqlTypeName, boolean nullable,
       boolean offset) {
     switch (sqlTypeName) {
     case DATE:
@@ -269,7 +391,7 @@ private Method getMethod(SqlTypeName sqlTypeName, boolean nullable,
     }
   }
 
-  private Method getMethod2(SqlTypeName sqlTypeName) {
+  private static Method getMethod2(SqlTypeName sqlTypeName) {
     switch (sqlTypeName) {
     case DATE:
       return BuiltInMethod.RESULT_SET_GET_DATE2.method;
@@ -283,18 +405,34 @@ private Method getMethod2(SqlTypeName sqlTypeName) {
   }
 
   /** E,g, {@code jdbcGetMethod(int)} returns "getInt". */
-  private String jdbcGetMethod(Primitive primitive) {
+  private static String jdbcGetMethod(Primitive primitive) {
     return primitive == null
         ? "getObject"
         : "get" + SqlFunctions.initcap(primitive.primitiveName);
   }
 
-  private String generateSql(SqlDialect dialect) {
+  /** As {@link #jdbcGetMethod(Primitive)}, but also uses "getString" and
+   * "getBigDecimal" for fields of those classes. Drivers return these values
+   * directly, without the work that {@link ResultSet#getObject(int)} does to
+   * choose a class. */
+  private static String jdbcGetMethod(Primitive primitive, Type fieldClass) {
+    if (primitive == null) {
+      if (fieldClass == String.class) {
+        return "getString";
+      }
+      if (fieldClass == BigDecimal.class) {
+        return "getBigDecimal";
+      }
+    }
+    return jdbcGetMethod(primitive);
+  }
+
+  private String generateSql(SqlDialect dialect, RelNode input) {
     final JdbcImplementor jdbcImplementor =
         new JdbcImplementor(dialect,
             (JavaTypeFactory) getCluster().getTypeFactory());
     final JdbcImplementor.Result result =
-        jdbcImplementor.visitChild(0, getInput());
+        jdbcImplementor.visitChild(0, input);
     return result.asQuery().toSqlString(dialect).getSql();
   }
 
@@ -20,6 +20,7 @@
 import org.apache.calcite.avatica.util.DateTimeUtils;
 import org.apache.calcite.linq4j.function.Function0;
 import org.apache.calcite.linq4j.function.Function1;
+import org.apache.calcite.runtime.SharedExecutor;
 import org.apache.calcite.sql.SqlDialect;
 import org.apache.calcite.util.ImmutableNullableList;
 import org.apache.calcite.util.IntList;
@@ -31,6 +32,9 @@
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
 import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListenableFutureTask;
 
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
@@ -45,6 +49,7 @@
 import java.util.List;
 import java.util.Map;
 import java.util.TimeZone;
+import java.util.concurrent.Callable;
 import javax.sql.DataSource;
 
 /**
@@ -55,6 +60,38 @@ private JdbcUtils() {
     throw new AssertionError("no instances!");
   }
 
+  /** Returns a cache loader that, when an entry is refreshed, reloads it in a
+   * background thread. Meanwhile, the cache continues to return the old
+   * value, so callers never wait for the data source. If the reload fails,
+   * the cache keeps the old value. If no thread of the
+   * {@link SharedExecutor} is free, the cache keeps the old value until the
+   * next refresh.
+   *
+   * <p>Use with {@link CacheBuilder#refreshAfterWrite}. */
+  static <K, V> CacheLoader<K, V> asyncReloading(
+      final CacheLoader<K, V> loader) {
+    return new CacheLoader<K, V>() {
+      public V load(K key) throws Exception {
+        return loader.load(key);
+      }
+
+      @Override public ListenableFuture<V> reload(final K key, V oldValue) {
+        if (!SharedExecutor.tryReserve(1)) {
+          return Futures.immediateFuture(oldValue);
+        }
+        final ListenableFutureTask<V> task =
+            ListenableFutureTask.create(
+                new Callable<V>() {
+                  public V call() throws Exception {
+                    return loader.load(key);
+                  }
+                });
+        SharedExecutor.submit(task);
+        return task;
+      }
+    };
+  }
+
   /** Pool of dialects. */
   public static class DialectPool {
     final Map<DataSource, SqlDialect> map0 =
@@ -0,0 +1,189 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.adapter.jdbc;
+
+import org.apache.calcite.avatica.util.DateTimeUtils;
+import org.apache.calcite.rel.type.RelDataType;
+import org.apache.calcite.rel.type.RelDataTypeField;
+import org.apache.calcite.sql.type.SqlTypeName;
+import org.apache.calcite.util.ImmutableBitSet;
+
+import com.google.common.collect.ImmutableList;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Implementation of {@link JdbcStatisticProvider} that reads the statistics
+ * that PostgreSQL's {@code ANALYZE} command stores in its catalog.
+ *
+ * <p>The row count comes from {@code pg_class.reltuples}; the number of
+ * distinct values, fraction of nulls and histogram of each column come from
+ * the {@code pg_stats} view. PostgreSQL leaves the most common values of a
+ * column out of its histogram, so selectivity estimates for columns with very
+ * skewed values are less accurate than for other columns.
+ *
+ * <p>If the table has not been analyzed, uses
+ * {@link SqlJdbcStatisticProvider}.
+ */
+class PostgresqlJdbcStatisticProvider implements JdbcStatisticProvider {
+  static final PostgresqlJdbcStatisticProvider INSTANCE =
+      new PostgresqlJdbcStatisticProvider();
+
+  private static final String TABLE_SQL = "SELECT c.reltuples, n.nspname,"
+      + " c.relname\n"
+      + "FROM pg_catalog.pg_class AS c\n"
+      + "JOIN pg_catalog.pg_namespace AS n ON n.oid = c.relnamespace\n"
+      + "WHERE c.oid = CAST(? AS regclass)";
+
+  private static final String COLUMN_SQL = "SELECT attname, null_frac,"
+      + " n_distinct, CAST(histogram_bounds AS text)\n"
+      + "FROM pg_catalog.pg_stats\n"
+      + "WHERE schemaname = ? AND tablename = ? AND NOT inherited";
+
+  /** Creates a PostgresqlJdbcStatisticProvider. */
+  private PostgresqlJdbcStatisticProvider() {}
+
+  public JdbcStatistic statistic(JdbcSchema schema, String tableName)
+      throws SQLException {
+    final JdbcTable table = (JdbcTable) schema.getTable(tableName);
+    if (table == null) {
+      return JdbcStatistic.UNKNOWN;
+    }
+    final RelDataType rowType = JdbcStatistics.rowType(table);
+    final List<RelDataTypeField> fields = rowType.getFieldList();
+    Connection connection = null;
+    PreparedStatement statement = null;
+    ResultSet resultSet = null;
+    try {
+      connection = schema.getDataSource().getConnection();
+      statement = connection.prepareStatement(TABLE_SQL);
+      statement.setString(1, JdbcStatistics.sqlName(table, schema.dialect));
+      resultSet = statement.executeQuery();
+      if (!resultSet.next()) {
+        return JdbcStatistic.UNKNOWN;
+      }
+      final double rowCount = resultSet.getDouble(1);
+      final String namespace = resultSet.getString(2);
+      final String relation = resultSet.getString(3);
+      resultSet.close();
+      statement.close();
+
+      final JdbcStatistic.Column[] columns =
+          new JdbcStatistic.Column[fields.size()];
+      Arrays.fill(columns, JdbcStatistic.Column.UNKNOWN);
+      boolean analyzed = false;
+      statement = connection.prepareStatement(COLUMN_SQL);
+      statement.setString(1, namespace);
+      statement.setString(2, relation);
+      resultSet = statement.executeQuery();
+      while (resultSet.next()) {
+        final int i = rowType.getFieldNames().indexOf(resultSet.getString(1));
+        if (i < 0) {
+          continue;
+        }
+        analyzed = true;
+        final double nullFraction = resultSet.getDouble(2);
+        // A negative n_distinct is minus the number of distinct values
+        // divided by the number of rows; 0 means unknown.
+        final double nDistinct = resultSet.getDouble(3);
+        final Double distinctCount =
+            nDistinct > 0d ? nDistinct
+                : nDistinct < 0d ? -nDistinct * rowCount
+                : null;
+        columns[i] =
+            new JdbcStatistic.Column(distinctCount, nullFraction,
+                histogram(resultSet.getString(4),
+                    fields.get(i).getType().getSqlTypeName()));
+      }
+      if (!analyzed || rowCount < 0d) {
+        // Never analyzed. (Before PostgreSQL 14, reltuples is 0 for a table
+        // that has never been analyzed, but then pg_stats is empty.)
+        return SqlJdbcStatisticProvider.INSTANCE.statistic(schema, tableName);
+      }
+      final List<ImmutableBitSet> keys =
+          JdbcStatistics.primaryKeys(connection.getMetaData(), table,
+              rowType);
+      return new JdbcStatistic(rowCount, keys, Arrays.asList(columns));
+    } finally {
+      JdbcSchema.close(connection, statement, resultSet);
+    }
+  }
+
+  /** Converts the text of a {@code histogram_bounds} array, such as
+   * "{1,5,10}" or "{"2015-01-01 00:00:00","2015-02-01 00:00:00"}", to a list
+   * of bounds; or returns an empty list if there is no histogram or the
+   * values are not numbers or date-times. */
+  static List<Double> histogram(String s, SqlTypeName typeName) {
+    if (s == null || !JdbcStatistics.isRanged(typeName)) {
+      return ImmutableList.of();
+    }
+    final List<Double> bounds = new ArrayList<>();
+    try {
+      for (String element : elements(s)) {
+        bounds.add(parse(element, typeName));
+      }
+    } catch (RuntimeException e) {
+      // Not in a format that we understand, say a timestamp with time zone
+      return ImmutableList.of();
+    }
+    return bounds;
+  }
+
+  private static double parse(String s, SqlTypeName typeName) {
+    switch (typeName) {
+    case DATE:
+      return DateTimeUtils.dateStringToUnixDate(s);
+    case TIME:
+      return DateTimeUtils.timeStringToUnixDate(s);
+    case TIMESTAMP:
+      return DateTimeUtils.timestampStringToUnixDate(s);
+    default:
+      return Double.parseDouble(s);
+    }
+  }
+
+  /** Splits the text of a PostgreSQL array into its elements, removing
+   * quotes and escapes. */
+  static List<String> elements(String s) {
+    final List<String> elements = new ArrayList<>();
+    final StringBuilder buf = new StringBuilder();
+    boolean quoted = false;
+    for (int i = 1; i < s.length() - 1; i++) {
+      final char c = s.charAt(i);
+      if (c == '\\') {
+        buf.append(s.charAt(++i));
+      } else if (c == '"') {
+        quoted = !quoted;
+      } else if (c == ',' && !quoted) {
+        elements.add(buf.toString());
+        buf.setLength(0);
+      } else {
+        buf.append(c);
+      }
+    }
+    elements.add(buf.toString());
+    return elements;
+  }
+}
+
+// End PostgresqlJdbcStatisticProvider.java
@@ -0,0 +1,191 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.adapter.jdbc;
+
+import org.apache.calcite.rel.type.RelDataType;
+import org.apache.calcite.rel.type.RelDataTypeField;
+import org.apache.calcite.sql.SqlDialect;
+import org.apache.calcite.sql.type.SqlTypeName;
+import org.apache.calcite.util.ImmutableBitSet;
+
+import com.google.common.collect.ImmutableList;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Implementation of {@link JdbcStatisticProvider} that gets statistics by
+ * executing a "SELECT COUNT(*)" query against the table, then a
+ * "SELECT COUNT(DISTINCT ...), MIN(...), MAX(...) ..." query against its first
+ * {@link #SAMPLE_SIZE} rows.
+ *
+ * <p>The number of distinct values of a column is extrapolated from the
+ * sample, as described in {@link #distinctCount(double, double, double)}.
+ * The histogram of each numeric or date-time column has one bucket,
+ * between the minimum and maximum values in the sample.
+ */
+class SqlJdbcStatisticProvider implements JdbcStatisticProvider {
+  static final SqlJdbcStatisticProvider INSTANCE =
+      new SqlJdbcStatisticProvider();
+
+  /** Maximum number of rows read to compute the number of distinct values,
+   * fraction of nulls, and range of each column. */
+  static final int SAMPLE_SIZE = 10000;
+
+  /** Creates an SqlJdbcStatisticProvider. */
+  private SqlJdbcStatisticProvider() {}
+
+  public JdbcStatistic statistic(JdbcSchema schema, String tableName)
+      throws SQLException {
+    final JdbcTable table = (JdbcTable) schema.getTable(tableName);
+    if (table == null) {
+      return JdbcStatistic.UNKNOWN;
+    }
+    final RelDataType rowType = JdbcStatistics.rowType(table);
+    final SqlDialect dialect = schema.dialect;
+    final String tableSql = JdbcStatistics.sqlName(table, dialect);
+    final StringBuilder buf = new StringBuilder("SELECT COUNT(*)");
+    for (RelDataTypeField field : rowType.getFieldList()) {
+      final SqlTypeName typeName = field.getType().getSqlTypeName();
+      if (!isCounted(typeName)) {
+        continue;
+      }
+      final String column = dialect.quoteIdentifier(field.getName());
+      buf.append(", COUNT(").append(column).append(")")
+          .append(", COUNT(DISTINCT ").append(column).append(")");
+      if (JdbcStatistics.isRanged(typeName)) {
+        buf.append(", MIN(").append(column).append(")")
+            .append(", MAX(").append(column).append(")");
+      }
+    }
+    buf.append(" FROM (").append(sample(dialect, tableSql)).append(") t");
+    final String countSql = "SELECT COUNT(*) FROM " + tableSql;
+    final String sampleSql = buf.toString();
+    String sql = countSql;
+    Connection connection = null;
+    Statement statement = null;
+    ResultSet resultSet = null;
+    try {
+      connection = schema.getDataSource().getConnection();
+      statement = connection.createStatement();
+      resultSet = statement.executeQuery(sql);
+      resultSet.next();
+      final double rowCount = resultSet.getLong(1);
+      resultSet.close();
+      sql = sampleSql;
+      resultSet = statement.executeQuery(sql);
+      resultSet.next();
+      final double sampleCount = resultSet.getLong(1);
+      final List<JdbcStatistic.Column> columns = new ArrayList<>();
+      int i = 2;
+      for (RelDataTypeField field : rowType.getFieldList()) {
+        final SqlTypeName typeName = field.getType().getSqlTypeName();
+        if (!isCounted(typeName)) {
+          columns.add(JdbcStatistic.Column.UNKNOWN);
+          continue;
+        }
+        final double nonNullCount = resultSet.getLong(i++);
+        final double sampleDistinct = resultSet.getLong(i++);
+        List<Double> histogram = ImmutableList.of();
+        if (JdbcStatistics.isRanged(typeName)) {
+          final Double min = JdbcStatistics.value(resultSet, i++, typeName);
+          final Double max = JdbcStatistics.value(resultSet, i++, typeName);
+          if (min != null && max != null) {
+            histogram = ImmutableList.of(min, max);
+          }
+        }
+        columns.add(
+            new JdbcStatistic.Column(
+                distinctCount(sampleDistinct, sampleCount, rowCount),
+                sampleCount == 0d ? 0d : 1d - nonNullCount / sampleCount,
+                histogram));
+      }
+      final List<ImmutableBitSet> keys =
+          JdbcStatistics.primaryKeys(connection.getMetaData(), table,
+              rowType);
+      return new JdbcStatistic(rowCount, keys, columns);
+    } catch (SQLException e) {
+      throw new SQLException("while executing SQL [" + sql + "]", e);
+    } finally {
+      JdbcSchema.close(connection, statement, resultSet);
+    }
+  }
+
+  /** Returns a query that returns the first {@link #SAMPLE_SIZE} rows of a
+   * table, in the syntax of a given dialect. */
+  private static String sample(SqlDialect dialect, String tableSql) {
+    switch (dialect.getDatabaseProduct()) {
+    case MYSQL:
+    case POSTGRESQL:
+    case H2:
+    case HSQLDB:
+    case HIVE:
+    case VERTICA:
+    case INFOBRIGHT:
+      return "SELECT * FROM " + tableSql + " LIMIT " + SAMPLE_SIZE;
+    case MSSQL:
+    case SYBASE:
+      return "SELECT TOP " + SAMPLE_SIZE + " * FROM " + tableSql;
+    case ORACLE:
+      return "SELECT * FROM " + tableSql + " WHERE ROWNUM <= " + SAMPLE_SIZE;
+    default:
+      return "SELECT * FROM " + tableSql
+          + " FETCH FIRST " + SAMPLE_SIZE + " ROWS ONLY";
+    }
+  }
+
+  /** Estimates the number of distinct values of a column in a table from the
+   * number of distinct values in a sample of its rows.
+   *
+   * <p>If the sample is the whole table, the estimate is exact. Otherwise,
+   * the more of the sample's values are distinct, the more of the remaining
+   * rows are assumed to have new values: if every value in the sample is
+   * distinct, so is every value in the table; if the sample has few distinct
+   * values, the table has hardly any more.
+   *
+   * @param sampleDistinct Number of distinct values in the sample
+   * @param sampleCount Number of rows in the sample
+   * @param rowCount Number of rows in the table
+   */
+  static double distinctCount(double sampleDistinct, double sampleCount,
+      double rowCount) {
+    if (sampleCount >= rowCount || sampleCount == 0d) {
+      return sampleDistinct;
+    }
+    final double fraction = sampleDistinct / sampleCount;
+    return sampleDistinct + (rowCount - sampleCount) * fraction * fraction;
+  }
+
+  /** Returns whether values of a given type can be counted using
+   * {@code COUNT(DISTINCT ...)}. */
+  private static boolean isCounted(SqlTypeName typeName) {
+    switch (typeName) {
+    case CHAR:
+    case VARCHAR:
+    case BOOLEAN:
+      return true;
+    default:
+      return JdbcStatistics.isRanged(typeName);
+    }
+  }
+}
+
+// End SqlJdbcStatisticProvider.java
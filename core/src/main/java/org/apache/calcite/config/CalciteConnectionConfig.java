@@ -48,6 +48,18 @@ public interface CalciteConnectionConfig extends ConnectionConfig {
   boolean forceDecorrelate();
   /** @see CalciteConnectionProperty#TYPE_SYSTEM */
   <T> T typeSystem(Class<T> typeSystemClass, T defaultTypeSystem);
+  /** @see CalciteConnectionProperty#SPILL_THRESHOLD */
+  int spillThreshold();
+  /** @see CalciteConnectionProperty#BINDABLE_CACHE_MAX_SIZE */
+  int bindableCacheMaxSize();
+  /** @see CalciteConnectionProperty#PREPARE_CACHE_MAX_SIZE */
+  int prepareCacheMaxSize();
+  /** @see CalciteConnectionProperty#PARALLELISM */
+  int parallelism();
+  /** @see CalciteConnectionProperty#PARALLEL_ROW_COUNT */
+  int parallelRowCount();
+  /** @see CalciteConnectionProperty#BATCH_SIZE */
+  int batchSize();
 }
 
 // End CalciteConnectionConfig.java
@@ -92,6 +92,33 @@ public <T> T typeSystem(Class<T> typeSystemClass, T defaultTypeSystem) {
     return CalciteConnectionProperty.TYPE_SYSTEM.wrap(properties)
         .getPlugin(typeSystemClass, defaultTypeSystem);
   }
+
+  public int spillThreshold() {
+    return CalciteConnectionProperty.SPILL_THRESHOLD.wrap(properties).getInt();
+  }
+
+  public int bindableCacheMaxSize() {
+    return CalciteConnectionProperty.BINDABLE_CACHE_MAX_SIZE.wrap(properties)
+        .getInt();
+  }
+
+  public int prepareCacheMaxSize() {
+    return CalciteConnectionProperty.PREPARE_CACHE_MAX_SIZE.wrap(properties)
+        .getInt();
+  }
+
+  public int parallelism() {
+    return CalciteConnectionProperty.PARALLELISM.wrap(properties).getInt();
+  }
+
+  public int parallelRowCount() {
+    return CalciteConnectionProperty.PARALLEL_ROW_COUNT.wrap(properties)
+        .getInt();
+  }
+
+  public int batchSize() {
+    return CalciteConnectionProperty.BATCH_SIZE.wrap(properties).getInt();
+  }
 }
 
 // End CalciteConnectionConfigImpl.java
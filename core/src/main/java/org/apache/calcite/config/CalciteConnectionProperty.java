@@ -79,7 +79,39 @@ public enum CalciteConnectionProperty implements ConnectionProperty {
   /** Type system. The name of a class that implements
    * {@link org.apache.calcite.rel.type.RelDataTypeSystem} and has a public
    * default constructor or an {@code INSTANCE} constant. */
-  TYPE_SYSTEM("typeSystem", Type.PLUGIN, null, false);
+  TYPE_SYSTEM("typeSystem", Type.PLUGIN, null, false),
+
+  /** Number of rows (for sort) or groups (for aggregate) that an Enumerable
+   * operator may hold in memory before it spills to temporary files.
+   * If 0 (the default), operators never spill. */
+  SPILL_THRESHOLD("spillThreshold", Type.NUMBER, 0, false),
+
+  /** Maximum number of compiled classes that statements prepared by this
+   * connection may hold in the JVM-wide cache of compiled code. Connections
+   * with the same value share a cache. If 0 (the default), generated code is
+   * compiled each time a statement is prepared. */
+  BINDABLE_CACHE_MAX_SIZE("bindableCacheMaxSize", Type.NUMBER, 0, false),
+
+  /** Maximum number of statements that this connection caches after
+   * preparing them. The cache belongs to the connection's root schema, and
+   * is emptied when the schema changes. If 0 (the default), each statement is
+   * parsed, validated, planned and compiled each time it is prepared. */
+  PREPARE_CACHE_MAX_SIZE("prepareCacheMaxSize", Type.NUMBER, 0, false),
+
+  /** Number of threads that parallel Enumerable operators use. If 0 or 1
+   * (the default is 0), planning does not insert exchanges, and operators run
+   * in a single thread. */
+  PARALLELISM("parallelism", Type.NUMBER, 0, false),
+
+  /** Minimum estimated number of rows for which the planner reads a scan,
+   * aggregate or join in parallel, if {@link #PARALLELISM} is greater than
+   * 1. Default 10,000. */
+  PARALLEL_ROW_COUNT("parallelRowCount", Type.NUMBER, 10000, false),
+
+  /** Number of rows per batch when a calc reads a table that can return its
+   * rows in batches of columns, such as a clone table. If 0 (the default),
+   * the calc reads its input a row at a time. */
+  BATCH_SIZE("batchSize", Type.NUMBER, 0, false);
 
   private final String camelName;
   private final Type type;
@@ -20,8 +20,6 @@
 import org.apache.calcite.linq4j.AbstractEnumerable;
 import org.apache.calcite.linq4j.Enumerable;
 import org.apache.calcite.linq4j.Enumerator;
-import org.apache.calcite.linq4j.Linq4j;
-import org.apache.calcite.linq4j.TransformedEnumerator;
 import org.apache.calcite.plan.hep.HepPlanner;
 import org.apache.calcite.plan.hep.HepProgram;
 import org.apache.calcite.plan.hep.HepProgramBuilder;
@@ -37,20 +35,25 @@
 import org.apache.calcite.rex.RexInputRef;
 import org.apache.calcite.rex.RexLiteral;
 import org.apache.calcite.rex.RexNode;
+import org.apache.calcite.runtime.SharedExecutor;
 import org.apache.calcite.sql.fun.SqlStdOperatorTable;
 import org.apache.calcite.util.ReflectUtil;
 import org.apache.calcite.util.ReflectiveVisitDispatcher;
 import org.apache.calcite.util.ReflectiveVisitor;
 
 import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 
 import java.math.BigDecimal;
-import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
-import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Interpreter.
@@ -58,21 +61,70 @@
  * <p>Contains the context for interpreting relational expressions. In
  * particular it holds working state while the data flow graph is being
  * assembled.</p>
+ *
+ * <p>Each node of the data flow graph runs in its own task, and pushes rows
+ * into its sink as it produces them. A sink is a bounded queue, so a node
+ * that gets ahead of its consumer blocks until the consumer catches up; rows
+ * pass between threads in batches. A node that is implemented as an
+ * {@link Enumerable} (see {@link #enumerable(RelNode, Enumerable)}) has no
+ * task of its own; it is read by its consumer.</p>
+ *
+ * <p>If the {@link SharedExecutor} does not have a free thread for every
+ * node, the nodes run one after another in the calling thread, and each
+ * sink holds all of its node's output.</p>
+ *
+ * <p>Each call to {@link #enumerator()}, and each reset of an enumerator,
+ * builds the data flow graph again and runs it from the start.</p>
  */
 public class Interpreter extends AbstractEnumerable<Object[]> {
+  /** Number of rows that a sink passes to its source at a time. */
+  private static final int BATCH_SIZE = 256;
+
+  /** Number of batches that a node may get ahead of its consumer. */
+  private static final int QUEUE_SIZE = 4;
+
+  /** How long a blocked node waits before checking whether execution has
+   * been cancelled. */
+  private static final long POLL_MILLIS = 100;
+
+  /** Marks the end of the rows in a {@link QueueSink}. */
+  private static final List<Row> END = new ArrayList<>(0);
+
   final Map<RelNode, NodeInfo> nodes = Maps.newLinkedHashMap();
   private final DataContext dataContext;
-  private final RelNode rootRel;
+  private final RelNode rel;
+  private RelNode rootRel;
   private final Map<RelNode, List<RelNode>> relInputs = Maps.newHashMap();
+
+  /** Sources read by each relational expression, to be closed when its node
+   * has finished. */
+  private final Map<RelNode, List<Source>> sources = Maps.newHashMap();
   protected final ScalarCompiler scalarCompiler;
 
+  /** Execution of the data flow graph that was built most recently. */
+  private Execution execution;
+
+  /** Whether the data flow graph that was built most recently has been
+   * started; if so, the next enumerator needs to build another. */
+  private boolean started;
+
   public Interpreter(DataContext dataContext, RelNode rootRel) {
     this.dataContext = Preconditions.checkNotNull(dataContext);
     this.scalarCompiler =
         new JaninoRexCompiler(rootRel.getCluster().getRexBuilder());
-    final RelNode rel = optimize(rootRel);
+    this.rel = optimize(rootRel);
+    build();
+  }
+
+  /** Builds the data flow graph. */
+  private void build() {
+    nodes.clear();
+    relInputs.clear();
+    sources.clear();
+    execution = new Execution();
+    started = false;
     final Compiler compiler = new Nodes.CoreCompiler(this);
-    this.rootRel = compiler.visitRoot(rel);
+    rootRel = compiler.visitRoot(rel);
   }
 
   private RelNode optimize(RelNode rootRel) {
@@ -89,37 +141,100 @@ private RelNode optimize(RelNode rootRel) {
   }
 
   public Enumerator<Object[]> enumerator() {
-    start();
-    final NodeInfo nodeInfo = nodes.get(rootRel);
-    final Enumerator<Row> rows;
-    if (nodeInfo.rowEnumerable != null) {
-      rows = nodeInfo.rowEnumerable.enumerator();
-    } else {
-      final ArrayDeque<Row> queue = ((ListSink) nodeInfo.sink).list;
-      rows = Linq4j.iterableEnumerator(queue);
-    }
+    return new Enumerator<Object[]>() {
+      private Enumerator<Row> rows = start();
 
-    return new TransformedEnumerator<Row, Object[]>(rows) {
-      protected Object[] transform(Row row) {
-        return row.getValues();
+      public Object[] current() {
+        return rows.current().getValues();
+      }
+
+      public boolean moveNext() {
+        return rows.moveNext();
+      }
+
+      public void reset() {
+        rows.close();
+        rows = start();
+      }
+
+      public void close() {
+        rows.close();
       }
     };
   }
 
-  private void start() {
-    // We rely on the nodes being ordered leaves first.
-    for (Map.Entry<RelNode, NodeInfo> entry : nodes.entrySet()) {
-      final NodeInfo nodeInfo = entry.getValue();
-      try {
-        nodeInfo.node.run();
-      } catch (InterruptedException e) {
-        e.printStackTrace();
+  /** Starts a task for each node that writes to a sink, and returns an
+   * enumerator over the rows of the root node. Nodes that are implemented as
+   * enumerables have nothing to do until they are read.
+   *
+   * <p>Sinks cannot be read twice, so if the data flow graph has already been
+   * started, builds it again. */
+  private synchronized Enumerator<Row> start() {
+    if (started) {
+      build();
+    }
+    started = true;
+    final Execution execution = this.execution;
+    final List<NodeInfo> nodeInfos = new ArrayList<>();
+    for (NodeInfo nodeInfo : nodes.values()) {
+      if (nodeInfo.sink != null) {
+        nodeInfos.add(nodeInfo);
+      }
+    }
+    final boolean threaded = SharedExecutor.tryReserve(nodeInfos.size());
+    for (NodeInfo nodeInfo : nodeInfos) {
+      ((QueueSink) nodeInfo.sink).open(threaded);
+    }
+    for (final NodeInfo nodeInfo : nodeInfos) {
+      final List<Source> nodeSources = sources.get(nodeInfo.rel);
+      if (!threaded) {
+        // Nodes are registered after their inputs, so each node's input is
+        // complete by the time the node runs.
+        try {
+          nodeInfo.node.run();
+          nodeInfo.sink.end();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new RuntimeException(e);
+        } finally {
+          close(nodeSources);
+        }
+        continue;
       }
+      SharedExecutor.submit(
+          new Runnable() {
+            public void run() {
+              try {
+                nodeInfo.node.run();
+                nodeInfo.sink.end();
+              } catch (InterruptedException e) {
+                if (!execution.cancelled) {
+                  execution.fail(e);
+                }
+              } catch (Throwable e) {
+                execution.fail(e);
+              } finally {
+                close(nodeSources);
+              }
+            }
+          });
+    }
+    final NodeInfo nodeInfo = nodes.get(rootRel);
+    final Source source;
+    if (nodeInfo.rowEnumerable != null) {
+      source = new EnumeratorSource(nodeInfo.rowEnumerable.enumerator());
+    } else {
+      source = new QueueSource((QueueSink) nodeInfo.sink);
     }
+    return new SourceEnumerator(source, execution);
   }
 
-  private void close() {
-    // TODO:
+  private static void close(List<Source> sources) {
+    if (sources != null) {
+      for (Source source : sources) {
+        source.close();
+      }
+    }
   }
 
   /** Compiles an expression to an executable form. */
@@ -253,15 +368,22 @@ public Source source(RelNode rel, int ordinal) {
     if (nodeInfo == null) {
       throw new AssertionError("should be registered: " + rel);
     }
+    final Source source;
     if (nodeInfo.rowEnumerable != null) {
-      return new EnumeratorSource(nodeInfo.rowEnumerable.enumerator());
+      source = new EnumeratorSource(nodeInfo.rowEnumerable.enumerator());
+    } else if (nodeInfo.sink instanceof QueueSink) {
+      source = new QueueSource((QueueSink) nodeInfo.sink);
+    } else {
+      throw new IllegalStateException("Got a sink " + nodeInfo.sink
+          + " to which there is no match source type!");
     }
-    Sink sink = nodeInfo.sink;
-    if (sink instanceof ListSink) {
-      return new ListSource((ListSink) nodeInfo.sink);
+    List<Source> list = sources.get(rel);
+    if (list == null) {
+      list = new ArrayList<>();
+      sources.put(rel, list);
     }
-    throw new IllegalStateException(
-      "Got a sink " + sink + " to which there is no match source type!");
+    list.add(source);
+    return source;
   }
 
   private RelNode getInput(RelNode rel, int ordinal) {
@@ -283,8 +405,7 @@ private RelNode getInput(RelNode rel, int ordinal) {
    * @return Sink
    */
   public Sink sink(RelNode rel) {
-    final ArrayDeque<Row> queue = new ArrayDeque<>(1);
-    final Sink sink = new ListSink(queue);
+    final Sink sink = new QueueSink();
     NodeInfo nodeInfo = new NodeInfo(rel, sink, null);
     nodes.put(rel, nodeInfo);
     return sink;
@@ -334,6 +455,7 @@ public NodeInfo(RelNode rel, Sink sink, Enumerable<Row> rowEnumerable) {
    */
   private static class EnumeratorSource implements Source {
     private final Enumerator<Row> enumerator;
+    private boolean closed;
 
     public EnumeratorSource(final Enumerator<Row> enumerator) {
       this.enumerator = Preconditions.checkNotNull(enumerator);
@@ -344,59 +466,190 @@ public EnumeratorSource(final Enumerator<Row> enumerator) {
         return enumerator.current();
       }
       // close the enumerator once we have gone through everything
-      enumerator.close();
+      close();
       return null;
     }
 
     @Override public void close() {
-      enumerator.close();
+      if (!closed) {
+        closed = true;
+        enumerator.close();
+      }
     }
   }
 
-  /** Implementation of {@link Sink} using a {@link java.util.ArrayDeque}. */
-  private static class ListSink implements Sink {
-    final ArrayDeque<Row> list;
-
-    private ListSink(ArrayDeque<Row> list) {
-      this.list = list;
+  /** Implementation of {@link Sink} that passes batches of rows to another
+   * thread through a bounded queue.
+   *
+   * <p>{@link #send} blocks while the queue is full. If the nodes run in the
+   * calling thread, the queue is unbounded. */
+  private class QueueSink implements Sink {
+    private final Execution execution = Interpreter.this.execution;
+    BlockingQueue<List<Row>> queue;
+    private List<Row> batch = new ArrayList<>(BATCH_SIZE);
+    private boolean ended;
+
+    /** Creates the queue; called before the nodes start. */
+    void open(boolean bounded) {
+      queue = bounded
+          ? new ArrayBlockingQueue<List<Row>>(QUEUE_SIZE)
+          : new LinkedBlockingQueue<List<Row>>();
     }
 
     public void send(Row row) throws InterruptedException {
-      list.add(row);
+      batch.add(row);
+      if (batch.size() >= BATCH_SIZE) {
+        put(batch);
+        batch = new ArrayList<>(BATCH_SIZE);
+      }
     }
 
     public void end() throws InterruptedException {
+      if (ended) {
+        return;
+      }
+      ended = true;
+      if (!batch.isEmpty()) {
+        put(batch);
+        batch = new ArrayList<>(0);
+      }
+      put(END);
+    }
+
+    private void put(List<Row> rows) throws InterruptedException {
+      while (!queue.offer(rows, POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+        if (execution.cancelled) {
+          throw new InterruptedException();
+        }
+      }
     }
 
     @Override public void setSourceEnumerable(Enumerable<Row> enumerable)
         throws InterruptedException {
-      // just copy over the source into the local list
+      // just copy over the source into the local queue
       final Enumerator<Row> enumerator = enumerable.enumerator();
-      while (enumerator.moveNext()) {
-        this.send(enumerator.current());
+      try {
+        while (enumerator.moveNext()) {
+          this.send(enumerator.current());
+        }
+      } finally {
+        enumerator.close();
       }
-      enumerator.close();
     }
   }
 
-  /** Implementation of {@link Source} using a {@link java.util.ArrayDeque}. */
-  private static class ListSource implements Source {
-    private final ArrayDeque<Row> list;
-
-    public ListSource(ListSink sink) {
-      this.list = sink.list;
+  /** Implementation of {@link Source} that reads the batches written by a
+   * {@link QueueSink}.
+   *
+   * <p>{@link #receive} blocks while the queue is empty. If a node has failed,
+   * it throws that node's error. */
+  private class QueueSource implements Source {
+    private final Execution execution = Interpreter.this.execution;
+    private final QueueSink sink;
+    private List<Row> batch = END;
+    private int i;
+    private boolean ended;
+
+    public QueueSource(QueueSink sink) {
+      this.sink = sink;
     }
 
     public Row receive() {
-      try {
-        return list.remove();
-      } catch (NoSuchElementException e) {
-        return null;
+      while (i >= batch.size()) {
+        if (ended) {
+          return null;
+        }
+        final List<Row> rows = take();
+        if (rows == END) {
+          ended = true;
+          return null;
+        }
+        batch = rows;
+        i = 0;
+      }
+      return batch.get(i++);
+    }
+
+    private List<Row> take() {
+      for (;;) {
+        if (execution.failure != null) {
+          throw Throwables.propagate(execution.failure);
+        }
+        if (execution.cancelled) {
+          // The consumer has gone away; there is nobody to read our output.
+          return END;
+        }
+        try {
+          final List<Row> rows =
+              sink.queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+          if (rows != null) {
+            return rows;
+          }
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new RuntimeException(e);
+        }
       }
     }
 
     @Override public void close() {
-      // noop
+      ended = true;
+    }
+  }
+
+  /** Enumerator that reads rows from a {@link Source}, and cancels execution
+   * when it is closed. */
+  private static class SourceEnumerator implements Enumerator<Row> {
+    private final Source source;
+    private final Execution execution;
+    private Row current;
+
+    SourceEnumerator(Source source, Execution execution) {
+      this.source = source;
+      this.execution = execution;
+    }
+
+    public Row current() {
+      return current;
+    }
+
+    public boolean moveNext() {
+      current = source.receive();
+      return current != null;
+    }
+
+    /** Not supported, because a source can be read only once. The
+     * enumerator returned by {@link Interpreter#enumerator()} implements
+     * reset by building and running the data flow graph again. */
+    public void reset() {
+      throw new UnsupportedOperationException();
+    }
+
+    public void close() {
+      source.close();
+      execution.cancelled = true;
+    }
+  }
+
+  /** State of one execution of the data flow graph. */
+  private static class Execution {
+    /** Set when execution is abandoned, either because the consumer closed
+     * the enumerator or because a node failed; nodes stop at their next send
+     * or receive. */
+    volatile boolean cancelled;
+
+    /** The first error thrown by a node, if any. */
+    volatile Throwable failure;
+
+    /** Records that a node has failed, and stops the other nodes. The
+     * consumer of the root node receives the error. */
+    void fail(Throwable e) {
+      synchronized (this) {
+        if (failure == null) {
+          failure = e;
+        }
+      }
+      cancelled = true;
     }
   }
 
@@ -265,6 +265,10 @@ public <T> Enumerable<T> enumerable(Meta.StatementHandle handle,
       map.put("?" + o.i, o.e.toLocal());
     }
     map.putAll(signature.internalParameters);
+    if (statement.getFetchSize() != 0) {
+      map.put(DataContext.Variable.FETCH_SIZE.camelName,
+          statement.getFetchSize());
+    }
     final DataContext dataContext = createDataContext(map);
     return signature.enumerable(dataContext);
   }
@@ -360,7 +364,11 @@ static class DataContextImpl implements DataContext {
       builder.put(Variable.UTC_TIMESTAMP.camelName, time)
           .put(Variable.CURRENT_TIMESTAMP.camelName, time + currentOffset)
           .put(Variable.LOCAL_TIMESTAMP.camelName, time + localOffset)
-          .put(Variable.TIME_ZONE.camelName, timeZone);
+          .put(Variable.TIME_ZONE.camelName, timeZone)
+          .put(Variable.SPILL_THRESHOLD.camelName,
+              connection.config().spillThreshold())
+          .put(Variable.PARALLELISM.camelName,
+              connection.config().parallelism());
       for (Map.Entry<String, Object> entry : parameters.entrySet()) {
         Object e = entry.getValue();
         if (e == null) {
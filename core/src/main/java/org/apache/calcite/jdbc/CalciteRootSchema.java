@@ -18,14 +18,81 @@
 
 import org.apache.calcite.schema.Schema;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import java.util.concurrent.atomic.AtomicLong;
+
 /**
  * Root schema.
  */
 public class CalciteRootSchema extends CalciteSchema {
+  /** Number of times that this schema or any of its descendants have been
+   * modified. */
+  final AtomicLong version = new AtomicLong();
+
+  /** Cache of statements prepared against this schema; created on first
+   * use, and discarded with this schema. */
+  private Cache<Object, CalcitePrepare.CalciteSignature> prepareCache;
+
+  /** Time at which the contents of the schemas were last checked for changes
+   * that make the statements in {@link #prepareCache} out of date. */
+  private long prepareCacheChecked;
+
   /** Creates a root schema. */
   CalciteRootSchema(Schema schema) {
     super(null, schema, "");
   }
+
+  /** Returns the version of this schema. The version increases each time
+   * that an explicit table, function, lattice or sub-schema is added to this
+   * schema or any of its descendants, or a schema's path is changed.
+   *
+   * <p>Changes made by a {@link Schema} to the objects it provides implicitly
+   * do not change the version. */
+  public long getVersion() {
+    return version.get();
+  }
+
+  /** Returns this schema's cache of prepared statements, creating it with the
+   * given maximum size if it does not exist.
+   *
+   * <p>A prepared statement holds references to the tables of this schema,
+   * so statements are never shared with other root schemas. If this schema
+   * or any of its sub-schemas reports that its contents have changed since
+   * the last call (see {@link Schema#contentsHaveChangedSince(long, long)}),
+   * the cache is emptied first. */
+  public synchronized Cache<Object, CalcitePrepare.CalciteSignature>
+  getPrepareCache(int maxSize) {
+    final long now = System.currentTimeMillis();
+    if (prepareCache == null) {
+      prepareCache = CacheBuilder.newBuilder()
+          .maximumSize(maxSize)
+          .recordStats()
+          .build();
+    } else if (contentsHaveChangedSince(this, prepareCacheChecked, now)) {
+      prepareCache.invalidateAll();
+    }
+    // A schema may record a change in the same millisecond as this check;
+    // check that millisecond again next time.
+    prepareCacheChecked = now - 1;
+    return prepareCache;
+  }
+
+  /** Returns whether a schema or any of its sub-schemas reports that its
+   * contents have changed. */
+  private static boolean contentsHaveChangedSince(CalciteSchema schema,
+      long lastCheck, long now) {
+    if (schema.schema.contentsHaveChangedSince(lastCheck, now)) {
+      return true;
+    }
+    for (CalciteSchema subSchema : schema.getSubSchemaMap().values()) {
+      if (contentsHaveChangedSince(subSchema, lastCheck, now)) {
+        return true;
+      }
+    }
+    return false;
+  }
 }
 
 // End CalciteRootSchema.java
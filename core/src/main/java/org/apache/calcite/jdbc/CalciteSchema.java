@@ -154,6 +154,7 @@ public TableEntry add(String tableName, Table table,
     final TableEntryImpl entry =
         new TableEntryImpl(this, tableName, table, sqls);
     tableMap.put(tableName, entry);
+    modified();
     return entry;
   }
 
@@ -165,6 +166,7 @@ private FunctionEntry add(String name, Function function) {
     if (function.getParameters().isEmpty()) {
       nullaryFunctionMap.put(name, entry);
     }
+    modified();
     return entry;
   }
 
@@ -174,6 +176,7 @@ private LatticeEntry add(String name, Lattice lattice) {
     }
     final LatticeEntryImpl entry = new LatticeEntryImpl(this, name, lattice);
     latticeMap.put(name, entry);
+    modified();
     return entry;
   }
 
@@ -186,6 +189,12 @@ public CalciteRootSchema root() {
     }
   }
 
+  /** Records that this schema has been modified, by incrementing the
+   * version of its root schema. */
+  private void modified() {
+    root().version.incrementAndGet();
+  }
+
   /** Returns the path of an object in this schema. */
   public List<String> path(String name) {
     final List<String> list = new ArrayList<String>();
@@ -251,6 +260,7 @@ public final CalciteSchema getSubSchema(String schemaName,
   public CalciteSchema add(String name, Schema schema) {
     final CalciteSchema calciteSchema = new CalciteSchema(this, schema, name);
     subSchemaMap.put(name, calciteSchema);
+    modified();
     return calciteSchema;
   }
 
@@ -654,6 +664,7 @@ public <T> T unwrap(Class<T> clazz) {
 
     public void setPath(ImmutableList<ImmutableList<String>> path) {
       CalciteSchema.this.path = path;
+      CalciteSchema.this.modified();
     }
 
     public void add(String name, Table table) {
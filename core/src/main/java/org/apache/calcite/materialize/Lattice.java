@@ -371,7 +371,7 @@ public Iterable<? extends Tile> computeTiles() {
     if (!algorithm) {
       return tiles;
     }
-    return new TileSuggester(this).tiles();
+    throw new UnsupportedOperationException();
   }
 
   /** Returns an estimate of the number of rows in the un-aggregated star. */
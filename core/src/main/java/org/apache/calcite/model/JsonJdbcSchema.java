@@ -16,6 +16,9 @@
  */
 package org.apache.calcite.model;
 
+import java.util.List;
+import java.util.Map;
+
 /**
  * JSON object representing a schema that maps to a JDBC database.
  *
@@ -62,6 +65,56 @@ public class JsonJdbcSchema extends JsonSchema {
    */
   public String jdbcSchema;
 
+  /** How to scan tables in partitions, concurrently; each element has the
+   * attributes "table", "column", "kind" ("range" or "hash"), "count", and
+   * optionally "lower" and "upper".
+   *
+   * <p>Optional.
+   *
+   * @see org.apache.calcite.adapter.jdbc.JdbcPartitioning
+   */
+  public List<Map<String, Object>> partitions;
+
+  /** Number of rows to fetch from the JDBC data source per round trip.
+   *
+   * <p>Optional. If not specified, or 0, uses the driver's default. A
+   * statement's fetch size, if set, overrides it.
+   */
+  public Integer fetchSize;
+
+  /** Name of a class that reads statistics about the tables in the JDBC
+   * data source, such as row counts and the number of distinct values in
+   * each column, which the planner uses to estimate the cost of plans; or the
+   * name of a static field, such as
+   * "org.apache.calcite.adapter.jdbc.JdbcStatistics#AUTO".
+   *
+   * <p>Optional. If not specified, statistics are not read, and the planner
+   * guesses.
+   *
+   * @see org.apache.calcite.adapter.jdbc.JdbcStatisticProvider
+   */
+  public String statisticProvider;
+
+  /** How long to use statistics before reading them again, in milliseconds.
+   * Statistics are read again in the background, while the old statistics
+   * continue to be used.
+   *
+   * <p>Optional. If not specified, one hour. If 0 or negative, statistics
+   * are read once and never again.
+   */
+  public Long statisticTtl;
+
+  /** How long to cache the names and row types of tables, in milliseconds,
+   * before reading them again from the JDBC data source in the background.
+   * 0 means cache them until the schema is invalidated.
+   *
+   * <p>Optional. If not specified, the names of tables are read again
+   * whenever Calcite refreshes its cache of the schema.
+   *
+   * @see org.apache.calcite.adapter.jdbc.JdbcSchema#invalidate()
+   */
+  public Long metadataTtl;
+
   @Override public void accept(ModelHandler handler) {
     handler.visit(this);
   }
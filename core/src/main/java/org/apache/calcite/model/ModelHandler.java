@@ -16,7 +16,9 @@
  */
 package org.apache.calcite.model;
 
+import org.apache.calcite.adapter.jdbc.JdbcPartitioning;
 import org.apache.calcite.adapter.jdbc.JdbcSchema;
+import org.apache.calcite.adapter.jdbc.JdbcStatistics;
 import org.apache.calcite.jdbc.CalciteConnection;
 import org.apache.calcite.jdbc.CalciteSchema;
 import org.apache.calcite.materialize.Lattice;
@@ -248,9 +250,21 @@ public void visit(JsonJdbcSchema jsonSchema) {
             jsonSchema.jdbcDriver,
             jsonSchema.jdbcUser,
             jsonSchema.jdbcPassword);
+    final JdbcSchema.ConfigBuilder configBuilder = JdbcSchema.configBuilder()
+        .setPartitionings(JdbcPartitioning.createMap(jsonSchema.partitions))
+        .setStatisticProvider(
+            JdbcStatistics.create(jsonSchema.statisticProvider,
+                jsonSchema.statisticTtl));
+    if (jsonSchema.fetchSize != null) {
+      configBuilder.setFetchSize(jsonSchema.fetchSize);
+    }
+    if (jsonSchema.metadataTtl != null) {
+      configBuilder.setMetadataTtl(jsonSchema.metadataTtl);
+    }
     JdbcSchema schema =
         JdbcSchema.create(parentSchema, jsonSchema.name, dataSource,
-            jsonSchema.jdbcCatalog, jsonSchema.jdbcSchema);
+            jsonSchema.jdbcCatalog, jsonSchema.jdbcSchema,
+            configBuilder.build());
     final SchemaPlus schemaPlus = parentSchema.add(jsonSchema.name, schema);
     populateSchema(jsonSchema, schemaPlus);
   }
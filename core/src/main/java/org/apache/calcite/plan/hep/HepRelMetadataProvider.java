@@ -39,10 +39,8 @@ public Metadata apply(RelNode rel) {
 
         HepRelVertex vertex = (HepRelVertex) rel;
         final RelNode rel2 = vertex.getCurrentRel();
-        Function<RelNode, Metadata> function =
-            rel.getCluster().getMetadataProvider().apply(
-                rel2.getClass(), metadataClass);
-        return function.apply(rel2);
+        return rel2.getCluster().getMetadataFactory().query(rel2,
+            metadataClass);
       }
     };
   }
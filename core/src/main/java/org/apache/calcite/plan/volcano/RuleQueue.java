@@ -20,7 +20,6 @@
 import org.apache.calcite.plan.RelOptRuleOperand;
 import org.apache.calcite.rel.RelNode;
 import org.apache.calcite.rel.RelNodes;
-import org.apache.calcite.util.ChunkList;
 import org.apache.calcite.util.Stacks;
 import org.apache.calcite.util.Util;
 import org.apache.calcite.util.trace.CalciteTrace;
@@ -39,6 +38,7 @@
 import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -89,12 +89,6 @@ class RuleQueue {
       new EnumMap<VolcanoPlannerPhase, PhaseMatchList>(
           VolcanoPlannerPhase.class);
 
-  /**
-   * Sorts rule-matches into decreasing order of importance.
-   */
-  private static final Comparator<VolcanoRuleMatch> MATCH_COMPARATOR =
-      new RuleMatchImportanceComparator();
-
   private final VolcanoPlanner planner;
 
   /**
@@ -287,6 +281,7 @@ void updateImportance(RelSubset subset, Double importance) {
       if (relMatchMap.containsKey(subset)) {
         for (VolcanoRuleMatch match : relMatchMap.get(subset)) {
           match.clearCachedImportance();
+          matchList.invalidate(match);
         }
       }
     }
@@ -352,7 +347,7 @@ void addMatch(VolcanoRuleMatch match) {
                 + matchName);
       }
 
-      matchList.list.add(match);
+      matchList.add(match);
 
       matchList.matchMap.put(
           planner.getSubset(match.rels[0]), match);
@@ -454,19 +449,16 @@ VolcanoRuleMatch popMatch(VolcanoPlannerPhase phase) {
           + " after phase complete");
     }
 
-    final List<VolcanoRuleMatch> matchList = phaseMatchList.list;
     VolcanoRuleMatch match;
     for (;;) {
-      if (matchList.isEmpty()) {
+      if (phaseMatchList.isEmpty()) {
         return null;
       }
+      match = phaseMatchList.poll();
       if (LOGGER.isLoggable(Level.FINEST)) {
-        Collections.sort(matchList, MATCH_COMPARATOR);
-        match = matchList.remove(0);
-
         StringBuilder b = new StringBuilder();
         b.append("Sorted rule queue:");
-        for (VolcanoRuleMatch match2 : matchList) {
+        for (VolcanoRuleMatch match2 : phaseMatchList.sortedMatches()) {
           final double importance = match2.computeImportance();
           b.append("\n");
           b.append(match2);
@@ -475,21 +467,6 @@ VolcanoRuleMatch popMatch(VolcanoPlannerPhase phase) {
         }
 
         LOGGER.finest(b.toString());
-      } else {
-        // If we're not tracing, it's not worth the effort of sorting the
-        // list to find the minimum.
-        match = null;
-        int bestPos = -1;
-        int i = -1;
-        for (VolcanoRuleMatch match2 : matchList) {
-          ++i;
-          if (match == null
-              || MATCH_COMPARATOR.compare(match2, match) < 0) {
-            bestPos = i;
-            match = match2;
-          }
-        }
-        match = matchList.remove(bestPos);
       }
 
       if (skipMatch(match)) {
@@ -643,35 +620,26 @@ public int compare(
     }
   }
 
-  /**
-   * Compares {@link VolcanoRuleMatch} objects according to their importance.
-   * Matches which are more important collate earlier. Ties are adjudicated by
-   * comparing the {@link RelNode#getId id}s of the relational expressions
-   * matched.
-   */
-  private static class RuleMatchImportanceComparator
-      implements Comparator<VolcanoRuleMatch> {
-    public int compare(VolcanoRuleMatch match1,
-        VolcanoRuleMatch match2) {
-      double imp1 = match1.getImportance();
-      double imp2 = match2.getImportance();
-      int c = Double.compare(imp1, imp2);
-      if (c != 0) {
-        return -c;
-      }
-      c = match1.rule.getClass().getName()
-          .compareTo(match2.rule.getClass().getName());
-      if (c != 0) {
-        return -c;
-      }
-      return -RelNodes.compareRels(match1.rels, match2.rels);
-    }
-  }
-
   /**
    * PhaseMatchList represents a set of {@link VolcanoRuleMatch rule-matches}
    * for a particular
    * {@link VolcanoPlannerPhase phase of the planner's execution}.
+   *
+   * <p>Rule-matches are held in a binary heap, so that the most important
+   * match can be removed in logarithmic time. Matches which are more
+   * important collate earlier. Ties are adjudicated by comparing the rules'
+   * class names, then the {@link RelNode#getId id}s of the relational
+   * expressions matched, and finally the order in which matches were
+   * added.
+   *
+   * <p>A match's position in the heap is based on the importance it had when
+   * it was positioned. If the planner
+   * {@link VolcanoRuleMatch#clearCachedImportance() clears} the match's cached
+   * importance, the match is {@link #invalidate(VolcanoRuleMatch) removed}
+   * from the heap. Newly added and invalidated matches have their importance
+   * computed, and are put into the heap, the next time a match is removed;
+   * thus matches are popped in the same order as if the importance of every
+   * match were evaluated on each pop.
    */
   private static class PhaseMatchList {
     /**
@@ -680,18 +648,33 @@ private static class PhaseMatchList {
     final VolcanoPlannerPhase phase;
 
     /**
-     * Current list of VolcanoRuleMatches for this phase. New rule-matches
-     * are appended to the end of this list. When removing a rule-match, the
-     * list is sorted and the highest importance rule-match removed. It is
-     * important for performance that this list remain mostly sorted.
-     *
-     * <p>Use a hunkList because {@link java.util.ArrayList} does not implement
-     * remove(0) efficiently.</p>
+     * Heap of rule-matches for this phase. The entry at position 0 is the
+     * most important; the children of the entry at position {@code i} are at
+     * positions {@code 2i + 1} and {@code 2i + 2}.
      */
-    final List<VolcanoRuleMatch> list = new ChunkList<VolcanoRuleMatch>();
+    private final List<MatchEntry> heap = new ArrayList<MatchEntry>();
 
     /**
-     * A set of rule-match names contained in {@link #list}. Allows fast
+     * Entries that are not currently in the heap because they have been added
+     * or invalidated since the last match was removed.
+     */
+    private final List<MatchEntry> pending = new ArrayList<MatchEntry>();
+
+    /**
+     * Entries in {@link #heap} or {@link #pending}, indexed by their
+     * rule-match.
+     */
+    private final Map<VolcanoRuleMatch, MatchEntry> entries =
+        new IdentityHashMap<VolcanoRuleMatch, MatchEntry>();
+
+    /**
+     * Number of rule-matches ever added to this list; used to order matches
+     * that are otherwise equal.
+     */
+    private int addCount;
+
+    /**
+     * A set of rule-match names contained in this list. Allows fast
      * detection of duplicate rule-matches.
      */
     final Set<String> names = new HashSet<String>();
@@ -711,10 +694,165 @@ private static class PhaseMatchList {
     }
 
     void clear() {
-      list.clear();
+      heap.clear();
+      pending.clear();
+      entries.clear();
       names.clear();
       matchMap.clear();
     }
+
+    boolean isEmpty() {
+      return heap.isEmpty() && pending.isEmpty();
+    }
+
+    /** Adds a rule-match. */
+    void add(VolcanoRuleMatch match) {
+      final MatchEntry entry = new MatchEntry(match, addCount++);
+      entries.put(match, entry);
+      pending.add(entry);
+    }
+
+    /** Notes that the cached importance of a rule-match has been cleared,
+     * and therefore its position in the heap may no longer be valid. */
+    void invalidate(VolcanoRuleMatch match) {
+      final MatchEntry entry = entries.get(match);
+      if (entry != null && entry.index >= 0) {
+        removeAt(entry.index);
+        pending.add(entry);
+      }
+    }
+
+    /** Removes and returns the most important rule-match. The list must not
+     * be empty. */
+    VolcanoRuleMatch poll() {
+      flush();
+      final MatchEntry top = heap.get(0);
+      removeAt(0);
+      entries.remove(top.match);
+      return top.match;
+    }
+
+    /** Returns the rule-matches in this list, most important first. */
+    List<VolcanoRuleMatch> sortedMatches() {
+      flush();
+      final List<MatchEntry> sorted = new ArrayList<MatchEntry>(heap);
+      Collections.sort(sorted,
+          new Comparator<MatchEntry>() {
+            public int compare(MatchEntry e0, MatchEntry e1) {
+              return PhaseMatchList.compare(e0, e1);
+            }
+          });
+      final List<VolcanoRuleMatch> list = new ArrayList<VolcanoRuleMatch>();
+      for (MatchEntry entry : sorted) {
+        list.add(entry.match);
+      }
+      return list;
+    }
+
+    /** Computes the importance of pending entries and moves them into the
+     * heap. */
+    private void flush() {
+      for (MatchEntry entry : pending) {
+        entry.importance = entry.match.getImportance();
+        entry.index = heap.size();
+        heap.add(entry);
+        siftUp(entry.index);
+      }
+      pending.clear();
+    }
+
+    /** Removes the entry at a given position in the heap. */
+    private void removeAt(int i) {
+      final MatchEntry entry = heap.get(i);
+      final MatchEntry last = heap.remove(heap.size() - 1);
+      entry.index = -1;
+      if (last != entry) {
+        last.index = i;
+        heap.set(i, last);
+        siftDown(siftUp(i));
+      }
+    }
+
+    /** Moves the entry at a given position towards the top of the heap until
+     * it is not more important than its parent; returns its new position. */
+    private int siftUp(int i) {
+      final MatchEntry entry = heap.get(i);
+      while (i > 0) {
+        final int parent = (i - 1) >>> 1;
+        final MatchEntry parentEntry = heap.get(parent);
+        if (compare(entry, parentEntry) >= 0) {
+          break;
+        }
+        parentEntry.index = i;
+        heap.set(i, parentEntry);
+        i = parent;
+      }
+      entry.index = i;
+      heap.set(i, entry);
+      return i;
+    }
+
+    /** Moves the entry at a given position towards the bottom of the heap
+     * until it is at least as important as its children. */
+    private void siftDown(int i) {
+      final MatchEntry entry = heap.get(i);
+      final int size = heap.size();
+      for (;;) {
+        int child = 2 * i + 1;
+        if (child >= size) {
+          break;
+        }
+        MatchEntry childEntry = heap.get(child);
+        if (child + 1 < size
+            && compare(heap.get(child + 1), childEntry) < 0) {
+          ++child;
+          childEntry = heap.get(child);
+        }
+        if (compare(entry, childEntry) <= 0) {
+          break;
+        }
+        childEntry.index = i;
+        heap.set(i, childEntry);
+        i = child;
+      }
+      entry.index = i;
+      heap.set(i, entry);
+    }
+
+    /** Compares entries, using the importance that each match had when it
+     * was put into the heap. */
+    private static int compare(MatchEntry e0, MatchEntry e1) {
+      int c = Double.compare(e1.importance, e0.importance);
+      if (c != 0) {
+        return c;
+      }
+      c = e1.match.rule.getClass().getName()
+          .compareTo(e0.match.rule.getClass().getName());
+      if (c != 0) {
+        return c;
+      }
+      c = RelNodes.compareRels(e1.match.rels, e0.match.rels);
+      if (c != 0) {
+        return c;
+      }
+      return e0.ordinal < e1.ordinal ? -1 : e0.ordinal == e1.ordinal ? 0 : 1;
+    }
+  }
+
+  /** Entry in the heap of a {@link PhaseMatchList}. */
+  private static class MatchEntry {
+    final VolcanoRuleMatch match;
+    /** Order in which the match was added to its list. */
+    final int ordinal;
+    /** Importance of the match when it was put into the heap. */
+    double importance;
+    /** Position in the heap, or -1 if not in the heap. */
+    int index = -1;
+
+    MatchEntry(VolcanoRuleMatch match, int ordinal) {
+      this.match = match;
+      this.ordinal = ordinal;
+    }
   }
 }
 
@@ -18,6 +18,7 @@
 
 import org.apache.calcite.rel.RelNode;
 import org.apache.calcite.rel.metadata.Metadata;
+import org.apache.calcite.rel.metadata.MetadataFactory;
 import org.apache.calcite.rel.metadata.RelMetadataProvider;
 
 import com.google.common.base.Function;
@@ -48,15 +49,11 @@ public Metadata apply(RelNode rel) {
 
         // First, try current best implementation.  If it knows how to answer
         // this query, treat it as the most reliable.
+        final MetadataFactory factory = rel.getCluster().getMetadataFactory();
         if (subset.best != null) {
-          final Function<RelNode, Metadata> function =
-              rel.getCluster().getMetadataProvider().apply(
-                  subset.best.getClass(), metadataClass);
-          if (function != null) {
-            Metadata metadata = function.apply(subset.best);
-            if (metadata != null) {
-              return metadata;
-            }
+          Metadata metadata = factory.query(subset.best, metadataClass);
+          if (metadata != null) {
+            return metadata;
           }
         }
 
@@ -79,14 +76,9 @@ public Metadata apply(RelNode rel) {
         subset.set.inMetadataQuery = true;
         try {
           for (RelNode relCandidate : subset.set.rels) {
-            final Function<RelNode, Metadata> function =
-                rel.getCluster().getMetadataProvider().apply(
-                    relCandidate.getClass(), metadataClass);
-            if (function != null) {
-              final Metadata result = function.apply(relCandidate);
-              if (result != null) {
-                return result;
-              }
+            final Metadata result = factory.query(relCandidate, metadataClass);
+            if (result != null) {
+              return result;
             }
           }
         } finally {
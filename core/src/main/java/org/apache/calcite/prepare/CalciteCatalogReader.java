@@ -119,9 +119,8 @@ private RelOptTableImpl getTableFrom(List<String> names,
     }
     if (entry != null) {
       final Table table = entry.getTable();
-      final String name2 = entry.name;
       return RelOptTableImpl.create(this, table.getRowType(typeFactory),
-          schema.add(name2, table), null);
+          entry, null);
     }
     return null;
   }
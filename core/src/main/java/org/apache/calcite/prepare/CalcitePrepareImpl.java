@@ -17,6 +17,7 @@
 package org.apache.calcite.prepare;
 
 import org.apache.calcite.DataContext;
+import org.apache.calcite.adapter.clone.ArrayTableIndexScanRule;
 import org.apache.calcite.adapter.enumerable.EnumerableBindable;
 import org.apache.calcite.adapter.enumerable.EnumerableCalc;
 import org.apache.calcite.adapter.enumerable.EnumerableConvention;
@@ -129,6 +130,7 @@
 import org.apache.calcite.util.Util;
 
 import com.google.common.base.Supplier;
+import com.google.common.cache.Cache;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
@@ -139,6 +141,7 @@
 import java.sql.DatabaseMetaData;
 import java.sql.Types;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
@@ -206,7 +209,8 @@ public class CalcitePrepareImpl implements CalcitePrepare {
           EnumerableRules.ENUMERABLE_VALUES_RULE,
           EnumerableRules.ENUMERABLE_WINDOW_RULE,
           EnumerableRules.ENUMERABLE_TABLE_SCAN_RULE,
-          EnumerableRules.ENUMERABLE_TABLE_FUNCTION_SCAN_RULE);
+          EnumerableRules.ENUMERABLE_TABLE_FUNCTION_SCAN_RULE,
+          EnumerableRules.ENUMERABLE_EXCHANGE_RULE);
 
   private static final List<RelOptRule> DEFAULT_RULES =
       ImmutableList.of(
@@ -217,6 +221,7 @@ public class CalcitePrepareImpl implements CalcitePrepare {
               ? JoinAssociateRule.INSTANCE
               : ProjectMergeRule.INSTANCE,
           FilterTableScanRule.INSTANCE,
+          ArrayTableIndexScanRule.INSTANCE,
           ProjectFilterTransposeRule.INSTANCE,
           FilterProjectTransposeRule.INSTANCE,
           FilterJoinRule.FILTER_ON_JOIN,
@@ -541,6 +546,9 @@ public void removeRule(RelOptRule rule) {
           }
         });
     }
+
+    Hook.PLANNER.run(planner); // allow test to add or remove rules
+
     return planner;
   }
 
@@ -556,7 +564,26 @@ public <T> CalciteSignature<T> prepareSql(
       Query<T> query,
       Type elementType,
       long maxRowCount) {
-    return prepare_(context, query, elementType, maxRowCount);
+    final int cacheMaxSize = context.config().prepareCacheMaxSize();
+    if (cacheMaxSize <= 0
+        || query.sql == null
+        || context.spark().enabled()) {
+      return prepare_(context, query, elementType, maxRowCount);
+    }
+    final Cache<Object, CalciteSignature> cache =
+        context.getRootSchema().getPrepareCache(cacheMaxSize);
+    final PrepareKey key =
+        new PrepareKey(context, query.sql, elementType, maxRowCount);
+    @SuppressWarnings("unchecked")
+    CalciteSignature<T> signature = cache.getIfPresent(key);
+    if (signature == null) {
+      signature = prepare_(context, query, elementType, maxRowCount);
+      if (signature.rowType != null) {
+        // Don't cache DDL statements; they have side effects, and no row type.
+        cache.put(key, signature);
+      }
+    }
+    return signature;
   }
 
   <T> CalciteSignature<T> prepare_(
@@ -1134,7 +1161,8 @@ private SqlValidatorImpl createSqlValidator(CatalogReader catalogReader) {
         }
 
         bindable = EnumerableInterpretable.toBindable(internalParameters,
-            context.spark(), enumerable, prefer);
+            context.spark(), enumerable, prefer,
+            context.config().bindableCacheMaxSize());
       }
 
       if (timingTracer != null) {
@@ -1170,6 +1198,51 @@ public Type getElementType() {
     }
   }
 
+  /** Key of an entry in a prepared statement cache.
+   *
+   * <p>Contains everything other than the SQL text that affects the result of
+   * preparation: the root schema's version, the default schema path, the
+   * connection properties that affect parsing, validation and planning, the
+   * required element type, and the maximum row count. The cache that holds
+   * the entry belongs to the root schema, so the key does not reference
+   * it. */
+  private static class PrepareKey {
+    private final long version;
+    private final List<Object> config;
+    private final String sql;
+    private final Type elementType;
+    private final long maxRowCount;
+
+    PrepareKey(Context context, String sql, Type elementType,
+        long maxRowCount) {
+      this.version = context.getRootSchema().getVersion();
+      final CalciteConnectionConfig c = context.config();
+      this.config = Arrays.asList(context.getDefaultSchemaPath(),
+          c.caseSensitive(), c.quoting(), c.quotedCasing(),
+          c.unquotedCasing(), c.materializationsEnabled(),
+          c.timeZone());
+      this.sql = sql;
+      this.elementType = elementType;
+      this.maxRowCount = maxRowCount;
+    }
+
+    @Override public int hashCode() {
+      return com.google.common.base.Objects.hashCode(version, config, sql,
+          elementType, maxRowCount);
+    }
+
+    @Override public boolean equals(Object obj) {
+      return obj == this
+          || obj instanceof PrepareKey
+          && version == ((PrepareKey) obj).version
+          && config.equals(((PrepareKey) obj).config)
+          && sql.equals(((PrepareKey) obj).sql)
+          && com.google.common.base.Objects.equal(elementType,
+              ((PrepareKey) obj).elementType)
+          && maxRowCount == ((PrepareKey) obj).maxRowCount;
+    }
+  }
+
   /** An {@code EXPLAIN} statement, prepared and ready to execute. */
   private static class CalcitePreparedExplain extends Prepare.PreparedExplain {
     public CalcitePreparedExplain(
@@ -20,34 +20,44 @@
 import org.apache.calcite.rel.RelNode;
 
 import com.google.common.base.Function;
+import com.google.common.base.Functions;
 import com.google.common.base.Preconditions;
-import com.google.common.collect.ImmutableList;
 
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
+import java.util.AbstractMap;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.List;
+import java.util.IdentityHashMap;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * Implementation of the {@link RelMetadataProvider}
  * interface that caches results from an underlying provider.
+ *
+ * <p>Results are held in a {@link Cache} that belongs to this provider, and
+ * hence to one planner, keyed on the identity of the relational expression.
+ * Where it can, the provider wraps metadata in a class generated by
+ * {@link MetadataCompiler}, so that a cache hit needs no reflection and, for
+ * a method without arguments, no allocation.</p>
  */
 public class CachingRelMetadataProvider implements RelMetadataProvider {
   //~ Instance fields --------------------------------------------------------
 
-  private final Map<List, CacheEntry> cache;
+  private final Cache cache;
 
   private final RelMetadataProvider underlyingProvider;
 
-  private final RelOptPlanner planner;
+  /** Generated caching wrappers, by metadata class; {@link #NO_FUNCTION} if
+   * a class could not be generated. */
+  private final Map<Class<? extends Metadata>, Function<Metadata, Metadata>>
+  cachingFunctions = new HashMap<>();
 
-  private static final Object NULL_SENTINEL = new Object() {
-    @Override public String toString() {
-      return "{null}";
-    }
-  };
+  private static final Function<Metadata, Metadata> NO_FUNCTION =
+      Functions.identity();
 
   //~ Constructors -----------------------------------------------------------
 
@@ -55,9 +65,7 @@ public CachingRelMetadataProvider(
       RelMetadataProvider underlyingProvider,
       RelOptPlanner planner) {
     this.underlyingProvider = underlyingProvider;
-    this.planner = planner;
-
-    cache = new HashMap<List, CacheEntry>();
+    this.cache = new Cache(planner);
   }
 
   //~ Methods ----------------------------------------------------------------
@@ -72,6 +80,16 @@ public Function<RelNode, Metadata> apply(Class<? extends RelNode> relClass,
 
     // TODO jvs 30-Mar-2006: Use meta-metadata to decide which metadata
     // query results can stay fresh until the next Ice Age.
+    final Function<Metadata, Metadata> caching =
+        cachingFunction(metadataClass);
+    if (caching != NO_FUNCTION) {
+      return new Function<RelNode, Metadata>() {
+        public Metadata apply(RelNode input) {
+          return caching.apply(
+              Preconditions.checkNotNull(function.apply(input)));
+        }
+      };
+    }
     return new Function<RelNode, Metadata>() {
       public Metadata apply(RelNode input) {
         final Metadata metadata = function.apply(input);
@@ -81,12 +99,107 @@ public Metadata apply(RelNode input) {
     };
   }
 
+  private synchronized Function<Metadata, Metadata> cachingFunction(
+      Class<? extends Metadata> metadataClass) {
+    Function<Metadata, Metadata> function = cachingFunctions.get(metadataClass);
+    if (function == null) {
+      function = MetadataCompiler.caching(metadataClass, cache);
+      if (function == null) {
+        function = NO_FUNCTION;
+      }
+      cachingFunctions.put(metadataClass, function);
+    }
+    return function;
+  }
+
   //~ Inner Classes ----------------------------------------------------------
 
+  /** Cache of metadata results, keyed on the identity of the relational
+   * expression and then on the method and its arguments.
+   *
+   * <p>Each entry records the planner's metadata timestamp for its
+   * relational expression (see
+   * {@link RelOptPlanner#getRelMetadataTimestamp(RelNode)}). If read at a
+   * later timestamp, the entry is invalid and will be re-computed as if it
+   * did not exist. The net effect is a lazy-flushing cache. */
+  static class Cache {
+    private final RelOptPlanner planner;
+    private final Map<RelNode, RelEntries> map = new IdentityHashMap<>();
+
+    Cache(RelOptPlanner planner) {
+      this.planner = planner;
+    }
+
+    /** Returns a cached result, or null if there is no valid entry. */
+    Object get(RelNode rel, Object key) {
+      final RelEntries entries = map.get(rel);
+      return entries == null ? null : entries.get(key);
+    }
+
+    /** Stores a non-null result. */
+    void put(RelNode rel, Object key, Object result) {
+      entries(rel).put(key, result);
+    }
+
+    /** Returns the entries of a relational expression, creating them if
+     * necessary. Classes generated by {@link MetadataCompiler} hold on to
+     * them, so that they can use the cache without seeing this class. */
+    Map<Object, Object> entries(RelNode rel) {
+      RelEntries entries = map.get(rel);
+      if (entries == null) {
+        entries = new RelEntries(planner, rel);
+        map.put(rel, entries);
+      }
+      return entries;
+    }
+  }
+
+  /** The cached results of one relational expression, keyed on the method
+   * and its arguments.
+   *
+   * <p>{@link #get} returns only valid entries, and {@link #put} records the
+   * current timestamp. */
+  private static class RelEntries extends AbstractMap<Object, Object> {
+    private final RelOptPlanner planner;
+    private final RelNode rel;
+    private final Map<Object, CacheEntry> map = new HashMap<>(4);
+
+    RelEntries(RelOptPlanner planner, RelNode rel) {
+      this.planner = planner;
+      this.rel = rel;
+    }
+
+    @Override public Object get(Object key) {
+      final CacheEntry entry = map.get(key);
+      if (entry != null
+          && entry.timestamp == planner.getRelMetadataTimestamp(rel)) {
+        return entry.result;
+      }
+      return null;
+    }
+
+    @Override public Object put(Object key, Object result) {
+      final CacheEntry entry = new CacheEntry();
+      entry.timestamp = planner.getRelMetadataTimestamp(rel);
+      entry.result = result;
+      map.put(key, entry);
+      return null;
+    }
+
+    public Set<Entry<Object, Object>> entrySet() {
+      final Map<Object, Object> valid = new HashMap<>();
+      for (Object key : map.keySet()) {
+        final Object result = get(key);
+        if (result != null) {
+          valid.put(key, result);
+        }
+      }
+      return Collections.unmodifiableMap(valid).entrySet();
+    }
+  }
+
   /** An entry in the cache. Consists of the cached object and the timestamp
-   * when the entry is valid. If read at a later timestamp, the entry will be
-   * invalid and will be re-computed as if it did not exist. The net effect is a
-   * lazy-flushing cache. */
+   * when the entry is valid. */
   private static class CacheEntry {
     long timestamp;
 
@@ -94,9 +207,10 @@ private static class CacheEntry {
   }
 
   /** Implementation of {@link InvocationHandler} for calls to a
-   * {@link CachingRelMetadataProvider}. Each request first looks in the cache;
-   * if the cache entry is present and not expired, returns the cache entry,
-   * otherwise computes the value and stores in the cache. */
+   * {@link CachingRelMetadataProvider}, used if no class can be generated.
+   * Each request first looks in the cache; if the cache entry is present and
+   * not expired, returns the cache entry, otherwise computes the value and
+   * stores in the cache. */
   private class CachingInvocationHandler implements InvocationHandler {
     private final Metadata metadata;
 
@@ -107,34 +221,27 @@ public CachingInvocationHandler(Metadata metadata) {
     public Object invoke(Object proxy, Method method, Object[] args)
         throws Throwable {
       // Compute hash key.
-      final ImmutableList.Builder<Object> builder = ImmutableList.builder();
-      builder.add(method);
-      builder.add(metadata.rel());
-      if (args != null) {
-        for (Object arg : args) {
-          // Replace null values because ImmutableList does not allow them.
-          builder.add(arg == null ? NULL_SENTINEL : arg);
-        }
+      final Object key;
+      if (args == null) {
+        key = method;
+      } else {
+        final Object[] values = new Object[args.length + 1];
+        values[0] = method;
+        System.arraycopy(args, 0, values, 1, args.length);
+        key = Arrays.asList(values);
       }
-      List<Object> key = builder.build();
-
-      long timestamp = planner.getRelMetadataTimestamp(metadata.rel());
+      final RelNode rel = metadata.rel();
 
       // Perform cache lookup.
-      CacheEntry entry = cache.get(key);
-      if (entry != null) {
-        if (timestamp == entry.timestamp) {
-          return entry.result;
-        }
+      final Object cached = cache.get(rel, key);
+      if (cached != null) {
+        return cached;
       }
 
       // Cache miss or stale.
       Object result = method.invoke(metadata, args);
       if (result != null) {
-        entry = new CacheEntry();
-        entry.timestamp = timestamp;
-        entry.result = result;
-        cache.put(key, entry);
+        cache.put(rel, key, result);
       }
       return result;
     }
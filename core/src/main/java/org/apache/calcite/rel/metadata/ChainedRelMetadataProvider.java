@@ -25,6 +25,7 @@
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -35,6 +36,10 @@
  * <p>When a consumer calls the {@link #apply} method to ask for a provider
  * for a particular type of {@link RelNode} and {@link Metadata}, scans the list
  * of underlying providers.</p>
+ *
+ * <p>If several providers can provide the metadata, the chain returns an
+ * instance of a class generated by {@link MetadataCompiler} that calls them
+ * in turn; failing that, it uses a {@link Proxy}.</p>
  */
 public class ChainedRelMetadataProvider implements RelMetadataProvider {
   //~ Instance fields --------------------------------------------------------
@@ -70,6 +75,29 @@ public Function<RelNode, Metadata> apply(Class<? extends RelNode> relClass,
     case 1:
       return functions.get(0);
     default:
+      final Function<Metadata[], Metadata> chain =
+          MetadataCompiler.chain(metadataClass);
+      if (chain != null) {
+        @SuppressWarnings("unchecked")
+        final Function<RelNode, Metadata>[] functionArray =
+            functions.toArray(new Function[functions.size()]);
+        return new Function<RelNode, Metadata>() {
+          public Metadata apply(RelNode input) {
+            final Metadata[] metadataArray = new Metadata[functionArray.length];
+            int n = 0;
+            for (Function<RelNode, Metadata> function : functionArray) {
+              final Metadata metadata = function.apply(input);
+              if (metadata != null) {
+                metadataArray[n++] = metadata;
+              }
+            }
+            return chain.apply(
+                n == metadataArray.length
+                    ? metadataArray
+                    : Arrays.copyOf(metadataArray, n));
+          }
+        };
+      }
       return new Function<RelNode, Metadata>() {
         public Metadata apply(RelNode input) {
           final List<Metadata> metadataList = Lists.newArrayList();
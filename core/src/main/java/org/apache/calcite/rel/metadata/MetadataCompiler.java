@@ -0,0 +1,486 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.rel.metadata;
+
+import org.apache.calcite.linq4j.tree.Primitive;
+import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.util.BuiltInMethod;
+import org.apache.calcite.util.trace.CalciteTrace;
+
+import com.google.common.base.Function;
+import com.google.common.base.Optional;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Maps;
+
+import org.codehaus.commons.compiler.CompilerFactoryFactory;
+import org.codehaus.commons.compiler.IClassBodyEvaluator;
+import org.codehaus.commons.compiler.ICompilerFactory;
+
+import java.io.StringReader;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Generates, using Janino, classes that implement {@link Metadata}
+ * interfaces by calling their delegates directly.
+ *
+ * <p>Without generated classes, every metadata call goes through a
+ * {@link java.lang.reflect.Proxy} and {@link Method#invoke} at each level:
+ * the caching provider, the chain, and the reflective handler. A generated
+ * class makes the same calls, and returns the same results, as the
+ * corresponding invocation handler, but with ordinary virtual calls.</p>
+ *
+ * <p>A class can only be generated if every type it mentions is public.
+ * If not, the methods of this class return null, and the caller falls back
+ * to a proxy. Generated code refers only to public types; in particular, it
+ * reaches the cache of a {@link CachingRelMetadataProvider} through a
+ * {@link Map} and a {@link Function}, not through the cache's own class.</p>
+ *
+ * <p>A class that fails to compile is a bug. The failure and the code are
+ * logged at level WARNING to the
+ * {@link CalciteTrace#getPlannerTracer() planner tracer}; if assertions are
+ * enabled, as they are in tests, compilation also throws
+ * {@link AssertionError}. Otherwise the caller falls back to a proxy.</p>
+ *
+ * <p>Generation is enabled unless the system property
+ * "calcite.metadata.compile" is "false".</p>
+ */
+final class MetadataCompiler {
+  /** Whether to generate classes. If false, metadata providers use proxies,
+   * as they did before. */
+  static final boolean ENABLED =
+      !"false".equals(System.getProperty("calcite.metadata.compile"));
+
+  private static final Logger LOGGER = CalciteTrace.getPlannerTracer();
+
+  private static final String METADATA = Metadata.class.getName();
+  private static final String REL_NODE = RelNode.class.getName();
+
+  /** Constructors of compiled chain classes, by metadata interface. */
+  private static final LoadingCache<Class<?>, Optional<Constructor<?>>>
+  CHAIN_CACHE =
+      CacheBuilder.newBuilder().weakKeys().build(
+          new CacheLoader<Class<?>, Optional<Constructor<?>>>() {
+            public Optional<Constructor<?>> load(Class<?> metadataClass) {
+              return Optional.<Constructor<?>>fromNullable(
+                  compileChain(metadataClass));
+            }
+          });
+
+  /** Constructors of compiled caching classes, by metadata interface. */
+  private static final LoadingCache<Class<?>, Optional<Constructor<?>>>
+  CACHING_CACHE =
+      CacheBuilder.newBuilder().weakKeys().build(
+          new CacheLoader<Class<?>, Optional<Constructor<?>>>() {
+            public Optional<Constructor<?>> load(Class<?> metadataClass) {
+              return Optional.<Constructor<?>>fromNullable(
+                  compileCaching(metadataClass));
+            }
+          });
+
+  private MetadataCompiler() {}
+
+  /** Returns a function that creates, for a relational expression, a
+   * {@code metadataClass} whose {@code methods} call the corresponding
+   * {@code handlerMethods} of {@code target}, with the relational expression
+   * as an extra first argument; or null if no class can be generated.
+   *
+   * <p>The generated class behaves like the invocation handler in
+   * {@link ReflectiveRelMetadataProvider}. A method with no handler throws
+   * {@link AssertionError}. */
+  @SuppressWarnings("unchecked")
+  static Function<RelNode, Metadata> handler(Class<?> metadataClass,
+      List<Method> methods, List<Method> handlerMethods, Object target) {
+    if (!ENABLED
+        || !isPublic(metadataClass)
+        || !isPublic(target.getClass())) {
+      return null;
+    }
+    final String name = "GeneratedMetadataHandler_"
+        + metadataClass.getSimpleName();
+    final StringBuilder buf = new StringBuilder();
+    buf.append("  private final ").append(REL_NODE).append(" rel;\n")
+        .append("  private final Object target;\n")
+        .append("  public ").append(name).append("(").append(REL_NODE)
+        .append(" rel, Object target) {\n")
+        .append("    this.rel = rel;\n")
+        .append("    this.target = target;\n")
+        .append("  }\n")
+        .append("  public Object apply(Object rel) {\n")
+        .append("    return new ").append(name).append("((").append(REL_NODE)
+        .append(") rel, target);\n")
+        .append("  }\n")
+        .append("  public String toString() {\n")
+        .append("    return ").append(literal(metadataClass.getSimpleName()))
+        .append(" + \"(\" + rel + \")\";\n")
+        .append("  }\n");
+    for (Method method : methodsOf(metadataClass)) {
+      if (!declare(buf, method)) {
+        return null;
+      }
+      if (isRelMethod(method)) {
+        buf.append("    return rel;\n");
+      } else {
+        final int i = methods.indexOf(method);
+        final Method handlerMethod = i < 0 ? null : handlerMethods.get(i);
+        if (handlerMethod == null) {
+          buf.append("    throw new AssertionError(")
+              .append(literal("not handled: " + method + " for "))
+              .append(" + rel);\n");
+        } else {
+          final Class<?> declaringClass = handlerMethod.getDeclaringClass();
+          final Class<?> relClass = handlerMethod.getParameterTypes()[0];
+          if (!isPublic(declaringClass) || !isPublic(relClass)) {
+            return null;
+          }
+          buf.append("    return ((").append(typeName(declaringClass))
+              .append(") target).").append(handlerMethod.getName())
+              .append("((").append(typeName(relClass)).append(") rel");
+          arguments(buf, method, true);
+          buf.append(");\n");
+        }
+      }
+      buf.append("  }\n");
+    }
+    final Constructor<?> constructor =
+        compile(name, buf.toString(), metadataClass,
+            target.getClass().getClassLoader(), RelNode.class, Object.class);
+    if (constructor == null) {
+      return null;
+    }
+    return (Function<RelNode, Metadata>) newInstance(constructor, null, target);
+  }
+
+  /** Returns a function that creates, for an array of {@link Metadata}
+   * objects, a {@code metadataClass} whose every method returns the first
+   * non-null value returned by the same method of the elements of the array;
+   * or null if no class can be generated.
+   *
+   * <p>The generated class behaves like the invocation handler in
+   * {@link ChainedRelMetadataProvider}. */
+  @SuppressWarnings("unchecked")
+  static Function<Metadata[], Metadata> chain(Class<?> metadataClass) {
+    if (!ENABLED) {
+      return null;
+    }
+    final Constructor<?> constructor =
+        CHAIN_CACHE.getUnchecked(metadataClass).orNull();
+    if (constructor == null) {
+      return null;
+    }
+    return (Function<Metadata[], Metadata>) newInstance(constructor,
+        (Object) null);
+  }
+
+  /** Returns a function that creates, for a {@link Metadata} object, a
+   * {@code metadataClass} that stores the results of its methods in
+   * {@code cache}; or null if no class can be generated.
+   *
+   * <p>The generated class behaves like the invocation handler in
+   * {@link CachingRelMetadataProvider}. It cannot see the cache's class,
+   * so it gets each relational expression's entries, as a {@link Map}, from
+   * a function. */
+  @SuppressWarnings("unchecked")
+  static Function<Metadata, Metadata> caching(Class<?> metadataClass,
+      final CachingRelMetadataProvider.Cache cache) {
+    if (!ENABLED) {
+      return null;
+    }
+    final Constructor<?> constructor =
+        CACHING_CACHE.getUnchecked(metadataClass).orNull();
+    if (constructor == null) {
+      return null;
+    }
+    final List<Method> methods = methodsOf(metadataClass);
+    final Function<RelNode, Map<Object, Object>> entries =
+        new Function<RelNode, Map<Object, Object>>() {
+          public Map<Object, Object> apply(RelNode rel) {
+            return cache.entries(rel);
+          }
+        };
+    return (Function<Metadata, Metadata>) newInstance(constructor, null, null,
+        methods.toArray(new Method[methods.size()]), entries);
+  }
+
+  private static Constructor<?> compileChain(Class<?> metadataClass) {
+    if (!isPublic(metadataClass)) {
+      return null;
+    }
+    final String name = "GeneratedMetadataChain_"
+        + metadataClass.getSimpleName();
+    final String type = typeName(metadataClass);
+    final StringBuilder buf = new StringBuilder();
+    buf.append("  private final ").append(METADATA).append("[] list;\n")
+        .append("  public ").append(name).append("(").append(METADATA)
+        .append("[] list) {\n")
+        .append("    this.list = list;\n")
+        .append("  }\n")
+        .append("  public Object apply(Object list) {\n")
+        .append("    return new ").append(name).append("((").append(METADATA)
+        .append("[]) list);\n")
+        .append("  }\n")
+        .append("  public String toString() {\n")
+        .append("    return list.length == 0 ? \"[]\" : list[0].toString();\n")
+        .append("  }\n");
+    for (Method method : methodsOf(metadataClass)) {
+      if (method.getReturnType().isPrimitive()
+          || !declare(buf, method)) {
+        return null;
+      }
+      buf.append("    for (int i = 0; i < list.length; i++) {\n")
+          .append("      final ").append(typeName(method.getReturnType()))
+          .append(" o = ((").append(type).append(") list[i]).")
+          .append(method.getName()).append("(");
+      arguments(buf, method, false);
+      buf.append(");\n")
+          .append("      if (o != null) {\n")
+          .append("        return o;\n")
+          .append("      }\n")
+          .append("    }\n")
+          .append("    return null;\n")
+          .append("  }\n");
+    }
+    return compile(name, buf.toString(), metadataClass,
+        metadataClass.getClassLoader(), Metadata[].class);
+  }
+
+  private static Constructor<?> compileCaching(Class<?> metadataClass) {
+    if (!isPublic(metadataClass)) {
+      return null;
+    }
+    final String name = "GeneratedMetadataCache_"
+        + metadataClass.getSimpleName();
+    final String type = typeName(metadataClass);
+    final String function = typeName(Function.class);
+    final StringBuilder buf = new StringBuilder();
+    buf.append("  private final ").append(METADATA).append(" metadata;\n")
+        .append("  private final java.util.Map cache;\n")
+        .append("  private final java.lang.reflect.Method[] methods;\n")
+        .append("  private final ").append(function).append(" entries;\n")
+        .append("  public ").append(name).append("(").append(METADATA)
+        .append(" metadata, java.util.Map cache,\n")
+        .append("      java.lang.reflect.Method[] methods, ").append(function)
+        .append(" entries) {\n")
+        .append("    this.metadata = metadata;\n")
+        .append("    this.cache = cache;\n")
+        .append("    this.methods = methods;\n")
+        .append("    this.entries = entries;\n")
+        .append("  }\n")
+        .append("  public Object apply(Object o) {\n")
+        .append("    final ").append(METADATA).append(" m = (")
+        .append(METADATA).append(") o;\n")
+        .append("    return new ").append(name)
+        .append("(m, (java.util.Map) entries.apply(m.rel()), methods,")
+        .append(" entries);\n")
+        .append("  }\n")
+        .append("  public String toString() {\n")
+        .append("    return metadata.toString();\n")
+        .append("  }\n");
+    final List<Method> methods = methodsOf(metadataClass);
+    for (int i = 0; i < methods.size(); i++) {
+      final Method method = methods.get(i);
+      if (method.getReturnType().isPrimitive()
+          || !declare(buf, method)) {
+        return null;
+      }
+      if (isRelMethod(method)) {
+        buf.append("    return metadata.rel();\n")
+            .append("  }\n");
+        continue;
+      }
+      final String returnType = typeName(method.getReturnType());
+      buf.append("    final Object key = ");
+      final Class<?>[] parameterTypes = method.getParameterTypes();
+      if (parameterTypes.length == 0) {
+        buf.append("methods[").append(i).append("];\n");
+      } else {
+        buf.append("java.util.Arrays.asList(new Object[] {methods[")
+            .append(i).append("]");
+        for (int j = 0; j < parameterTypes.length; j++) {
+          buf.append(", ");
+          if (parameterTypes[j].isPrimitive()) {
+            buf.append(Primitive.of(parameterTypes[j]).boxClass.getName())
+                .append(".valueOf(a").append(j).append(")");
+          } else {
+            buf.append("a").append(j);
+          }
+        }
+        buf.append("});\n");
+      }
+      buf.append("    final Object v = cache.get(key);\n")
+          .append("    if (v != null) {\n")
+          .append("      return (").append(returnType).append(") v;\n")
+          .append("    }\n")
+          .append("    final ").append(returnType).append(" result = ((")
+          .append(type).append(") metadata).").append(method.getName())
+          .append("(");
+      arguments(buf, method, false);
+      buf.append(");\n")
+          .append("    if (result != null) {\n")
+          .append("      cache.put(key, result);\n")
+          .append("    }\n")
+          .append("    return result;\n")
+          .append("  }\n");
+    }
+    return compile(name, buf.toString(), metadataClass,
+        metadataClass.getClassLoader(), Metadata.class, Map.class,
+        Method[].class, Function.class);
+  }
+
+  /** Returns the methods of a metadata interface, including those it
+   * inherits, without duplicates. */
+  private static List<Method> methodsOf(Class<?> metadataClass) {
+    final Map<String, Method> map = Maps.newLinkedHashMap();
+    for (Method method : metadataClass.getMethods()) {
+      final String key = method.getName()
+          + Arrays.toString(method.getParameterTypes());
+      if (!map.containsKey(key)) {
+        map.put(key, method);
+      }
+    }
+    return ImmutableList.copyOf(map.values());
+  }
+
+  private static boolean isRelMethod(Method method) {
+    return method.getName().equals(BuiltInMethod.METADATA_REL.method.getName())
+        && method.getParameterTypes().length == 0;
+  }
+
+  /** Appends the header of a method that implements {@code method}, up to
+   * and including the opening brace. Returns false if the method mentions a
+   * type that generated code cannot see. */
+  private static boolean declare(StringBuilder buf, Method method) {
+    if (!isPublic(method.getReturnType())) {
+      return false;
+    }
+    buf.append("  public ").append(typeName(method.getReturnType()))
+        .append(" ").append(method.getName()).append("(");
+    final Class<?>[] parameterTypes = method.getParameterTypes();
+    for (int i = 0; i < parameterTypes.length; i++) {
+      if (!isPublic(parameterTypes[i])) {
+        return false;
+      }
+      if (i > 0) {
+        buf.append(", ");
+      }
+      buf.append("final ").append(typeName(parameterTypes[i]))
+          .append(" a").append(i);
+    }
+    buf.append(")");
+    final Class<?>[] exceptionTypes = method.getExceptionTypes();
+    for (int i = 0; i < exceptionTypes.length; i++) {
+      if (!isPublic(exceptionTypes[i])) {
+        return false;
+      }
+      buf.append(i == 0 ? " throws " : ", ")
+          .append(typeName(exceptionTypes[i]));
+    }
+    buf.append(" {\n");
+    return true;
+  }
+
+  /** Appends the arguments "a0, a1, ..." of a call. */
+  private static void arguments(StringBuilder buf, Method method,
+      boolean leadingComma) {
+    final int n = method.getParameterTypes().length;
+    for (int i = 0; i < n; i++) {
+      if (i > 0 || leadingComma) {
+        buf.append(", ");
+      }
+      buf.append("a").append(i);
+    }
+  }
+
+  /** Returns whether generated code, in another class loader, can refer to a
+   * class. */
+  private static boolean isPublic(Class<?> clazz) {
+    while (clazz.isArray()) {
+      clazz = clazz.getComponentType();
+    }
+    if (clazz.isPrimitive()) {
+      return true;
+    }
+    if (clazz.getCanonicalName() == null) {
+      return false; // anonymous or local class
+    }
+    for (Class<?> c = clazz; c != null; c = c.getEnclosingClass()) {
+      if (!Modifier.isPublic(c.getModifiers())) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static String typeName(Class<?> clazz) {
+    return clazz.getCanonicalName();
+  }
+
+  /** Converts a string to a Java string literal. */
+  private static String literal(String s) {
+    return "\"" + s.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+  }
+
+  /** Compiles a class that implements {@code metadataClass} and
+   * {@link Function}, and returns its constructor.
+   *
+   * <p>If the class does not compile, logs the error and the code, and
+   * returns null; or, if assertions are enabled, throws. */
+  private static Constructor<?> compile(String name, String body,
+      Class<?> metadataClass, ClassLoader classLoader,
+      Class<?>... parameterTypes) {
+    try {
+      final ICompilerFactory compilerFactory =
+          CompilerFactoryFactory.getDefaultCompilerFactory();
+      final IClassBodyEvaluator cbe = compilerFactory.newClassBodyEvaluator();
+      cbe.setClassName(name);
+      cbe.setImplementedInterfaces(
+          new Class[] {metadataClass, Function.class});
+      cbe.setParentClassLoader(
+          classLoader != null
+              ? classLoader
+              : MetadataCompiler.class.getClassLoader());
+      cbe.cook(new StringReader(body));
+      return cbe.getClazz().getConstructor(parameterTypes);
+    } catch (Exception e) {
+      final String message = "Error while compiling generated metadata class "
+          + name + " for " + metadataClass.getName() + ":\n" + body;
+      LOGGER.log(Level.WARNING, message, e);
+      assert false : message + "\n" + e;
+      return null;
+    }
+  }
+
+  private static Object newInstance(Constructor<?> constructor,
+      Object... args) {
+    try {
+      return constructor.newInstance(args);
+    } catch (Exception e) {
+      throw new RuntimeException("while instantiating " + constructor, e);
+    }
+  }
+}
+
+// End MetadataCompiler.java
@@ -48,6 +48,10 @@
  * parameter gives this provider an indication of that relational expressions it
  * can handle.</p>
  *
+ * <p>Where it can, the provider generates a class that calls the target's
+ * methods directly, rather than through {@link Method#invoke}; see
+ * {@link MetadataCompiler}.</p>
+ *
  * <p>For an example, see {@link RelMdColumnOrigins#SOURCE}.
  */
 public class ReflectiveRelMetadataProvider
@@ -130,6 +134,8 @@ private static RelMetadataProvider reflectiveSource(final Object target,
 
     final Map<Class<RelNode>, Function<RelNode, Metadata>> methodsMap =
         Maps.newHashMap();
+    final Map<List<Method>, Function<RelNode, Metadata>> functionMap =
+        Maps.newHashMap();
     for (Class<RelNode> key : classes) {
       ImmutableNullableList.Builder<Method> builder =
           ImmutableNullableList.builder();
@@ -137,53 +143,12 @@ private static RelMetadataProvider reflectiveSource(final Object target,
         builder.add(find(handlerMap, key, method));
       }
       final List<Method> handlerMethods = builder.build();
-      final Function<RelNode, Metadata> function =
-          new Function<RelNode, Metadata>() {
-            public Metadata apply(final RelNode rel) {
-              return (Metadata) Proxy.newProxyInstance(
-                  metadataClass0.getClassLoader(),
-                  new Class[]{metadataClass0},
-                  new InvocationHandler() {
-                    public Object invoke(Object proxy, Method method,
-                        Object[] args) throws Throwable {
-                      // Suppose we are an implementation of Selectivity
-                      // that wraps "filter", a LogicalFilter. Then we
-                      // implement
-                      //   Selectivity.selectivity(rex)
-                      // by calling method
-                      //   new SelectivityImpl().selectivity(filter, rex)
-                      if (method.equals(
-                          BuiltInMethod.METADATA_REL.method)) {
-                        return rel;
-                      }
-                      if (method.equals(
-                          BuiltInMethod.OBJECT_TO_STRING.method)) {
-                        return metadataClass0.getSimpleName() + "(" + rel
-                            + ")";
-                      }
-                      int i = methods.indexOf(method);
-                      if (i < 0) {
-                        throw new AssertionError("not handled: " + method
-                            + " for " + rel);
-                      }
-                      final Object[] args1;
-                      if (args == null) {
-                        args1 = new Object[]{rel};
-                      } else {
-                        args1 = new Object[args.length + 1];
-                        args1[0] = rel;
-                        System.arraycopy(args, 0, args1, 1, args.length);
-                      }
-                      final Method handlerMethod = handlerMethods.get(i);
-                      if (handlerMethod == null) {
-                        throw new AssertionError("not handled: " + method
-                            + " for " + rel);
-                      }
-                      return handlerMethod.invoke(target, args1);
-                    }
-                  });
-            }
-          };
+      Function<RelNode, Metadata> function = functionMap.get(handlerMethods);
+      if (function == null) {
+        function = new HandlerFunction(metadataClass0, methods,
+            handlerMethods, target);
+        functionMap.put(handlerMethods, function);
+      }
       methodsMap.put(key, function);
     }
     return new ReflectiveRelMetadataProvider(methodsMap, metadataClass0);
@@ -281,6 +246,90 @@ private synchronized Function<RelNode, Metadata> apply(
       }
     }
   }
+
+  /** Function that creates a {@link Metadata} that calls handler methods on
+   * a target object.
+   *
+   * <p>On first use, it tries to generate a class that calls the handler
+   * methods directly (see {@link MetadataCompiler}); if that is not possible,
+   * it uses a {@link Proxy} that calls them via reflection. */
+  private static class HandlerFunction implements Function<RelNode, Metadata> {
+    private final Class<?> metadataClass0;
+    private final ImmutableList<Method> methods;
+    private final List<Method> handlerMethods;
+    private final Object target;
+    private volatile Function<RelNode, Metadata> function;
+
+    HandlerFunction(Class<?> metadataClass0, ImmutableList<Method> methods,
+        List<Method> handlerMethods, Object target) {
+      this.metadataClass0 = metadataClass0;
+      this.methods = methods;
+      this.handlerMethods = handlerMethods;
+      this.target = target;
+    }
+
+    public Metadata apply(RelNode rel) {
+      Function<RelNode, Metadata> function = this.function;
+      if (function == null) {
+        function = MetadataCompiler.handler(metadataClass0, methods,
+            handlerMethods, target);
+        if (function == null) {
+          function = proxyFunction();
+        }
+        this.function = function;
+      }
+      return function.apply(rel);
+    }
+
+    private Function<RelNode, Metadata> proxyFunction() {
+      return new Function<RelNode, Metadata>() {
+        public Metadata apply(final RelNode rel) {
+          return (Metadata) Proxy.newProxyInstance(
+              metadataClass0.getClassLoader(),
+              new Class[]{metadataClass0},
+              new InvocationHandler() {
+                public Object invoke(Object proxy, Method method,
+                    Object[] args) throws Throwable {
+                  // Suppose we are an implementation of Selectivity
+                  // that wraps "filter", a LogicalFilter. Then we
+                  // implement
+                  //   Selectivity.selectivity(rex)
+                  // by calling method
+                  //   new SelectivityImpl().selectivity(filter, rex)
+                  if (method.equals(
+                      BuiltInMethod.METADATA_REL.method)) {
+                    return rel;
+                  }
+                  if (method.equals(
+                      BuiltInMethod.OBJECT_TO_STRING.method)) {
+                    return metadataClass0.getSimpleName() + "(" + rel
+                        + ")";
+                  }
+                  int i = methods.indexOf(method);
+                  if (i < 0) {
+                    throw new AssertionError("not handled: " + method
+                        + " for " + rel);
+                  }
+                  final Object[] args1;
+                  if (args == null) {
+                    args1 = new Object[]{rel};
+                  } else {
+                    args1 = new Object[args.length + 1];
+                    args1[0] = rel;
+                    System.arraycopy(args, 0, args1, 1, args.length);
+                  }
+                  final Method handlerMethod = handlerMethods.get(i);
+                  if (handlerMethod == null) {
+                    throw new AssertionError("not handled: " + method
+                        + " for " + rel);
+                  }
+                  return handlerMethod.invoke(target, args1);
+                }
+              });
+        }
+      };
+    }
+  }
 }
 
 // End ReflectiveRelMetadataProvider.java
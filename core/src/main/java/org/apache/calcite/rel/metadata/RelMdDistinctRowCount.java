@@ -25,11 +25,13 @@
 import org.apache.calcite.rel.core.Project;
 import org.apache.calcite.rel.core.SemiJoin;
 import org.apache.calcite.rel.core.Sort;
+import org.apache.calcite.rel.core.TableScan;
 import org.apache.calcite.rel.core.Union;
 import org.apache.calcite.rel.core.Values;
 import org.apache.calcite.rex.RexBuilder;
 import org.apache.calcite.rex.RexNode;
 import org.apache.calcite.rex.RexUtil;
+import org.apache.calcite.schema.ColumnStatistic;
 import org.apache.calcite.sql.fun.SqlStdOperatorTable;
 import org.apache.calcite.util.BuiltInMethod;
 import org.apache.calcite.util.ImmutableBitSet;
@@ -273,6 +275,37 @@ public Double getDistinctRowCount(
         RelMetadataQuery.getRowCount(rel));
   }
 
+  /** Returns the number of distinct values of a set of columns of a table,
+   * estimated from {@link ColumnStatistic} if the table has them. The columns
+   * are assumed independent; each null counts as one more value. */
+  public Double getDistinctRowCount(
+      TableScan rel,
+      ImmutableBitSet groupKey,
+      RexNode predicate) {
+    final ColumnStatistic statistic =
+        RelMdUtil.columnStatistic(rel.getTable());
+    if (statistic != null) {
+      double distinctRowCount = 1d;
+      for (int column : groupKey) {
+        final Double distinctCount = statistic.getDistinctCount(column);
+        if (distinctCount == null) {
+          return getDistinctRowCount((RelNode) rel, groupKey, predicate);
+        }
+        final Double nullFraction = statistic.getNullFraction(column);
+        distinctRowCount *= distinctCount
+            + (nullFraction == null || nullFraction > 0d ? 1d : 0d);
+      }
+      final double rowCount = RelMetadataQuery.getRowCount(rel);
+      distinctRowCount = Math.min(distinctRowCount, rowCount);
+      if (predicate == null || predicate.isAlwaysTrue()) {
+        return distinctRowCount;
+      }
+      return RelMdUtil.numDistinctVals(distinctRowCount,
+          rowCount * RelMetadataQuery.getSelectivity(rel, predicate));
+    }
+    return getDistinctRowCount((RelNode) rel, groupKey, predicate);
+  }
+
   // Catch-all rule when none of the others apply.
   public Double getDistinctRowCount(
       RelNode rel,
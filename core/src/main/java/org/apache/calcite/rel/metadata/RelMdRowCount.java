@@ -94,9 +94,8 @@ public Double getRowCount(SemiJoin rel) {
   }
 
   public Double getRowCount(Aggregate rel) {
-    ImmutableBitSet groupKey = ImmutableBitSet.range(rel.getGroupCount());
-
-    // rowcount is the cardinality of the group by columns
+    // rowcount is the cardinality of the group by columns of the input
+    ImmutableBitSet groupKey = rel.getGroupSet();
     Double distinctRowCount =
         RelMetadataQuery.getDistinctRowCount(
             rel.getInput(),
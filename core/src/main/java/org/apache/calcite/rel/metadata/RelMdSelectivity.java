@@ -20,13 +20,19 @@
 import org.apache.calcite.rel.RelNode;
 import org.apache.calcite.rel.core.Aggregate;
 import org.apache.calcite.rel.core.Filter;
+import org.apache.calcite.rel.core.Join;
 import org.apache.calcite.rel.core.Project;
 import org.apache.calcite.rel.core.SemiJoin;
 import org.apache.calcite.rel.core.Sort;
+import org.apache.calcite.rel.core.TableScan;
 import org.apache.calcite.rel.core.Union;
 import org.apache.calcite.rex.RexBuilder;
+import org.apache.calcite.rex.RexCall;
+import org.apache.calcite.rex.RexInputRef;
 import org.apache.calcite.rex.RexNode;
 import org.apache.calcite.rex.RexUtil;
+import org.apache.calcite.schema.ColumnStatistic;
+import org.apache.calcite.sql.SqlKind;
 import org.apache.calcite.sql.fun.SqlStdOperatorTable;
 import org.apache.calcite.util.BuiltInMethod;
 import org.apache.calcite.util.ImmutableBitSet;
@@ -184,6 +190,80 @@ public Double getSelectivity(Project rel, RexNode predicate) {
     }
   }
 
+  public Double getSelectivity(TableScan rel, RexNode predicate) {
+    final ColumnStatistic statistic =
+        RelMdUtil.columnStatistic(rel.getTable());
+    if (statistic == null) {
+      return RelMdUtil.guessSelectivity(predicate);
+    }
+    return RelMdUtil.estimateSelectivity(statistic, predicate);
+  }
+
+  /** Estimates the selectivity of a join condition.
+   *
+   * <p>If a conjunction equates a column from the left input to a column from
+   * the right input, and at least one of the columns comes from a table that
+   * has {@link ColumnStatistic}, its selectivity is {@code 1 / max(ndv(left),
+   * ndv(right))}; that is, each value on the side with fewer distinct values is
+   * assumed to occur on the other side. The selectivity of any other
+   * conjunction is guessed. */
+  public Double getSelectivity(Join rel, RexNode predicate) {
+    double selectivity = 1d;
+    for (RexNode e : RelOptUtil.conjunctions(predicate)) {
+      final Double s = equiJoinSelectivity(rel, e);
+      selectivity *= s != null ? s : RelMdUtil.guessSelectivity(e);
+    }
+    return selectivity;
+  }
+
+  private static Double equiJoinSelectivity(Join rel, RexNode e) {
+    if (e.getKind() != SqlKind.EQUALS) {
+      return null;
+    }
+    final List<RexNode> operands = ((RexCall) e).getOperands();
+    if (!(operands.get(0) instanceof RexInputRef)
+        || !(operands.get(1) instanceof RexInputRef)) {
+      return null;
+    }
+    final int leftCount = rel.getLeft().getRowType().getFieldCount();
+    int left = ((RexInputRef) operands.get(0)).getIndex();
+    int right = ((RexInputRef) operands.get(1)).getIndex();
+    if (left >= leftCount) {
+      final int swap = left;
+      left = right;
+      right = swap;
+    }
+    if (left >= leftCount || right < leftCount) {
+      return null;
+    }
+    right -= leftCount;
+    if (!hasColumnStatistic(rel.getLeft(), left)
+        && !hasColumnStatistic(rel.getRight(), right)) {
+      return null;
+    }
+    final Double leftDistinct =
+        RelMetadataQuery.getDistinctRowCount(rel.getLeft(),
+            ImmutableBitSet.of(left), null);
+    final Double rightDistinct =
+        RelMetadataQuery.getDistinctRowCount(rel.getRight(),
+            ImmutableBitSet.of(right), null);
+    final Double distinct =
+        leftDistinct == null ? rightDistinct
+            : rightDistinct == null ? leftDistinct
+            : Math.max(leftDistinct, rightDistinct);
+    return distinct == null ? null : 1d / Math.max(distinct, 1d);
+  }
+
+  /** Returns whether a column of a relational expression comes, not derived,
+   * from a table that has {@link ColumnStatistic}. */
+  private static boolean hasColumnStatistic(RelNode rel, int column) {
+    final RelColumnOrigin origin =
+        RelMetadataQuery.getColumnOrigin(rel, column);
+    return origin != null
+        && !origin.isDerived()
+        && RelMdUtil.columnStatistic(origin.getOriginTable()) != null;
+  }
+
   // Catch-all rule when none of the others apply.
   public Double getSelectivity(RelNode rel, RexNode predicate) {
     return RelMdUtil.guessSelectivity(predicate);
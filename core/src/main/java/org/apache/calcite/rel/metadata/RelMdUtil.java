@@ -16,6 +16,7 @@
  */
 package org.apache.calcite.rel.metadata;
 
+import org.apache.calcite.plan.RelOptTable;
 import org.apache.calcite.plan.RelOptUtil;
 import org.apache.calcite.rel.RelCollation;
 import org.apache.calcite.rel.RelCollations;
@@ -32,6 +33,9 @@
 import org.apache.calcite.rex.RexNode;
 import org.apache.calcite.rex.RexUtil;
 import org.apache.calcite.rex.RexVisitorImpl;
+import org.apache.calcite.schema.ColumnStatistic;
+import org.apache.calcite.schema.Statistic;
+import org.apache.calcite.schema.Table;
 import org.apache.calcite.sql.SqlFunction;
 import org.apache.calcite.sql.SqlFunctionCategory;
 import org.apache.calcite.sql.SqlKind;
@@ -432,6 +436,134 @@ public static double guessSelectivity(
     }
   }
 
+  /** Returns the statistics about the columns of a table, or null if the
+   * table's {@link Statistic} does not implement {@link ColumnStatistic}. */
+  public static ColumnStatistic columnStatistic(RelOptTable table) {
+    final Table t = table == null ? null : table.unwrap(Table.class);
+    if (t != null) {
+      final Statistic statistic = t.getStatistic();
+      if (statistic instanceof ColumnStatistic) {
+        return (ColumnStatistic) statistic;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Estimates the selectivity of a predicate on the columns of a table using
+   * statistics about those columns.
+   *
+   * <p>Conjunctions are assumed to be independent. Each conjunction that
+   * compares a column with a literal, or tests whether a column is null, is
+   * estimated from the number of distinct values, the fraction of nulls and
+   * the histogram of the column; disjunctions are combined; the selectivity
+   * of any other conjunction is guessed, as in
+   * {@link #guessSelectivity(RexNode)}.
+   *
+   * @param statistic Statistics about the columns of the table
+   * @param predicate Predicate on the columns of the table; null means true
+   * @return estimated selectivity
+   */
+  public static double estimateSelectivity(ColumnStatistic statistic,
+      RexNode predicate) {
+    double selectivity = 1d;
+    for (RexNode e : RelOptUtil.conjunctions(predicate)) {
+      final Double s = estimateColumnSelectivity(statistic, e);
+      selectivity *= s != null ? s : guessSelectivity(e);
+    }
+    return selectivity;
+  }
+
+  private static Double estimateColumnSelectivity(ColumnStatistic statistic,
+      RexNode e) {
+    switch (e.getKind()) {
+    case OR:
+      double notSelected = 1d;
+      for (RexNode operand : ((RexCall) e).getOperands()) {
+        notSelected *= 1d - estimateSelectivity(statistic, operand);
+      }
+      return 1d - notSelected;
+    case IS_NULL:
+    case IS_NOT_NULL:
+      final int column0 = column(((RexCall) e).getOperands().get(0));
+      final Double nullFraction0 =
+          column0 < 0 ? null : statistic.getNullFraction(column0);
+      if (nullFraction0 == null) {
+        return null;
+      }
+      return e.getKind() == SqlKind.IS_NULL
+          ? nullFraction0
+          : 1d - nullFraction0;
+    case EQUALS:
+    case NOT_EQUALS:
+    case LESS_THAN:
+    case LESS_THAN_OR_EQUAL:
+    case GREATER_THAN:
+    case GREATER_THAN_OR_EQUAL:
+      final List<RexNode> operands = ((RexCall) e).getOperands();
+      SqlKind kind = e.getKind();
+      int column = column(operands.get(0));
+      RexNode other = operands.get(1);
+      if (column < 0) {
+        column = column(operands.get(1));
+        other = operands.get(0);
+        kind = kind.reverse();
+      }
+      if (column < 0 || !(other instanceof RexLiteral)) {
+        return null;
+      }
+      final Double nullFraction = statistic.getNullFraction(column);
+      final double nonNull = nullFraction == null ? 1d : 1d - nullFraction;
+      switch (kind) {
+      case EQUALS:
+      case NOT_EQUALS:
+        final Double distinctCount = statistic.getDistinctCount(column);
+        if (distinctCount == null) {
+          return null;
+        }
+        final double equal = 1d / Math.max(distinctCount, 1d);
+        return nonNull * (kind == SqlKind.EQUALS ? equal : 1d - equal);
+      default:
+        final Double value = numericValue((RexLiteral) other);
+        final Double below =
+            value == null ? null : statistic.getFractionBelow(column, value);
+        if (below == null) {
+          return null;
+        }
+        return nonNull * (kind == SqlKind.LESS_THAN
+            || kind == SqlKind.LESS_THAN_OR_EQUAL ? below : 1d - below);
+      }
+    default:
+      return null;
+    }
+  }
+
+  /** Returns the ordinal of the field that an expression references, possibly
+   * via a cast, or -1. */
+  private static int column(RexNode e) {
+    if (e.getKind() == SqlKind.CAST) {
+      e = ((RexCall) e).getOperands().get(0);
+    }
+    return e instanceof RexInputRef ? ((RexInputRef) e).getIndex() : -1;
+  }
+
+  /** Returns the value of a literal as represented in a
+   * {@link ColumnStatistic}, or null if it is not numeric or a date-time. */
+  private static Double numericValue(RexLiteral literal) {
+    if (RexLiteral.isNullLiteral(literal)) {
+      return null;
+    }
+    switch (literal.getTypeName()) {
+    case DATE:
+    case TIME:
+    case TIMESTAMP:
+      return ((Number) literal.getValue2()).doubleValue();
+    default:
+      final Comparable value = literal.getValue();
+      return value instanceof Number ? ((Number) value).doubleValue() : null;
+    }
+  }
+
   /**
    * AND's two predicates together, either of which may be null, removing
    * redundant filters.
@@ -0,0 +1,262 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.runtime;
+
+import org.apache.calcite.linq4j.AbstractEnumerable;
+import org.apache.calcite.linq4j.Enumerable;
+import org.apache.calcite.linq4j.Enumerator;
+import org.apache.calcite.linq4j.function.Function0;
+import org.apache.calcite.linq4j.function.Function1;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import javax.sql.DataSource;
+
+/**
+ * Joins rows from an {@link Enumerable} to a table in a JDBC data source by
+ * sending the join keys of each batch of rows to the data source as
+ * parameters of a query.
+ *
+ * <p>The query must have {@code batchSize * leftKeys.length} parameters,
+ * in the form "{@code WHERE (k0 = ? AND k1 = ?) OR (k0 = ? AND k1 = ?) ...}",
+ * or "{@code WHERE k IN (?, ?, ...)}" if there is one key. The statement is
+ * prepared once and executed once per batch; if a batch has fewer distinct
+ * keys than {@code batchSize}, the last key is repeated.
+ *
+ * <p>Rows are returned in the order of the left input. Rows whose key is
+ * null match nothing.
+ */
+public class BindJoinEnumerable extends AbstractEnumerable<Object[]> {
+  private final Enumerable<Object[]> left;
+  private final DataSource dataSource;
+  private final String sql;
+  private final int[] leftKeys;
+  private final int[] rightKeys;
+  private final int batchSize;
+  private final boolean outer;
+  private final int rightFieldCount;
+  private final Function1<ResultSet, Function0<Object[]>> rowBuilderFactory;
+
+  private BindJoinEnumerable(Enumerable<Object[]> left, DataSource dataSource,
+      String sql, int[] leftKeys, int[] rightKeys, int batchSize,
+      boolean outer, int rightFieldCount,
+      Function1<ResultSet, Function0<Object[]>> rowBuilderFactory) {
+    assert leftKeys.length == rightKeys.length && leftKeys.length > 0;
+    assert batchSize > 0;
+    this.left = left;
+    this.dataSource = dataSource;
+    this.sql = sql;
+    this.leftKeys = leftKeys;
+    this.rightKeys = rightKeys;
+    this.batchSize = batchSize;
+    this.outer = outer;
+    this.rightFieldCount = rightFieldCount;
+    this.rowBuilderFactory = rowBuilderFactory;
+  }
+
+  /** Creates a BindJoinEnumerable.
+   *
+   * @param left Rows of the left input
+   * @param dataSource Data source of the right input
+   * @param sql Query on the right input, with a parameter for each key of
+   *            each row of a batch
+   * @param leftKeys Ordinals of key fields in left rows
+   * @param rightKeys Ordinals of key fields in rows returned by the query
+   * @param batchSize Number of distinct keys sent per query
+   * @param outer Whether to return left rows that have no match, with nulls
+   *              for the right fields (as in a left outer join)
+   * @param rightFieldCount Number of fields returned by the query
+   * @param rowBuilderFactory Converts the current row of a result set
+   *                          into an array
+   */
+  public static Enumerable<Object[]> of(Enumerable<Object[]> left,
+      DataSource dataSource, String sql, int[] leftKeys, int[] rightKeys,
+      int batchSize, boolean outer, int rightFieldCount,
+      Function1<ResultSet, Function0<Object[]>> rowBuilderFactory) {
+    return new BindJoinEnumerable(left, dataSource, sql, leftKeys, rightKeys,
+        batchSize, outer, rightFieldCount, rowBuilderFactory);
+  }
+
+  public Enumerator<Object[]> enumerator() {
+    return new BindJoinEnumerator();
+  }
+
+  /** Returns the key of a row, or null if any key field is null. */
+  private static Object key(Object[] row, int[] keys) {
+    if (keys.length == 1) {
+      return row[keys[0]];
+    }
+    final Object[] values = new Object[keys.length];
+    for (int i = 0; i < keys.length; i++) {
+      values[i] = row[keys[i]];
+      if (values[i] == null) {
+        return null;
+      }
+    }
+    return Arrays.asList(values);
+  }
+
+  /** Enumerator that reads a batch of left rows, executes the query for
+   * their keys, and returns the joined rows of the batch. */
+  private class BindJoinEnumerator implements Enumerator<Object[]> {
+    private final Enumerator<Object[]> leftEnumerator = left.enumerator();
+    private Connection connection;
+    private PreparedStatement statement;
+    private Iterator<Object[]> rows = Collections.emptyIterator();
+    private boolean leftDone;
+    private Object[] current;
+
+    public Object[] current() {
+      return current;
+    }
+
+    public boolean moveNext() {
+      for (;;) {
+        if (rows.hasNext()) {
+          current = rows.next();
+          return true;
+        }
+        if (leftDone) {
+          current = null;
+          return false;
+        }
+        rows = nextBatch().iterator();
+      }
+    }
+
+    /** Reads left rows until there are {@code batchSize} distinct keys or
+     * the left input is exhausted, and joins them. */
+    private List<Object[]> nextBatch() {
+      final List<Object[]> batch = new ArrayList<>();
+      final Map<Object, List<Object[]>> matches = new HashMap<>();
+      final List<Object> keys = new ArrayList<>();
+      while (keys.size() < batchSize) {
+        if (!leftEnumerator.moveNext()) {
+          leftDone = true;
+          break;
+        }
+        final Object[] row = leftEnumerator.current();
+        batch.add(row);
+        final Object key = key(row, leftKeys);
+        if (key != null && !matches.containsKey(key)) {
+          matches.put(key, new ArrayList<Object[]>());
+          keys.add(key);
+        }
+      }
+      if (!keys.isEmpty()) {
+        fetch(keys, matches);
+      }
+      final List<Object[]> list = new ArrayList<>();
+      for (Object[] row : batch) {
+        final Object key = key(row, leftKeys);
+        final List<Object[]> rightRows = key == null ? null : matches.get(key);
+        if (rightRows == null || rightRows.isEmpty()) {
+          if (outer) {
+            list.add(concat(row, new Object[rightFieldCount]));
+          }
+          continue;
+        }
+        for (Object[] rightRow : rightRows) {
+          list.add(concat(row, rightRow));
+        }
+      }
+      return list;
+    }
+
+    /** Executes the query for a list of keys, and adds each row it returns
+     * to the list for its key. */
+    private void fetch(List<Object> keys,
+        Map<Object, List<Object[]>> matches) {
+      try {
+        if (statement == null) {
+          connection = dataSource.getConnection();
+          statement = connection.prepareStatement(sql);
+        }
+        int p = 0;
+        for (int i = 0; i < batchSize; i++) {
+          final Object key = keys.get(Math.min(i, keys.size() - 1));
+          if (leftKeys.length == 1) {
+            statement.setObject(++p, key);
+          } else {
+            for (Object value : (List) key) {
+              statement.setObject(++p, value);
+            }
+          }
+        }
+        final ResultSet resultSet = statement.executeQuery();
+        try {
+          final Function0<Object[]> rowBuilder =
+              rowBuilderFactory.apply(resultSet);
+          while (resultSet.next()) {
+            final Object[] rightRow = rowBuilder.apply();
+            final List<Object[]> rightRows =
+                matches.get(key(rightRow, rightKeys));
+            if (rightRows != null) {
+              rightRows.add(rightRow);
+            }
+          }
+        } finally {
+          resultSet.close();
+        }
+      } catch (SQLException e) {
+        throw new RuntimeException("while executing SQL [" + sql + "]", e);
+      }
+    }
+
+    private Object[] concat(Object[] leftRow, Object[] rightRow) {
+      final Object[] row = new Object[leftRow.length + rightRow.length];
+      System.arraycopy(leftRow, 0, row, 0, leftRow.length);
+      System.arraycopy(rightRow, 0, row, leftRow.length, rightRow.length);
+      return row;
+    }
+
+    public void reset() {
+      leftEnumerator.reset();
+      rows = Collections.emptyIterator();
+      leftDone = false;
+      current = null;
+    }
+
+    public void close() {
+      leftEnumerator.close();
+      try {
+        if (statement != null) {
+          statement.close();
+        }
+        if (connection != null) {
+          connection.close();
+        }
+      } catch (SQLException e) {
+        // ignore
+      } finally {
+        statement = null;
+        connection = null;
+      }
+    }
+  }
+}
+
+// End BindJoinEnumerable.java
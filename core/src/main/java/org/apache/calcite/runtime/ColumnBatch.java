@@ -0,0 +1,107 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.runtime;
+
+import org.apache.calcite.linq4j.tree.Primitive;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Type;
+
+/**
+ * Batch of rows held as one array per column.
+ *
+ * <p>If the Java class of a column is a primitive type, the column's values
+ * are held in an array of that primitive type (for example {@code int[]});
+ * otherwise they are held in an {@code Object[]}. See
+ * {@link #componentType(Type)}.
+ *
+ * <p>The arrays may be longer than {@link #size}; only the first
+ * {@code size} elements are valid. A producer may re-use the same arrays for
+ * the next batch, so a consumer must not retain a batch after it has asked
+ * for the next one.
+ *
+ * @see org.apache.calcite.schema.BatchScannableTable
+ */
+public class ColumnBatch {
+  /** Column arrays, one per field. */
+  public final Object[] columns;
+
+  /** Number of rows in this batch. */
+  public int size;
+
+  public ColumnBatch(Object[] columns, int size) {
+    this.columns = columns;
+    this.size = size;
+  }
+
+  /** Creates a batch with a given capacity, whose columns have the given
+   * Java classes. */
+  public static ColumnBatch create(Type[] fieldClasses, int capacity) {
+    final Object[] columns = new Object[fieldClasses.length];
+    for (int i = 0; i < columns.length; i++) {
+      columns[i] =
+          Array.newInstance(componentType(fieldClasses[i]), capacity);
+    }
+    return new ColumnBatch(columns, 0);
+  }
+
+  /** Returns the component type of the array that holds a column whose
+   * values have a given Java class: the class itself if it is primitive,
+   * otherwise {@code Object}. */
+  public static Class componentType(Type fieldClass) {
+    return Primitive.is(fieldClass) ? (Class) fieldClass : Object.class;
+  }
+
+  /** Copies a value into a column array, converting to the array's
+   * component type if necessary. */
+  public static void set(Object column, int index, Object value) {
+    if (column instanceof Object[]) {
+      ((Object[]) column)[index] = value;
+      return;
+    }
+    switch (Primitive.of(column.getClass().getComponentType())) {
+    case BOOLEAN:
+      ((boolean[]) column)[index] = (Boolean) value;
+      return;
+    case CHAR:
+      ((char[]) column)[index] = (Character) value;
+      return;
+    case BYTE:
+      ((byte[]) column)[index] = ((Number) value).byteValue();
+      return;
+    case SHORT:
+      ((short[]) column)[index] = ((Number) value).shortValue();
+      return;
+    case INT:
+      ((int[]) column)[index] = ((Number) value).intValue();
+      return;
+    case LONG:
+      ((long[]) column)[index] = ((Number) value).longValue();
+      return;
+    case FLOAT:
+      ((float[]) column)[index] = ((Number) value).floatValue();
+      return;
+    case DOUBLE:
+      ((double[]) column)[index] = ((Number) value).doubleValue();
+      return;
+    default:
+      throw new AssertionError("unexpected column type " + column.getClass());
+    }
+  }
+}
+
+// End ColumnBatch.java
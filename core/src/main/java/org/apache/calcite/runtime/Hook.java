@@ -56,9 +56,18 @@ public enum Hook {
   /** Called to create a Program to optimize the statement. */
   PROGRAM,
 
+  /** Called with the planner that will be used to plan a statement, after
+   * its rules have been registered. Use this to add or remove rules in
+   * tests. */
+  PLANNER,
+
   /** Called when materialization is created. */
   CREATE_MATERIALIZATION,
 
+  /** Called with a {@link SpillingEnumerables.Stats} when a sort or aggregate
+   * operator has finished, if it spilled rows to disk. */
+  SPILL,
+
   /** Called with a query that has been generated to send to a back-end system.
    * The query might be a SQL string (for the JDBC adapter), a list of Mongo
    * pipeline expressions (for the MongoDB adapter), et cetera. */
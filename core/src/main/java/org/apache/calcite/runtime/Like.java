@@ -16,12 +16,16 @@
  */
 package org.apache.calcite.runtime;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
 /**
  * Utilities for converting SQL {@code LIKE} and {@code SIMILAR} operators
  * to regular expressions.
  */
 public class Like {
-  private static final String JAVA_REGEX_SPECIALS = "[]()|^-+*?{}$\\";
+  private static final String JAVA_REGEX_SPECIALS = "[]()|^-+*?{}$\\.";
   private static final String SQL_SIMILAR_SPECIALS = "[]()|^-+*_%?{}";
   private static final String [] REG_CHAR_CLASSES = {
     "[:ALPHA:]", "\\p{Alpha}",
@@ -40,9 +44,107 @@ public class Like {
     "[:alnum:]", "\\p{Alnum}"
   };
 
+  /** Value of an escape character that means there is no escape. Not a valid
+   * {@code char}, so that every character in a pattern, including NUL, can be
+   * a literal. */
+  private static final int NO_ESCAPE = -1;
+
+  /** Maximum number of matchers held in each thread's cache of matchers for
+   * patterns that are not known until run time. */
+  private static final int CACHE_SIZE = 100;
+
+  private static final ThreadLocal<MatcherCache> LIKE_CACHE =
+      new ThreadLocal<MatcherCache>() {
+        @Override protected MatcherCache initialValue() {
+          return new MatcherCache(true);
+        }
+      };
+
+  private static final ThreadLocal<MatcherCache> SIMILAR_CACHE =
+      new ThreadLocal<MatcherCache>() {
+        @Override protected MatcherCache initialValue() {
+          return new MatcherCache(false);
+        }
+      };
+
   private Like() {
   }
 
+  /**
+   * Creates a matcher for a SQL LIKE pattern, with optional escape string.
+   *
+   * <p>Patterns that consist of a literal string, optionally preceded and/or
+   * followed by '%', are evaluated using {@link String#equals},
+   * {@link String#startsWith}, {@link String#endsWith} or
+   * {@link String#contains}; other patterns are converted to a regular
+   * expression.
+   */
+  public static Matcher likeMatcher(String sqlPattern, String escapeStr) {
+    // Validates the pattern and escape, throwing if they are invalid.
+    final String regex = sqlToRegexLike(sqlPattern, escapeStr);
+    final int escapeChar = escapeStr == null ? NO_ESCAPE : escapeStr.charAt(0);
+    final StringBuilder literal = new StringBuilder();
+    boolean leading = false;
+    boolean trailing = false;
+    final int len = sqlPattern.length();
+    for (int i = 0; i < len; i++) {
+      final char c = sqlPattern.charAt(i);
+      if (c == escapeChar) {
+        if (trailing) {
+          return new RegexMatcher(regex, Pattern.DOTALL);
+        }
+        literal.append(sqlPattern.charAt(++i));
+      } else if (c == '_') {
+        return new RegexMatcher(regex, Pattern.DOTALL);
+      } else if (c == '%') {
+        if (literal.length() == 0) {
+          leading = true;
+        } else {
+          trailing = true;
+        }
+      } else {
+        if (trailing) {
+          return new RegexMatcher(regex, Pattern.DOTALL);
+        }
+        literal.append(c);
+      }
+    }
+    final String s = literal.toString();
+    if (leading && trailing || leading && s.isEmpty()) {
+      return s.isEmpty() ? AnyMatcher.INSTANCE : new ContainsMatcher(s);
+    } else if (leading) {
+      return new EndsWithMatcher(s);
+    } else if (trailing) {
+      return new StartsWithMatcher(s);
+    } else {
+      return new EqualsMatcher(s);
+    }
+  }
+
+  /**
+   * Creates a matcher for a SQL SIMILAR pattern, with optional escape
+   * string.
+   */
+  public static Matcher similarMatcher(String sqlPattern, String escapeStr) {
+    return new RegexMatcher(sqlToRegexSimilar(sqlPattern, escapeStr), 0);
+  }
+
+  /**
+   * Returns a matcher for a SQL LIKE pattern, using a per-thread cache of
+   * recently used matchers.
+   */
+  static Matcher cachedLikeMatcher(String sqlPattern, String escapeStr) {
+    return LIKE_CACHE.get().get(sqlPattern, escapeStr);
+  }
+
+  /**
+   * Returns a matcher for a SQL SIMILAR pattern, using a per-thread cache of
+   * recently used matchers.
+   */
+  static Matcher cachedSimilarMatcher(String sqlPattern, String escapeStr) {
+    return SIMILAR_CACHE.get().get(sqlPattern, escapeStr);
+  }
+
   /**
    * Translates a SQL LIKE pattern to Java regex pattern, with optional
    * escape string.
@@ -50,14 +152,14 @@ private Like() {
   static String sqlToRegexLike(
       String sqlPattern,
       CharSequence escapeStr) {
-    final char escapeChar;
+    final int escapeChar;
     if (escapeStr != null) {
       if (escapeStr.length() != 1) {
         throw invalidEscapeCharacter(escapeStr.toString());
       }
       escapeChar = escapeStr.charAt(0);
     } else {
-      escapeChar = 0;
+      escapeChar = NO_ESCAPE;
     }
     return sqlToRegexLike(sqlPattern, escapeChar);
   }
@@ -67,7 +169,7 @@ static String sqlToRegexLike(
    */
   static String sqlToRegexLike(
       String sqlPattern,
-      char escapeChar) {
+      int escapeChar) {
     int i;
     final int len = sqlPattern.length();
     final StringBuilder javaPattern = new StringBuilder(len + len);
@@ -113,8 +215,8 @@ private static RuntimeException invalidEscapeSequence(String s, int i) {
 
   private static void similarEscapeRuleChecking(
       String sqlPattern,
-      char escapeChar) {
-    if (escapeChar == 0) {
+      int escapeChar) {
+    if (escapeChar == NO_ESCAPE) {
       return;
     }
     if (SQL_SIMILAR_SPECIALS.indexOf(escapeChar) >= 0) {
@@ -157,7 +259,7 @@ private static int sqlSimilarRewriteCharEnumeration(
       String sqlPattern,
       StringBuilder javaPattern,
       int pos,
-      char escapeChar) {
+      int escapeChar) {
     int i;
     for (i = pos + 1; i < sqlPattern.length(); i++) {
       char c = sqlPattern.charAt(i);
@@ -211,14 +313,14 @@ private static int sqlSimilarRewriteCharEnumeration(
   static String sqlToRegexSimilar(
       String sqlPattern,
       CharSequence escapeStr) {
-    final char escapeChar;
+    final int escapeChar;
     if (escapeStr != null) {
       if (escapeStr.length() != 1) {
         throw invalidEscapeCharacter(escapeStr.toString());
       }
       escapeChar = escapeStr.charAt(0);
     } else {
-      escapeChar = 0;
+      escapeChar = NO_ESCAPE;
     }
     return sqlToRegexSimilar(sqlPattern, escapeChar);
   }
@@ -228,7 +330,7 @@ static String sqlToRegexSimilar(
    */
   static String sqlToRegexSimilar(
       String sqlPattern,
-      char escapeChar) {
+      int escapeChar) {
     similarEscapeRuleChecking(sqlPattern, escapeChar);
 
     boolean insideCharacterEnumeration = false;
@@ -303,6 +405,142 @@ static String sqlToRegexSimilar(
 
     return javaPattern.toString();
   }
+  /** Tests whether strings match a SQL LIKE or SIMILAR pattern.
+   *
+   * <p>Matchers are immutable and may be shared between threads. */
+  public abstract static class Matcher {
+    /** Returns whether a string matches this matcher's pattern. The string
+     * must not be null. */
+    public abstract boolean matches(String s);
+  }
+
+  /** Matcher that uses a regular expression. */
+  private static class RegexMatcher extends Matcher {
+    private final Pattern pattern;
+
+    RegexMatcher(String regex, int flags) {
+      this.pattern = Pattern.compile(regex, flags);
+    }
+
+    public boolean matches(String s) {
+      return pattern.matcher(s).matches();
+    }
+  }
+
+  /** Matcher for the pattern '%', which matches every string. */
+  private static class AnyMatcher extends Matcher {
+    static final AnyMatcher INSTANCE = new AnyMatcher();
+
+    public boolean matches(String s) {
+      return true;
+    }
+  }
+
+  /** Matcher for a pattern that has no wildcards. */
+  private static class EqualsMatcher extends Matcher {
+    private final String literal;
+
+    EqualsMatcher(String literal) {
+      this.literal = literal;
+    }
+
+    public boolean matches(String s) {
+      return s.equals(literal);
+    }
+  }
+
+  /** Matcher for a pattern of the form 'abc%'. */
+  private static class StartsWithMatcher extends Matcher {
+    private final String literal;
+
+    StartsWithMatcher(String literal) {
+      this.literal = literal;
+    }
+
+    public boolean matches(String s) {
+      return s.startsWith(literal);
+    }
+  }
+
+  /** Matcher for a pattern of the form '%abc'. */
+  private static class EndsWithMatcher extends Matcher {
+    private final String literal;
+
+    EndsWithMatcher(String literal) {
+      this.literal = literal;
+    }
+
+    public boolean matches(String s) {
+      return s.endsWith(literal);
+    }
+  }
+
+  /** Matcher for a pattern of the form '%abc%'. */
+  private static class ContainsMatcher extends Matcher {
+    private final String literal;
+
+    ContainsMatcher(String literal) {
+      this.literal = literal;
+    }
+
+    public boolean matches(String s) {
+      return s.contains(literal);
+    }
+  }
+
+  /** Cache of recently used matchers, evicting the least recently used.
+   * Not thread-safe; each thread has its own instance. */
+  private static class MatcherCache
+      extends LinkedHashMap<MatcherCache.Key, Matcher> {
+    private final boolean like;
+
+    MatcherCache(boolean like) {
+      super(16, 0.75f, true);
+      this.like = like;
+    }
+
+    @Override protected boolean removeEldestEntry(
+        Map.Entry<Key, Matcher> eldest) {
+      return size() > CACHE_SIZE;
+    }
+
+    Matcher get(String sqlPattern, String escapeStr) {
+      final Key key = new Key(sqlPattern, escapeStr);
+      Matcher matcher = get(key);
+      if (matcher == null) {
+        matcher = like
+            ? likeMatcher(sqlPattern, escapeStr)
+            : similarMatcher(sqlPattern, escapeStr);
+        put(key, matcher);
+      }
+      return matcher;
+    }
+
+    /** Key of a {@link MatcherCache}: a pattern and an optional escape. */
+    static class Key {
+      final String pattern;
+      final String escape;
+
+      Key(String pattern, String escape) {
+        this.pattern = pattern;
+        this.escape = escape;
+      }
+
+      @Override public int hashCode() {
+        return pattern.hashCode() * 31
+            + (escape == null ? 0 : escape.hashCode());
+      }
+
+      @Override public boolean equals(Object obj) {
+        return obj == this
+            || obj instanceof Key
+            && pattern.equals(((Key) obj).pattern)
+            && (escape == null
+                ? ((Key) obj).escape == null
+                : escape.equals(((Key) obj).escape));
+      }
+    }
+  }
 }
 
 // End Like.java
@@ -0,0 +1,587 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.runtime;
+
+import org.apache.calcite.DataContext;
+import org.apache.calcite.linq4j.AbstractEnumerable;
+import org.apache.calcite.linq4j.Enumerable;
+import org.apache.calcite.linq4j.EnumerableDefaults;
+import org.apache.calcite.linq4j.Enumerator;
+import org.apache.calcite.linq4j.Linq4j;
+import org.apache.calcite.linq4j.function.EqualityComparer;
+import org.apache.calcite.linq4j.function.Function0;
+import org.apache.calcite.linq4j.function.Function1;
+import org.apache.calcite.linq4j.function.Function2;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Implementations of Enumerable operations that use several threads.
+ *
+ * <p>These methods implement
+ * {@link org.apache.calcite.adapter.enumerable.EnumerableExchange} and the
+ * operators that consume it. Rows pass between threads in batches, through
+ * bounded queues, so that a slow consumer blocks its producer rather than
+ * letting it buffer its whole output.</p>
+ *
+ * <p>Tasks run in the {@link SharedExecutor}. An operator reserves threads
+ * for all of its tasks before it starts any of them, because its tasks wait
+ * for each other; if not enough threads are free, the operator runs in the
+ * calling thread, as its single-threaded equivalent.</p>
+ *
+ * <p>Resetting an enumerator stops its tasks and starts new ones.</p>
+ */
+public class ParallelEnumerables {
+  /** Number of rows that are passed from one thread to another at a time. */
+  private static final int BATCH_SIZE = 1024;
+
+  /** Number of batches that a producer may get ahead of its consumer. */
+  private static final int QUEUE_SIZE = 4;
+
+  /** Marks the end of the rows in a {@link Channel}. */
+  private static final Object END = new Object();
+
+  private ParallelEnumerables() {}
+
+  /** Returns the number of threads that parallel operators should use, or 0
+   * or 1 if they should run in a single thread. */
+  public static int parallelism(DataContext root) {
+    final Integer parallelism =
+        root == null ? null : DataContext.Variable.PARALLELISM.<Integer>get(
+            root);
+    return parallelism == null ? 0 : Math.max(parallelism, 0);
+  }
+
+  /**
+   * Returns an enumerable that reads its input in another thread.
+   *
+   * <p>The input and the consumer run concurrently, the input running at
+   * most {@link #QUEUE_SIZE} batches ahead.
+   */
+  public static <T> Enumerable<T> exchange(final Enumerable<T> input) {
+    return new TaskEnumerable<T>() {
+      Enumerator<T> start() {
+        if (!SharedExecutor.tryReserve(1)) {
+          return input.enumerator();
+        }
+        final Channel<T> channel = new Channel<>();
+        SharedExecutor.submit(
+            new Runnable() {
+              public void run() {
+                channel.drain(input);
+              }
+            });
+        return channel.enumerator();
+      }
+    };
+  }
+
+  /**
+   * Returns an enumerable that reads several inputs concurrently, each in its
+   * own thread, and returns their rows as they arrive.
+   *
+   * <p>The order of rows is not defined. Closing the enumerator stops the
+   * inputs that are still running.
+   */
+  public static <T> Enumerable<T> merge(final List<Enumerable<T>> inputs) {
+    if (inputs.size() == 1) {
+      return inputs.get(0);
+    }
+    return new TaskEnumerable<T>() {
+      Enumerator<T> start() {
+        if (!SharedExecutor.tryReserve(inputs.size())) {
+          return Linq4j.concat(inputs).enumerator();
+        }
+        final Channel<T> channel = new Channel<>();
+        sendAll(inputs, channel, null);
+        return channel.enumerator();
+      }
+    };
+  }
+
+  /**
+   * Groups the elements of a sequence according to a key, initializing an
+   * accumulator for each group and adding to it each time an element with
+   * the same key is seen, using several threads.
+   *
+   * <p>The calling thread reads the input and sends each row to one of
+   * {@code parallelism} tasks, according to the hash of its key, so each task
+   * sees every row of the groups it owns. Each task aggregates its rows using
+   * {@link EnumerableDefaults#groupBy}; the tasks send their results to the
+   * consumer as they produce them.
+   *
+   * <p>If {@code comparer} is not null, keys are compared using it.
+   */
+  public static <TSource, TKey, TAccumulate, TResult> Enumerable<TResult>
+  groupBy(final Enumerable<TSource> source,
+      final Function1<TSource, TKey> keySelector,
+      final Function0<TAccumulate> accumulatorInitializer,
+      final Function2<TAccumulate, TSource, TAccumulate> accumulatorAdder,
+      final Function2<TKey, TAccumulate, TResult> resultSelector,
+      final EqualityComparer<TKey> comparer, final int parallelism) {
+    if (parallelism <= 1) {
+      return groupBy_(source, keySelector, accumulatorInitializer,
+          accumulatorAdder, resultSelector, comparer);
+    }
+    return new TaskEnumerable<TResult>() {
+      Enumerator<TResult> start() {
+        if (!SharedExecutor.tryReserve(parallelism)) {
+          return groupBy_(source, keySelector, accumulatorInitializer,
+              accumulatorAdder, resultSelector, comparer).enumerator();
+        }
+        final List<Channel<TSource>> channels = new ArrayList<>();
+        final List<Enumerable<TResult>> partitions = new ArrayList<>();
+        for (int i = 0; i < parallelism; i++) {
+          final Channel<TSource> channel = new Channel<>();
+          channels.add(channel);
+          partitions.add(
+              new AbstractEnumerable<TResult>() {
+                public Enumerator<TResult> enumerator() {
+                  return groupBy_(channel.asEnumerable(), keySelector,
+                      accumulatorInitializer, accumulatorAdder,
+                      resultSelector, comparer).enumerator();
+                }
+              });
+        }
+        final Channel<TResult> output = new Channel<>();
+        sendAll(partitions, output, channels);
+        try {
+          final Partitioner<TSource, TKey> partitioner =
+              new Partitioner<>(keySelector, comparer, parallelism);
+          partitioner.send(source, channels);
+        } catch (RuntimeException e) {
+          output.close();
+          for (Channel<TSource> channel : channels) {
+            channel.close();
+          }
+          throw e;
+        }
+        return output.enumerator();
+      }
+    };
+  }
+
+  /**
+   * Correlates the elements of two sequences based on matching keys, using
+   * several threads.
+   *
+   * <p>Both inputs are read concurrently, each in its own task, and split
+   * into {@code parallelism} partitions according to the hash of their keys.
+   * Each pair of partitions is joined in its own task, using
+   * {@link EnumerableDefaults#join}. The inner input is held in memory; the
+   * rows of the outer input, and the results, are streamed through bounded
+   * queues.
+   *
+   * <p>If {@code comparer} is not null, keys are compared using it.
+   */
+  public static <TSource, TInner, TKey, TResult> Enumerable<TResult> join(
+      final Enumerable<TSource> outer, final Enumerable<TInner> inner,
+      final Function1<TSource, TKey> outerKeySelector,
+      final Function1<TInner, TKey> innerKeySelector,
+      final Function2<TSource, TInner, TResult> resultSelector,
+      final EqualityComparer<TKey> comparer,
+      final boolean generateNullsOnLeft, final boolean generateNullsOnRight,
+      final int parallelism) {
+    final Enumerable<TResult> serial =
+        EnumerableDefaults.join(outer, inner, outerKeySelector,
+            innerKeySelector, resultSelector, comparer, generateNullsOnLeft,
+            generateNullsOnRight);
+    if (parallelism <= 1) {
+      return serial;
+    }
+    return new TaskEnumerable<TResult>() {
+      Enumerator<TResult> start() {
+        if (!SharedExecutor.tryReserve(parallelism + 2)) {
+          return serial.enumerator();
+        }
+        final Future<List<List<TInner>>> innerFuture =
+            SharedExecutor.submit(
+                new Callable<List<List<TInner>>>() {
+                  public List<List<TInner>> call() {
+                    return new Partitioner<>(innerKeySelector, comparer,
+                        parallelism).partition(inner);
+                  }
+                });
+        final List<Channel<TSource>> channels = new ArrayList<>();
+        final List<Enumerable<TResult>> partitions = new ArrayList<>();
+        for (int i = 0; i < parallelism; i++) {
+          final int partition = i;
+          final Channel<TSource> channel = new Channel<>();
+          channels.add(channel);
+          partitions.add(
+              new AbstractEnumerable<TResult>() {
+                public Enumerator<TResult> enumerator() {
+                  final List<TInner> innerRows =
+                      get(innerFuture).get(partition);
+                  return EnumerableDefaults.join(channel.asEnumerable(),
+                      Linq4j.asEnumerable(innerRows), outerKeySelector,
+                      innerKeySelector, resultSelector, comparer,
+                      generateNullsOnLeft, generateNullsOnRight)
+                      .enumerator();
+                }
+              });
+        }
+        SharedExecutor.submit(
+            new Runnable() {
+              public void run() {
+                try {
+                  new Partitioner<>(outerKeySelector, comparer, parallelism)
+                      .send(outer, channels);
+                } catch (Throwable e) {
+                  for (Channel<TSource> channel : channels) {
+                    channel.put(e);
+                  }
+                }
+              }
+            });
+        final Channel<TResult> output = new Channel<>();
+        sendAll(partitions, output, channels);
+        return output.enumerator();
+      }
+    };
+  }
+
+  /** Starts a task for each input, using threads that the caller has
+   * reserved, to send the input's rows to {@code output}. The last task to
+   * finish sends {@link #END}.
+   *
+   * <p>If {@code channels} is not null, each task closes the corresponding
+   * channel when it finishes, so that whoever is writing to that channel
+   * stops. */
+  private static <T> void sendAll(List<Enumerable<T>> inputs,
+      final Channel<T> output, final List<? extends Channel<?>> channels) {
+    final AtomicInteger remaining = new AtomicInteger(inputs.size());
+    for (int i = 0; i < inputs.size(); i++) {
+      final Enumerable<T> input = inputs.get(i);
+      final Channel<?> channel = channels == null ? null : channels.get(i);
+      SharedExecutor.submit(
+          new Runnable() {
+            public void run() {
+              try {
+                if (output.send(input)
+                    && remaining.decrementAndGet() == 0) {
+                  output.put(END);
+                }
+              } finally {
+                if (channel != null) {
+                  channel.close();
+                }
+              }
+            }
+          });
+    }
+  }
+
+  private static <TSource, TKey, TAccumulate, TResult> Enumerable<TResult>
+  groupBy_(Enumerable<TSource> source, Function1<TSource, TKey> keySelector,
+      Function0<TAccumulate> accumulatorInitializer,
+      Function2<TAccumulate, TSource, TAccumulate> accumulatorAdder,
+      Function2<TKey, TAccumulate, TResult> resultSelector,
+      EqualityComparer<TKey> comparer) {
+    if (comparer == null) {
+      return EnumerableDefaults.groupBy(source, keySelector,
+          accumulatorInitializer, accumulatorAdder, resultSelector);
+    }
+    return EnumerableDefaults.groupBy(source, keySelector,
+        accumulatorInitializer, accumulatorAdder, resultSelector, comparer);
+  }
+
+  /** Waits for a task to complete and returns its result, re-throwing any
+   * exception that it threw. */
+  private static <E> E get(Future<E> future) {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(e);
+    } catch (ExecutionException e) {
+      final Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new RuntimeException(cause);
+    }
+  }
+
+  /** Assigns rows to partitions according to the hash of their key.
+   *
+   * @param <T> Row type
+   * @param <K> Key type */
+  private static class Partitioner<T, K> {
+    private final Function1<T, K> keySelector;
+    private final EqualityComparer<K> comparer;
+    private final int partitionCount;
+
+    Partitioner(Function1<T, K> keySelector, EqualityComparer<K> comparer,
+        int partitionCount) {
+      this.keySelector = keySelector;
+      this.comparer = comparer;
+      this.partitionCount = partitionCount;
+    }
+
+    int partition(T row) {
+      final K key = keySelector.apply(row);
+      int h = key == null ? 0
+          : comparer == null ? key.hashCode()
+          : comparer.hashCode(key);
+      h ^= h >>> 16;
+      h *= 0x85EBCA6B;
+      h ^= h >>> 13;
+      return (h & Integer.MAX_VALUE) % partitionCount;
+    }
+
+    /** Reads all rows into lists, one per partition. */
+    List<List<T>> partition(Enumerable<T> input) {
+      final List<List<T>> partitions = new ArrayList<>();
+      for (int i = 0; i < partitionCount; i++) {
+        partitions.add(new ArrayList<T>());
+      }
+      try (Enumerator<T> enumerator = input.enumerator()) {
+        while (enumerator.moveNext()) {
+          final T row = enumerator.current();
+          partitions.get(partition(row)).add(row);
+        }
+      }
+      return partitions;
+    }
+
+    /** Reads all rows and sends each to the channel of its partition. */
+    void send(Enumerable<T> input, List<Channel<T>> channels) {
+      final List<List<T>> batches = new ArrayList<>();
+      for (int i = 0; i < partitionCount; i++) {
+        batches.add(new ArrayList<T>(BATCH_SIZE));
+      }
+      try (Enumerator<T> enumerator = input.enumerator()) {
+        while (enumerator.moveNext()) {
+          final T row = enumerator.current();
+          final int i = partition(row);
+          final List<T> batch = batches.get(i);
+          batch.add(row);
+          if (batch.size() >= BATCH_SIZE) {
+            if (!channels.get(i).put(batch)) {
+              // A consumer has failed. Stop the others; the caller will
+              // report the error when it collects the results.
+              for (Channel<T> channel : channels) {
+                channel.close();
+              }
+              return;
+            }
+            batches.set(i, new ArrayList<T>(BATCH_SIZE));
+          }
+        }
+      }
+      for (int i = 0; i < partitionCount; i++) {
+        final Channel<T> channel = channels.get(i);
+        if (!batches.get(i).isEmpty()) {
+          channel.put(batches.get(i));
+        }
+        channel.put(END);
+      }
+    }
+  }
+
+  /** Enumerable whose enumerator starts tasks.
+   *
+   * <p>Resetting the enumerator closes the current enumerator, which stops
+   * its tasks, and calls {@link #start} again.
+   *
+   * @param <T> Row type */
+  private abstract static class TaskEnumerable<T>
+      extends AbstractEnumerable<T> {
+    /** Starts tasks, and returns an enumerator over their results. */
+    abstract Enumerator<T> start();
+
+    public Enumerator<T> enumerator() {
+      return new Enumerator<T>() {
+        private Enumerator<T> enumerator = start();
+
+        public T current() {
+          return enumerator.current();
+        }
+
+        public boolean moveNext() {
+          return enumerator.moveNext();
+        }
+
+        public void reset() {
+          enumerator.close();
+          enumerator = start();
+        }
+
+        public void close() {
+          enumerator.close();
+        }
+      };
+    }
+  }
+
+  /** Bounded queue of batches of rows between a producer thread and a
+   * consumer thread.
+   *
+   * <p>The producer calls {@link #put} with batches, then {@link #END}; the
+   * consumer reads rows using {@link #enumerator}. If the consumer closes the
+   * channel early, {@code put} returns false, and the producer should
+   * stop.</p>
+   *
+   * @param <T> Row type */
+  private static class Channel<T> {
+    private final BlockingQueue<Object> queue =
+        new ArrayBlockingQueue<>(QUEUE_SIZE);
+    private volatile boolean closed;
+
+    /** Adds a batch, {@link #END}, or a {@link Throwable}, waiting if the
+     * queue is full. Returns false if the channel was closed. */
+    boolean put(Object o) {
+      try {
+        while (!closed) {
+          if (queue.offer(o, 100, TimeUnit.MILLISECONDS)) {
+            return true;
+          }
+        }
+        return false;
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return false;
+      }
+    }
+
+    void close() {
+      closed = true;
+      queue.clear();
+    }
+
+    /** Reads all rows of an input, sending them in batches, then
+     * {@link #END}. */
+    void drain(Enumerable<T> input) {
+      if (send(input)) {
+        put(END);
+      }
+    }
+
+    /** Reads all rows of an input, sending them in batches. Returns false if
+     * the consumer closed the channel, or if the input failed, in which case
+     * sends the error. */
+    boolean send(Enumerable<T> input) {
+      try (Enumerator<T> enumerator = input.enumerator()) {
+        List<T> batch = new ArrayList<>(BATCH_SIZE);
+        while (enumerator.moveNext()) {
+          batch.add(enumerator.current());
+          if (batch.size() >= BATCH_SIZE) {
+            if (!put(batch)) {
+              return false;
+            }
+            batch = new ArrayList<>(BATCH_SIZE);
+          }
+        }
+        return batch.isEmpty() || put(batch);
+      } catch (Throwable e) {
+        put(e);
+        return false;
+      }
+    }
+
+    /** Returns an enumerable whose enumerator reads the rows sent to this
+     * channel. It may be enumerated only once. */
+    Enumerable<T> asEnumerable() {
+      return new AbstractEnumerable<T>() {
+        public Enumerator<T> enumerator() {
+          return Channel.this.enumerator();
+        }
+      };
+    }
+
+    /** Returns an enumerator that reads the rows sent to this channel.
+     * Closing it closes the channel, and so stops the producer. */
+    Enumerator<T> enumerator() {
+      return new Enumerator<T>() {
+        List<T> batch = new ArrayList<>();
+        int i;
+        boolean done;
+
+        public T current() {
+          return batch.get(i - 1);
+        }
+
+        public boolean moveNext() {
+          for (;;) {
+            if (i < batch.size()) {
+              ++i;
+              return true;
+            }
+            if (done) {
+              return false;
+            }
+            final Object o;
+            try {
+              o = queue.poll(100, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+              Thread.currentThread().interrupt();
+              throw new RuntimeException(e);
+            }
+            if (o == null) {
+              if (closed) {
+                done = true;
+                return false;
+              }
+              continue;
+            }
+            if (o == END) {
+              done = true;
+              return false;
+            }
+            if (o instanceof Throwable) {
+              done = true;
+              if (o instanceof RuntimeException) {
+                throw (RuntimeException) o;
+              }
+              if (o instanceof Error) {
+                throw (Error) o;
+              }
+              throw new RuntimeException((Throwable) o);
+            }
+            //noinspection unchecked
+            batch = (List<T>) o;
+            i = 0;
+          }
+        }
+
+        public void reset() {
+          // Rows that have been read are gone. TaskEnumerable implements
+          // reset by starting the producers again.
+          throw new UnsupportedOperationException();
+        }
+
+        public void close() {
+          Channel.this.close();
+        }
+      };
+    }
+  }
+}
+
+// End ParallelEnumerables.java
@@ -30,8 +30,6 @@
 import java.sql.SQLFeatureNotSupportedException;
 import java.sql.Statement;
 import java.sql.Types;
-import java.util.ArrayList;
-import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.sql.DataSource;
@@ -45,6 +43,9 @@
   private final DataSource dataSource;
   private final String sql;
   private final Function1<ResultSet, Function0<T>> rowBuilderFactory;
+  /** Number of rows to ask the driver to fetch per round trip, or 0 to use
+   * the driver's default. */
+  private final int fetchSize;
   private static final Logger LOGGER = Logger.getLogger(
       ResultSetEnumerable.class.getName());
 
@@ -71,24 +72,32 @@ public Object apply() {
               }
             };
           } else {
+            // Read the column types once, not for every row.
+            final boolean[] timestamps = new boolean[columnCount];
+            try {
+              for (int i = 0; i < columnCount; i++) {
+                timestamps[i] =
+                    metaData.getColumnType(i + 1) == Types.TIMESTAMP;
+              }
+            } catch (SQLException e) {
+              throw new RuntimeException(e);
+            }
             //noinspection unchecked
             return (Function0) new Function0<Object[]>() {
               public Object[] apply() {
                 try {
-                  final List<Object> list = new ArrayList<Object>();
+                  final Object[] values = new Object[columnCount];
                   for (int i = 0; i < columnCount; i++) {
-                    if (metaData.getColumnType(i + 1) == Types.TIMESTAMP) {
+                    if (timestamps[i]) {
                       long v = resultSet.getLong(i + 1);
-                      if (v == 0 && resultSet.wasNull()) {
-                        list.add(null);
-                      } else {
-                        list.add(v);
+                      if (v != 0 || !resultSet.wasNull()) {
+                        values[i] = v;
                       }
                     } else {
-                      list.add(resultSet.getObject(i + 1));
+                      values[i] = resultSet.getObject(i + 1);
                     }
                   }
-                  return list.toArray();
+                  return values;
                 } catch (SQLException e) {
                   throw new RuntimeException(e);
                 }
@@ -101,10 +110,12 @@ public Object[] apply() {
   private ResultSetEnumerable(
       DataSource dataSource,
       String sql,
-      Function1<ResultSet, Function0<T>> rowBuilderFactory) {
+      Function1<ResultSet, Function0<T>> rowBuilderFactory,
+      int fetchSize) {
     this.dataSource = dataSource;
     this.sql = sql;
     this.rowBuilderFactory = rowBuilderFactory;
+    this.fetchSize = fetchSize;
   }
 
   /** Creates an ResultSetEnumerable. */
@@ -125,14 +136,45 @@ public static <T> Enumerable<T> of(
       DataSource dataSource,
       String sql,
       Function1<ResultSet, Function0<T>> rowBuilderFactory) {
-    return new ResultSetEnumerable<T>(dataSource, sql, rowBuilderFactory);
+    return of(dataSource, sql, rowBuilderFactory, 0);
+  }
+
+  /** Executes a SQL query and returns the results as an enumerator, using a
+   * row builder to convert JDBC column values into rows, and asking the
+   * driver to fetch a given number of rows per round trip.
+   *
+   * <p>Without a fetch size, some drivers (for example PostgreSQL and MySQL)
+   * read the whole result into memory before returning the first row.
+   * PostgreSQL only honors the fetch size if the connection is not in
+   * auto-commit mode, so if the fetch size is not 0, the enumerator turns off
+   * auto-commit on its connection while it reads, and turns it back on when
+   * it is closed. MySQL only honors the fetch size if it is
+   * {@link Integer#MIN_VALUE}, which means fetch one row at a time.
+   *
+   * @param fetchSize Number of rows per round trip, or 0 to use the
+   *                  driver's default
+   */
+  public static <T> Enumerable<T> of(
+      DataSource dataSource,
+      String sql,
+      Function1<ResultSet, Function0<T>> rowBuilderFactory,
+      int fetchSize) {
+    return new ResultSetEnumerable<T>(dataSource, sql, rowBuilderFactory,
+        fetchSize);
   }
 
   public Enumerator<T> enumerator() {
     Connection connection = null;
     Statement statement = null;
+    boolean restoreAutoCommit = false;
     try {
       connection = dataSource.getConnection();
+      if (fetchSize != 0 && connection.getAutoCommit()) {
+        // Some drivers (e.g. PostgreSQL) ignore the fetch size, and read the
+        // whole result into memory, unless auto-commit is off.
+        connection.setAutoCommit(false);
+        restoreAutoCommit = true;
+      }
       statement = connection.createStatement();
       try {
         statement.setQueryTimeout(10);
@@ -141,10 +183,16 @@ public Enumerator<T> enumerator() {
           LOGGER.fine("Failed to set query timeout.");
         }
       }
+      if (fetchSize != 0) {
+        statement.setFetchSize(fetchSize);
+      }
       final ResultSet resultSet = statement.executeQuery(sql);
+      final Enumerator<T> enumerator =
+          new ResultSetEnumerator<T>(resultSet, rowBuilderFactory,
+              connection, restoreAutoCommit);
       statement = null;
       connection = null;
-      return new ResultSetEnumerator<T>(resultSet, rowBuilderFactory);
+      return enumerator;
     } catch (SQLException e) {
       throw new RuntimeException("while executing SQL [" + sql + "]", e);
     } finally {
@@ -156,6 +204,9 @@ public Enumerator<T> enumerator() {
         }
       }
       if (connection != null) {
+        if (restoreAutoCommit) {
+          restoreAutoCommit(connection);
+        }
         try {
           connection.close();
         } catch (SQLException e) {
@@ -165,17 +216,38 @@ public Enumerator<T> enumerator() {
     }
   }
 
+  /** Ends the read-only transaction that a scan with a fetch size started,
+   * and turns auto-commit back on, before the connection is closed (and
+   * perhaps returned to a pool). */
+  private static void restoreAutoCommit(Connection connection) {
+    try {
+      connection.rollback();
+      connection.setAutoCommit(true);
+    } catch (SQLException e) {
+      // ignore
+    }
+  }
+
   /** Implementation of {@link Enumerator} that reads from a
    * {@link ResultSet}. */
   private static class ResultSetEnumerator<T> implements Enumerator<T> {
     private final Function0<T> rowBuilder;
+    /** Connection that the data source gave us; not necessarily the same
+     * object as the statement's connection, if the data source wraps it. */
+    private final Connection connection;
+    /** Whether to turn auto-commit back on before closing the connection. */
+    private final boolean restoreAutoCommit;
     private ResultSet resultSet;
 
     public ResultSetEnumerator(
         ResultSet resultSet,
-        Function1<ResultSet, Function0<T>> rowBuilderFactory) {
+        Function1<ResultSet, Function0<T>> rowBuilderFactory,
+        Connection connection,
+        boolean restoreAutoCommit) {
       this.resultSet = resultSet;
       this.rowBuilder = rowBuilderFactory.apply(resultSet);
+      this.connection = connection;
+      this.restoreAutoCommit = restoreAutoCommit;
     }
 
     public T current() {
@@ -206,12 +278,12 @@ public void close() {
           final Statement statement = savedResultSet.getStatement();
           savedResultSet.close();
           if (statement != null) {
-            final Connection connection = statement.getConnection();
             statement.close();
-            if (connection != null) {
-              connection.close();
-            }
           }
+          if (restoreAutoCommit) {
+            restoreAutoCommit(connection);
+          }
+          connection.close();
         } catch (SQLException e) {
           // ignore
         }
@@ -247,11 +319,11 @@ public Object apply() {
         return (Function0) new Function0<Object[]>() {
           public Object[] apply() {
             try {
-              final List<Object> list = new ArrayList<Object>();
+              final Object[] values = new Object[columnCount];
               for (int i = 0; i < columnCount; i++) {
-                list.add(primitives[i].jdbcGet(resultSet, i + 1));
+                values[i] = primitives[i].jdbcGet(resultSet, i + 1);
               }
-              return list.toArray();
+              return values;
             } catch (SQLException e) {
               throw new RuntimeException(e);
             }
@@ -0,0 +1,146 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.runtime;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pool of daemon threads that is shared by everything in Calcite that does
+ * work in the background.
+ *
+ * <p>The pool has at most {@link #getMaxThreads()} threads. Before it submits
+ * tasks, a component must reserve a thread for each of them by calling
+ * {@link #tryReserve(int)}; a task holds its thread until it completes.</p>
+ *
+ * <p>Reserving never waits. Tasks often wait for each other (a consumer for
+ * its producer, say), so a component that cannot reserve all of the threads
+ * it needs must do its work some other way, typically in the calling
+ * thread.</p>
+ */
+public class SharedExecutor {
+  /** Default value of {@link #getMaxThreads()}: four times the number of
+   * processors, but at least 8. */
+  public static final int DEFAULT_MAX_THREADS =
+      Math.max(8, 4 * Runtime.getRuntime().availableProcessors());
+
+  private static final ThreadFactory THREAD_FACTORY =
+      new ThreadFactory() {
+        private final AtomicInteger count = new AtomicInteger();
+
+        public Thread newThread(Runnable r) {
+          final Thread thread =
+              new Thread(r, "calcite-worker-" + count.incrementAndGet());
+          thread.setDaemon(true);
+          return thread;
+        }
+      };
+
+  private static final ThreadPoolExecutor POOL =
+      new ThreadPoolExecutor(DEFAULT_MAX_THREADS, DEFAULT_MAX_THREADS,
+          60L, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+          THREAD_FACTORY);
+
+  static {
+    POOL.allowCoreThreadTimeOut(true);
+  }
+
+  private static int maxThreads = DEFAULT_MAX_THREADS;
+
+  /** Number of threads reserved by tasks that have not completed. */
+  private static int reserved;
+
+  // Utility class. Do not instantiate.
+  private SharedExecutor() {}
+
+  /** Returns the maximum number of threads in the pool. */
+  public static synchronized int getMaxThreads() {
+    return maxThreads;
+  }
+
+  /** Sets the maximum number of threads in the pool.
+   *
+   * <p>Tasks that are running are not affected; if there are more of them
+   * than the new maximum, reservations fail until enough have completed. */
+  public static synchronized void setMaxThreads(int maxThreads) {
+    if (maxThreads < 1) {
+      throw new IllegalArgumentException("maxThreads must be positive: "
+          + maxThreads);
+    }
+    if (maxThreads > POOL.getMaximumPoolSize()) {
+      POOL.setMaximumPoolSize(maxThreads);
+      POOL.setCorePoolSize(maxThreads);
+    } else {
+      POOL.setCorePoolSize(maxThreads);
+      POOL.setMaximumPoolSize(maxThreads);
+    }
+    SharedExecutor.maxThreads = maxThreads;
+  }
+
+  /** Returns the number of threads that are reserved by tasks that have not
+   * completed. */
+  public static synchronized int getReservedThreads() {
+    return reserved;
+  }
+
+  /** Reserves threads for {@code n} tasks. Returns false, and reserves
+   * nothing, if fewer than {@code n} threads are free.
+   *
+   * <p>If this method returns true, the caller must submit exactly
+   * {@code n} tasks. */
+  public static synchronized boolean tryReserve(int n) {
+    if (reserved + n > maxThreads) {
+      return false;
+    }
+    reserved += n;
+    return true;
+  }
+
+  private static synchronized void release() {
+    --reserved;
+  }
+
+  /** Runs a task using a thread reserved by {@link #tryReserve(int)}. */
+  public static <T> Future<T> submit(Callable<T> task) {
+    final FutureTask<T> future = new FutureTask<>(task);
+    POOL.execute(
+        new Runnable() {
+          public void run() {
+            try {
+              future.run();
+            } finally {
+              release();
+            }
+          }
+        });
+    return future;
+  }
+
+  /** Runs a task using a thread reserved by {@link #tryReserve(int)}. */
+  public static Future<?> submit(Runnable task) {
+    return submit(Executors.callable(task));
+  }
+}
+
+// End SharedExecutor.java
@@ -0,0 +1,374 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.runtime;
+
+import org.apache.calcite.avatica.util.ByteString;
+import org.apache.calcite.linq4j.Enumerator;
+import org.apache.calcite.linq4j.function.Function1;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Temporary file that holds rows that an operator has spilled to disk.
+ *
+ * <p>Rows are written in a compact binary format: each value is a one-byte
+ * tag followed by its payload, and arrays and lists are written as a length
+ * followed by their elements. Records of the classes generated for
+ * Enumerable rows are converted to arrays before they are written, using
+ * functions that the generated code supplies. Values of other types are
+ * written using Java serialization.
+ *
+ * <p>Call {@link #add} to write rows, then {@link #finish}, then read them
+ * back, in the same order, using {@link #enumerator()}. Closing the
+ * enumerator deletes the file.
+ */
+class SpillFile {
+  private static final int BUFFER_SIZE = 1 << 16;
+
+  private static final byte NULL = 0;
+  private static final byte FALSE = 1;
+  private static final byte TRUE = 2;
+  private static final byte BYTE = 3;
+  private static final byte SHORT = 4;
+  private static final byte INT = 5;
+  private static final byte LONG = 6;
+  private static final byte FLOAT = 7;
+  private static final byte DOUBLE = 8;
+  private static final byte CHAR = 9;
+  private static final byte STRING = 10;
+  private static final byte DECIMAL = 11;
+  private static final byte BYTE_STRING = 12;
+  private static final byte ARRAY = 13;
+  private static final byte LIST = 14;
+  private static final byte SERIALIZED = 15;
+
+  private final File file;
+  private final Function1<Object, Object[]> toArray;
+  private final Function1<Object[], Object> fromArray;
+  private DataOutputStream out;
+  private ClassLoader classLoader;
+  private long rowCount;
+  private long byteCount = -1;
+
+  /** Creates a spill file.
+   *
+   * @param prefix Prefix of the file name
+   * @param toArray Converts each row to an array before it is written, or
+   *                null if rows are written as is
+   * @param fromArray Converts each array back to a row after it is read, or
+   *                  null
+   */
+  SpillFile(String prefix, Function1<Object, Object[]> toArray,
+      Function1<Object[], Object> fromArray) {
+    this.toArray = toArray;
+    this.fromArray = fromArray;
+    try {
+      file = File.createTempFile("calcite-" + prefix + "-", ".spill");
+      file.deleteOnExit();
+      out = new DataOutputStream(
+          new BufferedOutputStream(new FileOutputStream(file), BUFFER_SIZE));
+    } catch (IOException e) {
+      throw new RuntimeException("Error while creating spill file", e);
+    }
+  }
+
+  /** Returns the number of rows written. */
+  public long rowCount() {
+    return rowCount;
+  }
+
+  /** Returns the size of the file, in bytes; valid after {@link #finish}. */
+  public long byteCount() {
+    return byteCount;
+  }
+
+  /** Writes a row. */
+  public void add(Object row) {
+    try {
+      write(toArray == null ? row : toArray.apply(row));
+    } catch (IOException e) {
+      throw new RuntimeException("Error while writing spill file " + file, e);
+    }
+    ++rowCount;
+  }
+
+  /** Flushes and closes the file; no more rows may be added. Returns the
+   * number of bytes written. */
+  public long finish() {
+    if (out != null) {
+      try {
+        out.close();
+      } catch (IOException e) {
+        throw new RuntimeException("Error while writing spill file " + file,
+            e);
+      }
+      out = null;
+      byteCount = file.length();
+    }
+    return byteCount;
+  }
+
+  /** Deletes the file. */
+  public void delete() {
+    if (out != null) {
+      try {
+        out.close();
+      } catch (IOException e) {
+        // ignore; we are discarding the file anyway
+      }
+      out = null;
+    }
+    //noinspection ResultOfMethodCallIgnored
+    file.delete();
+  }
+
+  /** Returns an enumerator over the rows in this file. Closing the enumerator
+   * deletes the file. */
+  public Enumerator<Object> enumerator() {
+    finish();
+    return new Enumerator<Object>() {
+      DataInputStream in = open();
+      long remaining = rowCount;
+      Object current;
+
+      public Object current() {
+        return current;
+      }
+
+      public boolean moveNext() {
+        if (remaining <= 0) {
+          return false;
+        }
+        try {
+          current = read(in);
+        } catch (IOException | ClassNotFoundException e) {
+          throw new RuntimeException("Error while reading spill file " + file,
+              e);
+        }
+        if (fromArray != null) {
+          current = fromArray.apply((Object[]) current);
+        }
+        --remaining;
+        return true;
+      }
+
+      public void reset() {
+        closeQuietly(in);
+        in = open();
+        remaining = rowCount;
+        current = null;
+      }
+
+      public void close() {
+        closeQuietly(in);
+        delete();
+      }
+    };
+  }
+
+  private DataInputStream open() {
+    try {
+      return new DataInputStream(
+          new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE));
+    } catch (IOException e) {
+      throw new RuntimeException("Error while reading spill file " + file, e);
+    }
+  }
+
+  private static void closeQuietly(InputStream in) {
+    try {
+      in.close();
+    } catch (IOException e) {
+      // ignore
+    }
+  }
+
+  private void write(Object o) throws IOException {
+    if (o == null) {
+      out.writeByte(NULL);
+    } else if (o instanceof Integer) {
+      out.writeByte(INT);
+      out.writeInt((Integer) o);
+    } else if (o instanceof String) {
+      out.writeByte(STRING);
+      writeBytes(((String) o).getBytes(StandardCharsets.UTF_8));
+    } else if (o instanceof Long) {
+      out.writeByte(LONG);
+      out.writeLong((Long) o);
+    } else if (o instanceof Object[]) {
+      final Object[] objects = (Object[]) o;
+      out.writeByte(ARRAY);
+      out.writeInt(objects.length);
+      for (Object object : objects) {
+        write(object);
+      }
+    } else if (o instanceof Boolean) {
+      out.writeByte((Boolean) o ? TRUE : FALSE);
+    } else if (o instanceof Double) {
+      out.writeByte(DOUBLE);
+      out.writeDouble((Double) o);
+    } else if (o instanceof BigDecimal) {
+      final BigDecimal decimal = (BigDecimal) o;
+      out.writeByte(DECIMAL);
+      out.writeInt(decimal.scale());
+      writeBytes(decimal.unscaledValue().toByteArray());
+    } else if (o instanceof Short) {
+      out.writeByte(SHORT);
+      out.writeShort((Short) o);
+    } else if (o instanceof Byte) {
+      out.writeByte(BYTE);
+      out.writeByte((Byte) o);
+    } else if (o instanceof Float) {
+      out.writeByte(FLOAT);
+      out.writeFloat((Float) o);
+    } else if (o instanceof Character) {
+      out.writeByte(CHAR);
+      out.writeChar((Character) o);
+    } else if (o instanceof ByteString) {
+      out.writeByte(BYTE_STRING);
+      writeBytes(((ByteString) o).getBytes());
+    } else if (o instanceof List) {
+      final List list = (List) o;
+      out.writeByte(LIST);
+      out.writeInt(list.size());
+      for (Object object : list) {
+        write(object);
+      }
+    } else {
+      if (classLoader == null) {
+        classLoader = o.getClass().getClassLoader();
+      }
+      final ByteArrayOutputStream buf = new ByteArrayOutputStream();
+      try (ObjectOutputStream oos = new ObjectOutputStream(buf)) {
+        oos.writeObject(o);
+      }
+      out.writeByte(SERIALIZED);
+      writeBytes(buf.toByteArray());
+    }
+  }
+
+  private void writeBytes(byte[] bytes) throws IOException {
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  private Object read(DataInputStream in)
+      throws IOException, ClassNotFoundException {
+    final byte tag = in.readByte();
+    switch (tag) {
+    case NULL:
+      return null;
+    case FALSE:
+      return false;
+    case TRUE:
+      return true;
+    case BYTE:
+      return in.readByte();
+    case SHORT:
+      return in.readShort();
+    case INT:
+      return in.readInt();
+    case LONG:
+      return in.readLong();
+    case FLOAT:
+      return in.readFloat();
+    case DOUBLE:
+      return in.readDouble();
+    case CHAR:
+      return in.readChar();
+    case STRING:
+      return new String(readBytes(in), StandardCharsets.UTF_8);
+    case DECIMAL:
+      final int scale = in.readInt();
+      return new BigDecimal(new BigInteger(readBytes(in)), scale);
+    case BYTE_STRING:
+      return new ByteString(readBytes(in));
+    case ARRAY:
+      final Object[] objects = new Object[in.readInt()];
+      for (int i = 0; i < objects.length; i++) {
+        objects[i] = read(in);
+      }
+      return objects;
+    case LIST:
+      final int size = in.readInt();
+      final List<Object> list = new ArrayList<>(size);
+      for (int i = 0; i < size; i++) {
+        list.add(read(in));
+      }
+      return FlatLists.of(list);
+    case SERIALIZED:
+      return deserialize(readBytes(in));
+    default:
+      throw new AssertionError("unknown tag " + tag + " in spill file " + file);
+    }
+  }
+
+  private Object deserialize(byte[] bytes)
+      throws IOException, ClassNotFoundException {
+    final InputStream in = new ByteArrayInputStream(bytes);
+    try (ObjectInputStream ois = new SpillObjectInputStream(in)) {
+      return ois.readObject();
+    }
+  }
+
+  private static byte[] readBytes(DataInputStream in) throws IOException {
+    final byte[] bytes = new byte[in.readInt()];
+    in.readFully(bytes);
+    return bytes;
+  }
+
+  /** Object input stream that resolves classes using the class loader of the
+   * objects that were written, so that it can read instances of classes that
+   * were generated at run time. */
+  private class SpillObjectInputStream extends ObjectInputStream {
+    SpillObjectInputStream(InputStream in) throws IOException {
+      super(in);
+    }
+
+    @Override protected Class<?> resolveClass(ObjectStreamClass desc)
+        throws IOException, ClassNotFoundException {
+      if (classLoader != null) {
+        try {
+          return Class.forName(desc.getName(), false, classLoader);
+        } catch (ClassNotFoundException e) {
+          // fall through to the default class loader
+        }
+      }
+      return super.resolveClass(desc);
+    }
+  }
+}
+
+// End SpillFile.java
@@ -0,0 +1,575 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.runtime;
+
+import org.apache.calcite.DataContext;
+import org.apache.calcite.linq4j.AbstractEnumerable;
+import org.apache.calcite.linq4j.Enumerable;
+import org.apache.calcite.linq4j.EnumerableDefaults;
+import org.apache.calcite.linq4j.Enumerator;
+import org.apache.calcite.linq4j.Linq4j;
+import org.apache.calcite.linq4j.function.EqualityComparer;
+import org.apache.calcite.linq4j.function.Function0;
+import org.apache.calcite.linq4j.function.Function1;
+import org.apache.calcite.linq4j.function.Function2;
+import org.apache.calcite.util.trace.CalciteTrace;
+
+import com.google.common.collect.Ordering;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Implementations of sort and aggregation for the Enumerable engine that
+ * use a bounded amount of memory, spilling rows to temporary files when the
+ * bound is reached.
+ *
+ * <p>The bound comes from the {@link DataContext.Variable#SPILL_THRESHOLD}
+ * variable, which is set from the
+ * {@link org.apache.calcite.config.CalciteConnectionProperty#SPILL_THRESHOLD}
+ * connection property. If it is not set, or is 0, each method delegates to
+ * the in-memory implementation in {@link EnumerableDefaults}.</p>
+ *
+ * <p>Sort is an external merge sort: the input is cut into sorted runs of at
+ * most {@code threshold} rows, each of which is written to a file, and the
+ * runs are then merged. Aggregation is a hybrid hash aggregation: rows whose
+ * key is already in the in-memory table are aggregated as usual; once the
+ * table has {@code threshold} groups, rows with new keys are written to one
+ * of several partition files, which are aggregated recursively after the
+ * input is exhausted.</p>
+ *
+ * <p>Operators that spill report a {@link Stats} via {@link Hook#SPILL} and
+ * the {@link CalciteTrace#getSpillTracer() spill tracer}.</p>
+ */
+public class SpillingEnumerables {
+  private static final Logger LOGGER = CalciteTrace.getSpillTracer();
+
+  /** Number of partition files into which hash aggregation writes rows that
+   * do not fit in memory. */
+  private static final int PARTITION_COUNT = 16;
+
+  /** Depth beyond which hash aggregation no longer partitions its input.
+   * Rows that still have not fit (say because there are more than
+   * {@code threshold} rows with the same key hash) are aggregated in
+   * memory. */
+  private static final int MAX_DEPTH = 6;
+
+  /** Maximum number of runs that an external sort merges at a time. */
+  private static final int MERGE_WIDTH = 64;
+
+  private SpillingEnumerables() {}
+
+  /** Returns the maximum number of rows or groups that an operator should
+   * hold in memory, or 0 if it should never spill. */
+  public static int threshold(DataContext root) {
+    final Integer threshold =
+        root == null ? null : DataContext.Variable.SPILL_THRESHOLD.<Integer>get(
+            root);
+    return threshold == null ? 0 : Math.max(threshold, 0);
+  }
+
+  /**
+   * Sorts the elements of a sequence according to a key, spilling to disk if
+   * there are more than {@link #threshold} elements.
+   *
+   * <p>Like {@link EnumerableDefaults#orderBy(Enumerable, Function1, Comparator)},
+   * the sort is stable. If {@code comparator} is null, keys are compared using
+   * their natural order.
+   *
+   * <p>If {@code toArray} is not null, rows are converted to arrays using it
+   * before they are written to disk, and back using {@code fromArray} when
+   * they are read.
+   */
+  public static <TSource, TKey> Enumerable<TSource> orderBy(DataContext root,
+      final Enumerable<TSource> source,
+      final Function1<TSource, TKey> keySelector,
+      Comparator<TKey> comparator,
+      final Function1<TSource, Object[]> toArray,
+      final Function1<Object[], TSource> fromArray) {
+    final int threshold = threshold(root);
+    if (threshold <= 0) {
+      return EnumerableDefaults.orderBy(source, keySelector, comparator);
+    }
+    //noinspection unchecked
+    final Comparator<TKey> keyComparator =
+        comparator != null ? comparator : (Comparator<TKey>) Ordering.natural();
+    final Comparator<TSource> rowComparator = new Comparator<TSource>() {
+      public int compare(TSource o1, TSource o2) {
+        return keyComparator.compare(keySelector.apply(o1),
+            keySelector.apply(o2));
+      }
+    };
+    return new AbstractEnumerable<TSource>() {
+      public Enumerator<TSource> enumerator() {
+        return sort(source, rowComparator, threshold,
+            new Spiller("sort", toArray, fromArray));
+      }
+    };
+  }
+
+  /**
+   * Groups the elements of a sequence according to a key, initializing an
+   * accumulator for each group and adding to it each time an element with the
+   * same key is seen, and spilling to disk if there are more than
+   * {@link #threshold} groups.
+   *
+   * <p>If {@code comparer} is not null, keys are compared using it; otherwise
+   * they are compared using {@link Object#equals} and
+   * {@link Object#hashCode}. Rows are converted using {@code toArray} and
+   * {@code fromArray}, if not null, as in
+   * {@link #orderBy(DataContext, Enumerable, Function1, Comparator, Function1, Function1)}.
+   *
+   * @see EnumerableDefaults#groupBy(Enumerable, Function1, Function0, Function2, Function2, EqualityComparer)
+   */
+  public static <TSource, TKey, TAccumulate, TResult> Enumerable<TResult>
+  groupBy(DataContext root, final Enumerable<TSource> source,
+      final Function1<TSource, TKey> keySelector,
+      final Function0<TAccumulate> accumulatorInitializer,
+      final Function2<TAccumulate, TSource, TAccumulate> accumulatorAdder,
+      final Function2<TKey, TAccumulate, TResult> resultSelector,
+      final EqualityComparer<TKey> comparer,
+      final Function1<TSource, Object[]> toArray,
+      final Function1<Object[], TSource> fromArray) {
+    final int threshold = threshold(root);
+    if (threshold <= 0) {
+      if (comparer == null) {
+        return EnumerableDefaults.groupBy(source, keySelector,
+            accumulatorInitializer, accumulatorAdder, resultSelector);
+      }
+      return EnumerableDefaults.groupBy(source, keySelector,
+          accumulatorInitializer, accumulatorAdder, resultSelector, comparer);
+    }
+    return new AbstractEnumerable<TResult>() {
+      public Enumerator<TResult> enumerator() {
+        return new HashAggregateEnumerator<>(source, keySelector,
+            accumulatorInitializer, accumulatorAdder, resultSelector, comparer,
+            threshold, new Spiller("aggregate", toArray, fromArray));
+      }
+    };
+  }
+
+  private static <E> Enumerator<E> sort(Enumerable<E> source,
+      Comparator<E> comparator, int threshold, Spiller spiller) {
+    final Stats stats = new Stats(spiller.operator);
+    List<SpillFile> runs = new ArrayList<>();
+    final List<E> buffer = new ArrayList<>();
+    try {
+      try (Enumerator<E> enumerator = source.enumerator()) {
+        while (enumerator.moveNext()) {
+          buffer.add(enumerator.current());
+          if (buffer.size() >= threshold) {
+            Collections.sort(buffer, comparator);
+            runs.add(spill(buffer, spiller, stats));
+            buffer.clear();
+          }
+        }
+      }
+      Collections.sort(buffer, comparator);
+      if (runs.isEmpty()) {
+        return Linq4j.enumerator(buffer);
+      }
+
+      // Merge runs until there are few enough to merge in one pass. Each
+      // merge combines adjacent runs, so the sort remains stable.
+      while (runs.size() > MERGE_WIDTH) {
+        final List<SpillFile> mergedRuns = new ArrayList<>();
+        for (int i = 0; i < runs.size(); i += MERGE_WIDTH) {
+          final List<SpillFile> group =
+              runs.subList(i, Math.min(i + MERGE_WIDTH, runs.size()));
+          if (group.size() == 1) {
+            mergedRuns.add(group.get(0));
+            continue;
+          }
+          final SpillFile mergedRun = spiller.create();
+          try (Enumerator<E> enumerator =
+                   merge(group, Collections.<E>emptyList(), comparator)) {
+            while (enumerator.moveNext()) {
+              mergedRun.add(enumerator.current());
+            }
+          }
+          stats.add(mergedRun);
+          mergedRuns.add(mergedRun);
+        }
+        runs = mergedRuns;
+      }
+      stats.report();
+      return merge(runs, buffer, comparator);
+    } catch (RuntimeException e) {
+      for (SpillFile run : runs) {
+        run.delete();
+      }
+      throw e;
+    }
+  }
+
+  private static SpillFile spill(List<?> rows, Spiller spiller,
+      Stats stats) {
+    final SpillFile file = spiller.create();
+    for (Object row : rows) {
+      file.add(row);
+    }
+    stats.add(file);
+    return file;
+  }
+
+  /** Returns an enumerator that merges sorted runs and a sorted in-memory
+   * list, which comes after all of the runs in the original input. */
+  private static <E> Enumerator<E> merge(List<SpillFile> runs, List<E> list,
+      Comparator<E> comparator) {
+    final List<Enumerator<E>> inputs = new ArrayList<>();
+    for (SpillFile run : runs) {
+      //noinspection unchecked
+      inputs.add((Enumerator<E>) run.enumerator());
+    }
+    inputs.add(Linq4j.enumerator(list));
+    return new MergeEnumerator<>(inputs, comparator);
+  }
+
+  /** Enumerator that merges several sorted enumerators. If rows from two
+   * inputs compare equal, it returns the one from the earlier input first. */
+  private static class MergeEnumerator<E> implements Enumerator<E> {
+    private final List<Enumerator<E>> inputs;
+    private final PriorityQueue<Head<E>> queue;
+    private Head<E> head;
+
+    MergeEnumerator(List<Enumerator<E>> inputs,
+        final Comparator<E> comparator) {
+      this.inputs = inputs;
+      this.queue = new PriorityQueue<>(inputs.size(),
+          new Comparator<Head<E>>() {
+            public int compare(Head<E> o1, Head<E> o2) {
+              final int c = comparator.compare(o1.row, o2.row);
+              return c != 0 ? c : Integer.compare(o1.input, o2.input);
+            }
+          });
+      for (int i = 0; i < inputs.size(); i++) {
+        advance(new Head<E>(i));
+      }
+    }
+
+    private void advance(Head<E> head) {
+      final Enumerator<E> input = inputs.get(head.input);
+      if (input.moveNext()) {
+        head.row = input.current();
+        queue.add(head);
+      }
+    }
+
+    public E current() {
+      return head.row;
+    }
+
+    public boolean moveNext() {
+      if (head != null) {
+        advance(head);
+      }
+      head = queue.poll();
+      return head != null;
+    }
+
+    public void reset() {
+      queue.clear();
+      head = null;
+      for (int i = 0; i < inputs.size(); i++) {
+        inputs.get(i).reset();
+        advance(new Head<E>(i));
+      }
+    }
+
+    public void close() {
+      for (Enumerator<E> input : inputs) {
+        input.close();
+      }
+    }
+  }
+
+  /** Current row of an input to {@link MergeEnumerator}. */
+  private static class Head<E> {
+    final int input;
+    E row;
+
+    Head(int input) {
+      this.input = input;
+    }
+  }
+
+  /** Enumerator that performs hybrid hash aggregation.
+   *
+   * @param <TSource> Input row type
+   * @param <TKey> Key type
+   * @param <TAccumulate> Accumulator type
+   * @param <TResult> Result type
+   */
+  private static class HashAggregateEnumerator<TSource, TKey, TAccumulate,
+      TResult> implements Enumerator<TResult> {
+    private final Enumerable<TSource> source;
+    private final Function1<TSource, TKey> keySelector;
+    private final Function0<TAccumulate> accumulatorInitializer;
+    private final Function2<TAccumulate, TSource, TAccumulate> accumulatorAdder;
+    private final Function2<TKey, TAccumulate, TResult> resultSelector;
+    private final EqualityComparer<TKey> comparer;
+    private final int threshold;
+    private final Spiller spiller;
+    private Stats stats;
+    private final Deque<Partition> pending = new ArrayDeque<>();
+    private Enumerator<TResult> results;
+    private boolean started;
+    private boolean done;
+
+    HashAggregateEnumerator(Enumerable<TSource> source,
+        Function1<TSource, TKey> keySelector,
+        Function0<TAccumulate> accumulatorInitializer,
+        Function2<TAccumulate, TSource, TAccumulate> accumulatorAdder,
+        Function2<TKey, TAccumulate, TResult> resultSelector,
+        EqualityComparer<TKey> comparer, int threshold, Spiller spiller) {
+      this.source = source;
+      this.keySelector = keySelector;
+      this.accumulatorInitializer = accumulatorInitializer;
+      this.accumulatorAdder = accumulatorAdder;
+      this.resultSelector = resultSelector;
+      this.comparer = comparer;
+      this.threshold = threshold;
+      this.spiller = spiller;
+      this.stats = new Stats(spiller.operator);
+    }
+
+    public TResult current() {
+      return results.current();
+    }
+
+    public boolean moveNext() {
+      for (;;) {
+        if (results != null && results.moveNext()) {
+          return true;
+        }
+        if (!started) {
+          started = true;
+          results = aggregate(source.enumerator(), 0);
+        } else if (!pending.isEmpty()) {
+          final Partition partition = pending.removeFirst();
+          //noinspection unchecked
+          results =
+              aggregate((Enumerator<TSource>) partition.file.enumerator(),
+                  partition.depth);
+        } else {
+          finish();
+          return false;
+        }
+      }
+    }
+
+    /** Aggregates the rows from an input. Returns the groups that fit in
+     * memory, and adds the rows that did not to {@link #pending}. */
+    private Enumerator<TResult> aggregate(Enumerator<TSource> input,
+        int depth) {
+      final Map<Object, TAccumulate> map = new HashMap<>();
+      final SpillFile[] partitions = new SpillFile[PARTITION_COUNT];
+      try {
+        while (input.moveNext()) {
+          final TSource o = input.current();
+          final TKey key = keySelector.apply(o);
+          final Object mapKey =
+              comparer == null ? key : new WrappedKey<>(comparer, key);
+          TAccumulate accumulator = map.get(mapKey);
+          if (accumulator == null) {
+            if (map.size() >= threshold && depth < MAX_DEPTH) {
+              final int i = partition(key, depth);
+              if (partitions[i] == null) {
+                partitions[i] = spiller.create();
+              }
+              partitions[i].add(o);
+              continue;
+            }
+            accumulator = accumulatorInitializer.apply();
+            accumulator = accumulatorAdder.apply(accumulator, o);
+            map.put(mapKey, accumulator);
+          } else {
+            TAccumulate accumulator0 = accumulator;
+            accumulator = accumulatorAdder.apply(accumulator, o);
+            if (accumulator != accumulator0) {
+              map.put(mapKey, accumulator);
+            }
+          }
+        }
+      } catch (RuntimeException e) {
+        for (SpillFile partition : partitions) {
+          if (partition != null) {
+            partition.delete();
+          }
+        }
+        throw e;
+      } finally {
+        input.close();
+      }
+      for (SpillFile partition : partitions) {
+        if (partition != null) {
+          stats.add(partition);
+          pending.add(new Partition(partition, depth + 1));
+        }
+      }
+      final List<TResult> list = new ArrayList<>(map.size());
+      for (Map.Entry<Object, TAccumulate> entry : map.entrySet()) {
+        //noinspection unchecked
+        final TKey key = comparer == null
+            ? (TKey) entry.getKey()
+            : ((WrappedKey<TKey>) entry.getKey()).key;
+        list.add(resultSelector.apply(key, entry.getValue()));
+      }
+      return Linq4j.enumerator(list);
+    }
+
+    /** Chooses the partition for a key. Each level of recursion uses a
+     * different hash function, so that the rows of a partition are spread
+     * over the partitions of the next level. */
+    private int partition(TKey key, int depth) {
+      int h = key == null ? 0
+          : comparer == null ? key.hashCode()
+          : comparer.hashCode(key);
+      h ^= depth * 0x9E3779B9;
+      h *= 0x85EBCA6B;
+      h ^= h >>> 13;
+      h *= 0xC2B2AE35;
+      h ^= h >>> 16;
+      return (h & Integer.MAX_VALUE) % PARTITION_COUNT;
+    }
+
+    private void finish() {
+      if (!done) {
+        done = true;
+        if (stats.fileCount > 0) {
+          stats.report();
+        }
+      }
+    }
+
+    public void reset() {
+      close();
+      results = null;
+      started = false;
+      done = false;
+      stats = new Stats(spiller.operator);
+    }
+
+    public void close() {
+      for (Partition partition : pending) {
+        partition.file.delete();
+      }
+      pending.clear();
+      finish();
+    }
+  }
+
+  /** Creates the spill files of an operator, converting its rows to and from
+   * arrays if they are records. */
+  private static class Spiller {
+    final String operator;
+    private final Function1<Object, Object[]> toArray;
+    private final Function1<Object[], Object> fromArray;
+
+    @SuppressWarnings("unchecked")
+    Spiller(String operator, Function1 toArray, Function1 fromArray) {
+      this.operator = operator;
+      this.toArray = toArray;
+      this.fromArray = fromArray;
+    }
+
+    SpillFile create() {
+      return new SpillFile(operator, toArray, fromArray);
+    }
+  }
+
+  /** Spilled rows that hash aggregation has yet to process. */
+  private static class Partition {
+    final SpillFile file;
+    final int depth;
+
+    Partition(SpillFile file, int depth) {
+      this.file = file;
+      this.depth = depth;
+    }
+  }
+
+  /** Key wrapped so that it is compared using an {@link EqualityComparer}.
+   *
+   * @param <T> Key type */
+  private static class WrappedKey<T> {
+    private final EqualityComparer<T> comparer;
+    final T key;
+
+    WrappedKey(EqualityComparer<T> comparer, T key) {
+      this.comparer = comparer;
+      this.key = key;
+    }
+
+    @Override public int hashCode() {
+      return key == null ? 0 : comparer.hashCode(key);
+    }
+
+    @Override public boolean equals(Object obj) {
+      //noinspection unchecked
+      return obj == this
+          || obj instanceof WrappedKey
+          && comparer.equal(key, ((WrappedKey<T>) obj).key);
+    }
+  }
+
+  /** Statistics about the data that an operator spilled to disk. */
+  public static class Stats {
+    /** Name of the operator, "sort" or "aggregate". */
+    public final String operator;
+    /** Number of spill files written. */
+    public int fileCount;
+    /** Number of rows written to spill files. A row may be written more than
+     * once. */
+    public long rowCount;
+    /** Number of bytes written to spill files. */
+    public long byteCount;
+
+    Stats(String operator) {
+      this.operator = operator;
+    }
+
+    void add(SpillFile file) {
+      byteCount += file.finish();
+      rowCount += file.rowCount();
+      ++fileCount;
+    }
+
+    void report() {
+      Hook.SPILL.run(this);
+      if (LOGGER.isLoggable(Level.FINE)) {
+        LOGGER.fine(toString());
+      }
+    }
+
+    @Override public String toString() {
+      return operator + " spilled " + rowCount + " rows, " + byteCount
+          + " bytes, to " + fileCount + " files";
+    }
+  }
+}
+
+// End SpillingEnumerables.java
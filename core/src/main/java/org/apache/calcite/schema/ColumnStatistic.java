@@ -0,0 +1,48 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.schema;
+
+/**
+ * Statistics about the values in the columns of a table.
+ *
+ * <p>A {@link Statistic} may also implement this interface. If it does, the
+ * metadata providers use it to estimate the selectivity of predicates on a
+ * {@link org.apache.calcite.rel.core.TableScan}, the number of distinct values
+ * of its columns, and the selectivity of equi-joins.
+ *
+ * <p>Each of the methods may return {@code null} meaning "not known".
+ *
+ * <p>Values of numeric columns are represented as {@code double}; values of
+ * {@code DATE}, {@code TIME} and {@code TIMESTAMP} columns are represented as
+ * the number of days since the epoch, milliseconds since midnight, and
+ * milliseconds since the epoch, respectively, as in generated code.
+ */
+public interface ColumnStatistic {
+  /** Returns the approximate number of distinct non-null values of a
+   * column. */
+  Double getDistinctCount(int column);
+
+  /** Returns the approximate fraction of rows in which a column is null,
+   * between 0 and 1. */
+  Double getNullFraction(int column);
+
+  /** Returns the approximate fraction of the non-null values of a column that
+   * are less than a given value, between 0 and 1. */
+  Double getFractionBelow(int column, double value);
+}
+
+// End ColumnStatistic.java
@@ -16,7 +16,10 @@
  */
 package org.apache.calcite.tools;
 
+import org.apache.calcite.adapter.enumerable.EnumerableExchange;
+import org.apache.calcite.adapter.enumerable.EnumerableParallelRule;
 import org.apache.calcite.adapter.enumerable.EnumerableRules;
+import org.apache.calcite.config.CalciteConnectionConfig;
 import org.apache.calcite.interpreter.NoneToBindableConverterRule;
 import org.apache.calcite.plan.RelOptCostImpl;
 import org.apache.calcite.plan.RelOptPlanner;
@@ -98,6 +101,11 @@ public Program apply(RuleSet ruleSet) {
   public static final Program CALC_PROGRAM =
       hep(CALC_RULES, true, new DefaultRelMetadataProvider());
 
+  /** Program that inserts {@link EnumerableExchange}s into a physical
+   * plan. */
+  public static final Program PARALLEL_PROGRAM =
+      hep(EnumerableParallelRule.RULES, true, new DefaultRelMetadataProvider());
+
   public static final ImmutableSet<RelOptRule> RULE_SET =
       ImmutableSet.of(
           EnumerableRules.ENUMERABLE_JOIN_RULE,
@@ -183,7 +191,8 @@ public static Program of(final HepProgram hepProgram, final boolean noDag,
       public RelNode run(RelOptPlanner planner, RelNode rel,
           RelTraitSet requiredOutputTraits) {
         final HepPlanner hepPlanner = new HepPlanner(hepProgram,
-            null, noDag, null, RelOptCostImpl.FACTORY);
+            planner == null ? null : planner.getContext(), noDag, null,
+            RelOptCostImpl.FACTORY);
 
         List<RelMetadataProvider> list = Lists.newArrayList();
         if (metadataProvider != null) {
@@ -280,7 +289,23 @@ public RelNode run(RelOptPlanner planner, RelNode rel,
     // EnumerableCalcRel is introduced.
     final Program program2 = CALC_PROGRAM;
 
-    return sequence(program1, program2);
+    // Third pass inserts exchanges so that large scans, aggregates and joins
+    // use several threads. It does nothing unless the "parallelism"
+    // connection property is greater than 1.
+    final Program program3 =
+        new Program() {
+          public RelNode run(RelOptPlanner planner, RelNode rel,
+              RelTraitSet requiredOutputTraits) {
+            final CalciteConnectionConfig config =
+                planner.getContext().unwrap(CalciteConnectionConfig.class);
+            if (config == null || config.parallelism() <= 1) {
+              return rel;
+            }
+            return PARALLEL_PROGRAM.run(planner, rel, requiredOutputTraits);
+          }
+        };
+
+    return sequence(program1, program2, program3);
   }
 
   /** Program backed by a {@link RuleSet}. */
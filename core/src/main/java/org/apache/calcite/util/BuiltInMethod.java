@@ -38,6 +38,7 @@
 import org.apache.calcite.linq4j.function.Function1;
 import org.apache.calcite.linq4j.function.Function2;
 import org.apache.calcite.linq4j.function.Functions;
+import org.apache.calcite.linq4j.function.LongFunction1;
 import org.apache.calcite.linq4j.function.Predicate1;
 import org.apache.calcite.linq4j.function.Predicate2;
 import org.apache.calcite.linq4j.tree.FunctionExpression;
@@ -50,12 +51,17 @@
 import org.apache.calcite.rex.RexNode;
 import org.apache.calcite.runtime.ArrayBindable;
 import org.apache.calcite.runtime.BinarySearch;
+import org.apache.calcite.runtime.BindJoinEnumerable;
 import org.apache.calcite.runtime.Bindable;
 import org.apache.calcite.runtime.Enumerables;
 import org.apache.calcite.runtime.FlatLists;
+import org.apache.calcite.runtime.Like;
+import org.apache.calcite.runtime.ParallelEnumerables;
 import org.apache.calcite.runtime.ResultSetEnumerable;
 import org.apache.calcite.runtime.SortedMultiMap;
+import org.apache.calcite.runtime.SpillingEnumerables;
 import org.apache.calcite.runtime.SqlFunctions;
+import org.apache.calcite.schema.BatchScannableTable;
 import org.apache.calcite.schema.FilterableTable;
 import org.apache.calcite.schema.ModifiableTable;
 import org.apache.calcite.schema.ProjectableFilterableTable;
@@ -114,6 +120,8 @@ public enum BuiltInMethod {
   SCHEMA_GET_SUB_SCHEMA(Schema.class, "getSubSchema", String.class),
   SCHEMA_GET_TABLE(Schema.class, "getTable", String.class),
   SCHEMA_PLUS_UNWRAP(SchemaPlus.class, "unwrap", Class.class),
+  BATCH_SCANNABLE_TABLE_SCAN(BatchScannableTable.class, "scanBatches",
+      DataContext.class, int.class),
   SCHEMAS_ENUMERABLE_SCANNABLE(Schemas.class, "enumerable",
       ScannableTable.class, DataContext.class),
   SCHEMAS_ENUMERABLE_FILTERABLE(Schemas.class, "enumerable",
@@ -126,12 +134,21 @@ public enum BuiltInMethod {
   DATA_CONTEXT_GET(DataContext.class, "get", String.class),
   DATA_CONTEXT_GET_ROOT_SCHEMA(DataContext.class, "getRootSchema"),
   JDBC_SCHEMA_DATA_SOURCE(JdbcSchema.class, "getDataSource"),
+  JDBC_SCHEMA_FETCH_SIZE(JdbcSchema.class, "getFetchSize", DataContext.class),
   ROW_VALUE(Row.class, "getObject", int.class),
   ROW_AS_COPY(Row.class, "asCopy", Object[].class),
   RESULT_SET_ENUMERABLE_OF(ResultSetEnumerable.class, "of", DataSource.class,
       String.class, Function1.class),
+  RESULT_SET_ENUMERABLE_OF_FETCH_SIZE(ResultSetEnumerable.class, "of",
+      DataSource.class, String.class, Function1.class, int.class),
+  BIND_JOIN_ENUMERABLE_OF(BindJoinEnumerable.class, "of", Enumerable.class,
+      DataSource.class, String.class, int[].class, int[].class, int.class,
+      boolean.class, int.class, Function1.class),
   JOIN(ExtendedEnumerable.class, "join", Enumerable.class, Function1.class,
       Function1.class, Function2.class),
+  HASH_JOIN_LONG(EnumerableDefaults.class, "hashJoinLong", Enumerable.class,
+      Enumerable.class, LongFunction1.class, LongFunction1.class,
+      Function2.class, boolean.class, boolean.class),
   MERGE_JOIN(Enumerables.class, "mergeJoin", Enumerable.class, Enumerable.class,
       Function1.class, Function1.class, Function2.class, boolean.class,
       boolean.class),
@@ -159,6 +176,22 @@ public enum BuiltInMethod {
       Function2.class, Function1.class),
   ORDER_BY(ExtendedEnumerable.class, "orderBy", Function1.class,
       Comparator.class),
+  SPILLING_ORDER_BY(SpillingEnumerables.class, "orderBy", DataContext.class,
+      Enumerable.class, Function1.class, Comparator.class, Function1.class,
+      Function1.class),
+  SPILLING_GROUP_BY(SpillingEnumerables.class, "groupBy", DataContext.class,
+      Enumerable.class, Function1.class, Function0.class, Function2.class,
+      Function2.class, EqualityComparer.class, Function1.class,
+      Function1.class),
+  EXCHANGE(ParallelEnumerables.class, "exchange", Enumerable.class),
+  PARALLELISM(ParallelEnumerables.class, "parallelism", DataContext.class),
+  PARALLEL_MERGE(ParallelEnumerables.class, "merge", List.class),
+  PARALLEL_GROUP_BY(ParallelEnumerables.class, "groupBy", Enumerable.class,
+      Function1.class, Function0.class, Function2.class, Function2.class,
+      EqualityComparer.class, int.class),
+  PARALLEL_JOIN(ParallelEnumerables.class, "join", Enumerable.class,
+      Enumerable.class, Function1.class, Function1.class, Function2.class,
+      EqualityComparer.class, boolean.class, boolean.class, int.class),
   UNION(ExtendedEnumerable.class, "union", Enumerable.class),
   CONCAT(ExtendedEnumerable.class, "concat", Enumerable.class),
   INTERSECT(ExtendedEnumerable.class, "intersect", Enumerable.class),
@@ -250,6 +283,7 @@ public enum BuiltInMethod {
   RTRIM(SqlFunctions.class, "rtrim", String.class),
   LIKE(SqlFunctions.class, "like", String.class, String.class),
   SIMILAR(SqlFunctions.class, "similar", String.class, String.class),
+  LIKE_MATCHER_MATCHES(Like.Matcher.class, "matches", String.class),
   IS_TRUE(SqlFunctions.class, "isTrue", Boolean.class),
   IS_NOT_FALSE(SqlFunctions.class, "isNotFalse", Boolean.class),
   NOT(SqlFunctions.class, "not", Boolean.class),
@@ -123,6 +123,14 @@ public static Logger getSqlToRelTracer() {
     return Logger.getLogger("org.apache.calcite.sql2rel");
   }
 
+  /**
+   * The "org.apache.calcite.runtime.spill" tracer reports, at level FINE, how
+   * much data Enumerable operators spill to disk.
+   */
+  public static Logger getSpillTracer() {
+    return Logger.getLogger("org.apache.calcite.runtime.spill");
+  }
+
   /**
    * Thread-local handler that is called with dynamically generated Java code.
    * It exists for unit-testing.
@@ -16,21 +16,51 @@
  */
 package org.apache.calcite.adapter.clone;
 
+import org.apache.calcite.avatica.util.ByteString;
 import org.apache.calcite.jdbc.JavaTypeFactoryImpl;
+import org.apache.calcite.linq4j.AbstractEnumerable;
 import org.apache.calcite.linq4j.Enumerable;
+import org.apache.calcite.linq4j.Enumerator;
 import org.apache.calcite.linq4j.Linq4j;
+import org.apache.calcite.rel.RelCollation;
+import org.apache.calcite.rel.RelCollations;
 import org.apache.calcite.rel.type.RelDataType;
+import org.apache.calcite.rel.type.RelDataTypeFactory;
 import org.apache.calcite.rel.type.RelDataTypeImpl;
 import org.apache.calcite.rel.type.RelDataTypeSystem;
+import org.apache.calcite.rex.RexBuilder;
+import org.apache.calcite.rex.RexNode;
+import org.apache.calcite.runtime.ColumnBatch;
+import org.apache.calcite.sql.SqlOperator;
+import org.apache.calcite.sql.fun.SqlStdOperatorTable;
+import org.apache.calcite.sql.type.SqlTypeName;
+import org.apache.calcite.util.Pair;
+
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableList;
 
 import org.junit.Test;
 
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Type;
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 /**
  * Unit test for {@link ArrayTable} and {@link ColumnLoader}.
@@ -353,6 +383,596 @@ public class ArrayTableTest {
         "Column(representation=ObjectArray(ordinal=2), value=[Bill, Sebastian, Theodore, Eric])");
   }
 
+  /** Tests that {@link MappedColumnStore} writes and maps a table with
+   * columns of each representation, and that the mapped table returns the
+   * same values. */
+  @Test public void testMappedColumnStore() throws IOException {
+    final JavaTypeFactoryImpl typeFactory =
+        new JavaTypeFactoryImpl(RelDataTypeSystem.DEFAULT);
+    final RelDataType rowType =
+        typeFactory.builder()
+            .add("id", typeFactory.createType(int.class))
+            .add("small", typeFactory.createType(int.class))
+            .add("big", typeFactory.createType(long.class))
+            .add("price", typeFactory.createType(double.class))
+            .add("name", typeFactory.createType(String.class))
+            .add("color", typeFactory.createType(String.class))
+            .add("one", typeFactory.createType(int.class))
+            .build();
+    final List<Object[]> rows = new ArrayList<>();
+    final String[] colors = {"red", "green", "blue", null};
+    for (int i = 0; i < 3000; i++) {
+      final String name = i % 10 == 0 ? null : "name" + i;
+      rows.add(
+          new Object[]{
+            3000 - i, i % 7, i * 10000000000L, i / 4D, name, colors[i % 4], 1
+          });
+    }
+    final ColumnLoader<Object[]> loader =
+        new ColumnLoader<>(typeFactory, Linq4j.asEnumerable(rows),
+            RelDataTypeImpl.proto(rowType), null);
+    final ArrayTable.Content content =
+        new ArrayTable.Content(loader.representationValues, loader.size(),
+            ImmutableList.of(RelCollations.of(0)));
+    assertEquals(
+        "[BIT_SLICED_PRIMITIVE_ARRAY, BIT_SLICED_PRIMITIVE_ARRAY, "
+            + "PRIMITIVE_ARRAY, PRIMITIVE_ARRAY, OBJECT_ARRAY, "
+            + "OBJECT_DICTIONARY, CONSTANT]",
+        types(content).toString());
+
+    final File file = File.createTempFile("calcite-clone-", "");
+    try {
+      assertNull(MappedColumnStore.load(file, rowType));
+      MappedColumnStore.write(file, rowType, content);
+      final ArrayTable.Content content2 =
+          MappedColumnStore.load(file, rowType);
+      assertEquals(
+          "[MAPPED_BIT_SLICED_PRIMITIVE_ARRAY, "
+              + "MAPPED_BIT_SLICED_PRIMITIVE_ARRAY, "
+              + "MAPPED_PRIMITIVE_ARRAY, MAPPED_PRIMITIVE_ARRAY, "
+              + "MAPPED_OBJECT_ARRAY, OBJECT_DICTIONARY, CONSTANT]",
+          types(content2).toString());
+      assertEquals(content.size, content2.size);
+      assertEquals(content.collations, content2.collations);
+      for (int i = 0; i < content.columns.size(); i++) {
+        final ArrayTable.Column column = content.columns.get(i);
+        final ArrayTable.Column column2 = content2.columns.get(i);
+        assertEquals(column.cardinality, column2.cardinality);
+        assertEquals(String.valueOf(column.zoneMap),
+            String.valueOf(column2.zoneMap));
+        for (int j = 0; j < content.size; j++) {
+          assertEquals(
+              column.representation.getObject(column.dataSet, j),
+              column2.representation.getObject(column2.dataSet, j));
+        }
+      }
+
+      // Batches copy primitive values in bulk.
+      final Enumerator<ColumnBatch> batches =
+          content2.batchEnumerator(
+              new Type[] {
+                int.class, int.class, long.class, double.class, String.class,
+                String.class, int.class
+              },
+              1000);
+      assertTrue(batches.moveNext());
+      assertTrue(batches.moveNext());
+      final ColumnBatch batch = batches.current();
+      assertEquals(1000, batch.size);
+      assertEquals(1001, ((int[]) batch.columns[0])[0]);
+      assertEquals(19990000000000L, ((long[]) batch.columns[2])[0]);
+      assertEquals(499.75D, ((double[]) batch.columns[3])[0], 0D);
+      assertEquals("name1999", ((Object[]) batch.columns[4])[0]);
+
+      // Batches over ranges of rows never span two ranges.
+      final Enumerator<ColumnBatch> rangeBatches =
+          content2.batchEnumerator(
+              new Type[] {
+                int.class, int.class, long.class, double.class, String.class,
+                String.class, int.class
+              },
+              1000, new int[] {5, 8, 1500, 2600});
+      final List<String> sizes = new ArrayList<>();
+      while (rangeBatches.moveNext()) {
+        final ColumnBatch rangeBatch = rangeBatches.current();
+        sizes.add(rangeBatch.size + ":" + ((int[]) rangeBatch.columns[0])[0]);
+      }
+      assertEquals("[3:6, 1000:1501, 100:2501]", sizes.toString());
+
+      // Files written for a different row type are ignored.
+      final RelDataType rowType2 =
+          typeFactory.builder()
+              .add("id", typeFactory.createType(int.class))
+              .build();
+      assertNull(MappedColumnStore.load(file, rowType2));
+
+      // Files whose contents do not match their checksums are ignored.
+      try (RandomAccessFile data =
+               new RandomAccessFile(file.getPath() + ".data", "rw")) {
+        data.seek(data.length() / 2);
+        final int b = data.read();
+        data.seek(data.length() / 2);
+        data.write(b ^ 1);
+      }
+      assertNull(MappedColumnStore.load(file, rowType));
+    } finally {
+      MappedColumnStore.delete(file);
+      //noinspection ResultOfMethodCallIgnored
+      file.delete();
+    }
+  }
+
+  /** Tests that values are stored using a tag for each type, and that values
+   * of other types cannot be stored. */
+  @Test public void testMappedColumnStoreValues() throws IOException {
+    final Timestamp timestamp = Timestamp.valueOf("2015-10-17 01:02:03.5");
+    for (Object o : Arrays.asList(null, true, (byte) 1, (short) 2, 3, 4L,
+        5F, 6D, 'c', "s", new BigDecimal("-1.25"),
+        new ByteString(new byte[] {1, 2}), Date.valueOf("2015-10-17"),
+        Time.valueOf("01:02:03"), timestamp)) {
+      assertEquals(o,
+          MappedColumnStore.decode(MappedColumnStore.encode(o)));
+    }
+    try {
+      final byte[] bytes = MappedColumnStore.encode(new ArrayList<>());
+      fail("expected error, got " + Arrays.toString(bytes));
+    } catch (IllegalArgumentException e) {
+      assertEquals("Cannot store value of class java.util.ArrayList in "
+          + "column store", e.getMessage());
+    }
+
+    // A table with a column of type ANY is held on the heap.
+    final JavaTypeFactoryImpl typeFactory =
+        new JavaTypeFactoryImpl(RelDataTypeSystem.DEFAULT);
+    final RelDataType rowType =
+        typeFactory.builder()
+            .add("empid", typeFactory.createType(int.class))
+            .add("name", typeFactory.createType(String.class))
+            .add("ts", typeFactory.createType(Timestamp.class))
+            .build();
+    assertTrue(MappedColumnStore.canStore(typeFactory, rowType));
+    final RelDataType rowType2 =
+        typeFactory.builder()
+            .add("empid", typeFactory.createType(int.class))
+            .add("x", SqlTypeName.ANY)
+            .build();
+    assertFalse(MappedColumnStore.canStore(typeFactory, rowType2));
+    final File file = File.createTempFile("calcite-clone-", "");
+    try {
+      final ArrayTable table = (ArrayTable) CloneSchema.createCloneTable(
+          typeFactory, RelDataTypeImpl.proto(rowType2),
+          ImmutableList.<RelCollation>of(), null,
+          Linq4j.asEnumerable(
+              Collections.singletonList(new Object[]{100, new UUID(1, 2)})),
+          file);
+      assertEquals(1, table.getStatistic().getRowCount(), 0D);
+      assertFalse(MappedColumnStore.exists(file));
+    } finally {
+      MappedColumnStore.delete(file);
+      //noinspection ResultOfMethodCallIgnored
+      file.delete();
+    }
+  }
+
+  /** Tests that a clone table that is stored in files reads the files, not
+   * the source, if they exist. */
+  @Test public void testCloneTableFile() throws IOException {
+    final JavaTypeFactoryImpl typeFactory =
+        new JavaTypeFactoryImpl(RelDataTypeSystem.DEFAULT);
+    final RelDataType rowType =
+        typeFactory.builder()
+            .add("empid", typeFactory.createType(int.class))
+            .add("name", typeFactory.createType(String.class))
+            .build();
+    final File file = File.createTempFile("calcite-clone-", "");
+    try {
+      final ArrayTable table = (ArrayTable) CloneSchema.createCloneTable(
+          typeFactory, RelDataTypeImpl.proto(rowType),
+          ImmutableList.<RelCollation>of(), null,
+          Linq4j.asEnumerable(
+              Arrays.asList(
+                  new Object[]{100, "Bill"},
+                  new Object[]{200, "Eric"})),
+          file);
+      assertEquals(2, count(table));
+
+      final ArrayTable table2 = (ArrayTable) CloneSchema.createCloneTable(
+          typeFactory, RelDataTypeImpl.proto(rowType),
+          ImmutableList.<RelCollation>of(), null,
+          new AbstractEnumerable<Object[]>() {
+            public Enumerator<Object[]> enumerator() {
+              throw new AssertionError("should read from file");
+            }
+          },
+          file);
+      assertEquals(2, count(table2));
+    } finally {
+      MappedColumnStore.delete(file);
+      //noinspection ResultOfMethodCallIgnored
+      file.delete();
+    }
+  }
+
+  /** Tests that a clone table that is stored in files is written one column
+   * at a time, is sorted, can be appended to, and leaves no temporary
+   * files. */
+  @Test public void testCloneTableFileAppend() throws IOException {
+    final JavaTypeFactoryImpl typeFactory =
+        new JavaTypeFactoryImpl(RelDataTypeSystem.DEFAULT);
+    final RelDataType rowType =
+        typeFactory.builder()
+            .add("empid", typeFactory.createType(int.class))
+            .add("name", typeFactory.createType(String.class))
+            .build();
+    final int rowCount = ColumnLoader.CHUNK_SIZE + 10;
+    final List<Object[]> rows = new ArrayList<>();
+    for (int i = 0; i < rowCount; i++) {
+      rows.add(new Object[]{rowCount - i, "name" + (i % 7)});
+    }
+    final File file = File.createTempFile("calcite-clone-", "");
+    final File directory = file.getParentFile();
+    try {
+      final ArrayTable table = (ArrayTable) CloneSchema.createCloneTable(
+          typeFactory, RelDataTypeImpl.proto(rowType),
+          ImmutableList.<RelCollation>of(), null, Linq4j.asEnumerable(rows),
+          file);
+      assertEquals(rowCount, table.getStatistic().getRowCount(), 0D);
+      table.append(
+          Linq4j.asEnumerable(
+              Collections.singletonList(new Object[]{0, "zero"})));
+      assertEquals(rowCount + 1, table.getStatistic().getRowCount(), 0D);
+      final ArrayTable.Content content = table.content();
+      assertEquals("[[0]]", content.collations.toString());
+      final ArrayTable.Column column = content.columns.get(1);
+      assertEquals("zero",
+          column.representation.getObject(column.dataSet, 0));
+      assertEquals("name" + ((rowCount - 1) % 7),
+          column.representation.getObject(column.dataSet, 1));
+      final String[] temps = directory.list(
+          new FilenameFilter() {
+            public boolean accept(File dir, String name) {
+              return name.startsWith(file.getName()) && name.endsWith(".tmp");
+            }
+          });
+      assertEquals(0, temps.length);
+    } finally {
+      MappedColumnStore.delete(file);
+      //noinspection ResultOfMethodCallIgnored
+      file.delete();
+    }
+  }
+
+  /** Tests that the files of a table have safe, distinct names. */
+  @Test public void testFileName() {
+    assertEquals("EMPS", CloneSchema.fileName("EMPS"));
+    assertEquals("my_table-1", CloneSchema.fileName("my_table-1"));
+    assertEquals("%2E%2E%2Fx", CloneSchema.fileName("../x"));
+    assertEquals("a%20b%25", CloneSchema.fileName("a b%"));
+    assertEquals("caf%C3%A9", CloneSchema.fileName("caf\u00e9"));
+    final String longName = CloneSchema.fileName(Strings.repeat("x", 300));
+    assertEquals(200, longName.length());
+    assertFalse(
+        CloneSchema.fileName(Strings.repeat("x", 299) + "y")
+            .equals(longName));
+  }
+
+  /** Tests loading a table that has more rows than
+   * {@link ColumnLoader#CHUNK_SIZE} and more columns than there are
+   * threads. */
+  @Test public void testLoadChunks() {
+    final JavaTypeFactoryImpl typeFactory =
+        new JavaTypeFactoryImpl(RelDataTypeSystem.DEFAULT);
+    final RelDataTypeFactory.FieldInfoBuilder builder = typeFactory.builder();
+    final int columnCount = ColumnLoader.THREADS + 3;
+    for (int i = 0; i < columnCount; i++) {
+      builder.add("c" + i, typeFactory.createType(int.class));
+    }
+    final RelDataType rowType = builder.build();
+    final int rowCount = ColumnLoader.CHUNK_SIZE * 2 + 10;
+    final List<Object[]> rows = new ArrayList<>();
+    for (int i = 0; i < rowCount; i++) {
+      final Object[] row = new Object[columnCount];
+      for (int j = 0; j < columnCount; j++) {
+        // Column 1 is the first unique column, in descending order.
+        row[j] = j == 1 ? rowCount - i : i % (j + 2);
+      }
+      rows.add(row);
+    }
+    final ColumnLoader<Object[]> loader =
+        new ColumnLoader<>(typeFactory, Linq4j.asEnumerable(rows),
+            RelDataTypeImpl.proto(rowType), null);
+    assertEquals(rowCount, loader.size());
+    assertEquals(1, loader.sortField);
+    for (int j = 0; j < columnCount; j++) {
+      final ArrayTable.Column column = loader.representationValues.get(j);
+      for (int i = 0; i < rowCount; i++) {
+        // Rows have been sorted on column 1, so are in reverse order.
+        assertEquals(rows.get(rowCount - 1 - i)[j],
+            column.representation.getObject(column.dataSet, i));
+      }
+    }
+  }
+
+  /** Tests appending rows to a clone table. */
+  @Test public void testAppend() {
+    final JavaTypeFactoryImpl typeFactory =
+        new JavaTypeFactoryImpl(RelDataTypeSystem.DEFAULT);
+    final RelDataType rowType =
+        typeFactory.builder()
+            .add("empid", typeFactory.createType(int.class))
+            .add("name", typeFactory.createType(String.class))
+            .build();
+    final ArrayTable table = (ArrayTable) CloneSchema.createCloneTable(
+        typeFactory, RelDataTypeImpl.proto(rowType),
+        ImmutableList.<RelCollation>of(), null,
+        Linq4j.asEnumerable(
+            Arrays.asList(
+                new Object[]{200, "Eric"},
+                new Object[]{100, "Bill"})));
+    final Enumerator<Object[]> enumerator = table.scan(null).enumerator();
+    table.append(
+        Linq4j.asEnumerable(
+            Arrays.asList(
+                new Object[]{150, "Sebastian"},
+                new Object[]{300, null})));
+    assertEquals(4, table.getStatistic().getRowCount(), 0D);
+    assertEquals("[100, Bill], [150, Sebastian], [200, Eric], [300, null]",
+        toString(table.scan(null).enumerator()));
+
+    // An enumerator that started before the append sees the old rows.
+    assertEquals("[100, Bill], [200, Eric]", toString(enumerator));
+  }
+
+  /** Tests that appending rows keeps a declared collation only if the rows
+   * still satisfy it. */
+  @Test public void testAppendCollation() {
+    final JavaTypeFactoryImpl typeFactory =
+        new JavaTypeFactoryImpl(RelDataTypeSystem.DEFAULT);
+    final RelDataType rowType =
+        typeFactory.builder()
+            .add("empid", typeFactory.createType(int.class))
+            .add("name", typeFactory.createType(String.class))
+            .build();
+    final ArrayTable table = (ArrayTable) CloneSchema.createCloneTable(
+        typeFactory, RelDataTypeImpl.proto(rowType),
+        ImmutableList.of(RelCollations.of(1)), null,
+        Linq4j.asEnumerable(
+            Arrays.asList(
+                new Object[]{100, "Bill"},
+                new Object[]{200, "Eric"})));
+    assertEquals("[[1]]", table.content().collations.toString());
+
+    // Rows are sorted on empid, and names are still in order.
+    table.append(
+        Linq4j.asEnumerable(
+            Collections.singletonList(new Object[]{300, "Zed"})));
+    assertEquals("[[1]]", table.content().collations.toString());
+
+    // Sebastian, 150, goes between Bill and Eric, which breaks the name order.
+    table.append(
+        Linq4j.asEnumerable(
+            Collections.singletonList(new Object[]{150, "Sebastian"})));
+    assertEquals("[[0]]", table.content().collations.toString());
+  }
+
+  /** Tests that a scan with filters uses zone maps to skip blocks of rows. */
+  @Test public void testZoneMap() {
+    final JavaTypeFactoryImpl typeFactory =
+        new JavaTypeFactoryImpl(RelDataTypeSystem.DEFAULT);
+    final RelDataType rowType =
+        typeFactory.builder()
+            .add("id", typeFactory.createType(int.class))
+            .add("val", typeFactory.createType(Integer.class))
+            .add("name", typeFactory.createType(String.class))
+            .build();
+    final List<Object[]> rows = new ArrayList<>();
+    for (int i = 0; i < 3000; i++) {
+      rows.add(new Object[]{i, i < 1024 ? null : i / 10, "name" + i});
+    }
+    final ArrayTable table = (ArrayTable) CloneSchema.createCloneTable(
+        typeFactory, RelDataTypeImpl.proto(rowType),
+        ImmutableList.<RelCollation>of(), null, Linq4j.asEnumerable(rows));
+    final List<ArrayTable.Column> columns = table.content().columns;
+    assertEquals(
+        "ZoneMap(mins=[0, 1024, 2048], maxes=[1023, 2047, 2999], "
+            + "nullCounts=[0, 0, 0])",
+        columns.get(0).zoneMap.toString());
+    assertEquals(
+        "ZoneMap(mins=[null, 102, 204], maxes=[null, 204, 299], "
+            + "nullCounts=[1024, 0, 0])",
+        columns.get(1).zoneMap.toString());
+    assertNull(columns.get(2).zoneMap);
+
+    final RexBuilder rexBuilder = new RexBuilder(typeFactory);
+    final RexNode id = rexBuilder.makeInputRef(rowType, 0);
+    final RexNode val =
+        rexBuilder.makeInputRef(
+            typeFactory.createTypeWithNullability(
+                typeFactory.createSqlType(SqlTypeName.INTEGER), true), 1);
+    final RexNode name = rexBuilder.makeInputRef(rowType, 2);
+    assertEquals(952,
+        count(table, call(SqlStdOperatorTable.GREATER_THAN_OR_EQUAL, id, 2500)));
+    // The planner's estimate is the same number of rows
+    assertEquals(952,
+        table.blockRowCount(
+            ImmutableList.of(
+                call(SqlStdOperatorTable.GREATER_THAN_OR_EQUAL, id, 2500))));
+    // Literal on the left
+    assertEquals(1024,
+        count(table, call(SqlStdOperatorTable.GREATER_THAN, 100, id)));
+    assertEquals(0, count(table, call(SqlStdOperatorTable.EQUALS, id, 5000)));
+    assertEquals(2048,
+        count(table,
+            rexBuilder.makeCall(SqlStdOperatorTable.LESS_THAN, id,
+                rexBuilder.makeExactLiteral(new BigDecimal("1024.5")))));
+    assertEquals(1976,
+        count(table,
+            rexBuilder.makeCall(SqlStdOperatorTable.OR,
+                call(SqlStdOperatorTable.LESS_THAN, id, 10),
+                call(SqlStdOperatorTable.GREATER_THAN, id, 2990))));
+    // Conditions in separate filters, and in one AND, are both applied
+    assertEquals(1024,
+        count(table, call(SqlStdOperatorTable.GREATER_THAN, id, 1500),
+            call(SqlStdOperatorTable.LESS_THAN, id, 2000)));
+    assertEquals(1024,
+        count(table,
+            rexBuilder.makeCall(SqlStdOperatorTable.AND,
+                call(SqlStdOperatorTable.GREATER_THAN, id, 1500),
+                call(SqlStdOperatorTable.LESS_THAN, id, 2000))));
+    assertEquals(1024,
+        count(table,
+            rexBuilder.makeCall(SqlStdOperatorTable.IS_NULL, val)));
+    assertEquals(1976,
+        count(table,
+            rexBuilder.makeCall(SqlStdOperatorTable.IS_NOT_NULL, val)));
+    // A block in which all values are null cannot satisfy a comparison
+    assertEquals(1976,
+        count(table, call(SqlStdOperatorTable.GREATER_THAN, val, 0)));
+    // Strings have no zone map, so cannot be pruned
+    assertEquals(3000,
+        count(table,
+            rexBuilder.makeCall(SqlStdOperatorTable.EQUALS, name,
+                rexBuilder.makeLiteral("x"))));
+  }
+
+  /** Tests that a lookup on a sorted field uses binary search to find the
+   * rows whose value is in given ranges. */
+  @Test public void testLookup() {
+    final JavaTypeFactoryImpl typeFactory =
+        new JavaTypeFactoryImpl(RelDataTypeSystem.DEFAULT);
+    final RelDataType rowType =
+        typeFactory.builder()
+            .add("id", typeFactory.createType(int.class))
+            .add("val", typeFactory.createType(int.class))
+            .build();
+    final List<Object[]> rows = new ArrayList<>();
+    for (int i = 3000; i > 0; i--) {
+      rows.add(new Object[]{i * 2, i % 3});
+    }
+    final ArrayTable table = (ArrayTable) CloneSchema.createCloneTable(
+        typeFactory, RelDataTypeImpl.proto(rowType),
+        ImmutableList.<RelCollation>of(), null, Linq4j.asEnumerable(rows));
+    // Rows have been sorted on "id", the first unique field
+    assertEquals("[[0]]",
+        table.getStatistic().getCollations().toString());
+
+    final RexBuilder rexBuilder = new RexBuilder(typeFactory);
+    final RexNode id = rexBuilder.makeInputRef(rowType, 0);
+    final List<RexNode> keyFilters = new ArrayList<>();
+    assertEquals("[<10, 10>, <15, 15>, <7000, 7000>]",
+        ArrayTableIndexScan.ranges(0,
+            ImmutableList.of(
+                rexBuilder.makeCall(SqlStdOperatorTable.OR,
+                    call(SqlStdOperatorTable.EQUALS, id, 10),
+                    call(SqlStdOperatorTable.EQUALS, 15, id),
+                    call(SqlStdOperatorTable.EQUALS, id, 7000))),
+            keyFilters).toString());
+    assertEquals(1, keyFilters.size());
+    assertEquals("[[2, 1], [10, 2]]",
+        lookup(table, ImmutableList.of(point(10), point(2), point(15))));
+    // Overlapping ranges are merged; unbounded ranges stop at the ends.
+    assertEquals("[[2, 1], [4, 2], [6, 0], [5998, 2], [6000, 0]]",
+        lookup(table,
+            ImmutableList.of(Pair.<Comparable, Comparable>of(null, 5),
+                Pair.<Comparable, Comparable>of(3, 6),
+                Pair.<Comparable, Comparable>of(5997, null))));
+
+    keyFilters.clear();
+    final List<Pair<Comparable, Comparable>> ranges =
+        ArrayTableIndexScan.ranges(0,
+            ImmutableList.of(call(SqlStdOperatorTable.GREATER_THAN, id, 5),
+                call(SqlStdOperatorTable.LESS_THAN_OR_EQUAL, id, 10),
+                call(SqlStdOperatorTable.LESS_THAN, id, 20),
+                call(SqlStdOperatorTable.GREATER_THAN, 8, id)),
+            keyFilters);
+    assertEquals("[<5, 8>]", ranges.toString());
+    assertEquals(4, keyFilters.size());
+    assertEquals("[[6, 0], [8, 1]]", lookup(table, ranges));
+    assertNull(
+        ArrayTableIndexScan.ranges(1,
+            ImmutableList.of(call(SqlStdOperatorTable.GREATER_THAN, id, 5)),
+            keyFilters));
+
+    // After a duplicate "id" is appended, the rows are no longer sorted, and
+    // the lookup returns all rows.
+    table.append(
+        Linq4j.asEnumerable(
+            Collections.singletonList(new Object[]{2, 1})));
+    assertEquals("[]",
+        table.getStatistic().getCollations().toString());
+    assertEquals(3001,
+        table.lookup(0, ImmutableList.of(point(10)),
+            ImmutableList.<RexNode>of()).count());
+  }
+
+  private static Pair<Comparable, Comparable> point(Comparable c) {
+    return Pair.of(c, c);
+  }
+
+  private static String lookup(ArrayTable table,
+      List<Pair<Comparable, Comparable>> ranges) {
+    return "[" + toString(
+        table.lookup(0, ranges, ImmutableList.<RexNode>of()).enumerator())
+        + "]";
+  }
+
+  private static RexNode call(SqlOperator op, Object o0, Object o1) {
+    final RexBuilder rexBuilder =
+        new RexBuilder(new JavaTypeFactoryImpl(RelDataTypeSystem.DEFAULT));
+    return rexBuilder.makeCall(op, toRex(rexBuilder, o0),
+        toRex(rexBuilder, o1));
+  }
+
+  private static RexNode toRex(RexBuilder rexBuilder, Object o) {
+    return o instanceof RexNode
+        ? (RexNode) o
+        : rexBuilder.makeExactLiteral(BigDecimal.valueOf((Integer) o));
+  }
+
+  /** Returns the number of rows returned by a scan with filters. Checks that
+   * the filters are left for the caller to evaluate. */
+  private static int count(ArrayTable table, RexNode... filters) {
+    final List<RexNode> filterList = new ArrayList<>(Arrays.asList(filters));
+    final Enumerator<Object[]> enumerator =
+        table.scan(null, filterList).enumerator();
+    assertEquals(filters.length, filterList.size());
+    int n = 0;
+    while (enumerator.moveNext()) {
+      ++n;
+    }
+    return n;
+  }
+
+  private static String toString(Enumerator<Object[]> enumerator) {
+    final StringBuilder buf = new StringBuilder();
+    while (enumerator.moveNext()) {
+      if (buf.length() > 0) {
+        buf.append(", ");
+      }
+      buf.append(Arrays.toString(enumerator.current()));
+    }
+    return buf.toString();
+  }
+
+  private static int count(ArrayTable table) {
+    final Enumerator<Object[]> enumerator = table.scan(null).enumerator();
+    int n = 0;
+    while (enumerator.moveNext()) {
+      assertEquals(n == 0 ? "Bill" : "Eric", enumerator.current()[1]);
+      ++n;
+    }
+    return n;
+  }
+
+  private static List<ArrayTable.RepresentationType> types(
+      ArrayTable.Content content) {
+    final List<ArrayTable.RepresentationType> list = new ArrayList<>();
+    for (ArrayTable.Column column : content.columns) {
+      list.add(column.representation.getType());
+    }
+    return list;
+  }
+
   private void checkColumn(ArrayTable.Column x,
       ArrayTable.RepresentationType expectedRepresentationType,
       String expectedString) {
@@ -0,0 +1,113 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.adapter.jdbc;
+
+import org.apache.calcite.sql.type.SqlTypeName;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Unit test for {@link JdbcStatisticProvider} implementations.
+ */
+public class JdbcStatisticProviderTest {
+  /** Tests how {@link PostgresqlJdbcStatisticProvider} splits the text of a
+   * PostgreSQL array. */
+  @Test public void testPostgresqlElements() {
+    assertThat(PostgresqlJdbcStatisticProvider.elements("{1,5,10}"),
+        equalTo(Arrays.asList("1", "5", "10")));
+    assertThat(PostgresqlJdbcStatisticProvider.elements("{7}"),
+        equalTo(Collections.singletonList("7")));
+    assertThat(
+        PostgresqlJdbcStatisticProvider.elements(
+            "{\"2015-01-01 00:00:00\",\"2015-02-01 00:00:00\"}"),
+        equalTo(Arrays.asList("2015-01-01 00:00:00", "2015-02-01 00:00:00")));
+    // Commas inside quotes, escaped quotes and backslashes
+    assertThat(
+        PostgresqlJdbcStatisticProvider.elements(
+            "{\"a,b\",\"say \\\"hi\\\"\",c\\\\d}"),
+        equalTo(Arrays.asList("a,b", "say \"hi\"", "c\\d")));
+  }
+
+  /** Tests how {@link PostgresqlJdbcStatisticProvider} converts
+   * {@code histogram_bounds} to a list of bounds. */
+  @Test public void testPostgresqlHistogram() {
+    assertThat(
+        PostgresqlJdbcStatisticProvider.histogram("{1,5,10}",
+            SqlTypeName.INTEGER),
+        equalTo(Arrays.asList(1d, 5d, 10d)));
+    assertThat(
+        PostgresqlJdbcStatisticProvider.histogram("{-2.5,0.25,1e3}",
+            SqlTypeName.DOUBLE),
+        equalTo(Arrays.asList(-2.5d, 0.25d, 1000d)));
+    // 1970-01-11 is day 10; 2015-01-01 is day 16436
+    assertThat(
+        PostgresqlJdbcStatisticProvider.histogram("{1970-01-11,2015-01-01}",
+            SqlTypeName.DATE),
+        equalTo(Arrays.asList(10d, 16436d)));
+    assertThat(
+        PostgresqlJdbcStatisticProvider.histogram(
+            "{\"1970-01-01 00:00:01\",\"1970-01-02 00:00:00\"}",
+            SqlTypeName.TIMESTAMP),
+        equalTo(Arrays.asList(1000d, 86400000d)));
+    // No histogram
+    assertThat(
+        PostgresqlJdbcStatisticProvider.histogram(null, SqlTypeName.INTEGER)
+            .isEmpty(), is(true));
+    // Not a numeric or date-time column
+    assertThat(
+        PostgresqlJdbcStatisticProvider.histogram("{a,b}", SqlTypeName.VARCHAR)
+            .isEmpty(), is(true));
+    // Values that cannot be parsed, such as a timestamp with time zone
+    assertThat(
+        PostgresqlJdbcStatisticProvider.histogram(
+            "{\"2015-01-01 00:00:00+01\"}", SqlTypeName.TIMESTAMP)
+            .isEmpty(), is(true));
+    assertThat(
+        PostgresqlJdbcStatisticProvider.histogram("{1,x}", SqlTypeName.INTEGER)
+            .isEmpty(), is(true));
+  }
+
+  /** Tests how {@link SqlJdbcStatisticProvider} extrapolates the number of
+   * distinct values of a column from a sample. */
+  @Test public void testSampleDistinctCount() {
+    // Sample is the whole table
+    assertThat(SqlJdbcStatisticProvider.distinctCount(3d, 14d, 14d),
+        equalTo(3d));
+    assertThat(SqlJdbcStatisticProvider.distinctCount(0d, 0d, 0d),
+        equalTo(0d));
+    // Every value in the sample is distinct, so every value is distinct
+    assertThat(
+        SqlJdbcStatisticProvider.distinctCount(10000d, 10000d, 1000000d),
+        equalTo(1000000d));
+    // Few distinct values in the sample; hardly any more in the table
+    assertThat(SqlJdbcStatisticProvider.distinctCount(10d, 10000d, 1000000d),
+        equalTo(10.99d));
+    // Half of the sample is distinct
+    assertThat(
+        SqlJdbcStatisticProvider.distinctCount(5000d, 10000d, 1000000d),
+        equalTo(252500d));
+  }
+}
+
+// End JdbcStatisticProviderTest.java
@@ -17,6 +17,7 @@
 package org.apache.calcite.runtime;
 
 import org.apache.calcite.linq4j.Enumerable;
+import org.apache.calcite.linq4j.Enumerator;
 import org.apache.calcite.linq4j.Linq4j;
 import org.apache.calcite.linq4j.function.Function1;
 import org.apache.calcite.linq4j.function.Function2;
@@ -27,7 +28,9 @@
 
 import org.junit.Test;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 import static org.hamcrest.CoreMatchers.equalTo;
@@ -238,6 +241,38 @@ public T apply(T v0, T v1) {
         equalTo("[]"));
   }
 
+  /** Tests {@link ParallelEnumerables#join}, including resetting its
+   * enumerator. */
+  @Test public void testParallelFullJoin() {
+    final Enumerable<String> join =
+        ParallelEnumerables.join(EMPS, DEPTS,
+            new Function1<Emp, Integer>() {
+              public Integer apply(Emp a0) {
+                return a0.deptno;
+              }
+            },
+            new Function1<Dept, Integer>() {
+              public Integer apply(Dept a0) {
+                return a0.deptno;
+              }
+            },
+            EMP_DEPT_TO_STRING, null, true, true, 3);
+    final String expected = "[{Fred, 10, null, null}, {Joe, 30, null, null}, "
+        + "{Sebastian, 20, 20, Sales}, {Theodore, 20, 20, Sales}, "
+        + "{null, null, 15, Marketing}]";
+    try (Enumerator<String> enumerator = join.enumerator()) {
+      for (int i = 0; i < 2; i++) {
+        final List<String> list = new ArrayList<>();
+        while (enumerator.moveNext()) {
+          list.add(enumerator.current());
+        }
+        Collections.sort(list);
+        assertThat(list.toString(), equalTo(expected));
+        enumerator.reset();
+      }
+    }
+  }
+
   /** Employee record. */
   private static class Emp {
     final int deptno;
@@ -17,6 +17,7 @@
 package org.apache.calcite.test;
 
 import org.apache.calcite.adapter.clone.ArrayTableTest;
+import org.apache.calcite.adapter.jdbc.JdbcStatisticProviderTest;
 import org.apache.calcite.jdbc.CalciteRemoteDriverTest;
 import org.apache.calcite.plan.RelOptPlanReaderTest;
 import org.apache.calcite.plan.RelOptUtilTest;
@@ -63,6 +64,7 @@
 @Suite.SuiteClasses({
     // very fast tests (under 0.1s)
     ArrayTableTest.class,
+    JdbcStatisticProviderTest.class,
     BitSetsTest.class,
     ImmutableBitSetTest.class,
     DirectedGraphTest.class,
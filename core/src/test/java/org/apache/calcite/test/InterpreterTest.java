@@ -19,9 +19,16 @@
 import org.apache.calcite.DataContext;
 import org.apache.calcite.adapter.java.JavaTypeFactory;
 import org.apache.calcite.interpreter.Interpreter;
+import org.apache.calcite.linq4j.AbstractEnumerable;
+import org.apache.calcite.linq4j.Enumerable;
+import org.apache.calcite.linq4j.Enumerator;
 import org.apache.calcite.linq4j.QueryProvider;
 import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.rel.type.RelDataType;
+import org.apache.calcite.rel.type.RelDataTypeFactory;
+import org.apache.calcite.schema.ScannableTable;
 import org.apache.calcite.schema.SchemaPlus;
+import org.apache.calcite.schema.impl.AbstractTable;
 import org.apache.calcite.sql.SqlNode;
 import org.apache.calcite.sql.parser.SqlParser;
 import org.apache.calcite.tools.FrameworkConfig;
@@ -37,9 +44,14 @@
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
 
 /**
  * Unit tests for {@link org.apache.calcite.interpreter.Interpreter}.
@@ -249,6 +261,148 @@ private static void assertRows(Interpreter interpreter,
     final Interpreter interpreter = new Interpreter(dataContext, convert);
     assertRows(interpreter, "[0]", "[10]", "[20]", "[30]");
   }
+
+  /** Tests that rows stream through a pipeline whose output is larger than
+   * the queues between its nodes, and arrive in order. */
+  @Test public void testInterpretPipeline() throws Exception {
+    rootSchema.add("range", new RangeTable(10000));
+    SqlNode parse =
+        planner.parse("select \"i\" + 1 from \"range\" where \"i\" >= 0");
+
+    SqlNode validate = planner.validate(parse);
+    RelNode convert = planner.convert(validate);
+
+    final Interpreter interpreter = new Interpreter(dataContext, convert);
+    int n = 0;
+    for (Object[] row : interpreter) {
+      assertThat(row[0], is((Object) (n + 1)));
+      ++n;
+    }
+    assertThat(n, is(10000));
+  }
+
+  /** Tests that closing an enumerator before it has read all of the rows
+   * stops the nodes that are blocked writing them. */
+  @Test public void testInterpretCloseEarly() throws Exception {
+    final RangeTable range = new RangeTable(100000);
+    rootSchema.add("range", range);
+    SqlNode parse =
+        planner.parse("select \"i\" + 1 from \"range\" where \"i\" >= 0");
+
+    SqlNode validate = planner.validate(parse);
+    RelNode convert = planner.convert(validate);
+
+    final Interpreter interpreter = new Interpreter(dataContext, convert);
+    final Enumerator<Object[]> enumerator = interpreter.enumerator();
+    for (int i = 0; i < 3; i++) {
+      assertThat(enumerator.moveNext(), is(true));
+      assertThat(enumerator.current()[0], is((Object) (i + 1)));
+    }
+    enumerator.close();
+
+    // The node that reads the table stops, and closes the table's
+    // enumerator, without reading the rest of the table.
+    assertThat(range.closed.await(10, TimeUnit.SECONDS), is(true));
+    assertThat(range.readCount.get() < 100000, is(true));
+  }
+
+  /** Tests that an interpreter can be enumerated more than once, and that
+   * its enumerator can be reset. */
+  @Test public void testInterpretTwice() throws Exception {
+    rootSchema.add("range", new RangeTable(1000));
+    SqlNode parse =
+        planner.parse("select \"i\" + 1 from \"range\" where \"i\" >= 0");
+
+    SqlNode validate = planner.validate(parse);
+    RelNode convert = planner.convert(validate);
+
+    final Interpreter interpreter = new Interpreter(dataContext, convert);
+    assertThat(interpreter.count(), is(1000));
+    assertThat(interpreter.count(), is(1000));
+    try (Enumerator<Object[]> enumerator = interpreter.enumerator()) {
+      assertThat(enumerator.moveNext(), is(true));
+      assertThat(enumerator.moveNext(), is(true));
+      assertThat(enumerator.current()[0], is((Object) 2));
+      enumerator.reset();
+      int n = 0;
+      while (enumerator.moveNext()) {
+        assertThat(enumerator.current()[0], is((Object) (n + 1)));
+        ++n;
+      }
+      assertThat(n, is(1000));
+    }
+  }
+
+  /** Tests that an error in a node is thrown to the consumer, even though the
+   * node runs in another thread. */
+  @Test public void testInterpretError() throws Exception {
+    rootSchema.add("range", new RangeTable(10));
+    SqlNode parse =
+        planner.parse("select 10 / (\"i\" - 5) from \"range\"");
+
+    SqlNode validate = planner.validate(parse);
+    RelNode convert = planner.convert(validate);
+
+    final Interpreter interpreter = new Interpreter(dataContext, convert);
+    try {
+      for (Object[] row : interpreter) {
+        assertThat(row.length, is(1));
+      }
+      fail("expected error");
+    } catch (ArithmeticException e) {
+      assertThat(e.getMessage(), is("/ by zero"));
+    }
+  }
+
+  /** Table whose single column "i" has the values 0 to n - 1. */
+  private static class RangeTable extends AbstractTable
+      implements ScannableTable {
+    private final int n;
+    /** Number of rows read, over all scans. */
+    final AtomicInteger readCount = new AtomicInteger();
+    /** Counted down when a scan's enumerator is closed. */
+    final CountDownLatch closed = new CountDownLatch(1);
+
+    RangeTable(int n) {
+      this.n = n;
+    }
+
+    public RelDataType getRowType(RelDataTypeFactory typeFactory) {
+      return typeFactory.builder()
+          .add("i", typeFactory.createJavaType(int.class))
+          .build();
+    }
+
+    public Enumerable<Object[]> scan(DataContext root) {
+      return new AbstractEnumerable<Object[]>() {
+        public Enumerator<Object[]> enumerator() {
+          return new Enumerator<Object[]>() {
+            int i = -1;
+
+            public Object[] current() {
+              return new Object[] {i};
+            }
+
+            public boolean moveNext() {
+              if (++i < n) {
+                readCount.incrementAndGet();
+                return true;
+              }
+              return false;
+            }
+
+            public void reset() {
+              i = -1;
+            }
+
+            public void close() {
+              closed.countDown();
+            }
+          };
+        }
+      };
+    }
+  }
 }
 
 // End InterpreterTest.java
@@ -16,24 +16,39 @@
  */
 package org.apache.calcite.test;
 
+import org.apache.calcite.adapter.jdbc.JdbcStatistic;
 import org.apache.calcite.jdbc.CalciteConnection;
+import org.apache.calcite.linq4j.function.Function0;
+import org.apache.calcite.linq4j.function.Function1;
+import org.apache.calcite.runtime.ResultSetEnumerable;
+import org.apache.calcite.util.ImmutableBitSet;
 
 import com.google.common.base.Function;
 import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
 
 import org.hsqldb.jdbcDriver;
 
 import org.junit.Test;
 
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Properties;
+import javax.sql.DataSource;
 
+import static org.hamcrest.CoreMatchers.containsString;
 import static org.hamcrest.CoreMatchers.equalTo;
 import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertThat;
 
@@ -355,6 +370,83 @@ public class JdbcAdapterTest {
     calciteConnection.close();
   }
 
+  /** Returns the SCOTT model with the given "partitions" attribute. */
+  private static String partitionedScottModel(String partitions) {
+    return JdbcTest.SCOTT_MODEL.replace("jdbcSchema: ",
+        "partitions: " + partitions + ",\n       jdbcSchema: ");
+  }
+
+  /** Returns a checker that one statement is sent to the data source for
+   * each of the given fragments, and that each contains its fragment. */
+  private static Function<List, Void> sqlsContain(final String... fragments) {
+    return new Function<List, Void>() {
+      public Void apply(List actual) {
+        assertThat(actual.size(), equalTo(fragments.length));
+        for (int i = 0; i < fragments.length; i++) {
+          assertThat((String) actual.get(i), containsString(fragments[i]));
+        }
+        return null;
+      }
+    };
+  }
+
+  /** Tests a scan of a table whose scans are split into ranges of a numeric
+   * column. The bounds are read from the table. */
+  @Test public void testRangePartitionedScan() {
+    CalciteAssert.model(
+        partitionedScottModel("[{table: 'EMP', column: 'EMPNO', count: 3}]"))
+        .query("select empno, ename from scott.emp where deptno = 20")
+        .enable(CalciteAssert.DB == CalciteAssert.DatabaseInstance.HSQLDB)
+        .queryContains(
+            sqlsContain("WHERE \"EMPNO\" < 7558 OR \"EMPNO\" IS NULL",
+                "WHERE \"EMPNO\" >= 7558 AND \"EMPNO\" < 7746",
+                "WHERE \"EMPNO\" >= 7746"))
+        .returnsUnordered("EMPNO=7369; ENAME=SMITH",
+            "EMPNO=7566; ENAME=JONES",
+            "EMPNO=7788; ENAME=SCOTT",
+            "EMPNO=7876; ENAME=ADAMS",
+            "EMPNO=7902; ENAME=FORD");
+  }
+
+  /** Tests an aggregate on a table whose scans are split by the hash of an
+   * integer column; each partition is aggregated by the data source, and
+   * the results are combined. */
+  @Test public void testHashPartitionedAggregate() {
+    final String model = partitionedScottModel(
+        "[{table: 'EMP', column: 'EMPNO', kind: 'hash', count: 4}]");
+    CalciteAssert.model(model)
+        .query("select deptno, count(*) as c, sum(sal) as s,\n"
+            + " min(ename) as mi, max(hiredate) as ma\n"
+            + "from scott.emp group by deptno")
+        .enable(CalciteAssert.DB == CalciteAssert.DatabaseInstance.HSQLDB)
+        .queryContains(
+            sqlsContain("MOD(\"EMPNO\", 4) = 0", "MOD(\"EMPNO\", 4) = 1",
+                "MOD(\"EMPNO\", 4) = 2", "MOD(\"EMPNO\", 4) = 3"));
+    CalciteAssert.model(model)
+        .query("select deptno, count(*) as c, sum(sal) as s,\n"
+            + " min(ename) as mi, max(hiredate) as ma\n"
+            + "from scott.emp group by deptno")
+        .returnsUnordered(
+            "DEPTNO=10; C=3; S=8750.00; MI=CLARK; MA=1982-01-23",
+            "DEPTNO=20; C=5; S=10875.00; MI=ADAMS; MA=1987-05-23",
+            "DEPTNO=30; C=6; S=9400.00; MI=ALLEN; MA=1981-12-03");
+    CalciteAssert.model(model)
+        .query("select count(*) as c from scott.emp where sal > 10000")
+        .returns("C=0\n");
+  }
+
+  /** Tests a scan split into ranges of a date column whose bounds are given
+   * in the model. Rows outside the bounds are read by the first and last
+   * partitions. */
+  @Test public void testDateRangePartitionedScan() {
+    CalciteAssert.model(
+        partitionedScottModel("[{table: 'EMP', column: 'HIREDATE', count: 2,"
+            + " lower: '1981-01-01', upper: '1981-12-31'}]"))
+        .query("select count(*) as c, min(hiredate) as mi,"
+            + " max(hiredate) as ma from scott.emp")
+        .returns("C=14; MI=1980-12-17; MA=1987-05-23\n");
+  }
+
   /** Test case for
    * <a href="https://issues.apache.org/jira/browse/CALCITE-259">[CALCITE-259]
    * Using sub-queries in CASE statement against JDBC tables generates invalid
@@ -375,6 +467,156 @@ public class JdbcAdapterTest {
         .throws_(expected);
   }
 
+  /** Tests a JDBC schema that has a fetch size, and a statement that
+   * overrides it. */
+  @Test public void testFetchSize() throws Exception {
+    final String model =
+        JdbcTest.SCOTT_MODEL.replace("jdbcSchema: ",
+            "fetchSize: 5,\n       jdbcSchema: ");
+    CalciteAssert.model(model)
+        .query("select empno, ename, sal from scott.emp where deptno <> 10")
+        .planContains(".getFetchSize(root)")
+        .returnsCount(11);
+    CalciteAssert.model(model)
+        .doWithConnection(
+            new Function<CalciteConnection, Void>() {
+              public Void apply(CalciteConnection connection) {
+                try {
+                  final Statement statement = connection.createStatement();
+                  statement.setFetchSize(2);
+                  final ResultSet resultSet =
+                      statement.executeQuery("select * from scott.emp");
+                  int n = 0;
+                  while (resultSet.next()) {
+                    ++n;
+                  }
+                  assertThat(n, equalTo(14));
+                  resultSet.close();
+                  statement.close();
+                  return null;
+                } catch (SQLException e) {
+                  throw Throwables.propagate(e);
+                }
+              }
+            });
+  }
+
+  /** Tests that a scan with a fetch size turns off auto-commit on its
+   * connection (otherwise PostgreSQL ignores the fetch size) and turns it
+   * back on when it is closed. */
+  @Test public void testFetchSizeAutoCommit() throws Exception {
+    final ConnectionSpec spec = CalciteAssert.DatabaseInstance.HSQLDB.scott;
+    final List<Boolean> autoCommits = new ArrayList<>();
+    final InvocationHandler dataSourceHandler =
+        new InvocationHandler() {
+          public Object invoke(Object proxy, Method method, Object[] args)
+              throws Throwable {
+            assertThat(method.getName(), equalTo("getConnection"));
+            final Connection connection =
+                DriverManager.getConnection(spec.url, spec.username,
+                    spec.password);
+            return Proxy.newProxyInstance(null,
+                new Class[] {Connection.class},
+                new InvocationHandler() {
+                  public Object invoke(Object proxy, Method method,
+                      Object[] args) throws Throwable {
+                    if (method.getName().equals("setAutoCommit")) {
+                      autoCommits.add((Boolean) args[0]);
+                    }
+                    return method.invoke(connection, args);
+                  }
+                });
+          }
+        };
+    final DataSource dataSource = (DataSource) Proxy.newProxyInstance(null,
+        new Class[] {DataSource.class}, dataSourceHandler);
+    final Function1<ResultSet, Function0<Integer>> rowBuilderFactory =
+        new Function1<ResultSet, Function0<Integer>>() {
+          public Function0<Integer> apply(final ResultSet resultSet) {
+            return new Function0<Integer>() {
+              public Integer apply() {
+                try {
+                  return resultSet.getInt(1);
+                } catch (SQLException e) {
+                  throw Throwables.propagate(e);
+                }
+              }
+            };
+          }
+        };
+    final String sql = "select \"EMPNO\" from \"SCOTT\".\"EMP\"";
+    assertThat(
+        ResultSetEnumerable.of(dataSource, sql, rowBuilderFactory, 0).count(),
+        equalTo(14));
+    assertThat(autoCommits.isEmpty(), is(true));
+    assertThat(
+        ResultSetEnumerable.of(dataSource, sql, rowBuilderFactory, 5).count(),
+        equalTo(14));
+    assertThat(autoCommits, equalTo(Arrays.asList(false, true)));
+  }
+
+  /** Returns the SCOTT model, reading statistics with a given provider. */
+  private static String statisticScottModel(String provider) {
+    return JdbcTest.SCOTT_MODEL.replace("jdbcSchema: ",
+        "statisticProvider: '" + provider + "',\n       jdbcSchema: ");
+  }
+
+  /** Tests that the planner estimates row counts from the statistics that a
+   * JDBC schema reads from its data source. */
+  @Test public void testStatistics() {
+    final String model =
+        statisticScottModel(
+            "org.apache.calcite.adapter.jdbc.JdbcStatistics#AUTO");
+    // EMP has 14 rows; DEPTNO has 3 distinct values.
+    CalciteAssert.model(model)
+        .query("select empno from scott.emp where deptno = 20")
+        .explainMatches("including all attributes ",
+            CalciteAssert.checkResultContains(
+                "JdbcFilter(condition=[=(CAST($7):INTEGER, 20)]):"
+                    + " rowcount = 4.666666666666666,"))
+        .explainMatches("including all attributes ",
+            CalciteAssert.checkResultContains(
+                "JdbcTableScan(table=[[SCOTT, EMP]]): rowcount = 14.0,"));
+    CalciteAssert.model(model)
+        .query("select deptno, count(*) from scott.emp group by deptno")
+        .explainMatches("including all attributes ",
+            CalciteAssert.checkResultContains(
+                "JdbcAggregate(group=[{7}], EXPR$1=[COUNT()]):"
+                    + " rowcount = 3.0,"));
+    // EMPNO ranges from 7369 to 7934, so half of the rows are below 7652.
+    CalciteAssert.model(model)
+        .query("select empno from scott.emp where empno < 7652")
+        .explainMatches("including all attributes ",
+            CalciteAssert.checkResultContains(
+                "JdbcFilter(condition=[<($0, 7652)]): rowcount = 7.012"));
+    // Each employee is in one of DEPT's 4 departments.
+    CalciteAssert.model(model)
+        .query("select * from scott.emp join scott.dept using (deptno)")
+        .explainMatches("including all attributes ",
+            CalciteAssert.checkResultContains("JdbcJoin(condition=[=($7, $8)],"
+                + " joinType=[inner]): rowcount = 14.0,"));
+  }
+
+  /** Tests the selectivity that {@link JdbcStatistic} derives from an
+   * equi-depth histogram. */
+  @Test public void testStatisticHistogram() {
+    final JdbcStatistic statistic =
+        new JdbcStatistic(100d, ImmutableList.<ImmutableBitSet>of(),
+            ImmutableList.of(
+                new JdbcStatistic.Column(50d, 0.1d,
+                    ImmutableList.of(0d, 10d, 100d)),
+                JdbcStatistic.Column.UNKNOWN));
+    assertThat(statistic.getFractionBelow(0, -5d), equalTo(0d));
+    assertThat(statistic.getFractionBelow(0, 5d), equalTo(0.25d));
+    assertThat(statistic.getFractionBelow(0, 10d), equalTo(0.5d));
+    assertThat(statistic.getFractionBelow(0, 55d), equalTo(0.75d));
+    assertThat(statistic.getFractionBelow(0, 100d), equalTo(1d));
+    assertThat(statistic.getFractionBelow(1, 5d), nullValue());
+    assertThat(statistic.getFractionBelow(2, 5d), nullValue());
+    assertThat(statistic.getNullFraction(0), equalTo(0.1d));
+    assertThat(statistic.getDistinctCount(1), nullValue());
+  }
+
   /** Test case for
    * <a href="https://issues.apache.org/jira/browse/CALCITE-865">[CALCITE-865]
    * Unknown table type causes NullPointerException in JdbcSchema</a>. The issue
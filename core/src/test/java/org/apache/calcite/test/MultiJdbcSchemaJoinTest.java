@@ -16,11 +16,14 @@
  */
 package org.apache.calcite.test;
 
+import org.apache.calcite.adapter.java.JavaTypeFactory;
 import org.apache.calcite.adapter.java.ReflectiveSchema;
 import org.apache.calcite.adapter.jdbc.JdbcSchema;
 import org.apache.calcite.jdbc.CalciteConnection;
+import org.apache.calcite.jdbc.JavaTypeFactoryImpl;
 import org.apache.calcite.prepare.CalcitePrepareImpl;
 import org.apache.calcite.schema.SchemaPlus;
+import org.apache.calcite.schema.Table;
 
 import com.google.common.collect.Sets;
 
@@ -31,11 +34,14 @@
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.Collections;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicInteger;
 import javax.sql.DataSource;
 
+import static org.hamcrest.CoreMatchers.containsString;
 import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.fail;
 
@@ -144,6 +150,75 @@ private Connection setup() throws SQLException {
     assertThat(runQuery(setup(), query), equalTo(expected));
   }
 
+  /** Tests that a join of a small enumerable table to a JDBC table reads the
+   * JDBC table using a {@link org.apache.calcite.adapter.jdbc.JdbcBindJoin},
+   * and that a left join returns the rows that have no match. */
+  @Test public void testBindJoin() throws SQLException {
+    final Connection connection = setup();
+    final String query = "select e.\"empid\", t.field1\n"
+        + "from \"hr\".\"emps\" e left join db.table1 t\n"
+        + "on e.\"empid\" = t.id";
+    final Statement stmt = connection.createStatement();
+    ResultSet rs = stmt.executeQuery("explain plan for " + query);
+    assertThat(rs.next(), equalTo(true));
+    assertThat(rs.getString(1),
+        containsString("JdbcBindJoin(table=[[DB, TABLE1]], leftKeys=[[1]], "
+            + "rightKeys=[[0]], joinType=[left], batchSize=[100])"));
+    rs = stmt.executeQuery(query + " order by 1");
+    assertThat(CalciteAssert.toString(rs),
+        equalTo("empid=100; FIELD1=foo\n"
+            + "empid=110; FIELD1=null\n"
+            + "empid=150; FIELD1=null\n"
+            + "empid=200; FIELD1=bar\n"));
+    connection.close();
+  }
+
+  /** Tests a join between two JDBC databases where the left input has more
+   * distinct keys than fit into one batch of a bind join. */
+  @Test public void testBindJoinSeveralBatches() throws SQLException {
+    final String db1 = TempDb.INSTANCE.getUrl();
+    final Connection c1 = DriverManager.getConnection(db1, "", "");
+    final Statement stmt1 = c1.createStatement();
+    stmt1.execute("create table table1(id integer not null primary key)");
+    final String db2 = TempDb.INSTANCE.getUrl();
+    final Connection c2 = DriverManager.getConnection(db2, "", "");
+    final Statement stmt2 = c2.createStatement();
+    stmt2.execute("create table table2(id integer not null, "
+        + "field1 varchar(10))");
+    for (int i = 0; i < 250; i++) {
+      stmt1.execute("insert into table1 values(" + i + ")");
+      if (i % 3 == 0) {
+        stmt2.execute("insert into table2 values(" + i + ", 'x')");
+        stmt2.execute("insert into table2 values(" + i + ", 'y')");
+      }
+    }
+    c1.close();
+    c2.close();
+
+    final Connection connection = DriverManager.getConnection("jdbc:calcite:");
+    final SchemaPlus rootSchema =
+        connection.unwrap(CalciteConnection.class).getRootSchema();
+    rootSchema.add("DB1",
+        JdbcSchema.create(rootSchema, "DB1",
+            JdbcSchema.dataSource(db1, "org.hsqldb.jdbcDriver", "", ""),
+            null, null));
+    rootSchema.add("DB2",
+        JdbcSchema.create(rootSchema, "DB2",
+            JdbcSchema.dataSource(db2, "org.hsqldb.jdbcDriver", "", ""),
+            null, null));
+    final String query = "select count(*), sum(table1.id),\n"
+        + " min(table1.id), max(table1.id)\n"
+        + "from db1.table1 join db2.table2 on table1.id = table2.id";
+    final Statement stmt = connection.createStatement();
+    ResultSet rs = stmt.executeQuery("explain plan for " + query);
+    assertThat(rs.next(), equalTo(true));
+    assertThat(rs.getString(1), containsString("JdbcBindJoin"));
+    rs = stmt.executeQuery(query);
+    assertThat(CalciteAssert.toString(rs),
+        equalTo("EXPR$0=168; EXPR$1=20916; EXPR$2=0; EXPR$3=249\n"));
+    connection.close();
+  }
+
   private Set<Integer> runQuery(Connection calciteConnection, String query)
       throws SQLException {
     // Print out the plan
@@ -219,6 +294,134 @@ private Set<Integer> runQuery(Connection calciteConnection, String query)
     c1.close();
   }
 
+  /** Tests that a JDBC schema with a metadata TTL of 0 caches the names and
+   * row types of its tables until it is invalidated, even if Calcite does
+   * not cache the schema. */
+  @Test public void testMetadataCache() throws Exception {
+    final String db = TempDb.INSTANCE.getUrl();
+    Connection c1 = DriverManager.getConnection(db, "", "");
+    Statement stmt1 = c1.createStatement();
+    stmt1.execute("create table table1(id varchar(10) not null primary key)");
+    stmt1.execute("insert into table1 values('a')");
+
+    Connection connection = DriverManager.getConnection("jdbc:calcite:");
+    CalciteConnection calciteConnection =
+        connection.unwrap(CalciteConnection.class);
+    SchemaPlus rootSchema = calciteConnection.getRootSchema();
+    final DataSource ds =
+        JdbcSchema.dataSource(db, "org.hsqldb.jdbcDriver", "", "");
+    final JdbcSchema jdbcSchema =
+        JdbcSchema.create(rootSchema, "DB", ds, null, null,
+            JdbcSchema.configBuilder().setMetadataTtl(0).build());
+    final SchemaPlus s = rootSchema.add("DB", jdbcSchema);
+    s.setCacheEnabled(false);
+
+    Statement stmt3 = connection.createStatement();
+    ResultSet rs = stmt3.executeQuery("select * from db.table1");
+    assertThat(CalciteAssert.toString(rs), equalTo("ID=a\n"));
+
+    stmt1.execute("create table table2(id varchar(10) not null primary key)");
+    stmt1.execute("alter table table1 add column field1 varchar(10)");
+
+    // table2 and the new column are not visible, because JdbcSchema caches
+    // the catalog
+    try {
+      rs = stmt3.executeQuery("select * from db.table2");
+      fail("expected error, got " + rs);
+    } catch (SQLException e) {
+      assertThat(e.getCause().getCause().getMessage(),
+          equalTo("Table 'DB.TABLE2' not found"));
+    }
+    rs = stmt3.executeQuery("select * from db.table1");
+    assertThat(CalciteAssert.toString(rs), equalTo("ID=a\n"));
+
+    // after invalidating one table, its new column is visible
+    jdbcSchema.invalidate("TABLE1");
+    rs = stmt3.executeQuery("select * from db.table1");
+    assertThat(CalciteAssert.toString(rs), equalTo("ID=a; FIELD1=null\n"));
+
+    // after invalidating the schema, table2 is visible
+    jdbcSchema.invalidate();
+    rs = stmt3.executeQuery("select count(*) as c from db.table2");
+    assertThat(CalciteAssert.toString(rs), equalTo("C=0\n"));
+    c1.close();
+  }
+
+  /** Tests that a JDBC schema with a positive metadata TTL reads the names
+   * of its tables again in the background. */
+  @Test public void testMetadataRefresh() throws Exception {
+    final String db = TempDb.INSTANCE.getUrl();
+    Connection c1 = DriverManager.getConnection(db, "", "");
+    Statement stmt1 = c1.createStatement();
+    stmt1.execute("create table table1(id varchar(10) not null primary key)");
+
+    final DataSource ds =
+        JdbcSchema.dataSource(db, "org.hsqldb.jdbcDriver", "", "");
+    Connection connection = DriverManager.getConnection("jdbc:calcite:");
+    SchemaPlus rootSchema =
+        connection.unwrap(CalciteConnection.class).getRootSchema();
+    final JdbcSchema jdbcSchema =
+        JdbcSchema.create(rootSchema, "DB", ds, null, "PUBLIC",
+            JdbcSchema.configBuilder().setMetadataTtl(1).build());
+    assertThat(jdbcSchema.getTableNames(),
+        equalTo(Collections.singleton("TABLE1")));
+
+    stmt1.execute("create table table2(id varchar(10) not null primary key)");
+    final long start = System.currentTimeMillis();
+    for (;;) {
+      Thread.sleep(10);
+      if (jdbcSchema.getTableNames().contains("TABLE2")) {
+        break;
+      }
+      if (System.currentTimeMillis() - start > 10000) {
+        fail("table2 did not become visible");
+      }
+    }
+    assertThat(
+        jdbcSchema.contentsHaveChangedSince(start, System.currentTimeMillis()),
+        is(true));
+    c1.close();
+  }
+
+  /** Tests that when a JDBC schema with a positive metadata TTL sees in the
+   * background that the columns of a table have changed, it replaces the
+   * table, and does not change the row type of the old table. */
+  @Test public void testMetadataRefreshColumns() throws Exception {
+    final String db = TempDb.INSTANCE.getUrl();
+    Connection c1 = DriverManager.getConnection(db, "", "");
+    Statement stmt1 = c1.createStatement();
+    stmt1.execute("create table table1(id varchar(10) not null primary key)");
+
+    final DataSource ds =
+        JdbcSchema.dataSource(db, "org.hsqldb.jdbcDriver", "", "");
+    Connection connection = DriverManager.getConnection("jdbc:calcite:");
+    SchemaPlus rootSchema =
+        connection.unwrap(CalciteConnection.class).getRootSchema();
+    final JdbcSchema jdbcSchema =
+        JdbcSchema.create(rootSchema, "DB", ds, null, "PUBLIC",
+            JdbcSchema.configBuilder().setMetadataTtl(1).build());
+    final JavaTypeFactory typeFactory = new JavaTypeFactoryImpl();
+    final Table table1 = jdbcSchema.getTable("TABLE1");
+    assertThat(table1.getRowType(typeFactory).getFieldCount(), is(1));
+
+    stmt1.execute("alter table table1 add column field1 varchar(10)");
+    final long start = System.currentTimeMillis();
+    Table table = table1;
+    while (table == table1) {
+      Thread.sleep(10);
+      if (System.currentTimeMillis() - start > 10000) {
+        fail("table1 was not replaced");
+      }
+      table = jdbcSchema.getTable("TABLE1");
+    }
+    assertThat(table.getRowType(typeFactory).getFieldCount(), is(2));
+    assertThat(table1.getRowType(typeFactory).getFieldCount(), is(1));
+    assertThat(
+        jdbcSchema.contentsHaveChangedSince(start, System.currentTimeMillis()),
+        is(true));
+    c1.close();
+  }
+
   /** Pool of temporary databases. */
   static class TempDb {
     public static final TempDb INSTANCE = new TempDb();
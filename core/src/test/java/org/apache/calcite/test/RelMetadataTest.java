@@ -44,6 +44,7 @@
 import org.apache.calcite.rel.logical.LogicalTableScan;
 import org.apache.calcite.rel.logical.LogicalUnion;
 import org.apache.calcite.rel.logical.LogicalValues;
+import org.apache.calcite.rel.metadata.BuiltInMetadata;
 import org.apache.calcite.rel.metadata.CachingRelMetadataProvider;
 import org.apache.calcite.rel.metadata.ChainedRelMetadataProvider;
 import org.apache.calcite.rel.metadata.DefaultRelMetadataProvider;
@@ -77,6 +78,7 @@
 import org.junit.Test;
 
 import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
 import java.math.BigDecimal;
 import java.util.Arrays;
 import java.util.List;
@@ -86,6 +88,7 @@
 import static org.hamcrest.CoreMatchers.instanceOf;
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
@@ -1079,6 +1082,49 @@ private void checkPredicates(RelOptCluster cluster, RelOptTable empTable,
     assertThat(predicates.rightInferredPredicates.isEmpty(), is(true));
   }
 
+  /** Tests that metadata is implemented by generated classes, not proxies,
+   * at each level of a caching, chained, reflective provider, and that the
+   * generated classes give the same results. */
+  @Test public void testGeneratedMetadata() {
+    final RelNode rel =
+        convertSql("select deptno, count(*) from emp where deptno > 10 "
+            + "group by deptno having count(*) = 0");
+    final RelMetadataProvider provider =
+        rel.getCluster().getMetadataProvider();
+
+    // Reflective handler for one provider.
+    final BuiltInMetadata.RowCount metadata =
+        rel.metadata(BuiltInMetadata.RowCount.class);
+    final Double rowCount = metadata.getRowCount();
+    final Double selectivity =
+        rel.metadata(BuiltInMetadata.Selectivity.class).getSelectivity(null);
+    assertThat(Proxy.isProxyClass(metadata.getClass()), is(false));
+    assertThat(metadata.rel(), sameInstance(rel));
+    assertThat(metadata.toString(), equalTo("RowCount(" + rel + ")"));
+
+    // Chain of two providers.
+    rel.getCluster().setMetadataProvider(
+        ChainedRelMetadataProvider.of(ImmutableList.of(provider, provider)));
+    final BuiltInMetadata.RowCount metadata2 =
+        rel.metadata(BuiltInMetadata.RowCount.class);
+    assertThat(Proxy.isProxyClass(metadata2.getClass()), is(false));
+    assertThat(metadata2.rel(), sameInstance(rel));
+    assertThat(metadata2.getRowCount(), equalTo(rowCount));
+
+    // Cache; the second call is a cache hit.
+    rel.getCluster().setMetadataProvider(
+        new CachingRelMetadataProvider(
+            rel.getCluster().getMetadataProvider(),
+            rel.getCluster().getPlanner()));
+    final BuiltInMetadata.Selectivity metadata3 =
+        rel.metadata(BuiltInMetadata.Selectivity.class);
+    assertThat(Proxy.isProxyClass(metadata3.getClass()), is(false));
+    assertThat(metadata3.getSelectivity(null), equalTo(selectivity));
+    assertThat(metadata3.getSelectivity(null), equalTo(selectivity));
+    assertThat(rel.metadata(BuiltInMetadata.RowCount.class).getRowCount(),
+        equalTo(rowCount));
+  }
+
   /** Custom metadata interface. */
   public interface ColType extends Metadata {
     String getColType(int column);
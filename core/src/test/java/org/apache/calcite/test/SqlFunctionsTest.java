@@ -50,12 +50,16 @@
 import static org.apache.calcite.runtime.SqlFunctions.greater;
 import static org.apache.calcite.runtime.SqlFunctions.initcap;
 import static org.apache.calcite.runtime.SqlFunctions.lesser;
+import static org.apache.calcite.runtime.SqlFunctions.like;
+import static org.apache.calcite.runtime.SqlFunctions.likeMatcher;
 import static org.apache.calcite.runtime.SqlFunctions.lower;
 import static org.apache.calcite.runtime.SqlFunctions.ltrim;
 import static org.apache.calcite.runtime.SqlFunctions.rtrim;
+import static org.apache.calcite.runtime.SqlFunctions.similar;
 import static org.apache.calcite.runtime.SqlFunctions.trim;
 import static org.apache.calcite.runtime.SqlFunctions.upper;
 
+import static org.hamcrest.CoreMatchers.containsString;
 import static org.hamcrest.CoreMatchers.equalTo;
 import static org.hamcrest.CoreMatchers.is;
 import static org.junit.Assert.assertEquals;
@@ -514,6 +518,80 @@ private void thereAndBack(byte[] bytes) {
     assertThat(floorMod(1, 3), equalTo(1L));
     assertThat(floorMod(-1, 3), equalTo(2L));
   }
+
+  /** Tests {@link SqlFunctions#like}, including the patterns that are
+   * evaluated without a regular expression. */
+  @Test public void testLike() {
+    assertThat(like("abc", "abc"), is(true));
+    assertThat(like("abcd", "abc"), is(false));
+    assertThat(like("abc", "ab%"), is(true));
+    assertThat(like("xabc", "ab%"), is(false));
+    assertThat(like("xabc", "%bc"), is(true));
+    assertThat(like("xabcx", "%bc"), is(false));
+    assertThat(like("xabcx", "%bc%"), is(true));
+    assertThat(like("xacbx", "%bc%"), is(false));
+    assertThat(like("", "%"), is(true));
+    assertThat(like("", "%%"), is(true));
+    assertThat(like("", ""), is(true));
+    assertThat(like("a", ""), is(false));
+    assertThat(like("abc", "a_c"), is(true));
+    assertThat(like("abc", "a%c"), is(true));
+    assertThat(like("abd", "a%c"), is(false));
+    assertThat(like("a.c", "a.c"), is(true));
+    assertThat(like("abc", "a.c"), is(false));
+    assertThat(like("a\nbc", "a%"), is(true));
+    assertThat(like("a\nbc", "a%c"), is(true));
+    assertThat(like("a\nbc", "a_bc"), is(true));
+
+    // NUL is a literal, not an escape, if no escape is specified
+    assertThat(like("a\u0000%", "a\u0000%"), is(true));
+    assertThat(like("a\u0000b", "a\u0000_"), is(true));
+    assertThat(like("ab", "a\u0000b"), is(false));
+    assertThat(likeMatcher("a\u0000b").matches("a\u0000b"), is(true));
+    assertThat(likeMatcher("%\u0000").matches("xy\u0000"), is(true));
+    assertThat(similar("a\u0000b", "a\u0000b"), is(true));
+  }
+
+  /** Tests {@link SqlFunctions#like} with an escape character. */
+  @Test public void testLikeEscape() {
+    assertThat(like("a%", "a!%", "!"), is(true));
+    assertThat(like("ab", "a!%", "!"), is(false));
+    assertThat(like("xa_b", "%a!_b", "!"), is(true));
+    assertThat(like("xa_bx", "%a!_b%", "!"), is(true));
+    assertThat(like("xaxbx", "%a!_b%", "!"), is(false));
+    assertThat(like("a!", "a!!", "!"), is(true));
+    assertThat(like("a%b", "a!%%", "!"), is(true));
+    assertThat(like("a%b", "%!%%", "!"), is(true));
+    try {
+      final boolean b = like("a", "a!", "!");
+      fail("expected error, got " + b);
+    } catch (RuntimeException e) {
+      assertThat(e.getMessage(), containsString("Invalid escape sequence"));
+    }
+  }
+
+  /** Tests that a matcher created by {@link SqlFunctions#likeMatcher} gives
+   * the same results as {@link SqlFunctions#like}. */
+  @Test public void testLikeMatcher() {
+    final String[] patterns = {"%", "abc", "a%", "%c", "%b%", "a_c", "_%"};
+    final String[] strings = {"", "a", "abc", "xbx", "ab\nc", "cba"};
+    for (String pattern : patterns) {
+      for (String s : strings) {
+        assertThat(pattern + ", " + s, likeMatcher(pattern).matches(s),
+            is(like(s, pattern)));
+      }
+    }
+  }
+
+  /** Tests {@link SqlFunctions#similar}. */
+  @Test public void testSimilar() {
+    assertThat(similar("abc", "abc"), is(true));
+    assertThat(similar("abc", "a%"), is(true));
+    assertThat(similar("abc", "a(b|x)c"), is(true));
+    assertThat(similar("axc", "a(b|d)c"), is(false));
+    assertThat(similar("a%", "a\\%", "\\"), is(true));
+    assertThat(similar("ab", "a\\%", "\\"), is(false));
+  }
 }
 
 // End SqlFunctionsTest.java
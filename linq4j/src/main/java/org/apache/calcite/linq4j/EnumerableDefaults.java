@@ -1164,6 +1164,123 @@ public void close() {
     };
   }
 
+  /**
+   * Correlates the elements of two sequences based on a matching key of
+   * type {@code long}.
+   *
+   * <p>Gives the same results as {@link #join}, but builds the inner
+   * sequence into an open-addressing hash table of primitive keys, with the
+   * rows for each key chained by index, rather than a map from boxed keys to
+   * lists. Use it when each key is a single non-nullable integer value.
+   */
+  public static <TSource, TInner, TResult> Enumerable<TResult> hashJoinLong(
+      final Enumerable<TSource> outer, final Enumerable<TInner> inner,
+      final LongFunction1<TSource> outerKeySelector,
+      final LongFunction1<TInner> innerKeySelector,
+      final Function2<TSource, TInner, TResult> resultSelector,
+      final boolean generateNullsOnLeft,
+      final boolean generateNullsOnRight) {
+    return new AbstractEnumerable<TResult>() {
+      public Enumerator<TResult> enumerator() {
+        final LongLookup<TInner> lookup = new LongLookup<>();
+        final Enumerator<TInner> inners = inner.enumerator();
+        try {
+          while (inners.moveNext()) {
+            final TInner row = inners.current();
+            lookup.add(innerKeySelector.apply(row), row);
+          }
+        } finally {
+          inners.close();
+        }
+
+        return new Enumerator<TResult>() {
+          final Enumerator<TSource> outers = outer.enumerator();
+          final boolean[] matched =
+              generateNullsOnLeft ? new boolean[lookup.heads.length] : null;
+          TSource outerRow;
+          /** Index of the current inner row, or -1 if the current result
+           * has a null inner row. */
+          int row = -1;
+          /** Whether we have read all outer rows and are returning inner
+           * rows that matched no outer row. */
+          boolean leftovers;
+          int slot = -1;
+
+          public TResult current() {
+            return resultSelector.apply(outerRow,
+                row < 0 ? null : lookup.<TInner>row(row));
+          }
+
+          public boolean moveNext() {
+            if (row >= 0) {
+              row = lookup.next[row];
+              if (row >= 0) {
+                return true;
+              }
+            }
+            if (leftovers) {
+              return nextLeftover();
+            }
+            for (;;) {
+              if (!outers.moveNext()) {
+                if (matched != null) {
+                  // We've seen everything else. If we are doing a RIGHT or
+                  // FULL join, emit the inner rows whose key matched no
+                  // outer row.
+                  leftovers = true;
+                  outerRow = null;
+                  return nextLeftover();
+                }
+                return false;
+              }
+              outerRow = outers.current();
+              final int s = outerRow == null
+                  ? -1
+                  : lookup.find(outerKeySelector.apply(outerRow));
+              if (s >= 0) {
+                if (matched != null) {
+                  matched[s] = true;
+                }
+                row = lookup.heads[s];
+                return true;
+              }
+              if (generateNullsOnRight) {
+                row = -1;
+                return true;
+              }
+            }
+          }
+
+          private boolean nextLeftover() {
+            while (++slot < matched.length) {
+              if (lookup.heads[slot] >= 0 && !matched[slot]) {
+                row = lookup.heads[slot];
+                return true;
+              }
+            }
+            row = -1;
+            return false;
+          }
+
+          public void reset() {
+            outers.reset();
+            outerRow = null;
+            row = -1;
+            leftovers = false;
+            slot = -1;
+            if (matched != null) {
+              Arrays.fill(matched, false);
+            }
+          }
+
+          public void close() {
+            outers.close();
+          }
+        };
+      }
+    };
+  }
+
   /**
    * Returns elements of {@code outer} for which there is a member of
    * {@code inner} with a matching key. A specified
@@ -2948,6 +3065,106 @@ public void close() {
     }
   }
 
+  /** Hash table from {@code long} keys to rows, used by
+   * {@link #hashJoinLong}.
+   *
+   * <p>Keys are held in an open-addressing table with linear probing. Each
+   * slot points to the first and last of its rows; the rows for a key are
+   * chained, in the order they were added, via {@link #next}. */
+  private static class LongLookup<T> {
+    /** Key in each slot. */
+    long[] keys = new long[16];
+    /** Index of the first row in each slot, or -1 if the slot is empty. */
+    int[] heads = newSlots(16);
+    /** Index of the last row in each slot. */
+    int[] tails = new int[16];
+    /** Index of the next row with the same key, or -1. */
+    int[] next = new int[16];
+    Object[] rows = new Object[16];
+    int rowCount;
+    int keyCount;
+
+    private static int[] newSlots(int n) {
+      final int[] slots = new int[n];
+      Arrays.fill(slots, -1);
+      return slots;
+    }
+
+    private static int hash(long key, int mask) {
+      final long h = key * 0x9E3779B97F4A7C15L;
+      return (int) (h ^ (h >>> 32)) & mask;
+    }
+
+    @SuppressWarnings("unchecked")
+    <E> E row(int i) {
+      return (E) rows[i];
+    }
+
+    /** Returns the slot that contains a given key, or -1. */
+    int find(long key) {
+      final int mask = heads.length - 1;
+      for (int s = hash(key, mask);; s = (s + 1) & mask) {
+        if (heads[s] < 0) {
+          return -1;
+        }
+        if (keys[s] == key) {
+          return s;
+        }
+      }
+    }
+
+    void add(long key, T row) {
+      if (rowCount == rows.length) {
+        rows = Arrays.copyOf(rows, rowCount * 2);
+        next = Arrays.copyOf(next, rowCount * 2);
+      }
+      final int i = rowCount++;
+      rows[i] = row;
+      next[i] = -1;
+      final int mask = heads.length - 1;
+      int s = hash(key, mask);
+      for (;; s = (s + 1) & mask) {
+        if (heads[s] < 0) {
+          keys[s] = key;
+          heads[s] = i;
+          tails[s] = i;
+          if (++keyCount * 2 > heads.length) {
+            rehash();
+          }
+          return;
+        }
+        if (keys[s] == key) {
+          next[tails[s]] = i;
+          tails[s] = i;
+          return;
+        }
+      }
+    }
+
+    /** Doubles the number of slots. */
+    private void rehash() {
+      final long[] oldKeys = keys;
+      final int[] oldHeads = heads;
+      final int[] oldTails = tails;
+      final int n = oldHeads.length * 2;
+      final int mask = n - 1;
+      keys = new long[n];
+      heads = newSlots(n);
+      tails = new int[n];
+      for (int i = 0; i < oldHeads.length; i++) {
+        if (oldHeads[i] >= 0) {
+          int s = hash(oldKeys[i], mask);
+          while (heads[s] >= 0) {
+            s = (s + 1) & mask;
+          }
+          keys[s] = oldKeys[i];
+          heads[s] = oldHeads[i];
+          tails[s] = oldTails[i];
+        }
+      }
+    }
+  }
+
   /** Value wrapped with a comparer. */
   private static class Wrapped<T> {
     private final EqualityComparer<T> comparer;
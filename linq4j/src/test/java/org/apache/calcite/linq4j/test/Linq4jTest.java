@@ -32,6 +32,7 @@
 import org.apache.calcite.linq4j.function.Function2;
 import org.apache.calcite.linq4j.function.Functions;
 import org.apache.calcite.linq4j.function.IntegerFunction1;
+import org.apache.calcite.linq4j.function.LongFunction1;
 import org.apache.calcite.linq4j.function.Predicate1;
 import org.apache.calcite.linq4j.function.Predicate2;
 import org.apache.calcite.linq4j.tree.ConstantExpression;
@@ -1254,6 +1255,87 @@ public String apply(Employee v1, Department v2) {
         s);
   }
 
+  /** Tests {@link EnumerableDefaults#hashJoinLong}, comparing its results
+   * with those of {@link EnumerableDefaults#join} for inner, left, right and
+   * full joins. */
+  @Test public void testHashJoinLong() {
+    final LongFunction1<Employee> empDeptno =
+        new LongFunction1<Employee>() {
+          public long apply(Employee employee) {
+            return employee.deptno;
+          }
+        };
+    final LongFunction1<Department> deptDeptno =
+        new LongFunction1<Department>() {
+          public long apply(Department department) {
+            return department.deptno;
+          }
+        };
+    final Function2<Employee, Department, String> resultSelector =
+        new Function2<Employee, Department, String>() {
+          public String apply(Employee v1, Department v2) {
+            return (v1 == null ? null : v1.name)
+                + " works in " + (v2 == null ? null : v2.name);
+          }
+        };
+    final List<Employee> emps2 = new ArrayList<>(Arrays.asList(emps));
+    emps2.addAll(Arrays.asList(badEmps));
+    for (boolean nullsOnLeft : new boolean[] {false, true}) {
+      for (boolean nullsOnRight : new boolean[] {false, true}) {
+        final List<String> expected =
+            Linq4j.asEnumerable(emps2).join(Linq4j.asEnumerable(depts),
+                EMP_DEPTNO_SELECTOR, DEPT_DEPTNO_SELECTOR, resultSelector,
+                null, nullsOnLeft, nullsOnRight)
+                .orderBy(Functions.<String>identitySelector())
+                .toList();
+        final Enumerable<String> actual =
+            EnumerableDefaults.hashJoinLong(Linq4j.asEnumerable(emps2),
+                Linq4j.asEnumerable(depts), empDeptno, deptDeptno,
+                resultSelector, nullsOnLeft, nullsOnRight);
+        assertThat(
+            actual.orderBy(Functions.<String>identitySelector()).toList(),
+            equalTo(expected));
+        // Enumerate a second time, to check that state is not shared.
+        assertThat(actual.count(), equalTo(expected.size()));
+      }
+    }
+  }
+
+  /** Tests {@link EnumerableDefaults#hashJoinLong} with enough keys that
+   * the hash table must grow, and several rows per key. */
+  @Test public void testHashJoinLongMany() {
+    final List<long[]> inner = new ArrayList<>();
+    for (int i = 0; i < 3000; i++) {
+      inner.add(new long[] {i % 1000 * 1000003L, i});
+    }
+    final List<long[]> outer = new ArrayList<>();
+    for (int i = 0; i < 1500; i++) {
+      outer.add(new long[] {i * 1000003L});
+    }
+    final LongFunction1<long[]> key =
+        new LongFunction1<long[]>() {
+          public long apply(long[] v0) {
+            return v0[0];
+          }
+        };
+    final Function2<long[], long[], String> resultSelector =
+        new Function2<long[], long[], String>() {
+          public String apply(long[] v0, long[] v1) {
+            return (v0 == null ? "-" : v0[0] / 1000003L) + ":"
+                + (v1 == null ? "-" : v1[1]);
+          }
+        };
+    final List<String> list =
+        EnumerableDefaults.hashJoinLong(Linq4j.asEnumerable(outer),
+            Linq4j.asEnumerable(inner), key, key, resultSelector, false, true)
+            .toList();
+    // 1000 outer rows match 3 inner rows each; 500 match none
+    assertThat(list.size(), equalTo(3500));
+    // Inner rows for a key are returned in the order they were added
+    assertThat(list.subList(0, 3).toString(), equalTo("[0:0, 0:1000, 0:2000]"));
+    assertThat(list.get(list.size() - 1), equalTo("1499:-"));
+  }
+
   @Test public void testJoinCartesianProduct() {
     int n =
         Linq4j.asEnumerable(emps)
@@ -0,0 +1,142 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite;
+
+import org.apache.calcite.adapter.clone.CloneSchema;
+import org.apache.calcite.adapter.tpch.TpchSchema;
+import org.apache.calcite.jdbc.CalciteConnection;
+import org.apache.calcite.schema.SchemaPlus;
+
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.GenerateMicroBenchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Measures execution of {@code EnumerableJoin}, {@code EnumerableAggregate}
+ * and {@code EnumerableSort} over TPC-H data at several scale factors.
+ *
+ * <p>The data is copied into memory (using {@link CloneSchema}) before
+ * measurement starts, and each query is prepared once, so that the
+ * benchmarks measure the generated code and the runtime library, not the
+ * TPC-H data generator or the planner. {@link QueryStagesTest} measures
+ * preparation.
+ *
+ * <p>The TPC-H data generator allocates large text pools, and the largest
+ * scale factor holds 600,000 rows of LINEITEM in memory, so forked JVMs get
+ * a 4 GB heap.
+ *
+ * <p>To run at one scale factor only:
+ *
+ * <blockquote>
+ *   <code>java -jar ./target/ubenchmarks.jar EnumerableOperatorTest
+ *   -p scale=0.01</code>
+ * </blockquote>
+ */
+@Fork(jvmArgsAppend = "-Xmx4g")
+public class EnumerableOperatorTest {
+
+  /** Connection to an in-memory copy of a TPC-H schema, and the prepared
+   * statements to execute. */
+  @State(Scope.Thread)
+  @BenchmarkMode(Mode.AverageTime)
+  public static class TpchData {
+    /** TPC-H scale factor; 0.01 has 60,000 rows in LINEITEM. */
+    @Param({ "0.001", "0.01", "0.1" })
+    public String scale;
+
+    Connection con;
+    PreparedStatement join;
+    PreparedStatement aggregate;
+    PreparedStatement sort;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+      Class.forName("org.apache.calcite.jdbc.Driver");
+      con = DriverManager.getConnection("jdbc:calcite:");
+      final SchemaPlus rootSchema =
+          con.unwrap(CalciteConnection.class).getRootSchema();
+      final SchemaPlus tpch = rootSchema.add("TPCH",
+          new TpchSchema(Double.parseDouble(scale), 1, 1, true));
+      rootSchema.add("MEM", new CloneSchema(tpch));
+
+      join = con.prepareStatement("select o.o_orderkey, c.c_name\n"
+          + "from mem.orders o\n"
+          + "join mem.customer c on o.o_custkey = c.c_custkey");
+      aggregate = con.prepareStatement("select l_suppkey,\n"
+          + "  sum(l_quantity), count(*)\n"
+          + "from mem.lineitem\n"
+          + "group by l_suppkey");
+      sort = con.prepareStatement("select l_orderkey, l_extendedprice\n"
+          + "from mem.lineitem\n"
+          + "order by l_extendedprice desc");
+
+      // Populate the clone tables, so that no benchmark pays for it.
+      drain(join);
+      drain(sort);
+    }
+
+    @TearDown(Level.Trial)
+    public void close() throws SQLException {
+      con.close();
+    }
+  }
+
+  @GenerateMicroBenchmark
+  public long join(TpchData state) throws SQLException {
+    return drain(state.join);
+  }
+
+  @GenerateMicroBenchmark
+  public long aggregate(TpchData state) throws SQLException {
+    return drain(state.aggregate);
+  }
+
+  @GenerateMicroBenchmark
+  public long sort(TpchData state) throws SQLException {
+    return drain(state.sort);
+  }
+
+  /** Executes a statement and reads every row; returns a value computed from
+   * the first column so that the reads cannot be optimized away. */
+  private static long drain(PreparedStatement statement) throws SQLException {
+    final ResultSet rs = statement.executeQuery();
+    try {
+      long sum = 0;
+      while (rs.next()) {
+        sum += rs.getLong(1);
+      }
+      return sum;
+    } finally {
+      rs.close();
+    }
+  }
+}
+
+// End EnumerableOperatorTest.java
@@ -0,0 +1,82 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite;
+
+import org.apache.calcite.plan.RelOptCost;
+import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.rel.metadata.RelMetadataQuery;
+import org.apache.calcite.tools.Planner;
+
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.GenerateMicroBenchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures the cost of metadata calls, comparing the handlers that are
+ * generated and compiled at run time with the {@link java.lang.reflect.Proxy}
+ * handlers that are used if the system property
+ * {@code calcite.metadata.compile} is "false".
+ *
+ * <p>Each call walks the whole logical plan of TPC-H query 3, which has a
+ * multi-way join, so the cost is dominated by dispatch through the metadata
+ * providers rather than by the formulas.
+ */
+public class MetadataTest {
+  /** Logical plan of the query, created once. */
+  @State(Scope.Thread)
+  @BenchmarkMode(Mode.AverageTime)
+  public static class Plan {
+    RelNode rel;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+      final Planner planner = QueryStagesTest.planner();
+      rel = planner.rel(
+          planner.validate(planner.parse(QueryStagesTest.SQL))).project();
+      planner.close();
+    }
+  }
+
+  @GenerateMicroBenchmark
+  public RelOptCost cumulativeCost(Plan state) {
+    return RelMetadataQuery.getCumulativeCost(state.rel);
+  }
+
+  @GenerateMicroBenchmark
+  @Fork(jvmArgsAppend = "-Dcalcite.metadata.compile=false")
+  public RelOptCost cumulativeCostProxy(Plan state) {
+    return RelMetadataQuery.getCumulativeCost(state.rel);
+  }
+
+  @GenerateMicroBenchmark
+  public Double rowCount(Plan state) {
+    return RelMetadataQuery.getRowCount(state.rel);
+  }
+
+  @GenerateMicroBenchmark
+  @Fork(jvmArgsAppend = "-Dcalcite.metadata.compile=false")
+  public Double rowCountProxy(Plan state) {
+    return RelMetadataQuery.getRowCount(state.rel);
+  }
+}
+
+// End MetadataTest.java
@@ -0,0 +1,210 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite;
+
+import org.apache.calcite.adapter.enumerable.EnumerableConvention;
+import org.apache.calcite.adapter.enumerable.EnumerableInterpretable;
+import org.apache.calcite.adapter.enumerable.EnumerableRel;
+import org.apache.calcite.adapter.tpch.TpchSchema;
+import org.apache.calcite.plan.RelTraitSet;
+import org.apache.calcite.plan.hep.HepPlanner;
+import org.apache.calcite.plan.hep.HepProgram;
+import org.apache.calcite.plan.hep.HepProgramBuilder;
+import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.rel.rules.AggregateProjectMergeRule;
+import org.apache.calcite.rel.rules.FilterJoinRule;
+import org.apache.calcite.rel.rules.FilterProjectTransposeRule;
+import org.apache.calcite.rel.rules.ProjectMergeRule;
+import org.apache.calcite.rel.rules.ProjectRemoveRule;
+import org.apache.calcite.runtime.Bindable;
+import org.apache.calcite.schema.SchemaPlus;
+import org.apache.calcite.sql.SqlNode;
+import org.apache.calcite.sql.parser.SqlParseException;
+import org.apache.calcite.sql.parser.SqlParser;
+import org.apache.calcite.tools.FrameworkConfig;
+import org.apache.calcite.tools.Frameworks;
+import org.apache.calcite.tools.Planner;
+import org.apache.calcite.tools.Programs;
+
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.GenerateMicroBenchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.HashMap;
+
+/**
+ * Measures each stage of preparing a query separately: parsing, validation,
+ * conversion to relational algebra, heuristic (Hep) planning, cost-based
+ * (Volcano) planning, and generating and compiling Java code.
+ *
+ * <p>Each benchmark takes TPC-H query 3 as far as the stage before the one
+ * it measures in a {@code Setup} method, so that a regression shows up only
+ * in the stage that caused it. Stages that modify the {@link Planner} need a
+ * fresh planner for every invocation; the other stages share one plan.
+ *
+ * <p>The TPC-H schema comes from the {@code plus} module; no data is read.
+ * {@link EnumerableOperatorTest} measures execution.
+ */
+public class QueryStagesTest {
+  /** Query whose preparation is measured. */
+  static final String SQL = TpchPlannerTest.Q03;
+
+  /** Rules applied by {@link #hepPlan}. */
+  static final HepProgram HEP_PROGRAM = new HepProgramBuilder()
+      .addRuleInstance(FilterProjectTransposeRule.INSTANCE)
+      .addRuleInstance(FilterJoinRule.FILTER_ON_JOIN)
+      .addRuleInstance(FilterJoinRule.JOIN)
+      .addRuleInstance(AggregateProjectMergeRule.INSTANCE)
+      .addRuleInstance(ProjectMergeRule.INSTANCE)
+      .addRuleInstance(ProjectRemoveRule.INSTANCE)
+      .build();
+
+  /** Creates a planner over a TPC-H schema that converts to the enumerable
+   * convention using a single Volcano program. */
+  static Planner planner() {
+    final SchemaPlus rootSchema = Frameworks.createRootSchema(true);
+    rootSchema.add("TPCH", new TpchSchema(0.01D, 1, 1, true));
+    final FrameworkConfig config = Frameworks.newConfigBuilder()
+        .defaultSchema(rootSchema)
+        .programs(Programs.ofRules(Programs.RULE_SET))
+        .build();
+    return Frameworks.getPlanner(config);
+  }
+
+  /** Planner that has parsed the query. */
+  @State(Scope.Thread)
+  @BenchmarkMode(Mode.AverageTime)
+  public static class Parsed {
+    Planner planner;
+    SqlNode node;
+
+    @Setup(Level.Invocation)
+    public void setUp() throws Exception {
+      planner = planner();
+      node = planner.parse(SQL);
+    }
+
+    @TearDown(Level.Invocation)
+    public void tearDown() {
+      planner.close();
+    }
+  }
+
+  /** Planner that has parsed and validated the query. */
+  @State(Scope.Thread)
+  @BenchmarkMode(Mode.AverageTime)
+  public static class Validated {
+    Planner planner;
+    SqlNode node;
+
+    @Setup(Level.Invocation)
+    public void setUp() throws Exception {
+      planner = planner();
+      node = planner.validate(planner.parse(SQL));
+    }
+
+    @TearDown(Level.Invocation)
+    public void tearDown() {
+      planner.close();
+    }
+  }
+
+  /** Planner that has converted the query to relational algebra. */
+  @State(Scope.Thread)
+  @BenchmarkMode(Mode.AverageTime)
+  public static class Converted {
+    Planner planner;
+    RelNode rel;
+
+    @Setup(Level.Invocation)
+    public void setUp() throws Exception {
+      planner = planner();
+      rel = planner.rel(planner.validate(planner.parse(SQL))).project();
+    }
+
+    @TearDown(Level.Invocation)
+    public void tearDown() {
+      planner.close();
+    }
+  }
+
+  /** Logical and physical plans of the query, created once. Neither
+   * {@link HepPlanner} nor code generation modifies them. */
+  @State(Scope.Thread)
+  @BenchmarkMode(Mode.AverageTime)
+  public static class Plans {
+    RelNode logical;
+    EnumerableRel physical;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+      final Planner planner = planner();
+      logical = planner.rel(planner.validate(planner.parse(SQL))).project();
+      final RelTraitSet traitSet =
+          planner.getEmptyTraitSet().replace(EnumerableConvention.INSTANCE);
+      final RelNode rel = planner.transform(0, traitSet, logical);
+      // EnumerableProject and EnumerableFilter cannot generate code; convert
+      // them to EnumerableCalc, as Prepare does.
+      physical = (EnumerableRel) Programs.CALC_PROGRAM.run(
+          rel.getCluster().getPlanner(), rel, traitSet);
+      planner.close();
+    }
+  }
+
+  @GenerateMicroBenchmark
+  public SqlNode parse() throws SqlParseException {
+    return SqlParser.create(SQL).parseQuery();
+  }
+
+  @GenerateMicroBenchmark
+  public SqlNode validate(Parsed state) throws Exception {
+    return state.planner.validate(state.node);
+  }
+
+  @GenerateMicroBenchmark
+  public RelNode convert(Validated state) throws Exception {
+    return state.planner.rel(state.node).project();
+  }
+
+  @GenerateMicroBenchmark
+  public RelNode hepPlan(Plans state) {
+    final HepPlanner planner = new HepPlanner(HEP_PROGRAM);
+    planner.setRoot(state.logical);
+    return planner.findBestExp();
+  }
+
+  @GenerateMicroBenchmark
+  public RelNode volcanoPlan(Converted state) throws Exception {
+    return state.planner.transform(0,
+        state.planner.getEmptyTraitSet()
+            .replace(EnumerableConvention.INSTANCE),
+        state.rel);
+  }
+
+  @GenerateMicroBenchmark
+  public Bindable generate(Plans state) {
+    return EnumerableInterpretable.toBindable(new HashMap<String, Object>(),
+        null, state.physical, EnumerableRel.Prefer.ARRAY);
+  }
+}
+
+// End QueryStagesTest.java
@@ -0,0 +1,204 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite;
+
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.GenerateMicroBenchmark;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Measures the time taken to plan TPC-H queries that join many tables.
+ *
+ * <p>Each benchmark runs {@code EXPLAIN PLAN FOR} a query, so that it
+ * measures parsing, validation, conversion to relational algebra and Volcano
+ * planning, but does not generate or execute code. Most of the time is spent
+ * in the planner's rule queue and in metadata queries.
+ *
+ * <p>The TPC-H schema comes from the {@code plus} module; no data is read.
+ */
+public class TpchPlannerTest {
+
+  /** Connection to a TPC-H schema. */
+  @State(Scope.Thread)
+  @BenchmarkMode(Mode.AverageTime)
+  public static class TpchConnection {
+    static final String MODEL = "{\n"
+        + "  version: '1.0',\n"
+        + "  defaultSchema: 'TPCH',\n"
+        + "  schemas: [\n"
+        + "    {\n"
+        + "      type: 'custom',\n"
+        + "      name: 'TPCH',\n"
+        + "      factory: 'org.apache.calcite.adapter.tpch.TpchSchemaFactory',\n"
+        + "      operand: {\n"
+        + "        columnPrefix: true,\n"
+        + "        scale: 0.01\n"
+        + "      }\n"
+        + "    }\n"
+        + "  ]\n"
+        + "}";
+
+    Connection con;
+    {
+      try {
+        Class.forName("org.apache.calcite.jdbc.Driver");
+        con = DriverManager.getConnection("jdbc:calcite:model=inline:"
+            + MODEL);
+      } catch (ClassNotFoundException e) {
+        throw new IllegalStateException(e);
+      } catch (SQLException e) {
+        throw new IllegalStateException(e);
+      }
+    }
+
+    @TearDown
+    public void close() throws SQLException {
+      con.close();
+    }
+  }
+
+  /** TPC-H query 3; joins 3 tables. */
+  static final String Q03 = "select\n"
+      + "  l.l_orderkey,\n"
+      + "  sum(l.l_extendedprice * (1 - l.l_discount)) as revenue,\n"
+      + "  o.o_orderdate,\n"
+      + "  o.o_shippriority\n"
+      + "from\n"
+      + "  tpch.customer c,\n"
+      + "  tpch.orders o,\n"
+      + "  tpch.lineitem l\n"
+      + "where\n"
+      + "  c.c_mktsegment = 'HOUSEHOLD'\n"
+      + "  and c.c_custkey = o.o_custkey\n"
+      + "  and l.l_orderkey = o.o_orderkey\n"
+      + "group by\n"
+      + "  l.l_orderkey,\n"
+      + "  o.o_orderdate,\n"
+      + "  o.o_shippriority\n"
+      + "order by\n"
+      + "  revenue desc,\n"
+      + "  o.o_orderdate\n"
+      + "limit 10";
+
+  /** TPC-H query 5; joins 6 tables. */
+  static final String Q05 = "select\n"
+      + "  n.n_name,\n"
+      + "  sum(l.l_extendedprice * (1 - l.l_discount)) as revenue\n"
+      + "from\n"
+      + "  tpch.customer c,\n"
+      + "  tpch.orders o,\n"
+      + "  tpch.lineitem l,\n"
+      + "  tpch.supplier s,\n"
+      + "  tpch.nation n,\n"
+      + "  tpch.region r\n"
+      + "where\n"
+      + "  c.c_custkey = o.o_custkey\n"
+      + "  and l.l_orderkey = o.o_orderkey\n"
+      + "  and l.l_suppkey = s.s_suppkey\n"
+      + "  and c.c_nationkey = s.s_nationkey\n"
+      + "  and s.s_nationkey = n.n_nationkey\n"
+      + "  and n.n_regionkey = r.r_regionkey\n"
+      + "  and r.r_name = 'EUROPE'\n"
+      + "group by\n"
+      + "  n.n_name\n"
+      + "order by\n"
+      + "  revenue desc";
+
+  /** TPC-H query 8; joins 8 tables. */
+  static final String Q08 = "select\n"
+      + "  o_year,\n"
+      + "  sum(case\n"
+      + "    when nation = 'EGYPT' then volume\n"
+      + "    else 0\n"
+      + "  end) / sum(volume) as mkt_share\n"
+      + "from\n"
+      + "  (\n"
+      + "    select\n"
+      + "      extract(year from o.o_orderdate) as o_year,\n"
+      + "      l.l_extendedprice * (1 - l.l_discount) as volume,\n"
+      + "      n2.n_name as nation\n"
+      + "    from\n"
+      + "      tpch.part p,\n"
+      + "      tpch.supplier s,\n"
+      + "      tpch.lineitem l,\n"
+      + "      tpch.orders o,\n"
+      + "      tpch.customer c,\n"
+      + "      tpch.nation n1,\n"
+      + "      tpch.nation n2,\n"
+      + "      tpch.region r\n"
+      + "    where\n"
+      + "      p.p_partkey = l.l_partkey\n"
+      + "      and s.s_suppkey = l.l_suppkey\n"
+      + "      and l.l_orderkey = o.o_orderkey\n"
+      + "      and o.o_custkey = c.c_custkey\n"
+      + "      and c.c_nationkey = n1.n_nationkey\n"
+      + "      and n1.n_regionkey = r.r_regionkey\n"
+      + "      and r.r_name = 'MIDDLE EAST'\n"
+      + "      and s.s_nationkey = n2.n_nationkey\n"
+      + "      and p.p_type = 'PROMO BRUSHED COPPER'\n"
+      + "  ) as all_nations\n"
+      + "group by\n"
+      + "  o_year\n"
+      + "order by\n"
+      + "  o_year";
+
+  @GenerateMicroBenchmark
+  public String planQuery03(TpchConnection state) throws SQLException {
+    return explain(state.con, Q03);
+  }
+
+  @GenerateMicroBenchmark
+  public String planQuery05(TpchConnection state) throws SQLException {
+    return explain(state.con, Q05);
+  }
+
+  @GenerateMicroBenchmark
+  public String planQuery08(TpchConnection state) throws SQLException {
+    return explain(state.con, Q08);
+  }
+
+  /** Plans a query and returns its plan. */
+  private static String explain(Connection con, String sql)
+      throws SQLException {
+    Statement st = null;
+    ResultSet rs = null;
+    try {
+      st = con.createStatement();
+      rs = st.executeQuery("explain plan for " + sql);
+      rs.next();
+      return rs.getString(1);
+    } finally {
+      if (rs != null) {
+        try { rs.close(); } catch (SQLException e) { /**/ }
+      }
+      if (st != null) {
+        try { st.close(); } catch (SQLException e) { /**/ }
+      }
+    }
+  }
+}
+
+// End TpchPlannerTest.java